@@ -21,6 +21,8 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSu
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_SKIPPED;
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.REJECTED;
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SKIPPED;
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toList;
 
 import java.io.Serializable;
@@ -40,6 +42,7 @@ import de.tudarmstadt.ukp.clarin.webanno.security.UserDao;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.active.learning.config.ActiveLearningAutoConfiguration;
 import de.tudarmstadt.ukp.inception.active.learning.strategy.ActiveLearningStrategy;
+import de.tudarmstadt.ukp.inception.active.learning.strategy.IncrementalActiveLearningStrategy;
 import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
@@ -125,10 +128,13 @@ public class ActiveLearningServiceImpl
             AnnotationLayer aLayer, boolean filterSkippedRecommendation,
             List<SuggestionGroup> aSuggestionGroups)
     {
-        List<LearningRecord> records = learningHistoryService
-                .listRecords(aUser.getUsername(),
-                        aLayer);
-
+        // The records are loaded once and grouped by position, so every suggestion only needs to
+        // be checked against the records at its own position
+        Map<String, List<LearningRecord>> recordsByPosition = learningHistoryService
+                .listRecords(aUser.getUsername(), aLayer).stream()
+                .collect(groupingBy(r -> positionKey(r.getSourceDocument().getName(),
+                        r.getOffsetCharacterBegin(), r.getOffsetCharacterEnd())));
+        
         for (SuggestionGroup group : aSuggestionGroups) {
             for (AnnotationSuggestion s : group) {
                 // If a suggestion is already invisible, we don't need to check if it needs hiding.
@@ -137,50 +143,118 @@ public class ActiveLearningServiceImpl
                 // prediction run (unless the learning-record-deletion code does an explicit
                 // unhiding).
                 if (s.isVisible()) {
-                    records.stream()
-                            .filter(r -> r.getSourceDocument().getName().equals(s.getDocumentName())
-                                    && r.getOffsetCharacterBegin() == s.getBegin()
-                                    && r.getOffsetCharacterEnd() == s.getEnd()
-                                    && s.labelEquals(r.getAnnotation()))
-                            .forEach(record -> {
-                                if (REJECTED.equals(record.getUserAction())) {
-                                    s.hide(FLAG_REJECTED);
-                                }
-                                else if (filterSkippedRecommendation
-                                        && SKIPPED.equals(record.getUserAction())) {
-                                    s.hide(FLAG_SKIPPED);
-                                }
-                            });
+                    hideIfRejectedOrSkipped(s, filterSkippedRecommendation, recordsByPosition
+                            .getOrDefault(positionKey(s.getDocumentName(), s.getBegin(),
+                                    s.getEnd()), emptyList()));
                 }
             }
         }
     }
+
+    /**
+     * Hides the given suggestion if the user has rejected (or skipped) it before. Only the records
+     * at the position of the suggestion are relevant. These are looked up in the learning record
+     * index which does not access the database, so this can be called for single candidates.
+     * 
+     * @return whether the suggestion has been hidden.
+     */
+    private boolean hideIfRejectedOrSkipped(User aUser, AnnotationLayer aLayer,
+            boolean aFilterSkippedRecommendation, AnnotationSuggestion aSuggestion)
+    {
+        return hideIfRejectedOrSkipped(aSuggestion, aFilterSkippedRecommendation,
+                learningHistoryService.listRecords(aUser.getUsername(), aLayer,
+                        aSuggestion.getDocumentName(), aSuggestion.getBegin(),
+                        aSuggestion.getEnd()));
+    }
+
+    /**
+     * Hides the given suggestion if one of the given records at its position rejects (or skips)
+     * it.
+     * 
+     * @return whether the suggestion has been hidden.
+     */
+    private boolean hideIfRejectedOrSkipped(AnnotationSuggestion aSuggestion,
+            boolean aFilterSkippedRecommendation, List<LearningRecord> aRecords)
+    {
+        boolean hidden = false;
+        for (LearningRecord record : aRecords) {
+            if (!aSuggestion.labelEquals(record.getAnnotation())) {
+                continue;
+            }
+
+            if (REJECTED.equals(record.getUserAction())) {
+                aSuggestion.hide(FLAG_REJECTED);
+                hidden = true;
+            }
+            else if (aFilterSkippedRecommendation && SKIPPED.equals(record.getUserAction())) {
+                aSuggestion.hide(FLAG_SKIPPED);
+                hidden = true;
+            }
+        }
+        return hidden;
+    }
     
+    private static String positionKey(String aDocumentName, int aBegin, int aEnd)
+    {
+        return aDocumentName + "@" + aBegin + "-" + aEnd;
+    }
+
     @Override
     public Optional<Delta> generateNextSuggestion(User aUser, ActiveLearningUserState alState)
     {
-        // Fetch the next suggestion to present to the user (if there is any)
+        if (!(alState.getStrategy() instanceof IncrementalActiveLearningStrategy)) {
+            return alState.getStrategy()
+                    .generateNextSuggestion(prepareSuggestions(aUser, alState));
+        }
+
+        // The queue is dropped when the suggestions are replaced, so we only need to rebuild it
+        // after new predictions have come in
+        SuggestionQueue queue = alState.getSuggestionQueue();
+        if (queue == null) {
+            long start = System.currentTimeMillis();
+            queue = new SuggestionQueue(
+                    (IncrementalActiveLearningStrategy) alState.getStrategy(),
+                    prepareSuggestions(aUser, alState));
+            alState.setSuggestionQueue(queue);
+            log.trace("Building suggestion queue with {} candidates costs {} ms.", queue.size(),
+                    (System.currentTimeMillis() - start));
+        }
+
+        // Suggestions may have been accepted, rejected or skipped since the queue was built, e.g.
+        // via the main editor. So we check the candidate against its visibility and the learning
+        // records before offering it and move on to the next candidate if necessary.
+        Optional<Delta> next = queue.peek();
+        while (next.isPresent() && (!next.get().getFirst().isVisible()
+                || hideIfRejectedOrSkipped(aUser, alState.getLayer(), true,
+                        next.get().getFirst()))) {
+            queue.update(next.get().getFirst());
+            next = queue.peek();
+        }
+
+        return next;
+    }
+
+    private List<SuggestionGroup> prepareSuggestions(User aUser,
+            ActiveLearningUserState alState)
+    {
         long startTimer = System.currentTimeMillis();
-        List<SuggestionGroup> suggestions = alState.getSuggestions();
-        long getRecommendationsFromRecommendationService = System.currentTimeMillis();
-        log.trace("Getting recommendations from recommender system costs {} ms.",
-                (getRecommendationsFromRecommendationService - startTimer));
 
         // remove duplicate recommendations
-        suggestions = suggestions.stream()
+        List<SuggestionGroup> suggestions = alState.getSuggestions().stream()
                 .map(it -> removeDuplicateRecommendations(it)).collect(Collectors.toList());
         long removeDuplicateRecommendation = System.currentTimeMillis();
         log.trace("Removing duplicate recommendations costs {} ms.",
-                (removeDuplicateRecommendation - getRecommendationsFromRecommendationService));
+                (removeDuplicateRecommendation - startTimer));
 
         // hide rejected recommendations
         hideRejectedOrSkippedAnnotations(aUser, alState.getLayer(), true, suggestions);
         long removeRejectedSkippedRecommendation = System.currentTimeMillis();
         log.trace("Removing rejected or skipped ones costs {} ms.",
                 (removeRejectedSkippedRecommendation - removeDuplicateRecommendation));
-        return alState.getStrategy().generateNextSuggestion(suggestions);
+
+        return suggestions;
     }
-    
+
     private static SuggestionGroup removeDuplicateRecommendations(
             SuggestionGroup unmodifiedRecommendationList)
     {
@@ -222,6 +296,7 @@ public class ActiveLearningServiceImpl
         private AnnotationLayer layer;
         private ActiveLearningStrategy strategy;
         private List<SuggestionGroup> suggestions;
+        private SuggestionQueue suggestionQueue;
 
         private Delta currentDifference;
         private String leftContext;
@@ -286,6 +361,8 @@ public class ActiveLearningServiceImpl
         public void setSuggestions(List<SuggestionGroup> aSuggestions)
         {
             suggestions = aSuggestions;
+            // The queue refers to the old suggestions and is rebuilt on demand
+            suggestionQueue = null;
         }
 
         public List<SuggestionGroup> getSuggestions()
@@ -293,6 +370,38 @@ public class ActiveLearningServiceImpl
             return suggestions;
         }
 
+        public SuggestionQueue getSuggestionQueue()
+        {
+            return suggestionQueue;
+        }
+
+        public void setSuggestionQueue(SuggestionQueue aSuggestionQueue)
+        {
+            suggestionQueue = aSuggestionQueue;
+        }
+
+        /**
+         * Updates the position of the given suggestion in the suggestion queue (if there is one)
+         * after its visibility has changed.
+         */
+        public void invalidateSuggestion(AnnotationSuggestion aSuggestion)
+        {
+            if (suggestionQueue != null) {
+                suggestionQueue.update(aSuggestion);
+            }
+        }
+
+        /**
+         * Updates the positions of all suggestions of the given document in the suggestion queue
+         * (if there is one) after their visibility has been recalculated.
+         */
+        public void invalidateDocument(String aDocumentName)
+        {
+            if (suggestionQueue != null) {
+                suggestionQueue.update(aDocumentName);
+            }
+        }
+
         public String getLeftContext()
         {
             return leftContext;
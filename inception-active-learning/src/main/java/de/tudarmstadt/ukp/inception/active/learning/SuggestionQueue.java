@@ -0,0 +1,214 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.active.learning;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeSet;
+
+import de.tudarmstadt.ukp.inception.active.learning.strategy.IncrementalActiveLearningStrategy;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Delta;
+
+/**
+ * Priority queue of the candidates which active learning may offer to the user. The candidates are
+ * the top {@link SuggestionGroup#getTopDeltas() deltas} of each suggestion group, ordered by the
+ * {@link IncrementalActiveLearningStrategy#score score} assigned by an incremental strategy.
+ * <p>
+ * The queue is built once when the suggestions are replaced (e.g. after new predictions have come
+ * in). When the visibility of suggestions changes later (e.g. because a suggestion was rejected or
+ * an annotation was created), only the affected groups need to be {@link #update updated}. Getting
+ * the next candidate as well as updating a group costs {@code O(log n)} instead of a sort over all
+ * suggestions in the project.
+ */
+public class SuggestionQueue
+    implements Serializable
+{
+    private static final long serialVersionUID = -2787318386390599254L;
+
+    private final IncrementalActiveLearningStrategy strategy;
+    private final TreeSet<Candidate> candidates = new TreeSet<>();
+    private final Map<GroupKey, SuggestionGroup> groups = new HashMap<>();
+    private final Map<GroupKey, List<Candidate>> candidatesByGroup = new HashMap<>();
+    private final Map<String, List<GroupKey>> groupsByDocument = new HashMap<>();
+
+    private long nextSequence = 0;
+
+    public SuggestionQueue(IncrementalActiveLearningStrategy aStrategy,
+            Collection<SuggestionGroup> aGroups)
+    {
+        strategy = aStrategy;
+
+        for (SuggestionGroup group : aGroups) {
+            if (group.isEmpty()) {
+                continue;
+            }
+
+            GroupKey key = new GroupKey(group.get(0));
+            groups.put(key, group);
+            groupsByDocument.computeIfAbsent(key.documentName, k -> new ArrayList<>()).add(key);
+            update(key);
+        }
+    }
+
+    /**
+     * @return the candidate with the lowest score (if any).
+     */
+    public Optional<Delta> peek()
+    {
+        return candidates.isEmpty() ? Optional.empty()
+                : Optional.of(candidates.first().delta);
+    }
+
+    /**
+     * Re-scores the group containing the given suggestion, e.g. after the suggestion has been
+     * hidden or shown.
+     */
+    public void update(AnnotationSuggestion aSuggestion)
+    {
+        update(new GroupKey(aSuggestion));
+    }
+
+    /**
+     * Re-scores all groups in the given document, e.g. after the visibility of the suggestions in
+     * the document has been recalculated.
+     */
+    public void update(String aDocumentName)
+    {
+        groupsByDocument.getOrDefault(aDocumentName, Collections.emptyList())
+                .forEach(this::update);
+    }
+
+    private void update(GroupKey aKey)
+    {
+        List<Candidate> oldCandidates = candidatesByGroup.remove(aKey);
+        if (oldCandidates != null) {
+            candidates.removeAll(oldCandidates);
+        }
+
+        SuggestionGroup group = groups.get(aKey);
+        if (group == null) {
+            return;
+        }
+
+        Collection<Delta> deltas = group.getTopDeltas().values();
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Candidate> newCandidates = new ArrayList<>(deltas.size());
+        for (Delta delta : deltas) {
+            Candidate candidate = new Candidate(delta, strategy.score(delta), nextSequence++);
+            newCandidates.add(candidate);
+            candidates.add(candidate);
+        }
+        candidatesByGroup.put(aKey, newCandidates);
+    }
+
+    public int size()
+    {
+        return candidates.size();
+    }
+
+    private static final class Candidate
+        implements Comparable<Candidate>, Serializable
+    {
+        private static final long serialVersionUID = 1905470183937532306L;
+
+        private final Delta delta;
+        private final double score;
+        // Breaks ties between equal scores such that older candidates come first
+        private final long sequence;
+
+        public Candidate(Delta aDelta, double aScore, long aSequence)
+        {
+            delta = aDelta;
+            score = aScore;
+            sequence = aSequence;
+        }
+
+        @Override
+        public int compareTo(Candidate aOther)
+        {
+            int result = Double.compare(score, aOther.score);
+            return result != 0 ? result : Long.compare(sequence, aOther.sequence);
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (!(aOther instanceof Candidate)) {
+                return false;
+            }
+            return sequence == ((Candidate) aOther).sequence;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Long.hashCode(sequence);
+        }
+    }
+
+    private static final class GroupKey
+        implements Serializable
+    {
+        private static final long serialVersionUID = -6180717564305045815L;
+
+        private final String documentName;
+        private final long layerId;
+        private final String feature;
+        private final int begin;
+        private final int end;
+
+        public GroupKey(AnnotationSuggestion aSuggestion)
+        {
+            documentName = aSuggestion.getDocumentName();
+            layerId = aSuggestion.getLayerId();
+            feature = aSuggestion.getFeature();
+            begin = aSuggestion.getBegin();
+            end = aSuggestion.getEnd();
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (!(aOther instanceof GroupKey)) {
+                return false;
+            }
+            GroupKey other = (GroupKey) aOther;
+            return layerId == other.layerId && begin == other.begin && end == other.end
+                    && documentName.equals(other.documentName)
+                    && Objects.equals(feature, other.feature);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(documentName, layerId, feature, begin, end);
+        }
+    }
+}
@@ -679,6 +679,7 @@ public class ActiveLearningSidebar
 
         suggestion.hide((areLabelsEqual) ? FLAG_TRANSIENT_ACCEPTED
                 : FLAG_TRANSIENT_CORRECTED);
+        alState.invalidateSuggestion(suggestion);
 
         // Log the action to the learning record
         writeLearningRecordInDatabaseAndEventLog(suggestion,
@@ -978,8 +979,10 @@ public class ActiveLearningSidebar
         // The history records caused suggestions to disappear. Since visibility is only fully
         // recalculated when new predictions come in, we need to update the visibility explicitly
         // here
-        getMatchingSuggestion(alState.getSuggestions(), aRecord)
-                .forEach(suggestion -> suggestion.show(FLAG_SKIPPED | FLAG_REJECTED));
+        getMatchingSuggestion(alState.getSuggestions(), aRecord).forEach(suggestion -> {
+            suggestion.show(FLAG_SKIPPED | FLAG_REJECTED);
+            alState.invalidateSuggestion(suggestion);
+        });
         
         // Force the learning records model to be refreshed during rendering, showing the latest
         // state from the DB
@@ -1090,6 +1093,7 @@ public class ActiveLearningSidebar
             recommendationService.calculateVisibility(getAnnotationPage().getEditorCas(),
                     state.getUser().getUsername(), aLayer, alState.getSuggestions(),
                     state.getWindowBeginOffset(), state.getWindowEndOffset());
+            alState.invalidateDocument(state.getDocument().getName());
     
             // Update the suggestion in the AL sidebar, but do not jump or touch the right
             // sidebar such that the user can happily continue to edit the annotation
@@ -1128,6 +1132,8 @@ public class ActiveLearningSidebar
             }
 
             AnnotationSuggestion rejectedRecommendation = prediction.get();
+            // The rejected suggestion has been hidden, so its group needs to be re-scored
+            alStateModel.getObject().invalidateSuggestion(rejectedRecommendation);
             applicationEventPublisherHolder.get().publishEvent(
                 new ActiveLearningRecommendationEvent(this, eventState.getDocument(),
                     rejectedRecommendation, annotatorState.getUser().getUsername(),
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.active.learning.strategy;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Delta;
+
+/**
+ * Strategy which assigns a {@link #score score} to every candidate independently of all other
+ * candidates. The candidates are then kept in a
+ * {@link de.tudarmstadt.ukp.inception.active.learning.SuggestionQueue} which is only updated where
+ * suggestions change instead of calling {@link #generateNextSuggestion} with all suggestions again
+ * every time the next suggestion is needed.
+ */
+public interface IncrementalActiveLearningStrategy
+    extends ActiveLearningStrategy
+{
+    /**
+     * Scores a candidate. Candidates with lower scores are offered to the user first.
+     * 
+     * @param aDelta
+     *            the candidate.
+     * @return the score.
+     */
+    public double score(Delta aDelta);
+}
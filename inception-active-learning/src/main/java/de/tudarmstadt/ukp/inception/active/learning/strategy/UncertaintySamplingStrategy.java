@@ -26,7 +26,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Delta;
 
 public class UncertaintySamplingStrategy
-    implements Serializable, ActiveLearningStrategy
+    implements Serializable, IncrementalActiveLearningStrategy
 {
     private static final long serialVersionUID = 5664120040399862552L;
 
@@ -36,9 +36,17 @@ public class UncertaintySamplingStrategy
         return suggestions.stream()
             // Fetch the top deltas per recommender
             .flatMap(group -> group.getTopDeltas().values().stream())
-            // ... sort them in ascending order (smallest delta first)
-            .sorted(Comparator.comparingDouble(Delta::getDelta))
             // ... and return the smallest delta (if there is one)
-            .findFirst();
+            .min(Comparator.comparingDouble(this::score));
+    }
+
+    /**
+     * The smaller the difference between the best and the second-best suggestion, the more
+     * uncertain the recommender is and the earlier the suggestion is offered.
+     */
+    @Override
+    public double score(Delta aDelta)
+    {
+        return aDelta.getDelta();
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.active.learning;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_TRANSIENT_ACCEPTED;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.active.learning.ActiveLearningServiceImpl.ActiveLearningUserState;
+import de.tudarmstadt.ukp.inception.active.learning.strategy.UncertaintySamplingStrategy;
+import de.tudarmstadt.ukp.inception.recommendation.api.LearningRecordService;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Delta;
+
+public class ActiveLearningServiceImplTest
+{
+    private User user;
+    private AnnotationSuggestion doc1A1;
+    private AnnotationSuggestion doc1A2;
+    private AnnotationSuggestion doc2B1;
+    private ActiveLearningUserState alState;
+
+    private ActiveLearningServiceImpl sut;
+
+    @Before
+    public void setup()
+    {
+        LearningRecordService learningRecordService = mock(LearningRecordService.class);
+        when(learningRecordService.listRecords(anyString(), any(), anyString(), anyInt(),
+                anyInt())).thenReturn(emptyList());
+
+        sut = new ActiveLearningServiceImpl(null, null, null, learningRecordService);
+
+        user = new User("user");
+
+        // Deltas: group A = 0.5 - 0.4, group B = 0.7 (no alternative)
+        doc1A1 = suggestion(0, "doc1", 0, 5, "A1", 0.5);
+        doc1A2 = suggestion(1, "doc1", 0, 5, "A2", 0.4);
+        doc2B1 = suggestion(2, "doc2", 0, 5, "B1", 0.7);
+
+        alState = new ActiveLearningUserState();
+        alState.setLayer(new AnnotationLayer());
+        alState.setStrategy(new UncertaintySamplingStrategy());
+        alState.setSuggestions(asList(new SuggestionGroup(doc1A1, doc1A2),
+                new SuggestionGroup(doc2B1)));
+    }
+
+    @Test
+    public void thatAcceptedSuggestionIsNotOfferedAgain()
+    {
+        assertThat(sut.generateNextSuggestion(user, alState)).map(Delta::getFirst)
+                .contains(doc1A1);
+
+        // Accept the suggestion the same way as the sidebar does
+        doc1A1.hide(FLAG_TRANSIENT_ACCEPTED);
+        alState.invalidateSuggestion(doc1A1);
+
+        assertThat(sut.generateNextSuggestion(user, alState)).map(Delta::getFirst)
+                .contains(doc1A2);
+    }
+
+    @Test
+    public void thatSuggestionHiddenWithoutInvalidationIsNotOfferedAgain()
+    {
+        assertThat(sut.generateNextSuggestion(user, alState)).map(Delta::getFirst)
+                .contains(doc1A1);
+
+        // E.g. accepted via the main editor while the document is not shown in the sidebar
+        doc1A1.hide(FLAG_TRANSIENT_ACCEPTED);
+        doc1A2.hide(FLAG_TRANSIENT_ACCEPTED);
+
+        assertThat(sut.generateNextSuggestion(user, alState)).map(Delta::getFirst)
+                .contains(doc2B1);
+    }
+
+    private static AnnotationSuggestion suggestion(int aId, String aDocumentName, int aBegin,
+            int aEnd, String aLabel, double aConfidence)
+    {
+        return new AnnotationSuggestion(aId, 1, "rec1", 1, "value", aDocumentName, aBegin, aEnd,
+                "text", aLabel, aLabel, aConfidence, null);
+    }
+}
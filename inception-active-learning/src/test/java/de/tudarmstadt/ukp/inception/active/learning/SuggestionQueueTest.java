@@ -0,0 +1,126 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.active.learning;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_REJECTED;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.active.learning.strategy.UncertaintySamplingStrategy;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup.Delta;
+
+public class SuggestionQueueTest
+{
+    private AnnotationSuggestion doc1A1;
+    private AnnotationSuggestion doc1A2;
+    private AnnotationSuggestion doc1A3;
+    private AnnotationSuggestion doc1B1;
+    private AnnotationSuggestion doc1B2;
+    private AnnotationSuggestion doc2C1;
+
+    private SuggestionQueue sut;
+
+    @Before
+    public void setup()
+    {
+        // Deltas: group A = 0.5 - 0.4, group B = 0.9 - 0.6, group C = 0.7 (no alternative)
+        doc1A1 = suggestion(0, "doc1", 0, 5, "A1", 0.5);
+        doc1A2 = suggestion(1, "doc1", 0, 5, "A2", 0.4);
+        doc1A3 = suggestion(2, "doc1", 0, 5, "A3", 0.39);
+        doc1B1 = suggestion(3, "doc1", 10, 15, "B1", 0.9);
+        doc1B2 = suggestion(4, "doc1", 10, 15, "B2", 0.6);
+        doc2C1 = suggestion(5, "doc2", 0, 5, "C1", 0.7);
+
+        sut = new SuggestionQueue(new UncertaintySamplingStrategy(), asList(
+                new SuggestionGroup(doc1B1, doc1B2), new SuggestionGroup(doc2C1),
+                new SuggestionGroup(doc1A1, doc1A2, doc1A3)));
+    }
+
+    @Test
+    public void thatCandidateWithSmallestDeltaComesFirst()
+    {
+        assertThat(sut.size()).isEqualTo(3);
+        assertThat(sut.peek()).map(Delta::getFirst).contains(doc1A1);
+    }
+
+    @Test
+    public void thatUpdatingGroupReordersQueue()
+    {
+        doc1A1.hide(FLAG_REJECTED);
+        sut.update(doc1A1);
+
+        // Group A now has the delta 0.4 - 0.39 and remains at the top
+        assertThat(sut.peek()).map(Delta::getFirst).contains(doc1A2);
+
+        doc1A2.hide(FLAG_REJECTED);
+        doc1A3.hide(FLAG_REJECTED);
+        sut.update(doc1A3);
+
+        assertThat(sut.size()).isEqualTo(2);
+        assertThat(sut.peek()).map(Delta::getFirst).contains(doc1B1);
+    }
+
+    @Test
+    public void thatUpdatingDocumentReordersQueue()
+    {
+        doc1A1.hide(FLAG_REJECTED);
+        doc1A2.hide(FLAG_REJECTED);
+        doc1A3.hide(FLAG_REJECTED);
+        doc1B1.hide(FLAG_REJECTED);
+
+        // Changes only take effect once the queue has been told about them
+        assertThat(sut.peek()).map(Delta::getFirst).contains(doc1A1);
+
+        sut.update("doc1");
+
+        // B2 alone has a delta of 0.6 which is now smaller than the delta of C1
+        assertThat(sut.peek()).map(Delta::getFirst).contains(doc1B2);
+
+        doc1B2.hide(FLAG_REJECTED);
+        sut.update("doc1");
+        assertThat(sut.peek()).map(Delta::getFirst).contains(doc2C1);
+
+        doc2C1.hide(FLAG_REJECTED);
+        sut.update("doc2");
+        assertThat(sut.peek()).isEmpty();
+    }
+
+    @Test
+    public void thatShownSuggestionIsQueuedAgain()
+    {
+        doc2C1.hide(FLAG_REJECTED);
+        sut.update(doc2C1);
+        assertThat(sut.size()).isEqualTo(2);
+
+        doc2C1.show(FLAG_REJECTED);
+        sut.update(doc2C1);
+        assertThat(sut.size()).isEqualTo(3);
+    }
+
+    private static AnnotationSuggestion suggestion(int aId, String aDocumentName, int aBegin,
+            int aEnd, String aLabel, double aConfidence)
+    {
+        return new AnnotationSuggestion(aId, 1, "rec1", 1, "value", aDocumentName, aBegin, aEnd,
+                "text", aLabel, aLabel, aConfidence, null);
+    }
+}
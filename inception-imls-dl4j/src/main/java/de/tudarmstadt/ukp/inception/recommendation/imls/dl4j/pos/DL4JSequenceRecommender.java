@@ -32,6 +32,7 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Random;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.uima.cas.CAS;
@@ -39,7 +40,6 @@ import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.util.CasUtil;
-import org.deeplearning4j.datasets.iterator.impl.ListDataSetIterator;
 import org.deeplearning4j.nn.conf.MultiLayerConfiguration;
 import org.deeplearning4j.nn.conf.NeuralNetConfiguration;
 import org.deeplearning4j.nn.conf.layers.LSTM;
@@ -202,30 +202,31 @@ public class DL4JSequenceRecommender
         // Configure the neural network
         MultiLayerNetwork model = createConfiguredNetwork(traits, wordVectors.dimensions());
 
-        final int limit = traits.getTrainingSetSizeLimit();
-        final int batchSize = traits.getBatchSize();
+        // Every sentence is converted only once into a compact representation and the mini-batches
+        // built from these are vectorized only once as well. They are then re-used in every epoch.
+        // If the vectorized batches would consume too much memory, they are spilled to disk.
+        try (MiniBatches batches = new MiniBatches(this::lookupEmbedding, wordVectors.dimensions(),
+                traits.getMaxTagsetSize(), traits.getMaxSentenceLength(), traits.getBatchSize(),
+                traits.getBatchMemoryLimit(), datasetCache)) {
+            int limit = Math.min(traits.getTrainingSetSizeLimit(), aTrainingData.size());
+            for (Sample sample : aTrainingData.subList(0, limit)) {
+                batches.add(sample.getSentence(), sample.getTags(), aTagset, NO_LABEL);
+            }
+            batches.build();
 
-        // First vectorizing all sentences and then passing them to the model would consume
-        // huge amounts of memory. Thus, every sentence is vectorized and then immediately
-        // passed on to the model.
-        nextEpoch: for (int epoch = 0; epoch < traits.getnEpochs(); epoch++) {
-            int sentNum = 0;
-            Iterator<Sample> sampleIterator = aTrainingData.iterator();
-            while (sampleIterator.hasNext()) {
-                List<DataSet> batch = new ArrayList<>();
-                while (sampleIterator.hasNext() && batch.size() < batchSize && sentNum < limit) {
-                    Sample sample = sampleIterator.next();
-                    DataSet trainingData = vectorize(asList(sample), aTagset, true);
-                    batch.add(trainingData);
-                    sentNum++;
+            // Use a fixed seed so that training on the same data yields the same model
+            Random random = new Random(0);
+            for (int epoch = 0; epoch < traits.getnEpochs(); epoch++) {
+                if (epoch > 0) {
+                    batches.shuffle(random);
                 }
-                
-                model.fit(new ListDataSetIterator<DataSet>(batch, batch.size()));
-                log.trace("Epoch {}: processed {} of {} sentences", epoch, sentNum,
-                        aTrainingData.size());
-                
-                if (sentNum >= limit) {
-                    continue nextEpoch;
+
+                int batchNum = 0;
+                for (DataSet batch : batches) {
+                    model.fit(batch);
+                    batchNum++;
+                    log.trace("Epoch {}: processed {} of {} batches", epoch, batchNum,
+                            batches.size());
                 }
             }
         }
@@ -233,14 +234,21 @@ public class DL4JSequenceRecommender
         return model;
     }
 
-    private DataSet vectorize(List<? extends Sample> aData)
-        throws IOException
+    private float[] lookupEmbedding(String aWord)
     {
-        return vectorize(aData, null, false);
+        try {
+            float[] vector = wordVectors.vectorize(aWord);
+            return vector != null ? vector : randUnk.toFloatVector();
+        }
+        catch (IOException e) {
+            throw new IllegalStateException("Unable to look up embedding for [" + aWord + "]", e);
+        }
     }
 
-    private DataSet vectorize(List<? extends Sample> aData, Object2IntMap<String> aTagset,
-            boolean aIncludeLabels)
+    /**
+     * Vectorizes the given sentences for prediction. Training uses {@link MiniBatches} instead.
+     */
+    private DataSet vectorize(List<? extends Sample> aData)
         throws IOException
     {
         // vectorize is pretty fast taking around 1-2ms
@@ -281,15 +289,6 @@ public class DL4JSequenceRecommender
                 if (labels != null && labels.get(t) != NO_LABEL) {
                     labelMask.putScalar(new int[] { sampleIdx, t }, 1.0);
                 }
-
-                if (aIncludeLabels && labels != null) {
-                    String label = labels.get(t);
-                    // do not add padding label no_label as predictable label
-                    if (label != NO_LABEL) {
-                        aTagset.computeIfAbsent(label, key -> aTagset.size());
-                        labelVec.putScalar(sampleIdx, aTagset.get(label), t, 1.0);
-                    }
-                }
             }
             
             sampleIdx++;
@@ -33,6 +33,7 @@ public class DL4JSequenceRecommenderTraits
     private int maxTagsetSize = 70;
     private int maxSentenceLength = 150;
     private int nEpochs = 1;
+    private long batchMemoryLimit = 256L * 1024 * 1024;
     
     // Network parameters
     private OptimizationAlgorithm optimizationAlgorithm = 
@@ -107,6 +108,20 @@ public class DL4JSequenceRecommenderTraits
         this.nEpochs = nEpochs;
     }
 
+    /**
+     * @return the number of bytes the vectorized training batches may occupy in memory. Batches
+     *         exceeding this limit are spilled to disk.
+     */
+    public long getBatchMemoryLimit()
+    {
+        return batchMemoryLimit;
+    }
+
+    public void setBatchMemoryLimit(long aBatchMemoryLimit)
+    {
+        batchMemoryLimit = aBatchMemoryLimit;
+    }
+
     public OptimizationAlgorithm getOptimizationAlgorithm()
     {
         return optimizationAlgorithm;
@@ -0,0 +1,348 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.dl4j.pos;
+
+import static java.util.Comparator.comparingInt;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+/**
+ * Padded mini-batches of training sentences which are vectorized once and then re-used in every
+ * training epoch.
+ * <p>
+ * Sentences are first {@link #add added} in a compact form - as token IDs and label IDs. Each
+ * distinct token is looked up in the embeddings only once. When the batches are {@link #build()
+ * built}, the sentences are sorted by length and split into mini-batches. Thus, sentences of
+ * similar length end up in the same batch and each batch only needs to be padded to its longest
+ * sentence instead of to the maximum sentence length. The feature, label and mask tensors of a
+ * batch are allocated and filled in one go. Once the vectorized batches exceed the memory limit,
+ * further batches are spilled to a temporary folder and loaded from there when they are needed.
+ */
+class MiniBatches
+    implements Iterable<DataSet>, AutoCloseable
+{
+    private static final Logger LOG = LoggerFactory.getLogger(MiniBatches.class);
+
+    static final int NO_LABEL_ID = -1;
+
+    private final Function<String, float[]> embeddings;
+    private final int embeddingSize;
+    private final int maxTagsetSize;
+    private final int maxSentenceLength;
+    private final int batchSize;
+    private final long memoryLimit;
+    private final File spillFolderParent;
+
+    private final Object2IntMap<String> vocabulary = new Object2IntOpenHashMap<>();
+    private final List<float[]> vocabularyVectors = new ArrayList<>();
+    private final List<EncodedSentence> sentences = new ArrayList<>();
+    private final List<Batch> batches = new ArrayList<>();
+
+    private File spillFolder;
+    private long memoryUsed;
+
+    /**
+     * @param aEmbeddings
+     *            looks up the embedding of a token.
+     * @param aEmbeddingSize
+     *            the size of the embeddings.
+     * @param aMaxTagsetSize
+     *            the size of the one-hot label vectors.
+     * @param aMaxSentenceLength
+     *            sentences are truncated to this number of tokens.
+     * @param aBatchSize
+     *            the maximum number of sentences per batch.
+     * @param aMemoryLimit
+     *            the number of bytes that vectorized batches may occupy in memory before further
+     *            batches are spilled to disk.
+     * @param aSpillFolderParent
+     *            the folder in which a temporary folder for spilled batches is created if
+     *            necessary.
+     */
+    public MiniBatches(Function<String, float[]> aEmbeddings, int aEmbeddingSize,
+            int aMaxTagsetSize, int aMaxSentenceLength, int aBatchSize, long aMemoryLimit,
+            File aSpillFolderParent)
+    {
+        embeddings = aEmbeddings;
+        embeddingSize = aEmbeddingSize;
+        maxTagsetSize = aMaxTagsetSize;
+        maxSentenceLength = aMaxSentenceLength;
+        batchSize = Math.max(1, aBatchSize);
+        memoryLimit = aMemoryLimit;
+        spillFolderParent = aSpillFolderParent;
+        vocabulary.defaultReturnValue(-1);
+    }
+
+    /**
+     * Adds a training sentence. Labels are mapped to label IDs using the given tagset to which
+     * labels not seen so far are added. Tokens with the label {@code aNoLabel} (compared by
+     * identity) do not contribute to the training loss.
+     */
+    public void add(List<String> aTokens, List<String> aLabels, Object2IntMap<String> aTagset,
+            String aNoLabel)
+    {
+        int length = Math.min(aTokens.size(), maxSentenceLength);
+        int[] tokenIds = new int[length];
+        int[] labelIds = new int[length];
+        for (int t = 0; t < length; t++) {
+            tokenIds[t] = tokenId(aTokens.get(t));
+
+            String label = aLabels.get(t);
+            if (label != aNoLabel) {
+                boolean known = aTagset.containsKey(label);
+                int labelId = known ? aTagset.getInt(label) : aTagset.size();
+                // Check before adding the label, so the tagset never contains a label which does
+                // not fit into the label vectors
+                if (labelId >= maxTagsetSize) {
+                    throw new IllegalStateException("Training data contains more than the "
+                            + "maximum of " + maxTagsetSize + " labels - increase the maximum "
+                            + "tagset size of the recommender");
+                }
+                if (!known) {
+                    aTagset.put(label, labelId);
+                }
+                labelIds[t] = labelId;
+            }
+            else {
+                labelIds[t] = NO_LABEL_ID;
+            }
+        }
+
+        sentences.add(new EncodedSentence(tokenIds, labelIds));
+    }
+
+    private int tokenId(String aToken)
+    {
+        int id = vocabulary.getInt(aToken);
+        if (id == -1) {
+            id = vocabularyVectors.size();
+            vocabulary.put(aToken, id);
+            vocabularyVectors.add(embeddings.apply(aToken));
+        }
+        return id;
+    }
+
+    /**
+     * Vectorizes the sentences added so far into mini-batches.
+     */
+    public void build() throws IOException
+    {
+        long start = System.currentTimeMillis();
+
+        // Sorting is stable, so sentences of the same length retain their original order
+        List<EncodedSentence> sorted = new ArrayList<>(sentences);
+        sorted.sort(comparingInt(EncodedSentence::length));
+
+        for (int i = 0; i < sorted.size(); i += batchSize) {
+            DataSet dataSet = vectorize(sorted.subList(i, Math.min(i + batchSize, sorted.size())));
+            long size = sizeInBytes(dataSet);
+            if (memoryUsed + size <= memoryLimit) {
+                batches.add(new Batch(dataSet, null));
+                memoryUsed += size;
+            }
+            else {
+                batches.add(new Batch(null, spill(dataSet)));
+            }
+        }
+
+        // The compact representation is no longer needed
+        sentences.clear();
+        vocabulary.clear();
+        vocabularyVectors.clear();
+
+        LOG.trace("Building {} batches took {}ms ({} bytes in memory, spilled: {})",
+                batches.size(), System.currentTimeMillis() - start, memoryUsed,
+                spillFolder != null);
+    }
+
+    private DataSet vectorize(List<EncodedSentence> aBatch)
+    {
+        int batchLength = aBatch.get(aBatch.size() - 1).length();
+        // Avoid zero-length time series for batches consisting only of empty sentences
+        int timeSteps = Math.max(1, batchLength);
+        int sentenceCount = aBatch.size();
+
+        // All arrays use the c-order [sentence, feature, time step] layout expected by the
+        // recurrent layers. The label mask excludes tokens without label from training.
+        float[] features = new float[sentenceCount * embeddingSize * timeSteps];
+        float[] labels = new float[sentenceCount * maxTagsetSize * timeSteps];
+        float[] featureMask = new float[sentenceCount * timeSteps];
+        float[] labelMask = new float[sentenceCount * timeSteps];
+
+        for (int s = 0; s < sentenceCount; s++) {
+            EncodedSentence sentence = aBatch.get(s);
+            for (int t = 0; t < sentence.length(); t++) {
+                float[] vector = vocabularyVectors.get(sentence.tokenIds[t]);
+                int featureBase = s * embeddingSize * timeSteps + t;
+                for (int d = 0; d < embeddingSize; d++) {
+                    features[featureBase + d * timeSteps] = vector[d];
+                }
+                featureMask[s * timeSteps + t] = 1.0f;
+
+                int labelId = sentence.labelIds[t];
+                if (labelId != NO_LABEL_ID) {
+                    labels[(s * maxTagsetSize + labelId) * timeSteps + t] = 1.0f;
+                    labelMask[s * timeSteps + t] = 1.0f;
+                }
+            }
+        }
+
+        return new DataSet(
+                Nd4j.create(features, new int[] { sentenceCount, embeddingSize, timeSteps }),
+                Nd4j.create(labels, new int[] { sentenceCount, maxTagsetSize, timeSteps }),
+                Nd4j.create(featureMask, new int[] { sentenceCount, timeSteps }),
+                Nd4j.create(labelMask, new int[] { sentenceCount, timeSteps }));
+    }
+
+    private static long sizeInBytes(DataSet aDataSet)
+    {
+        return (aDataSet.getFeatures().length() + aDataSet.getLabels().length()
+                + aDataSet.getFeaturesMaskArray().length()
+                + aDataSet.getLabelsMaskArray().length()) * Float.BYTES;
+    }
+
+    private File spill(DataSet aDataSet) throws IOException
+    {
+        if (spillFolder == null) {
+            spillFolderParent.mkdirs();
+            spillFolder = Files.createTempDirectory(spillFolderParent.toPath(), "dl4j-batches-")
+                    .toFile();
+            LOG.debug("Training batches exceed memory limit of {} bytes - spilling to [{}]",
+                    memoryLimit, spillFolder);
+        }
+
+        File file = new File(spillFolder, "batch-" + batches.size() + ".bin");
+        aDataSet.save(file);
+        return file;
+    }
+
+    /**
+     * Shuffles the order in which the batches are returned. The content of the batches remains
+     * unchanged.
+     */
+    public void shuffle(Random aRandom)
+    {
+        Collections.shuffle(batches, aRandom);
+    }
+
+    public int size()
+    {
+        return batches.size();
+    }
+
+    public boolean isSpilled()
+    {
+        return spillFolder != null;
+    }
+
+    @Override
+    public Iterator<DataSet> iterator()
+    {
+        Iterator<Batch> batchIterator = batches.iterator();
+        return new Iterator<DataSet>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return batchIterator.hasNext();
+            }
+
+            @Override
+            public DataSet next()
+            {
+                return batchIterator.next().get();
+            }
+        };
+    }
+
+    @Override
+    public void close()
+    {
+        if (spillFolder == null) {
+            return;
+        }
+
+        for (Batch batch : batches) {
+            if (batch.file != null && !batch.file.delete()) {
+                LOG.warn("Unable to delete spilled batch [{}]", batch.file);
+            }
+        }
+
+        if (!spillFolder.delete()) {
+            LOG.warn("Unable to delete spill folder [{}]", spillFolder);
+        }
+
+        spillFolder = null;
+    }
+
+    private static final class EncodedSentence
+    {
+        private final int[] tokenIds;
+        private final int[] labelIds;
+
+        public EncodedSentence(int[] aTokenIds, int[] aLabelIds)
+        {
+            tokenIds = aTokenIds;
+            labelIds = aLabelIds;
+        }
+
+        public int length()
+        {
+            return tokenIds.length;
+        }
+    }
+
+    private static final class Batch
+    {
+        private final DataSet dataSet;
+        private final File file;
+
+        public Batch(DataSet aDataSet, File aFile)
+        {
+            dataSet = aDataSet;
+            file = aFile;
+        }
+
+        public DataSet get()
+        {
+            if (dataSet != null) {
+                return dataSet;
+            }
+
+            DataSet loaded = new DataSet();
+            loaded.load(file);
+            return loaded;
+        }
+    }
+}
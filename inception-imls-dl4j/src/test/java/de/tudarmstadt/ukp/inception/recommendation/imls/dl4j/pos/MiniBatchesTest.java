@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.dl4j.pos;
+
+import static de.tudarmstadt.ukp.inception.recommendation.imls.dl4j.pos.DL4JSequenceRecommender.NO_LABEL;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.nd4j.linalg.dataset.DataSet;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+
+public class MiniBatchesTest
+{
+    private static final int EMBEDDING_SIZE = 3;
+    private static final int MAX_TAGSET_SIZE = 4;
+
+    public @Rule TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> lookups = new ArrayList<>();
+
+    @Test
+    public void thatBatchesArePaddedToLongestSentenceInBatch() throws Exception
+    {
+        Object2IntMap<String> tagset = new Object2IntOpenHashMap<>();
+
+        try (MiniBatches sut = newMiniBatches(2, Long.MAX_VALUE)) {
+            sut.add(asList("a", "b", "c", "d"), asList("X", "X", "Y", "X"), tagset, NO_LABEL);
+            sut.add(asList("a"), asList("X"), tagset, NO_LABEL);
+            sut.add(asList("b", "c"), asList("Y", NO_LABEL), tagset, NO_LABEL);
+            sut.build();
+
+            List<DataSet> batches = new ArrayList<>();
+            sut.forEach(batches::add);
+
+            assertThat(batches).hasSize(2);
+            assertThat(sut.isSpilled()).isFalse();
+
+            // Sorted by length: the two short sentences form the first batch
+            DataSet first = batches.get(0);
+            assertThat(first.getFeatures().shape()).containsExactly(2, EMBEDDING_SIZE, 2);
+            assertThat(first.getLabels().shape()).containsExactly(2, MAX_TAGSET_SIZE, 2);
+            assertThat(first.getFeaturesMaskArray().toFloatMatrix())
+                    .isEqualTo(new float[][] { { 1, 0 }, { 1, 1 } });
+            assertThat(first.getLabelsMaskArray().toFloatMatrix())
+                    .as("Tokens without label are masked out of the loss")
+                    .isEqualTo(new float[][] { { 1, 0 }, { 1, 0 } });
+
+            DataSet second = batches.get(1);
+            assertThat(second.getFeatures().shape()).containsExactly(1, EMBEDDING_SIZE, 4);
+            assertThat(second.getFeatures().getFloat(0, 0, 2)).isEqualTo(embedding("c")[0]);
+            assertThat(second.getLabels().getFloat(0, tagset.getInt("Y"), 2)).isEqualTo(1.0f);
+        }
+
+        assertThat(tagset).containsOnlyKeys("X", "Y");
+        assertThat(lookups)
+                .as("Every distinct token is looked up only once")
+                .containsExactly("a", "b", "c", "d");
+    }
+
+    @Test
+    public void thatBatchesExceedingMemoryLimitAreSpilled() throws Exception
+    {
+        Object2IntMap<String> tagset = new Object2IntOpenHashMap<>();
+
+        File spillFolder;
+        try (MiniBatches sut = newMiniBatches(1, 0)) {
+            sut.add(asList("a", "b"), asList("X", "Y"), tagset, NO_LABEL);
+            sut.add(asList("c"), asList("Y"), tagset, NO_LABEL);
+            sut.build();
+
+            assertThat(sut.isSpilled()).isTrue();
+            spillFolder = temporaryFolder.getRoot().listFiles()[0];
+            assertThat(spillFolder.listFiles()).hasSize(2);
+
+            List<DataSet> batches = new ArrayList<>();
+            sut.forEach(batches::add);
+            assertThat(batches.get(1).getFeatures().getFloat(0, 1, 0))
+                    .isEqualTo(embedding("a")[1]);
+            assertThat(batches.get(1).getLabels().getFloat(0, tagset.getInt("Y"), 1))
+                    .isEqualTo(1.0f);
+        }
+
+        assertThat(spillFolder).doesNotExist();
+    }
+
+    @Test
+    public void thatExceedingTheMaximumTagsetSizeIsRejected() throws Exception
+    {
+        Object2IntMap<String> tagset = new Object2IntOpenHashMap<>();
+
+        try (MiniBatches sut = newMiniBatches(1, Long.MAX_VALUE)) {
+            sut.add(asList("a", "b", "c", "d"), asList("A", "B", "C", "D"), tagset, NO_LABEL);
+
+            assertThatThrownBy(() -> sut.add(asList("e"), asList("E"), tagset, NO_LABEL))
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("maximum of " + MAX_TAGSET_SIZE + " labels");
+        }
+        
+        assertThat(tagset)
+                .as("Rejected label is not added to the tagset")
+                .containsOnlyKeys("A", "B", "C", "D");
+    }
+
+    private MiniBatches newMiniBatches(int aBatchSize, long aMemoryLimit)
+    {
+        return new MiniBatches(this::lookup, EMBEDDING_SIZE, MAX_TAGSET_SIZE, 150, aBatchSize,
+                aMemoryLimit, temporaryFolder.getRoot());
+    }
+
+    private float[] lookup(String aToken)
+    {
+        lookups.add(aToken);
+        return embedding(aToken);
+    }
+
+    private static float[] embedding(String aToken)
+    {
+        float base = aToken.charAt(0);
+        return new float[] { base, base + 0.1f, base + 0.2f };
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Metadata part of a request in the binary protocol. The documents themselves are sent as
+ * separate parts of the multipart request in the same order as they are listed here.
+ */
+public class BinaryRequest
+{
+    @JsonProperty("typeSystem")
+    private String typeSystem;
+
+    @JsonProperty("documents")
+    private List<DocumentInfo> documents;
+
+    @JsonProperty("metadata")
+    private Metadata metadata;
+
+    /**
+     * @return the hash identifying the type system of the documents. The type system has to be
+     *         uploaded to the server before it can be referenced.
+     */
+    public String getTypeSystem()
+    {
+        return typeSystem;
+    }
+
+    public void setTypeSystem(String aTypeSystem)
+    {
+        typeSystem = aTypeSystem;
+    }
+
+    public List<DocumentInfo> getDocuments()
+    {
+        return documents;
+    }
+
+    public void setDocuments(List<DocumentInfo> aDocuments)
+    {
+        documents = aDocuments;
+    }
+
+    public Metadata getMetadata()
+    {
+        return metadata;
+    }
+
+    public void setMetadata(Metadata aMetadata)
+    {
+        metadata = aMetadata;
+    }
+
+    public static class DocumentInfo
+    {
+        private final long documentId;
+        private final String userId;
+
+        public DocumentInfo(
+                @JsonProperty(value = "documentId", required = true) long aDocumentId,
+                @JsonProperty(value = "userId", required = true) String aUserId)
+        {
+            documentId = aDocumentId;
+            userId = aUserId;
+        }
+
+        public long getDocumentId()
+        {
+            return documentId;
+        }
+
+        public String getUserId()
+        {
+            return userId;
+        }
+    }
+}
@@ -22,33 +22,40 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recomm
 import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_REQUIRED;
 import static java.lang.String.format;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
+import static org.apache.uima.cas.SerialFormat.COMPRESSED_FILTERED;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.cas.CASRuntimeException;
 import org.apache.uima.cas.impl.XmiCasDeserializer;
 import org.apache.uima.cas.impl.XmiCasSerializer;
 import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.util.CasIOUtils;
 import org.apache.uima.util.TypeSystemUtil;
 import org.apache.uima.util.XMLSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.api.type.CASMetadata;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
-import de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.EvaluationResult;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
@@ -57,12 +64,21 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext.Key;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.BinaryRequest.DocumentInfo;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.ExternalRecommenderSession.SerializedTypeSystem;
+import okhttp3.Call;
+import okhttp3.Callback;
 import okhttp3.HttpUrl;
 import okhttp3.MediaType;
+import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
 
 public class ExternalRecommender
     extends RecommendationEngine
@@ -71,28 +87,56 @@ public class ExternalRecommender
     
     private static final Logger LOG = LoggerFactory.getLogger(ExternalRecommender.class);
     private static final MediaType JSON = MediaType.parse("application/json");
+    private static final MediaType XML = MediaType.parse("application/xml");
+    private static final MediaType BINARY_CAS = MediaType.parse("application/vnd.uima.cas+binary");
 
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final int HTTP_PRECONDITION_FAILED = 412;
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
     private static final int HTTP_TOO_MANY_REQUESTS = 429;
 
     private static final long CONNECT_TIMEOUT = 30;
     private static final long WRITE_TIMEOUT = 30;
     private static final long READ_TIMEOUT = 30;
 
+    // Maximum number of prediction requests sent to the server without their response having been
+    // processed
+    private static final int MAX_IN_FLIGHT_REQUESTS = 4;
+
     private final Recommender recommender;
     private final ExternalRecommenderTraits traits;
+    private final ExternalRecommenderSession session;
     private final OkHttpClient client;
 
     public ExternalRecommender(Recommender aRecommender, ExternalRecommenderTraits aTraits)
+    {
+        this(aRecommender, aTraits, new ExternalRecommenderSession());
+    }
+
+    /**
+     * Creates a recommender with its own HTTP client. Within the application, the
+     * {@link ExternalRecommenderFactory} passes the shared client instead.
+     */
+    public ExternalRecommender(Recommender aRecommender, ExternalRecommenderTraits aTraits,
+            ExternalRecommenderSession aSession)
+    {
+        this(aRecommender, aTraits, aSession, new OkHttpClient.Builder()
+                .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
+                .build());
+    }
+
+    public ExternalRecommender(Recommender aRecommender, ExternalRecommenderTraits aTraits,
+            ExternalRecommenderSession aSession, OkHttpClient aClient)
     {
         super(aRecommender);
 
         recommender = aRecommender;
         traits = aTraits;
-        client = new OkHttpClient.Builder()
-                .connectTimeout(CONNECT_TIMEOUT,TimeUnit.SECONDS)
-                .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
-                .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
-                .build();
+        session = aSession;
+        client = aClient;
     }
 
     @Override
@@ -109,12 +153,10 @@ public class ExternalRecommender
     public void train(RecommenderContext aContext, List<CAS> aCasses)
         throws RecommendationException
     {
-        TrainingRequest trainingRequest = new TrainingRequest();
-        List<Document> documents = new ArrayList<>();
-
+        ServerCapabilities capabilities = negotiate();
+        
         // We assume that the type system for all CAS are the same
-        String typeSystem = serializeTypeSystem(aCasses.get(0));
-        trainingRequest.setTypeSystem(typeSystem);
+        SerializedTypeSystem typeSystem = serializeTypeSystem(aCasses.get(0));
 
         // Fill in metadata. We use the type system of the first CAS in the list
         // for all the other CAS. It could happen that training happens while
@@ -122,86 +164,246 @@ public class ExternalRecommender
         // Then the type system of the first CAS might not match the type system
         // of the other CAS. This should happen really rarely, therefore this potential
         // error is neglected.
+        Metadata metadata = buildMetadata(aCasses.get(0));
 
-        trainingRequest.setMetadata(buildMetadata(aCasses.get(0)));
-
-        for (CAS cas : aCasses) {
-            documents.add(buildDocument(cas));
+        Request request;
+        if (capabilities.supportsBinaryProtocol()) {
+            uploadTypeSystem(typeSystem, capabilities, false);
+            request = buildBinaryRequest("train", typeSystem, metadata, aCasses);
+        }
+        else {
+            TrainingRequest trainingRequest = new TrainingRequest();
+            trainingRequest.setTypeSystem(typeSystem.getXml());
+            trainingRequest.setMetadata(metadata);
+            
+            List<Document> documents = new ArrayList<>();
+            for (CAS cas : aCasses) {
+                documents.add(buildDocument(cas));
+            }
+            trainingRequest.setDocuments(documents);
+            
+            request = buildJsonRequest("train", trainingRequest, capabilities);
         }
 
-        trainingRequest.setDocuments(documents);
-
-        HttpUrl url = HttpUrl.parse(traits.getRemoteUrl()).newBuilder()
-            .addPathSegment("train")
-            .build();
-        RequestBody body = RequestBody.create(JSON, toJson(trainingRequest));
-        Request request = new Request.Builder().url(url).post(body).build();
-
-        try (Response response = sendRequest(request)) {
+        try (Response response = sendRequest(request, typeSystem, capabilities)) {
             if (response.code() == HTTP_TOO_MANY_REQUESTS) {
                 LOG.info("External recommender is already training");
             }
             // If the response indicates that the request was not successful,
             // then it does not make sense to go on and try to decode the XMI
             else if (!response.isSuccessful()) {
-                int code = response.code();
-                String responseBody = getResponseBody(response);
-                String msg = format("Request was not successful: [%d] - [%s]", code, responseBody);
-                throw new RecommendationException(msg);
+                throw requestFailed(response, capabilities);
             }
-            
-            aContext.put(KEY_TRAINING_COMPLETE, true);
         }
+        
+        aContext.put(KEY_TRAINING_COMPLETE, true);
     }
 
     @Override
     public void predict(RecommenderContext aContext, CAS aCas) throws RecommendationException
     {
-        String typeSystem = serializeTypeSystem(aCas);
-
-        PredictionRequest predictionRequest = new PredictionRequest();
-        predictionRequest.setTypeSystem(typeSystem);
-        predictionRequest.setDocument(buildDocument(aCas));
-
-        // Fill in metadata
-        predictionRequest.setMetadata(buildMetadata(aCas));
-
-        HttpUrl url = HttpUrl.parse(traits.getRemoteUrl()).newBuilder()
-            .addPathSegment("predict")
-            .build();
-        RequestBody body = RequestBody.create(JSON, toJson(predictionRequest));
-        Request request = new Request.Builder().url(url).post(body).build();
+        predictBatch(aContext, singletonList(aCas));
+    }
 
-        try (Response response = sendRequest(request)) {
+    /**
+     * Sends a prediction request per CAS. The requests are sent asynchronously so that the server
+     * can already work on the next document while the response for the previous one is being
+     * transferred. CASes are only serialized and deserialized on the calling thread - responses
+     * are decoded while they are read from the connection.
+     */
+    @Override
+    public void predictBatch(RecommenderContext aContext, List<CAS> aCasses)
+        throws RecommendationException
+    {
+        ServerCapabilities capabilities = negotiate();
+        
+        Deque<PendingPrediction> pending = new ArrayDeque<>();
+        try {
+            for (CAS cas : aCasses) {
+                SerializedTypeSystem typeSystem = serializeTypeSystem(cas);
+                
+                Request request;
+                if (capabilities.supportsBinaryProtocol()) {
+                    uploadTypeSystem(typeSystem, capabilities, false);
+                    request = buildBinaryRequest("predict", typeSystem, buildMetadata(cas),
+                            singletonList(cas));
+                }
+                else {
+                    PredictionRequest predictionRequest = new PredictionRequest();
+                    predictionRequest.setTypeSystem(typeSystem.getXml());
+                    predictionRequest.setDocument(buildDocument(cas));
+                    predictionRequest.setMetadata(buildMetadata(cas));
+                    request = buildJsonRequest("predict", predictionRequest, capabilities);
+                }
+                
+                // Responses are only read on this thread, so before sending another request, the
+                // oldest one has to be processed to keep the number of requests in flight bounded
+                if (pending.size() >= MAX_IN_FLIGHT_REQUESTS) {
+                    processPrediction(pending.removeFirst(), capabilities);
+                }
+                
+                Call call = client.newCall(request);
+                pending.add(new PendingPrediction(cas, typeSystem, call, sendAsync(call)));
+            }
+            
+            while (!pending.isEmpty()) {
+                processPrediction(pending.removeFirst(), capabilities);
+            }
+        }
+        finally {
+            // If we bail out early, there is no need to wait for the remaining responses
+            for (PendingPrediction prediction : pending) {
+                prediction.call.cancel();
+                prediction.response.thenAccept(Response::close);
+            }
+        }
+    }
+    
+    private void processPrediction(PendingPrediction aPrediction,
+            ServerCapabilities aCapabilities)
+        throws RecommendationException
+    {
+        try (Response response = awaitResponse(aPrediction, aCapabilities)) {
             // If the response indicates that the request was not successful,
-            // then it does not make sense to go on and try to decode the XMI
+            // then it does not make sense to go on and try to decode the CAS
             if (!response.isSuccessful()) {
-                int code = response.code();
-                String responseBody = getResponseBody(response);
-                String msg = format("Request was not successful: [%d] - [%s]", code, responseBody);
-                throw new RecommendationException(msg);
+                throw requestFailed(response, aCapabilities);
             }
+            
+            readPrediction(aPrediction.cas, response, aCapabilities);
+        }
+    }
     
-            PredictionResponse predictionResponse = deserializePredictionResponse(response);
+    private Response awaitResponse(PendingPrediction aPrediction,
+            ServerCapabilities aCapabilities)
+        throws RecommendationException
+    {
+        Response response = await(aPrediction.response);
+        
+        // The server may have been restarted and forgotten the type system
+        if (response.code() == HTTP_PRECONDITION_FAILED && aCapabilities.supportsBinaryProtocol()) {
+            response.close();
+            uploadTypeSystem(aPrediction.typeSystem, aCapabilities, true);
+            return sendRequest(aPrediction.call.request());
+        }
+        
+        return response;
+    }
     
-            try (InputStream is = IOUtils.toInputStream(predictionResponse.getDocument(), UTF_8)) {
-                XmiCasDeserializer.deserialize(is, WebAnnoCasUtil.getRealCas(aCas), true);
+    private void readPrediction(CAS aCas, Response aResponse, ServerCapabilities aCapabilities)
+        throws RecommendationException
+    {
+        if (aCapabilities.supportsBinaryProtocol()) {
+            try (InputStream is = aResponse.body().byteStream()) {
+                CasIOUtils.load(is, getRealCas(aCas));
             }
-            catch (SAXException | IOException e) {
+            catch (IOException | CASRuntimeException e) {
                 throw new RecommendationException("Error while deserializing CAS!", e);
             }
+            return;
+        }
+        
+        PredictionResponse predictionResponse;
+        try {
+            predictionResponse = OBJECT_MAPPER.readValue(aResponse.body().byteStream(),
+                    PredictionResponse.class);
+        }
+        catch (IOException e) {
+            throw new RecommendationException("Error while deserializing prediction response!", e);
+        }
+        
+        try (InputStream is = new ByteArrayInputStream(
+                predictionResponse.getDocument().getBytes(UTF_8))) {
+            XmiCasDeserializer.deserialize(is, getRealCas(aCas), true);
+        }
+        catch (SAXException | IOException e) {
+            throw new RecommendationException("Error while deserializing CAS!", e);
+        }
+    }
+
+    /**
+     * Determines which protocol options the server supports. The result is remembered in the
+     * session. Servers which do not know about negotiation are spoken to using JSON/XMI.
+     */
+    private ServerCapabilities negotiate()
+    {
+        ServerCapabilities capabilities = session.getCapabilities();
+        if (capabilities != null) {
+            return capabilities;
+        }
+        
+        Request request = new Request.Builder().url(endpoint("capabilities")).get().build();
+        try (Response response = client.newCall(request).execute()) {
+            capabilities = ServerCapabilities.NONE;
+            if (response.isSuccessful() && response.body() != null) {
+                try {
+                    capabilities = OBJECT_MAPPER.readValue(response.body().byteStream(),
+                            ServerCapabilities.class);
+                }
+                catch (JsonProcessingException e) {
+                    LOG.debug("Unable to parse capabilities of [{}] - using JSON protocol",
+                            traits.getRemoteUrl(), e);
+                }
+            }
+        }
+        catch (IOException e) {
+            // The server may be temporarily unavailable. We do not remember the result so that
+            // negotiation is attempted again on the next request.
+            LOG.debug("Unable to obtain capabilities of [{}] - using JSON protocol",
+                    traits.getRemoteUrl(), e);
+            return ServerCapabilities.NONE;
+        }
+        
+        LOG.debug("Negotiated capabilities of [{}]: protocols {}, compression {}",
+                traits.getRemoteUrl(), capabilities.getProtocols(),
+                capabilities.getCompression());
+        
+        session.setCapabilities(capabilities);
+        return capabilities;
+    }
+
+    private void uploadTypeSystem(SerializedTypeSystem aTypeSystem,
+            ServerCapabilities aCapabilities, boolean aForce)
+        throws RecommendationException
+    {
+        if (!aForce && session.isTypeSystemKnown(aTypeSystem.getHash())) {
+            return;
+        }
+        
+        HttpUrl url = HttpUrl.parse(traits.getRemoteUrl()).newBuilder()
+                .addPathSegment("typesystems")
+                .addPathSegment(aTypeSystem.getHash())
+                .build();
+        Request.Builder request = new Request.Builder().url(url);
+        RequestBody body = createBody(request, XML, aTypeSystem.getXml().getBytes(UTF_8),
+                aCapabilities);
+        
+        try (Response response = sendRequest(request.put(body).build())) {
+            if (!response.isSuccessful()) {
+                throw requestFailed(response, aCapabilities);
+            }
         }
+        
+        session.markTypeSystemKnown(aTypeSystem.getHash());
     }
 
-    private String serializeTypeSystem(CAS aCas) throws RecommendationException
+    private SerializedTypeSystem serializeTypeSystem(CAS aCas) throws RecommendationException
     {
+        SerializedTypeSystem typeSystem = session.getSerializedTypeSystem(aCas.getTypeSystem());
+        if (typeSystem != null) {
+            return typeSystem;
+        }
+        
         try (StringWriter out = new StringWriter()) {
             TypeSystemUtil.typeSystem2TypeSystemDescription(aCas.getTypeSystem()).toXML(out);
-            return out.toString();
+            typeSystem = new SerializedTypeSystem(out.toString());
         }
         catch (CASRuntimeException | SAXException | IOException e) {
             throw new RecommendationException("Coud not serialize type system", e);
         }
+        
+        session.putSerializedTypeSystem(aCas.getTypeSystem(), typeSystem);
+        return typeSystem;
     }
 
     private String serializeCas(CAS aCas) throws RecommendationException
@@ -220,6 +422,18 @@ public class ExternalRecommender
         }
     }
 
+    private byte[] serializeCasBinary(CAS aCas) throws RecommendationException
+    {
+        // The compressed form 6 does not include the type system - the server knows it already
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            CasIOUtils.save(getRealCas(aCas), out, COMPRESSED_FILTERED);
+            return out.toByteArray();
+        }
+        catch (CASRuntimeException | IOException e) {
+            throw new RecommendationException("Error while serializing CAS!", e);
+        }
+    }
+
     private Document buildDocument(CAS aCas) throws RecommendationException
     {
         CASMetadata casMetadata = getCasMetadata(aCas);
@@ -252,26 +466,111 @@ public class ExternalRecommender
         );
     }
 
-    private PredictionResponse deserializePredictionResponse(Response response)
-        throws RecommendationException {
-        ObjectMapper objectMapper = new ObjectMapper();
-        try {
-            return objectMapper.readValue(response.body().byteStream(), PredictionResponse.class);
-        } catch (IOException e) {
-            throw new RecommendationException("Error while deserializing prediction response!", e);
+    private Request buildJsonRequest(String aEndpoint, Object aPayload,
+            ServerCapabilities aCapabilities)
+        throws RecommendationException
+    {
+        Request.Builder request = new Request.Builder().url(endpoint(aEndpoint));
+        RequestBody body = createBody(request, JSON, toJson(aPayload), aCapabilities);
+        return request.post(body).build();
+    }
+
+    /**
+     * Builds a multipart request consisting of a JSON {@link BinaryRequest} part called
+     * {@code metadata} followed by a {@code document} part per CAS in compressed binary form.
+     */
+    private Request buildBinaryRequest(String aEndpoint, SerializedTypeSystem aTypeSystem,
+            Metadata aMetadata, List<CAS> aCasses)
+        throws RecommendationException
+    {
+        List<DocumentInfo> documents = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+        for (CAS cas : aCasses) {
+            CASMetadata casMetadata = getCasMetadata(cas);
+            documents.add(new DocumentInfo(casMetadata.getSourceDocumentId(),
+                    casMetadata.getUsername()));
+            data.add(serializeCasBinary(cas));
+        }
+        
+        BinaryRequest header = new BinaryRequest();
+        header.setTypeSystem(aTypeSystem.getHash());
+        header.setMetadata(aMetadata);
+        header.setDocuments(documents);
+        
+        MultipartBody.Builder body = new MultipartBody.Builder().setType(MultipartBody.FORM);
+        body.addFormDataPart("metadata", null, RequestBody.create(JSON, toJson(header)));
+        for (int i = 0; i < data.size(); i++) {
+            body.addFormDataPart("document", "document-" + i + ".bin",
+                    RequestBody.create(BINARY_CAS, data.get(i)));
         }
+        
+        // The documents are already compressed, so there is no point in compressing the body
+        return new Request.Builder().url(endpoint(aEndpoint)).post(body.build()).build();
     }
 
-    private String toJson(Object aObject) throws RecommendationException
+    /**
+     * Creates the request body, compressing it if the server supports that.
+     */
+    private RequestBody createBody(Request.Builder aRequest, MediaType aType, byte[] aData,
+            ServerCapabilities aCapabilities)
+        throws RecommendationException
+    {
+        if (!aCapabilities.supportsGzip()) {
+            return RequestBody.create(aType, aData);
+        }
+        
+        Buffer buffer = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(buffer))) {
+            sink.write(aData);
+        }
+        catch (IOException e) {
+            throw new RecommendationException("Error while compressing request!", e);
+        }
+        
+        aRequest.header("Content-Encoding", "gzip");
+        return RequestBody.create(aType, buffer.readByteArray());
+    }
+
+    private HttpUrl endpoint(String aEndpoint)
+    {
+        return HttpUrl.parse(traits.getRemoteUrl()).newBuilder()
+            .addPathSegment(aEndpoint)
+            .build();
+    }
+
+    private byte[] toJson(Object aObject) throws RecommendationException
     {
         try {
-            return JSONUtil.toJsonString(aObject);
+            return OBJECT_MAPPER.writeValueAsBytes(aObject);
         }
         catch (IOException e) {
             throw new RecommendationException("Error while serializing JSON!", e);
         }
     }
 
+    /**
+     * Sends a request which refers to the given type system. If the server reports that it does
+     * not know the type system (e.g. because it was restarted), the type system is uploaded again
+     * and the request is repeated.
+     */
+    private Response sendRequest(Request aRequest, SerializedTypeSystem aTypeSystem,
+            ServerCapabilities aCapabilities)
+        throws RecommendationException
+    {
+        Response response = sendRequest(aRequest);
+        
+        if (response.code() == HTTP_PRECONDITION_FAILED && aCapabilities.supportsBinaryProtocol()) {
+            response.close();
+            uploadTypeSystem(aTypeSystem, aCapabilities, true);
+            response = sendRequest(aRequest);
+        }
+        
+        return response;
+    }
+
+    /**
+     * Sends the given request. The caller is responsible for closing the response.
+     */
     private Response sendRequest(Request aRequest) throws RecommendationException
     {
         try {
@@ -282,19 +581,63 @@ public class ExternalRecommender
         }
     }
 
-    private String getResponseBody(Response response) throws RecommendationException
+    private CompletableFuture<Response> sendAsync(Call aCall)
     {
-        try {
-            if (response.body() != null) {
-                return response.body().string();
-            } else {
-                return "";
+        CompletableFuture<Response> result = new CompletableFuture<>();
+        aCall.enqueue(new Callback()
+        {
+            @Override
+            public void onFailure(Call aFailedCall, IOException aException)
+            {
+                result.completeExceptionally(aException);
+            }
+
+            @Override
+            public void onResponse(Call aRespondedCall, Response aResponse)
+            {
+                // The body is read and the response is closed by the thread awaiting the response
+                result.complete(aResponse);
             }
-        } catch (IOException e) {
-            throw new RecommendationException("Error while reading response body!", e);
+        });
+        return result;
+    }
+
+    private Response await(CompletableFuture<Response> aResponse)
+        throws RecommendationException
+    {
+        try {
+            return aResponse.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecommendationException("Interrupted while waiting for response!", e);
+        }
+        catch (ExecutionException e) {
+            throw new RecommendationException("Error while sending request!", e.getCause());
         }
     }
 
+    private RecommendationException requestFailed(Response aResponse,
+            ServerCapabilities aCapabilities)
+    {
+        // The server may have been replaced by one which does not support the negotiated
+        // protocol anymore - negotiate again on the next request
+        if (aResponse.code() == HTTP_UNSUPPORTED_MEDIA_TYPE) {
+            session.reset();
+        }
+        
+        String body;
+        try {
+            body = aResponse.body() != null ? aResponse.body().string() : "";
+        }
+        catch (IOException e) {
+            body = "<unable to read response: " + e.getMessage() + ">";
+        }
+        
+        String msg = format("Request was not successful: [%d] - [%s]", aResponse.code(), body);
+        return new RecommendationException(msg);
+    }
+
     @Override
     public EvaluationResult evaluate(List<CAS> aCasses, DataSplitter aDataSplitter)
     {
@@ -316,4 +659,21 @@ public class ExternalRecommender
             return TRAINING_NOT_SUPPORTED;
         }
     }
+    
+    private static class PendingPrediction
+    {
+        private final CAS cas;
+        private final SerializedTypeSystem typeSystem;
+        private final Call call;
+        private final CompletableFuture<Response> response;
+        
+        public PendingPrediction(CAS aCas, SerializedTypeSystem aTypeSystem, Call aCall,
+                CompletableFuture<Response> aResponse)
+        {
+            cas = aCas;
+            typeSystem = aTypeSystem;
+            call = aCall;
+            response = aResponse;
+        }
+    }
 }
@@ -19,7 +19,11 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.external;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.apache.wicket.model.IModel;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
@@ -27,6 +31,7 @@ import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactoryImplBase;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.http.HttpClientFactory;
 
 @Component
 public class ExternalRecommenderFactory
@@ -36,6 +41,18 @@ public class ExternalRecommenderFactory
     // and without the database starting to refer to non-existing recommendation tools.
     public static final String ID = "de.tudarmstadt.ukp.inception.recommendation.imls.external.ExternalClassificationTool";
 
+    // Recommenders talking to the same server share the negotiated protocol and the knowledge
+    // about which type systems the server already has
+    private final Map<String, ExternalRecommenderSession> sessions = new ConcurrentHashMap<>();
+
+    private final HttpClientFactory httpClientFactory;
+
+    @Autowired
+    public ExternalRecommenderFactory(HttpClientFactory aHttpClientFactory)
+    {
+        httpClientFactory = aHttpClientFactory;
+    }
+
     @Override
     public String getId()
     {
@@ -46,7 +63,12 @@ public class ExternalRecommenderFactory
     public RecommendationEngine build(Recommender aRecommender)
     {
         ExternalRecommenderTraits traits = readTraits(aRecommender);
-        return new ExternalRecommender(aRecommender, traits);
+        ExternalRecommenderSession session = traits.getRemoteUrl() != null
+                ? sessions.computeIfAbsent(traits.getRemoteUrl(),
+                    _url -> new ExternalRecommenderSession())
+                : new ExternalRecommenderSession();
+        return new ExternalRecommender(aRecommender, traits, session,
+                httpClientFactory.getClient());
     }
 
     @Override
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.uima.cas.TypeSystem;
+
+/**
+ * State shared by all {@link ExternalRecommender} instances talking to the same remote server:
+ * the negotiated protocol options and the type systems which the server already knows.
+ */
+public class ExternalRecommenderSession
+{
+    private volatile ServerCapabilities capabilities;
+
+    private final Set<String> knownTypeSystems = ConcurrentHashMap.newKeySet();
+
+    // Serializing a type system is not cheap, so the XML is cached as long as the type system
+    // is in use
+    private final Map<TypeSystem, SerializedTypeSystem> typeSystems = Collections
+            .synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * @return the negotiated capabilities of the server or {@code null} if they have not been
+     *         negotiated yet.
+     */
+    public ServerCapabilities getCapabilities()
+    {
+        return capabilities;
+    }
+
+    public void setCapabilities(ServerCapabilities aCapabilities)
+    {
+        capabilities = aCapabilities;
+    }
+
+    public boolean isTypeSystemKnown(String aHash)
+    {
+        return knownTypeSystems.contains(aHash);
+    }
+
+    public void markTypeSystemKnown(String aHash)
+    {
+        knownTypeSystems.add(aHash);
+    }
+
+    /**
+     * Forgets everything about the server, e.g. because it was restarted or replaced. The
+     * protocol is negotiated again on the next request.
+     */
+    public void reset()
+    {
+        capabilities = null;
+        knownTypeSystems.clear();
+    }
+
+    public SerializedTypeSystem getSerializedTypeSystem(TypeSystem aTypeSystem)
+    {
+        return typeSystems.get(aTypeSystem);
+    }
+
+    public void putSerializedTypeSystem(TypeSystem aTypeSystem, SerializedTypeSystem aSerialized)
+    {
+        typeSystems.put(aTypeSystem, aSerialized);
+    }
+
+    public static class SerializedTypeSystem
+    {
+        private final String xml;
+        private final String hash;
+
+        public SerializedTypeSystem(String aXml)
+        {
+            xml = aXml;
+            hash = sha256(aXml);
+        }
+
+        public String getXml()
+        {
+            return xml;
+        }
+
+        public String getHash()
+        {
+            return hash;
+        }
+
+        private static String sha256(String aText)
+        {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                StringBuilder hex = new StringBuilder();
+                for (byte b : digest.digest(aText.getBytes(UTF_8))) {
+                    hex.append(String.format("%02x", b));
+                }
+                return hex.toString();
+            }
+            catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
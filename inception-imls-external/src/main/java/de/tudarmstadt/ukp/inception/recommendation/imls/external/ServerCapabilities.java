@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external;
+
+import static java.util.Collections.emptyList;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Protocol options supported by an external recommender. These are obtained from the
+ * {@code /capabilities} endpoint. Servers which do not provide this endpoint only support the
+ * JSON/XMI protocol.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ServerCapabilities
+{
+    public static final String PROTOCOL_BINARY = "binary";
+    public static final String COMPRESSION_GZIP = "gzip";
+
+    /**
+     * Capabilities assumed for servers which do not support negotiation.
+     */
+    public static final ServerCapabilities NONE = new ServerCapabilities();
+
+    @JsonProperty("protocols")
+    private List<String> protocols = emptyList();
+
+    @JsonProperty("compression")
+    private List<String> compression = emptyList();
+
+    public List<String> getProtocols()
+    {
+        return protocols;
+    }
+
+    public void setProtocols(List<String> aProtocols)
+    {
+        protocols = aProtocols != null ? aProtocols : emptyList();
+    }
+
+    public List<String> getCompression()
+    {
+        return compression;
+    }
+
+    public void setCompression(List<String> aCompression)
+    {
+        compression = aCompression != null ? aCompression : emptyList();
+    }
+
+    public boolean supportsBinaryProtocol()
+    {
+        return protocols.contains(PROTOCOL_BINARY);
+    }
+
+    public boolean supportsGzip()
+    {
+        return compression.contains(COMPRESSION_GZIP);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.config;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.http.HttpClientFactory;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.http.HttpClientFactoryImpl;
+
+/**
+ * Provides the HTTP client shared by all recommenders calling out to remote services. The client
+ * is provided independently of whether the recommender service is enabled because the recommender
+ * factories using it are registered in any case.
+ */
+@Configuration
+@EnableConfigurationProperties(HttpClientPropertiesImpl.class)
+public class HttpClientAutoConfiguration
+{
+    @Bean
+    @Autowired
+    public HttpClientFactory httpClientFactory(HttpClientProperties aProperties)
+    {
+        return new HttpClientFactoryImpl(aProperties);
+    }
+}
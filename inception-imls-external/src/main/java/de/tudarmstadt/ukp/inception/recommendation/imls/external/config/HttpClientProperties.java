@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.config;
+
+import java.time.Duration;
+
+public interface HttpClientProperties
+{
+    /**
+     * @return maximum number of concurrent requests to remote recommenders.
+     */
+    int getMaxConnections();
+
+    /**
+     * @return maximum number of concurrent requests to a single remote recommender host.
+     */
+    int getMaxConnectionsPerHost();
+
+    /**
+     * @return maximum number of idle connections which are kept open for reuse.
+     */
+    int getMaxIdleConnections();
+
+    /**
+     * @return time an idle connection is kept open for reuse.
+     */
+    Duration getKeepAlive();
+
+    Duration getConnectTimeout();
+
+    Duration getReadTimeout();
+
+    Duration getWriteTimeout();
+}
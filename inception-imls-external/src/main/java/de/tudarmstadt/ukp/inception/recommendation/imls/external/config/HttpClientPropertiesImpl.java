@@ -0,0 +1,118 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.config;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationUnit;
+
+@ConfigurationProperties("recommender.http")
+public class HttpClientPropertiesImpl
+    implements HttpClientProperties
+{
+    private int maxConnections = 64;
+    private int maxConnectionsPerHost = 8;
+    private int maxIdleConnections = 8;
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration keepAlive = Duration.ofMinutes(5);
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration connectTimeout = Duration.ofSeconds(30);
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration readTimeout = Duration.ofSeconds(30);
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration writeTimeout = Duration.ofSeconds(30);
+
+    @Override
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    public void setMaxConnections(int aMaxConnections)
+    {
+        maxConnections = aMaxConnections;
+    }
+
+    @Override
+    public int getMaxConnectionsPerHost()
+    {
+        return maxConnectionsPerHost;
+    }
+
+    public void setMaxConnectionsPerHost(int aMaxConnectionsPerHost)
+    {
+        maxConnectionsPerHost = aMaxConnectionsPerHost;
+    }
+
+    @Override
+    public int getMaxIdleConnections()
+    {
+        return maxIdleConnections;
+    }
+
+    public void setMaxIdleConnections(int aMaxIdleConnections)
+    {
+        maxIdleConnections = aMaxIdleConnections;
+    }
+
+    @Override
+    public Duration getKeepAlive()
+    {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Duration aKeepAlive)
+    {
+        keepAlive = aKeepAlive;
+    }
+
+    @Override
+    public Duration getConnectTimeout()
+    {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration aConnectTimeout)
+    {
+        connectTimeout = aConnectTimeout;
+    }
+
+    @Override
+    public Duration getReadTimeout()
+    {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration aReadTimeout)
+    {
+        readTimeout = aReadTimeout;
+    }
+
+    @Override
+    public Duration getWriteTimeout()
+    {
+        return writeTimeout;
+    }
+
+    public void setWriteTimeout(Duration aWriteTimeout)
+    {
+        writeTimeout = aWriteTimeout;
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.http;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Provides the HTTP client used by recommenders which call out to remote services. All such
+ * recommenders share a single connection pool, so connections and TLS sessions are reused across
+ * recommender instances and across training and prediction runs.
+ */
+public interface HttpClientFactory
+{
+    /**
+     * @return the shared HTTP client. Recommenders which need different settings (e.g. a longer
+     *         read timeout) should derive a client via {@link OkHttpClient#newBuilder()}, which
+     *         keeps sharing the connection pool, the dispatcher and the connection limits.
+     */
+    OkHttpClient getClient();
+}
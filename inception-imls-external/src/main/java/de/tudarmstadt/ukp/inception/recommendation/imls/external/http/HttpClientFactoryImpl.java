@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.http;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.config.HttpClientAutoConfiguration;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.config.HttpClientProperties;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Response;
+
+/**
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link HttpClientAutoConfiguration#httpClientFactory}.
+ * </p>
+ */
+public class HttpClientFactoryImpl
+    implements HttpClientFactory, DisposableBean
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientFactoryImpl.class);
+
+    private final OkHttpClient client;
+
+    public HttpClientFactoryImpl(HttpClientProperties aProperties)
+    {
+        int maxConnections = Math.max(1, aProperties.getMaxConnections());
+        int maxConnectionsPerHost = Math.max(1, aProperties.getMaxConnectionsPerHost());
+        
+        // The limits of the dispatcher only apply to asynchronous calls - the recommenders call
+        // synchronously though, so the limits are also enforced by an interceptor
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxConnections);
+        dispatcher.setMaxRequestsPerHost(maxConnectionsPerHost);
+
+        ConnectionPool connectionPool = new ConnectionPool(
+                Math.max(0, aProperties.getMaxIdleConnections()),
+                aProperties.getKeepAlive().toMillis(), MILLISECONDS);
+
+        client = new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .addInterceptor(new ConcurrencyLimitInterceptor(maxConnections,
+                        maxConnectionsPerHost))
+                .connectTimeout(aProperties.getConnectTimeout().toMillis(), MILLISECONDS)
+                .readTimeout(aProperties.getReadTimeout().toMillis(), MILLISECONDS)
+                .writeTimeout(aProperties.getWriteTimeout().toMillis(), MILLISECONDS)
+                .build();
+        
+        LOG.debug("HTTP client for remote recommenders: max [{}] connections, max [{}] per host, "
+                + "[{}] idle connections kept for [{}]", maxConnections, maxConnectionsPerHost,
+                aProperties.getMaxIdleConnections(), aProperties.getKeepAlive());
+    }
+
+    @Override
+    public OkHttpClient getClient()
+    {
+        return client;
+    }
+
+    @Override
+    public void destroy()
+    {
+        client.dispatcher().cancelAll();
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+    }
+    
+    /**
+     * Limits the number of requests awaiting a response, overall and per host. A permit is held
+     * until the response headers have been received. The response body is read without holding a
+     * permit, so callers which do not close the body cannot block other requests.
+     */
+    static class ConcurrencyLimitInterceptor
+        implements Interceptor
+    {
+        private final int maxRequestsPerHost;
+        private final Semaphore requests;
+        private final Map<String, Semaphore> requestsPerHost = new ConcurrentHashMap<>();
+
+        public ConcurrencyLimitInterceptor(int aMaxRequests, int aMaxRequestsPerHost)
+        {
+            maxRequestsPerHost = aMaxRequestsPerHost;
+            requests = new Semaphore(aMaxRequests, true);
+        }
+
+        @Override
+        public Response intercept(Chain aChain) throws IOException
+        {
+            HttpUrl url = aChain.request().url();
+            Semaphore hostRequests = requestsPerHost.computeIfAbsent(url.host() + ":" + url.port(),
+                _host -> new Semaphore(maxRequestsPerHost, true));
+
+            // Always acquire the host permit first so that two requests cannot wait for each other
+            acquire(hostRequests);
+            try {
+                acquire(requests);
+                try {
+                    return aChain.proceed(aChain.request());
+                }
+                finally {
+                    requests.release();
+                }
+            }
+            finally {
+                hostRequests.release();
+            }
+        }
+        
+        private void acquire(Semaphore aSemaphore) throws InterruptedIOException
+        {
+            try {
+                aSemaphore.acquire();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a connection");
+            }
+        }
+    }
+}
@@ -21,6 +21,8 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXC
 import static de.tudarmstadt.ukp.clarin.webanno.support.JSONUtil.fromJsonString;
 import static de.tudarmstadt.ukp.inception.recommendation.imls.external.util.InceptionAssertions.assertThat;
 import static de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper.getPredictions;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.synchronizedList;
 import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
 import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
 import static org.apache.uima.fit.util.CasUtil.getType;
@@ -30,12 +32,16 @@ import static org.assertj.core.api.Assertions.assertThatCode;
 import static org.assertj.core.api.Assumptions.assumeThat;
 import static org.dkpro.core.api.datasets.DatasetValidationPolicy.CONTINUE;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
@@ -67,6 +73,8 @@ import okhttp3.mockwebserver.Dispatcher;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
 import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
 
 public class ExternalRecommenderIntegrationTest
 {
@@ -86,6 +94,8 @@ public class ExternalRecommenderIntegrationTest
     private RemoteStringMatchingNerRecommender remoteRecommender;
     private MockWebServer server;
     private List<String> requestBodies;
+    private List<String> requestPaths;
+    private boolean binaryProtocolSupported;
     private CasStorageSession casStorageSession;
 
     @Before
@@ -104,7 +114,9 @@ public class ExternalRecommenderIntegrationTest
         server.setDispatcher(buildDispatcher());
         server.start();
 
-        requestBodies = new ArrayList<>();
+        // The mock server handles concurrent requests on separate threads
+        requestBodies = synchronizedList(new ArrayList<>());
+        requestPaths = synchronizedList(new ArrayList<>());
 
         String url = server.url("/").toString();
         traits.setRemoteUrl(url);
@@ -148,6 +160,59 @@ public class ExternalRecommenderIntegrationTest
             .containsNamedEntity("Lido delle Nazioni", "LOC");
     }
 
+    @Test
+    public void thatPredictingBatchWorks() throws Exception
+    {
+        List<CAS> casses = loadDevelopmentData();
+        sut.train(context, casses);
+
+        List<CAS> batch = casses.subList(0, 3);
+        for (CAS cas : batch) {
+            RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        }
+        sut.predictBatch(context, batch);
+
+        // The responses must end up in the CASes they belong to
+        assertThat(batch.get(0)).as("Predictions are correct")
+            .containsNamedEntity("Ecce homo", "OTH")
+            .containsNamedEntity("The Lindsey School Lindsey School & Community Arts College", "ORG")
+            .containsNamedEntity("Lido delle Nazioni", "LOC");
+        
+        // One prediction request per document
+        List<Long> documentIds = new ArrayList<>();
+        for (String body : requestBodies.subList(1, requestBodies.size())) {
+            documentIds.add(fromJsonString(PredictionRequest.class, body).getDocument()
+                    .getDocumentId());
+        }
+        assertThat(documentIds).containsExactlyInAnyOrder(0L, 1L, 2L);
+    }
+
+    @Test
+    public void thatPredictingBatchUsingBinaryProtocolWorks() throws Exception
+    {
+        binaryProtocolSupported = true;
+        
+        List<CAS> casses = loadDevelopmentData();
+        sut.train(context, casses);
+
+        List<CAS> batch = casses.subList(0, 3);
+        for (CAS cas : batch) {
+            RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        }
+        sut.predictBatch(context, batch);
+
+        assertThat(batch.get(0)).as("Predictions are correct")
+            .containsNamedEntity("Ecce homo", "OTH")
+            .containsNamedEntity("Lido delle Nazioni", "LOC");
+        assertThat(requestPaths)
+            .filteredOn(path -> path.equals("/predict"))
+            .hasSize(3);
+        assertThat(requestPaths)
+            .as("Type system is uploaded only once for the whole batch")
+            .filteredOn(path -> path.startsWith("/typesystems/"))
+            .hasSize(2);
+    }
+
     @Test
     public void thatTrainingSendsCorrectRequest() throws Exception
     {
@@ -194,6 +259,58 @@ public class ExternalRecommenderIntegrationTest
             .hasFieldOrPropertyWithValue("documentId", 0L);
     }
 
+    @Test
+    public void thatBinaryProtocolIsUsedIfServerSupportsIt() throws Exception
+    {
+        binaryProtocolSupported = true;
+        
+        List<CAS> casses = loadDevelopmentData();
+        sut.train(context, casses);
+
+        CAS cas = casses.get(0);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        sut.predict(context, cas);
+        
+        assertThat(cas).as("Predictions are correct")
+            .containsNamedEntity("Ecce homo", "OTH")
+            .containsNamedEntity("Lido delle Nazioni", "LOC");
+        
+        // Predicting again does not upload the type system again
+        sut.predict(context, cas);
+        
+        assertThat(requestBodies)
+                .as("No JSON requests have been sent")
+                .isEmpty();
+        assertThat(requestPaths)
+                .as("Type system is uploaded for training and again after it changed")
+                .filteredOn(path -> path.startsWith("/typesystems/"))
+                .hasSize(2);
+        assertThat(requestPaths)
+                .as("Capabilities are only negotiated once")
+                .filteredOn(path -> path.equals("/capabilities"))
+                .hasSize(1);
+    }
+
+    @Test
+    public void thatTypeSystemIsUploadedAgainIfServerForgetsIt() throws Exception
+    {
+        binaryProtocolSupported = true;
+        
+        List<CAS> casses = loadDevelopmentData();
+        sut.train(context, casses);
+        
+        // Simulate a server restart
+        remoteRecommender = new RemoteStringMatchingNerRecommender(recommender);
+        
+        assertThatCode(() ->
+            sut.train(context, casses)
+        ).doesNotThrowAnyException();
+        
+        assertThat(requestPaths)
+                .filteredOn(path -> path.startsWith("/typesystems/"))
+                .hasSize(2);
+    }
+
     private List<CAS> loadDevelopmentData() throws Exception
     {
         try {
@@ -261,13 +378,58 @@ public class ExternalRecommenderIntegrationTest
             @Override
             public MockResponse dispatch(RecordedRequest request) {
                 try {
-                    String body = request.getBody().readUtf8();
-                    requestBodies.add(body);
-
+                    requestPaths.add(request.getPath());
+                    
+                    byte[] data = request.getBody().readByteArray();
+                    if ("gzip".equals(request.getHeader("Content-Encoding"))) {
+                        try (InputStream is = new GZIPInputStream(
+                                new ByteArrayInputStream(data))) {
+                            data = IOUtils.toByteArray(is);
+                        }
+                    }
+                    
+                    String contentType = request.getHeader("Content-Type");
+                    if (request.getPath().equals("/capabilities")) {
+                        if (binaryProtocolSupported) {
+                            return new MockResponse().setResponseCode(200).setBody(
+                                    "{\"protocols\":[\"binary\"],\"compression\":[\"gzip\"]}");
+                        }
+                    }
+                    else if (request.getPath().startsWith("/typesystems/")) {
+                        remoteRecommender.putTypeSystem(
+                                request.getPath().substring("/typesystems/".length()),
+                                new String(data, UTF_8));
+                        return new MockResponse().setResponseCode(204);
+                    }
+                    else if (contentType != null && contentType.startsWith("multipart/")) {
+                        List<byte[]> parts = parseMultipart(contentType, data);
+                        BinaryRequest binaryRequest = fromJsonString(BinaryRequest.class,
+                                new String(parts.get(0), UTF_8));
+                        
+                        if (!remoteRecommender.isTypeSystemKnown(binaryRequest.getTypeSystem())) {
+                            return new MockResponse().setResponseCode(412);
+                        }
+                        
+                        if (request.getPath().equals("/train")) {
+                            remoteRecommender.trainBinary(binaryRequest,
+                                    parts.subList(1, parts.size()));
+                            return new MockResponse().setResponseCode(204);
+                        }
+                        else if (request.getPath().equals("/predict")) {
+                            byte[] response = remoteRecommender.predictBinary(binaryRequest,
+                                    parts.get(1));
+                            return new MockResponse().setResponseCode(200)
+                                    .setBody(new Buffer().write(response));
+                        }
+                    }
+                    
+                    String body = new String(data, UTF_8);
                     if (request.getPath().equals("/train")) {
+                        requestBodies.add(body);
                         remoteRecommender.train(body);
                         return new MockResponse().setResponseCode(204);
                     } else if (request.getPath().equals("/predict")) {
+                        requestBodies.add(body);
                         String response = remoteRecommender.predict(body);
                         return new MockResponse().setResponseCode(200).setBody(response);
                     }
@@ -281,6 +443,27 @@ public class ExternalRecommenderIntegrationTest
         };
     }
 
+    private static List<byte[]> parseMultipart(String aContentType, byte[] aBody)
+    {
+        ByteString body = ByteString.of(aBody);
+        String boundaryText = "--" + aContentType
+                .substring(aContentType.indexOf("boundary=") + "boundary=".length());
+        ByteString boundary = ByteString.encodeUtf8(boundaryText);
+        ByteString delimiter = ByteString.encodeUtf8("\r\n" + boundaryText);
+        ByteString headerEnd = ByteString.encodeUtf8("\r\n\r\n");
+        
+        List<byte[]> parts = new ArrayList<>();
+        int pos = body.indexOf(boundary) + boundary.size();
+        // The last boundary is followed by "--"
+        while (aBody[pos] != '-') {
+            int start = body.indexOf(headerEnd, pos) + headerEnd.size();
+            int end = body.indexOf(delimiter, start);
+            parts.add(body.substring(start, end).toByteArray());
+            pos = end + delimiter.size();
+        }
+        return parts;
+    }
+
     private void createNamedEntity(CAS aCas, String aValue)
     {
         Type neType = getType(aCas, "de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity");
@@ -19,13 +19,16 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.external;
 
 import static de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService.FEATURE_NAME_IS_PREDICTION;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.uima.cas.SerialFormat.COMPRESSED_FILTERED;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.uima.UIMAException;
@@ -40,6 +43,7 @@ import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasIOUtils;
 import org.apache.uima.util.XMLInputSource;
 import org.xml.sax.SAXException;
 
@@ -61,6 +65,8 @@ public class RemoteStringMatchingNerRecommender
 
     private final String layerName;
     private final String featureName;
+    
+    private final Map<String, String> typeSystems = new HashMap<>();
 
     public RemoteStringMatchingNerRecommender(Recommender aRecommender)
     {
@@ -87,6 +93,42 @@ public class RemoteStringMatchingNerRecommender
         recommendationEngine.train(context, casses);
     }
 
+    public void putTypeSystem(String aHash, String aTypeSystem)
+    {
+        typeSystems.put(aHash, aTypeSystem);
+    }
+    
+    public boolean isTypeSystemKnown(String aHash)
+    {
+        return typeSystems.containsKey(aHash);
+    }
+    
+    public void trainBinary(BinaryRequest aRequest, List<byte[]> aDocuments)
+        throws UIMAException, IOException, RecommendationException
+    {
+        List<CAS> casses = new ArrayList<>();
+        for (byte[] doc : aDocuments) {
+            casses.add(deserializeBinaryCas(doc, typeSystems.get(aRequest.getTypeSystem())));
+        }
+
+        recommendationEngine.train(context, casses);
+    }
+    
+    public byte[] predictBinary(BinaryRequest aRequest, byte[] aDocument)
+        throws UIMAException, IOException, RecommendationException
+    {
+        CAS cas = deserializeBinaryCas(aDocument, typeSystems.get(aRequest.getTypeSystem()));
+        
+        removePredictions(cas);
+        
+        recommendationEngine.predict(context, cas);
+        
+        try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            CasIOUtils.save(cas, out, COMPRESSED_FILTERED);
+            return out.toByteArray();
+        }
+    }
+
     private TrainingRequest deserializeTrainingRequest(String aRequestJson)
     {
         try {
@@ -103,19 +145,24 @@ public class RemoteStringMatchingNerRecommender
         PredictionRequest request = deserializePredictionRequest(aPredictionRequestJson);
         CAS cas = deserializeCas(request.getDocument().getXmi(), request.getTypeSystem());
 
+        removePredictions(cas);
+
+        recommendationEngine.predict(context, cas);
+
+        return buildPredictionResponse(cas);
+    }
+    
+    private void removePredictions(CAS aCas)
+    {
         // Only work on real annotations, not on predictions
-        Type predictedType = CasUtil.getType(cas, recommender.getLayer().getName());
+        Type predictedType = CasUtil.getType(aCas, recommender.getLayer().getName());
         Feature feature = predictedType.getFeatureByBaseName(FEATURE_NAME_IS_PREDICTION);
 
-        for (AnnotationFS fs : CasUtil.select(cas, predictedType)) {
+        for (AnnotationFS fs : CasUtil.select(aCas, predictedType)) {
             if (fs.getBooleanValue(feature)) {
-                cas.removeFsFromIndexes(fs);
+                aCas.removeFsFromIndexes(fs);
             }
         }
-
-        recommendationEngine.predict(context, cas);
-
-        return buildPredictionResponse(cas);
     }
 
     private PredictionRequest deserializePredictionRequest(String aPredictionRequestJson)
@@ -137,6 +184,16 @@ public class RemoteStringMatchingNerRecommender
         return cas;
     }
 
+    private CAS deserializeBinaryCas(byte[] aData, String aTypeSystem)
+        throws IOException, UIMAException
+    {
+        CAS cas = buildCas(aTypeSystem);
+        try (InputStream bais = new ByteArrayInputStream(aData)) {
+            CasIOUtils.load(bais, cas);
+        }
+        return cas;
+    }
+
     private CAS buildCas(String typeSystem) throws IOException, UIMAException
     {
         // We need to save the typeSystem XML to disk as the
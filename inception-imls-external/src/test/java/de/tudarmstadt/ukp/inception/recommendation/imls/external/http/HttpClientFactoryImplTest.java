@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.http;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.config.HttpClientPropertiesImpl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+public class HttpClientFactoryImplTest
+{
+    private HttpClientFactoryImpl sut;
+
+    @Before
+    public void setUp()
+    {
+        HttpClientPropertiesImpl properties = new HttpClientPropertiesImpl();
+        properties.setMaxConnections(10);
+        properties.setMaxConnectionsPerHost(3);
+        properties.setReadTimeout(Duration.ofMinutes(2));
+
+        sut = new HttpClientFactoryImpl(properties);
+    }
+
+    @After
+    public void tearDown()
+    {
+        sut.destroy();
+    }
+
+    @Test
+    public void thatPropertiesAreApplied()
+    {
+        OkHttpClient client = sut.getClient();
+
+        assertThat(client.dispatcher().getMaxRequests()).isEqualTo(10);
+        assertThat(client.dispatcher().getMaxRequestsPerHost()).isEqualTo(3);
+        assertThat(client.readTimeoutMillis()).isEqualTo(120_000);
+        assertThat(client.connectTimeoutMillis()).isEqualTo(30_000);
+    }
+
+    @Test
+    public void thatClientIsShared()
+    {
+        OkHttpClient client = sut.getClient();
+        OkHttpClient derived = client.newBuilder().readTimeout(Duration.ofMinutes(5)).build();
+
+        assertThat(sut.getClient()).isSameAs(client);
+        assertThat(derived.connectionPool()).isSameAs(client.connectionPool());
+        assertThat(derived.dispatcher()).isSameAs(client.dispatcher());
+    }
+
+    @Test
+    public void thatSynchronousCallsAreLimitedPerHost() throws Exception
+    {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(new Dispatcher()
+        {
+            @Override
+            public MockResponse dispatch(RecordedRequest aRequest) throws InterruptedException
+            {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(100);
+                active.decrementAndGet();
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        server.start();
+        
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> calls = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                calls.add(executor.submit(() -> {
+                    Request request = new Request.Builder().url(server.url("/")).build();
+                    try (Response response = sut.getClient().newCall(request).execute()) {
+                        return response.code();
+                    }
+                }));
+            }
+            
+            for (Future<Integer> call : calls) {
+                assertThat(call.get()).isEqualTo(200);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            server.shutdown();
+        }
+        
+        assertThat(maxActive.get()).isBetween(1, 3);
+    }
+}
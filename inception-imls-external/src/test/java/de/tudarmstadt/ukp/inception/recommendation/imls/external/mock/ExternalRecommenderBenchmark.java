@@ -0,0 +1,229 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.mock;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasCreationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.CasMetadataUtils;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.api.type.CASMetadata;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.ExternalRecommender;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.ExternalRecommenderTraits;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.mock.MockExternalRecommenderServer.PredictionMode;
+import de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper;
+
+/**
+ * Measures the end-to-end overhead of sending documents to an external recommender. The mock
+ * server echoes the documents back without any artificial latency, so the results are dominated
+ * by the (de)serialization and transfer costs of the protocol:
+ * <ul>
+ * <li>{@code json} - XMI embedded in JSON</li>
+ * <li>{@code json-gzip} - XMI embedded in JSON with gzip-compressed request and response</li>
+ * <li>{@code binary} - compressed binary CAS in multipart requests</li>
+ * </ul>
+ * The results are reported per batch of {@value #BATCH_SIZE} documents.
+ * <p>
+ * This is not a unit test. Run it via the {@link #main} method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExternalRecommenderBenchmark
+{
+    private static final int BATCH_SIZE = 10;
+    private static final int VOCABULARY_SIZE = 1_000;
+    private static final String[] LABELS = { "PER", "LOC", "ORG", "OTH" };
+
+    @Param({ "json", "json-gzip", "binary" })
+    public String protocol;
+
+    @Param({ "1000", "10000" })
+    public int documentTokens;
+
+    private MockExternalRecommenderServer server;
+    private CasStorageSession casStorageSession;
+    private RecommenderContext context;
+    private ExternalRecommender sut;
+    private List<CAS> casses;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        server = new MockExternalRecommenderServer();
+        server.setPredictionMode(PredictionMode.ECHO);
+        server.setBinaryProtocolSupported(protocol.equals("binary"));
+        server.setGzipSupported(protocol.equals("json-gzip"));
+        server.start();
+
+        ExternalRecommenderTraits traits = new ExternalRecommenderTraits();
+        traits.setRemoteUrl(server.getUrl());
+        traits.setTrainable(true);
+        sut = new ExternalRecommender(buildRecommender(), traits);
+        context = new RecommenderContext();
+
+        casStorageSession = CasStorageSession.open();
+        casses = generateDocuments();
+        
+        // Negotiate the protocol and upload the type system outside of the measurement
+        sut.train(context, casses);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        casStorageSession.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void predictPerDocument() throws Exception
+    {
+        for (CAS cas : casses) {
+            sut.predict(context, cas);
+        }
+    }
+
+    @Benchmark
+    public void predictBatch() throws Exception
+    {
+        sut.predictBatch(context, casses);
+    }
+
+    private List<CAS> generateDocuments() throws Exception
+    {
+        // All documents share the same type system, just like documents in a project do
+        JCas template = JCasFactory.createJCas(mergeTypeSystems(asList(
+                createTypeSystemDescription(), CasMetadataUtils.getInternalTypeSystem())));
+        RecommenderTestHelper.addScoreFeature(template.getCas(), NamedEntity.class, "value");
+        TypeSystem typeSystem = template.getCas().getTypeSystem();
+
+        Random rnd = new Random(42);
+        List<String> vocabulary = new ArrayList<>();
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + rnd.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + rnd.nextInt(26)));
+            }
+            vocabulary.add(word.toString());
+        }
+
+        List<CAS> documents = new ArrayList<>();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            JCas jcas = CasCreationUtils.createCas(typeSystem, null, null, null).getJCas();
+
+            StringBuilder text = new StringBuilder();
+            int[] tokenBegins = new int[documentTokens];
+            int[] tokenEnds = new int[documentTokens];
+            for (int t = 0; t < documentTokens; t++) {
+                if (t > 0) {
+                    text.append(' ');
+                }
+                tokenBegins[t] = text.length();
+                text.append(vocabulary.get(rnd.nextInt(VOCABULARY_SIZE)));
+                tokenEnds[t] = text.length();
+            }
+            jcas.setDocumentText(text.toString());
+
+            for (int t = 0; t < documentTokens; t++) {
+                new Token(jcas, tokenBegins[t], tokenEnds[t]).addToIndexes();
+
+                // Roughly every tenth token is part of a named entity
+                if (rnd.nextInt(10) == 0) {
+                    NamedEntity ne = new NamedEntity(jcas, tokenBegins[t], tokenEnds[t]);
+                    ne.setValue(LABELS[rnd.nextInt(LABELS.length)]);
+                    ne.addToIndexes();
+                }
+            }
+
+            CASMetadata cmd = new CASMetadata(jcas);
+            cmd.setUsername("user");
+            cmd.setProjectId(1L);
+            cmd.setSourceDocumentId(i);
+            cmd.addToIndexes();
+
+            casStorageSession.add("document" + i, EXCLUSIVE_WRITE_ACCESS, jcas.getCas());
+            documents.add(jcas.getCas());
+        }
+        return documents;
+    }
+
+    private static Recommender buildRecommender()
+    {
+        AnnotationLayer layer = new AnnotationLayer();
+        layer.setName(NamedEntity.class.getName());
+        layer.setAnchoringMode(AnchoringMode.TOKENS);
+
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setName("value");
+
+        Recommender recommender = new Recommender();
+        recommender.setLayer(layer);
+        recommender.setFeature(feature);
+
+        return recommender;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(ExternalRecommenderBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,663 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.mock;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService.FEATURE_NAME_IS_PREDICTION;
+import static de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService.FEATURE_NAME_SCORE_SUFFIX;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.apache.uima.cas.SerialFormat.COMPRESSED_FILTERED;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.Feature;
+import org.apache.uima.cas.Type;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.cas.impl.XmiCasDeserializer;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.cas.text.AnnotationFS;
+import org.apache.uima.fit.util.CasUtil;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.CasIOUtils;
+import org.apache.uima.util.XMLInputSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.BinaryRequest;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.Document;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.Metadata;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.PredictionRequest;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.PredictionResponse;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.ServerCapabilities;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.TrainingRequest;
+
+/**
+ * Embedded HTTP server implementing the external recommender protocol (JSON/XMI as well as the
+ * negotiated binary protocol). It is meant for measuring the overhead of the
+ * {@code ExternalRecommender} and for testing how it copes with slow or unreliable servers without
+ * having to deploy a real recommender service.
+ * <p>
+ * The server either echoes the documents back unchanged or predicts the most frequent label seen
+ * during training on every token. Artificial latency and failures can be configured. Settings may
+ * be changed while the server is running.
+ */
+public class MockExternalRecommenderServer
+    implements AutoCloseable
+{
+    public enum PredictionMode
+    {
+        /**
+         * Return the documents unchanged. This measures the pure protocol overhead.
+         */
+        ECHO,
+        
+        /**
+         * Predict the label which was seen most often during training on every token.
+         */
+        MAJORITY;
+    }
+    
+    private static final Logger LOG = LoggerFactory.getLogger(MockExternalRecommenderServer.class);
+
+    private static final String TYPE_NAME_TOKEN =
+            "de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token";
+    
+    private static final String JSON = "application/json";
+    private static final String BINARY_CAS = "application/vnd.uima.cas+binary";
+    private static final String TEXT = "text/plain";
+    
+    private static final int HTTP_OK = 200;
+    private static final int HTTP_NO_CONTENT = 204;
+    private static final int HTTP_BAD_REQUEST = 400;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_METHOD_NOT_ALLOWED = 405;
+    private static final int HTTP_PRECONDITION_FAILED = 412;
+    private static final int HTTP_INTERNAL_SERVER_ERROR = 500;
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final Map<String, TypeSystem> typeSystemsByHash = new ConcurrentHashMap<>();
+    private final Map<String, TypeSystem> typeSystemsByXml = new ConcurrentHashMap<>();
+    private final Map<String, MajorityLabel> models = new ConcurrentHashMap<>();
+    
+    private final AtomicLong trainRequestCount = new AtomicLong();
+    private final AtomicLong predictRequestCount = new AtomicLong();
+    private final AtomicLong simulatedFailureCount = new AtomicLong();
+
+    private volatile Duration latency = Duration.ZERO;
+    private volatile Duration latencyJitter = Duration.ZERO;
+    private volatile double failureRate = 0.0;
+    private volatile PredictionMode predictionMode = PredictionMode.MAJORITY;
+    private volatile boolean binaryProtocolSupported = false;
+    private volatile boolean gzipSupported = false;
+    private int threads = 8;
+    
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public void start() throws IOException
+    {
+        if (server != null) {
+            throw new IllegalStateException("Server is already running");
+        }
+        
+        executor = Executors.newFixedThreadPool(threads, new BasicThreadFactory.Builder()
+                .namingPattern("mock-external-recommender-%d")
+                .daemon(true)
+                .build());
+        
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        
+        LOG.info("Mock external recommender listening on [{}]", getUrl());
+    }
+
+    @Override
+    public void close()
+    {
+        if (server == null) {
+            return;
+        }
+        
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+    }
+    
+    /**
+     * @return the URL to be configured as remote URL of the external recommender.
+     */
+    public String getUrl()
+    {
+        if (server == null) {
+            throw new IllegalStateException("Server is not running");
+        }
+        
+        InetSocketAddress address = server.getAddress();
+        return "http://" + address.getHostString() + ":" + address.getPort() + "/";
+    }
+
+    public Duration getLatency()
+    {
+        return latency;
+    }
+
+    /**
+     * @param aLatency
+     *            time the server waits before processing a training or prediction request.
+     */
+    public void setLatency(Duration aLatency)
+    {
+        latency = aLatency;
+    }
+
+    public Duration getLatencyJitter()
+    {
+        return latencyJitter;
+    }
+
+    /**
+     * @param aLatencyJitter
+     *            upper bound of a random delay which is added to the latency.
+     */
+    public void setLatencyJitter(Duration aLatencyJitter)
+    {
+        latencyJitter = aLatencyJitter;
+    }
+
+    public double getFailureRate()
+    {
+        return failureRate;
+    }
+
+    /**
+     * @param aFailureRate
+     *            probability (between {@code 0.0} and {@code 1.0}) of answering a training or
+     *            prediction request with an internal server error.
+     */
+    public void setFailureRate(double aFailureRate)
+    {
+        if (aFailureRate < 0.0 || aFailureRate > 1.0) {
+            throw new IllegalArgumentException(
+                    "Failure rate must be between 0 and 1 but was [" + aFailureRate + "]");
+        }
+        
+        failureRate = aFailureRate;
+    }
+
+    public PredictionMode getPredictionMode()
+    {
+        return predictionMode;
+    }
+
+    public void setPredictionMode(PredictionMode aPredictionMode)
+    {
+        predictionMode = aPredictionMode;
+    }
+
+    public boolean isBinaryProtocolSupported()
+    {
+        return binaryProtocolSupported;
+    }
+
+    public void setBinaryProtocolSupported(boolean aBinaryProtocolSupported)
+    {
+        binaryProtocolSupported = aBinaryProtocolSupported;
+    }
+
+    public boolean isGzipSupported()
+    {
+        return gzipSupported;
+    }
+
+    public void setGzipSupported(boolean aGzipSupported)
+    {
+        gzipSupported = aGzipSupported;
+    }
+
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * @param aThreads
+     *            number of threads handling requests. Only has an effect before the server is
+     *            started.
+     */
+    public void setThreads(int aThreads)
+    {
+        threads = aThreads;
+    }
+    
+    public long getTrainRequestCount()
+    {
+        return trainRequestCount.get();
+    }
+    
+    public long getPredictRequestCount()
+    {
+        return predictRequestCount.get();
+    }
+    
+    public long getSimulatedFailureCount()
+    {
+        return simulatedFailureCount.get();
+    }
+    
+    /**
+     * Forgets all uploaded type systems and trained models as if the server had been restarted.
+     */
+    public void reset()
+    {
+        typeSystemsByHash.clear();
+        typeSystemsByXml.clear();
+        models.clear();
+    }
+
+    private void handle(HttpExchange aExchange) throws IOException
+    {
+        try {
+            String path = aExchange.getRequestURI().getPath();
+            String method = aExchange.getRequestMethod();
+            
+            if (path.equals("/capabilities")) {
+                handleCapabilities(aExchange);
+            }
+            else if (path.startsWith("/typesystems/") && method.equals("PUT")) {
+                handleTypeSystem(aExchange, path.substring("/typesystems/".length()));
+            }
+            else if (path.equals("/train") && method.equals("POST")) {
+                trainRequestCount.incrementAndGet();
+                if (simulateLatencyAndFailure(aExchange)) {
+                    handleTrain(aExchange);
+                }
+            }
+            else if (path.equals("/predict") && method.equals("POST")) {
+                predictRequestCount.incrementAndGet();
+                if (simulateLatencyAndFailure(aExchange)) {
+                    handlePredict(aExchange);
+                }
+            }
+            else if (path.equals("/train") || path.equals("/predict")
+                    || path.startsWith("/typesystems/")) {
+                respond(aExchange, HTTP_METHOD_NOT_ALLOWED, TEXT, "Method not allowed");
+            }
+            else {
+                respond(aExchange, HTTP_NOT_FOUND, TEXT, "Not found");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception e) {
+            LOG.error("Error handling request to [{}]", aExchange.getRequestURI(), e);
+            respond(aExchange, HTTP_INTERNAL_SERVER_ERROR, TEXT, String.valueOf(e.getMessage()));
+        }
+        finally {
+            aExchange.close();
+        }
+    }
+    
+    private void handleCapabilities(HttpExchange aExchange) throws IOException
+    {
+        List<String> protocols = new ArrayList<>();
+        if (binaryProtocolSupported) {
+            protocols.add(ServerCapabilities.PROTOCOL_BINARY);
+        }
+        
+        List<String> compression = new ArrayList<>();
+        if (gzipSupported) {
+            compression.add(ServerCapabilities.COMPRESSION_GZIP);
+        }
+        
+        // Servers which only speak the JSON protocol do not know the capabilities endpoint
+        if (protocols.isEmpty() && compression.isEmpty()) {
+            respond(aExchange, HTTP_NOT_FOUND, TEXT, "Not found");
+            return;
+        }
+        
+        ServerCapabilities capabilities = new ServerCapabilities();
+        capabilities.setProtocols(protocols);
+        capabilities.setCompression(compression);
+        respond(aExchange, HTTP_OK, JSON, OBJECT_MAPPER.writeValueAsBytes(capabilities));
+    }
+    
+    private void handleTypeSystem(HttpExchange aExchange, String aHash) throws Exception
+    {
+        String xml = new String(readBody(aExchange), UTF_8);
+        typeSystemsByHash.put(aHash, createTypeSystem(xml));
+        respond(aExchange, HTTP_NO_CONTENT, null, new byte[0]);
+    }
+
+    private void handleTrain(HttpExchange aExchange) throws Exception
+    {
+        Metadata metadata;
+        List<CAS> casses = new ArrayList<>();
+        if (isMultipart(aExchange)) {
+            List<byte[]> parts = readMultipart(aExchange);
+            BinaryRequest request = OBJECT_MAPPER.readValue(parts.get(0), BinaryRequest.class);
+            TypeSystem typeSystem = typeSystemsByHash.get(request.getTypeSystem());
+            if (typeSystem == null) {
+                respond(aExchange, HTTP_PRECONDITION_FAILED, TEXT, "Unknown type system");
+                return;
+            }
+            
+            metadata = request.getMetadata();
+            for (byte[] data : parts.subList(1, parts.size())) {
+                casses.add(loadBinaryCas(typeSystem, data));
+            }
+        }
+        else {
+            TrainingRequest request = OBJECT_MAPPER.readValue(readBody(aExchange),
+                    TrainingRequest.class);
+            metadata = request.getMetadata();
+            TypeSystem typeSystem = getTypeSystemForXml(request.getTypeSystem());
+            for (Document document : request.getDocuments()) {
+                casses.add(loadXmiCas(typeSystem, document.getXmi()));
+            }
+        }
+        
+        train(metadata, casses);
+        respond(aExchange, HTTP_NO_CONTENT, null, new byte[0]);
+    }
+
+    private void handlePredict(HttpExchange aExchange) throws Exception
+    {
+        if (isMultipart(aExchange)) {
+            List<byte[]> parts = readMultipart(aExchange);
+            BinaryRequest request = OBJECT_MAPPER.readValue(parts.get(0), BinaryRequest.class);
+            TypeSystem typeSystem = typeSystemsByHash.get(request.getTypeSystem());
+            if (typeSystem == null) {
+                respond(aExchange, HTTP_PRECONDITION_FAILED, TEXT, "Unknown type system");
+                return;
+            }
+            if (parts.size() != 2) {
+                respond(aExchange, HTTP_BAD_REQUEST, TEXT, "Expected exactly one document");
+                return;
+            }
+            
+            CAS cas = loadBinaryCas(typeSystem, parts.get(1));
+            predict(request.getMetadata(), cas);
+            
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                CasIOUtils.save(cas, out, COMPRESSED_FILTERED);
+                respond(aExchange, HTTP_OK, BINARY_CAS, out.toByteArray());
+            }
+        }
+        else {
+            PredictionRequest request = OBJECT_MAPPER.readValue(readBody(aExchange),
+                    PredictionRequest.class);
+            CAS cas = loadXmiCas(getTypeSystemForXml(request.getTypeSystem()),
+                    request.getDocument().getXmi());
+            predict(request.getMetadata(), cas);
+            
+            try (ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+                XmiCasSerializer.serialize(cas, null, out, false, null);
+                PredictionResponse response = new PredictionResponse();
+                response.setDocument(new String(out.toByteArray(), UTF_8));
+                respond(aExchange, HTTP_OK, JSON, OBJECT_MAPPER.writeValueAsBytes(response));
+            }
+        }
+    }
+
+    /**
+     * @return whether the request should be processed or whether a failure has been sent.
+     */
+    private boolean simulateLatencyAndFailure(HttpExchange aExchange)
+        throws IOException, InterruptedException
+    {
+        long delay = latency.toMillis();
+        long jitter = latencyJitter.toMillis();
+        if (jitter > 0) {
+            delay += ThreadLocalRandom.current().nextLong(jitter);
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        
+        if (failureRate > 0.0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            simulatedFailureCount.incrementAndGet();
+            // Consume the request body anyway so the connection can be reused
+            readBody(aExchange);
+            respond(aExchange, HTTP_INTERNAL_SERVER_ERROR, TEXT, "Simulated failure");
+            return false;
+        }
+        
+        return true;
+    }
+
+    private void train(Metadata aMetadata, List<CAS> aCasses)
+    {
+        Map<String, Integer> counts = new HashMap<>();
+        int total = 0;
+        for (CAS cas : aCasses) {
+            Type type = cas.getTypeSystem().getType(aMetadata.getLayer());
+            if (type == null) {
+                continue;
+            }
+            
+            Feature feature = type.getFeatureByBaseName(aMetadata.getFeature());
+            Feature isPrediction = type.getFeatureByBaseName(FEATURE_NAME_IS_PREDICTION);
+            for (AnnotationFS ann : CasUtil.select(cas, type)) {
+                if (isPrediction != null && ann.getBooleanValue(isPrediction)) {
+                    continue;
+                }
+                
+                String label = feature != null ? ann.getFeatureValueAsString(feature) : null;
+                if (label != null) {
+                    counts.merge(label, 1, Integer::sum);
+                    total++;
+                }
+            }
+        }
+
+        String majorityLabel = null;
+        int majorityCount = 0;
+        for (Map.Entry<String, Integer> e : counts.entrySet()) {
+            if (e.getValue() > majorityCount) {
+                majorityLabel = e.getKey();
+                majorityCount = e.getValue();
+            }
+        }
+        
+        if (majorityLabel != null) {
+            models.put(modelKey(aMetadata),
+                    new MajorityLabel(majorityLabel, (double) majorityCount / total));
+        }
+    }
+
+    private void predict(Metadata aMetadata, CAS aCas)
+    {
+        if (predictionMode == PredictionMode.ECHO) {
+            return;
+        }
+        
+        MajorityLabel model = models.get(modelKey(aMetadata));
+        Type type = aCas.getTypeSystem().getType(aMetadata.getLayer());
+        Type tokenType = aCas.getTypeSystem().getType(TYPE_NAME_TOKEN);
+        if (model == null || type == null || tokenType == null) {
+            return;
+        }
+        
+        Feature feature = type.getFeatureByBaseName(aMetadata.getFeature());
+        Feature scoreFeature = type
+                .getFeatureByBaseName(aMetadata.getFeature() + FEATURE_NAME_SCORE_SUFFIX);
+        Feature isPrediction = type.getFeatureByBaseName(FEATURE_NAME_IS_PREDICTION);
+        
+        for (AnnotationFS token : CasUtil.select(aCas, tokenType)) {
+            AnnotationFS ann = aCas.createAnnotation(type, token.getBegin(), token.getEnd());
+            if (feature != null) {
+                ann.setFeatureValueFromString(feature, model.label);
+            }
+            if (scoreFeature != null) {
+                ann.setDoubleValue(scoreFeature, model.score);
+            }
+            if (isPrediction != null) {
+                ann.setBooleanValue(isPrediction, true);
+            }
+            aCas.addFsToIndexes(ann);
+        }
+    }
+    
+    private String modelKey(Metadata aMetadata)
+    {
+        return aMetadata.getProjectId() + "|" + aMetadata.getLayer() + "|"
+                + aMetadata.getFeature();
+    }
+
+    private TypeSystem getTypeSystemForXml(String aXml) throws Exception
+    {
+        // Clients using the JSON protocol send the type system with every request, but creating
+        // a type system is expensive, so we remember the ones we have already seen
+        TypeSystem typeSystem = typeSystemsByXml.get(aXml);
+        if (typeSystem == null) {
+            typeSystem = createTypeSystem(aXml);
+            typeSystemsByXml.put(aXml, typeSystem);
+        }
+        return typeSystem;
+    }
+
+    private TypeSystem createTypeSystem(String aXml) throws Exception
+    {
+        TypeSystemDescription tsd = UIMAFramework.getXMLParser().parseTypeSystemDescription(
+                new XMLInputSource(new ByteArrayInputStream(aXml.getBytes(UTF_8)), null));
+        return CasCreationUtils.createCas(tsd, null, null).getTypeSystem();
+    }
+
+    private CAS loadXmiCas(TypeSystem aTypeSystem, String aXmi) throws Exception
+    {
+        CAS cas = CasCreationUtils.createCas(aTypeSystem, null, null, null);
+        try (InputStream is = new ByteArrayInputStream(aXmi.getBytes(UTF_8))) {
+            XmiCasDeserializer.deserialize(is, cas, true);
+        }
+        return cas;
+    }
+
+    private CAS loadBinaryCas(TypeSystem aTypeSystem, byte[] aData) throws Exception
+    {
+        CAS cas = CasCreationUtils.createCas(aTypeSystem, null, null, null);
+        try (InputStream is = new ByteArrayInputStream(aData)) {
+            CasIOUtils.load(is, cas);
+        }
+        return cas;
+    }
+
+    private boolean isMultipart(HttpExchange aExchange)
+    {
+        String contentType = aExchange.getRequestHeaders().getFirst("Content-Type");
+        return contentType != null && contentType.startsWith("multipart/");
+    }
+
+    private List<byte[]> readMultipart(HttpExchange aExchange) throws IOException
+    {
+        String contentType = aExchange.getRequestHeaders().getFirst("Content-Type");
+        return MultipartParser.parse(contentType, readBody(aExchange));
+    }
+
+    private byte[] readBody(HttpExchange aExchange) throws IOException
+    {
+        InputStream is = aExchange.getRequestBody();
+        if ("gzip".equals(aExchange.getRequestHeaders().getFirst("Content-Encoding"))) {
+            is = new GZIPInputStream(is);
+        }
+        
+        try (InputStream body = is) {
+            return IOUtils.toByteArray(body);
+        }
+    }
+
+    private void respond(HttpExchange aExchange, int aCode, String aContentType, String aBody)
+        throws IOException
+    {
+        respond(aExchange, aCode, aContentType, aBody.getBytes(UTF_8));
+    }
+    
+    private void respond(HttpExchange aExchange, int aCode, String aContentType, byte[] aBody)
+        throws IOException
+    {
+        if (aContentType != null) {
+            aExchange.getResponseHeaders().set("Content-Type", aContentType);
+        }
+        
+        if (aBody.length == 0) {
+            aExchange.sendResponseHeaders(aCode, -1);
+            return;
+        }
+        
+        byte[] body = aBody;
+        String acceptEncoding = aExchange.getRequestHeaders().getFirst("Accept-Encoding");
+        if (gzipSupported && acceptEncoding != null
+                && asList(acceptEncoding.split("\\s*,\\s*")).contains("gzip")) {
+            try (ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
+                try (OutputStream gzip = new GZIPOutputStream(buffer)) {
+                    gzip.write(aBody);
+                }
+                body = buffer.toByteArray();
+            }
+            aExchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        
+        aExchange.sendResponseHeaders(aCode, body.length);
+        try (OutputStream os = aExchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+    
+    private static class MajorityLabel
+    {
+        private final String label;
+        private final double score;
+        
+        public MajorityLabel(String aLabel, double aScore)
+        {
+            label = aLabel;
+            score = aScore;
+        }
+    }
+}
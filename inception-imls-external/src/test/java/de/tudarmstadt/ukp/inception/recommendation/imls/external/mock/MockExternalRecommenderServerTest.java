@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.mock;
+
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
+import static de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper.getPredictions;
+import static java.util.Arrays.asList;
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.apache.uima.util.CasCreationUtils.mergeTypeSystems;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.CasMetadataUtils;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.api.type.CASMetadata;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.ExternalRecommender;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.ExternalRecommenderTraits;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.mock.MockExternalRecommenderServer.PredictionMode;
+import de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper;
+
+public class MockExternalRecommenderServerTest
+{
+    private MockExternalRecommenderServer server;
+    private CasStorageSession casStorageSession;
+    private RecommenderContext context;
+    private ExternalRecommender sut;
+    private int casCount;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        casStorageSession = CasStorageSession.open();
+        context = new RecommenderContext();
+
+        server = new MockExternalRecommenderServer();
+        server.setThreads(2);
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        casStorageSession.close();
+        server.close();
+    }
+
+    @Test
+    public void thatMajorityLabelIsPredictedUsingJsonProtocol() throws Exception
+    {
+        startServerAndConnect();
+        
+        assertMajorityLabelIsPredicted();
+        assertThat(server.getTrainRequestCount()).isEqualTo(1);
+        assertThat(server.getPredictRequestCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void thatMajorityLabelIsPredictedUsingBinaryProtocol() throws Exception
+    {
+        server.setBinaryProtocolSupported(true);
+        server.setGzipSupported(true);
+        startServerAndConnect();
+        
+        assertMajorityLabelIsPredicted();
+    }
+
+    @Test
+    public void thatEchoModeReturnsDocumentUnchanged() throws Exception
+    {
+        server.setPredictionMode(PredictionMode.ECHO);
+        startServerAndConnect();
+        
+        sut.train(context, asList(createCas(0, "LOC")));
+        
+        CAS cas = createCas(1);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        sut.predict(context, cas);
+        
+        assertThat(getPredictions(cas, NamedEntity.class)).isEmpty();
+    }
+
+    @Test
+    public void thatTypeSystemIsUploadedAgainAfterServerReset() throws Exception
+    {
+        server.setBinaryProtocolSupported(true);
+        startServerAndConnect();
+        
+        sut.train(context, asList(createCas(0, "LOC")));
+        server.reset();
+        sut.train(context, asList(createCas(0, "LOC")));
+
+        CAS cas = createCas(1);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        sut.predict(context, cas);
+        
+        assertThat(getPredictions(cas, NamedEntity.class)).isNotEmpty();
+    }
+
+    @Test
+    public void thatSimulatedFailuresAreReported() throws Exception
+    {
+        server.setFailureRate(1.0);
+        startServerAndConnect();
+        
+        List<CAS> casses = asList(createCas(0, "LOC"));
+        
+        assertThatThrownBy(() -> sut.train(context, casses))
+                .isInstanceOf(RecommendationException.class)
+                .hasMessageContaining("Simulated failure");
+        assertThat(server.getSimulatedFailureCount()).isEqualTo(1);
+    }
+
+    private void assertMajorityLabelIsPredicted() throws Exception
+    {
+        sut.train(context, asList(createCas(0, "LOC", "LOC", "PER")));
+
+        CAS cas = createCas(1);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        sut.predict(context, cas);
+
+        List<NamedEntity> predictions = getPredictions(cas, NamedEntity.class);
+        assertThat(predictions)
+                .hasSize(4)
+                .extracting(NamedEntity::getValue)
+                .containsOnly("LOC");
+        assertThat(RecommenderTestHelper.getScore(predictions.get(0), "value"))
+                .isEqualTo(2.0 / 3.0);
+    }
+    
+    private void startServerAndConnect() throws Exception
+    {
+        server.start();
+
+        ExternalRecommenderTraits traits = new ExternalRecommenderTraits();
+        traits.setRemoteUrl(server.getUrl());
+        traits.setTrainable(true);
+        sut = new ExternalRecommender(buildRecommender(), traits);
+    }
+
+    private CAS createCas(long aDocumentId, String... aLabels) throws Exception
+    {
+        JCas jcas = JCasFactory.createJCas(mergeTypeSystems(asList(
+                createTypeSystemDescription(), CasMetadataUtils.getInternalTypeSystem())));
+        jcas.setDocumentText("John lives in Berlin");
+        
+        int begin = 0;
+        for (String token : jcas.getDocumentText().split(" ")) {
+            new Token(jcas, begin, begin + token.length()).addToIndexes();
+            begin += token.length() + 1;
+        }
+        
+        for (String label : aLabels) {
+            NamedEntity ne = new NamedEntity(jcas, 0, 4);
+            ne.setValue(label);
+            ne.addToIndexes();
+        }
+        
+        CASMetadata cmd = new CASMetadata(jcas);
+        cmd.setUsername("user");
+        cmd.setProjectId(42L);
+        cmd.setSourceDocumentId(aDocumentId);
+        cmd.addToIndexes();
+        
+        casStorageSession.add("cas" + casCount++, EXCLUSIVE_WRITE_ACCESS, jcas.getCas());
+        return jcas.getCas();
+    }
+
+    private static Recommender buildRecommender()
+    {
+        AnnotationLayer layer = new AnnotationLayer();
+        layer.setName(NamedEntity.class.getName());
+        layer.setAnchoringMode(AnchoringMode.TOKENS);
+
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setName("value");
+        
+        Recommender recommender = new Recommender();
+        recommender.setLayer(layer);
+        recommender.setFeature(feature);
+        recommender.setMaxRecommendations(3);
+        
+        return recommender;
+    }
+}
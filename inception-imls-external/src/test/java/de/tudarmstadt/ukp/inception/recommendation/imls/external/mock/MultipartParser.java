@@ -0,0 +1,115 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.external.mock;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal parser for {@code multipart/form-data} bodies as sent by the binary protocol of the
+ * external recommender. Only the part contents are returned - the part headers are skipped.
+ */
+class MultipartParser
+{
+    private static final byte[] CRLF = "\r\n".getBytes(US_ASCII);
+    private static final byte[] HEADER_END = "\r\n\r\n".getBytes(US_ASCII);
+    
+    private MultipartParser()
+    {
+        // No instances
+    }
+
+    public static List<byte[]> parse(String aContentType, byte[] aBody) throws IOException
+    {
+        int boundaryStart = aContentType != null ? aContentType.indexOf("boundary=") : -1;
+        if (boundaryStart == -1) {
+            throw new IOException("Content type [" + aContentType + "] has no boundary");
+        }
+        
+        String boundary = aContentType.substring(boundaryStart + "boundary=".length());
+        int boundaryEnd = boundary.indexOf(';');
+        if (boundaryEnd != -1) {
+            boundary = boundary.substring(0, boundaryEnd);
+        }
+        if (boundary.startsWith("\"") && boundary.endsWith("\"") && boundary.length() > 1) {
+            boundary = boundary.substring(1, boundary.length() - 1);
+        }
+        
+        byte[] delimiter = ("--" + boundary).getBytes(US_ASCII);
+        byte[] innerDelimiter = ("\r\n--" + boundary).getBytes(US_ASCII);
+        
+        List<byte[]> parts = new ArrayList<>();
+        int pos = indexOf(aBody, delimiter, 0);
+        if (pos == -1) {
+            throw new IOException("Multipart body does not contain boundary");
+        }
+        pos += delimiter.length;
+        
+        // The last delimiter is followed by "--" while all others are followed by a line break
+        while (!startsWith(aBody, pos, "--".getBytes(US_ASCII))) {
+            if (!startsWith(aBody, pos, CRLF)) {
+                throw new IOException("Malformed multipart body at offset " + pos);
+            }
+            
+            int headerEnd = indexOf(aBody, HEADER_END, pos);
+            if (headerEnd == -1) {
+                throw new IOException("Unterminated part header at offset " + pos);
+            }
+            
+            int start = headerEnd + HEADER_END.length;
+            int end = indexOf(aBody, innerDelimiter, start);
+            if (end == -1) {
+                throw new IOException("Unterminated part at offset " + start);
+            }
+            
+            parts.add(Arrays.copyOfRange(aBody, start, end));
+            pos = end + innerDelimiter.length;
+        }
+        
+        return parts;
+    }
+    
+    private static boolean startsWith(byte[] aData, int aOffset, byte[] aPrefix)
+    {
+        if (aOffset + aPrefix.length > aData.length) {
+            return false;
+        }
+        
+        for (int i = 0; i < aPrefix.length; i++) {
+            if (aData[aOffset + i] != aPrefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] aData, byte[] aPattern, int aFrom)
+    {
+        int last = aData.length - aPattern.length;
+        for (int i = aFrom; i <= last; i++) {
+            if (aData[i] == aPattern[0] && startsWith(aData, i, aPattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
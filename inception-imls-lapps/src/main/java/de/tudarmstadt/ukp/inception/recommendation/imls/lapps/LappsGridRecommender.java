@@ -77,7 +77,11 @@ public class LappsGridRecommender
             new DKPro2Lif().convert(aCas.getJCas(), container);
 
             String request = new Data<>(Discriminators.Uri.LIF, container).asJson();
-            String response = client.execute(request);
+            // The SOAP client is not thread-safe, but documents may be predicted in parallel
+            String response;
+            synchronized (client) {
+                response = client.execute(request);
+            }
 
             DataContainer result = Serializer.parse(response, DataContainer.class);
             
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.opennlp;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+
+/**
+ * Applies a sequence tagger to a list of sentences using several worker threads. The OpenNLP
+ * models are immutable and can be shared, but the {@code *ME} taggers wrapping them keep
+ * per-sentence state (beam search caches, adaptive feature data) and must not be used
+ * concurrently. Thus, every worker obtains its own tagger from the given supplier and processes a
+ * contiguous partition of the sentences with it.
+ * <p>
+ * The tagger is only invoked on the worker threads - it must not access the CAS. Callers extract
+ * the tokens from the CAS first and write the returned results back to the CAS on the calling
+ * thread afterwards.
+ */
+public final class ParallelSentenceTagger
+{
+    /**
+     * Maximum number of workers shared by all taggers. Tagging is CPU-bound, so more workers than
+     * processors would not help.
+     */
+    public static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private static final ExecutorService EXECUTOR = createExecutor();
+
+    private ParallelSentenceTagger()
+    {
+        // No instances
+    }
+
+    /**
+     * @param aSentences
+     *            the token texts of each sentence.
+     * @param aParallelism
+     *            the maximum number of workers. If this is {@code 1} or less, all sentences are
+     *            tagged on the calling thread. The workers are taken from a pool shared by all
+     *            callers which has at most {@link #MAX_THREADS} threads.
+     * @param aTaggerFactory
+     *            creates a tagger for a worker.
+     * @param aTagFunction
+     *            applies the tagger to a single sentence.
+     * @return the results in the order of the sentences.
+     */
+    public static <T, R> List<R> tag(List<String[]> aSentences, int aParallelism,
+            Supplier<T> aTaggerFactory, BiFunction<T, String[], R> aTagFunction)
+        throws RecommendationException
+    {
+        int sentenceCount = aSentences.size();
+        int workerCount = Math.min(Math.min(aParallelism, MAX_THREADS), sentenceCount);
+
+        @SuppressWarnings("unchecked")
+        R[] results = (R[]) new Object[sentenceCount];
+
+        if (workerCount <= 1) {
+            tagPartition(aSentences, 0, sentenceCount, aTaggerFactory, aTagFunction, results);
+            return asList(results);
+        }
+
+        int partitionSize = (sentenceCount + workerCount - 1) / workerCount;
+        List<Future<?>> workers = new ArrayList<>();
+        try {
+            for (int begin = 0; begin < sentenceCount; begin += partitionSize) {
+                int from = begin;
+                int to = Math.min(begin + partitionSize, sentenceCount);
+                workers.add(EXECUTOR.submit(() -> tagPartition(aSentences, from, to,
+                        aTaggerFactory, aTagFunction, results)));
+            }
+
+            // Waiting on the futures also guarantees that the writes to the results array made
+            // by the workers are visible to the calling thread.
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RecommendationException("Interrupted while tagging sentences", e);
+        }
+        catch (ExecutionException e) {
+            throw new RecommendationException("Error while tagging sentences", e.getCause());
+        }
+        finally {
+            workers.forEach(worker -> worker.cancel(true));
+        }
+
+        return asList(results);
+    }
+
+    private static ExecutorService createExecutor()
+    {
+        // Idle workers are stopped so the pool does not hold on to threads while no tagging is
+        // going on
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 60,
+                SECONDS, new LinkedBlockingQueue<>(), new BasicThreadFactory.Builder()
+                        .namingPattern("opennlp-tagger-%d")
+                        .daemon(true)
+                        .build());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static <T, R> void tagPartition(List<String[]> aSentences, int aBegin, int aEnd,
+            Supplier<T> aTaggerFactory, BiFunction<T, String[], R> aTagFunction, R[] aResults)
+    {
+        T tagger = aTaggerFactory.get();
+        for (int i = aBegin; i < aEnd; i++) {
+            aResults[i] = aTagFunction.apply(tagger, aSentences.get(i));
+        }
+    }
+}
@@ -49,6 +49,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext.Key;
+import de.tudarmstadt.ukp.inception.recommendation.imls.opennlp.ParallelSentenceTagger;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
@@ -120,8 +121,6 @@ public class OpenNlpNerRecommender
         TokenNameFinderModel model = aContext.get(KEY_MODEL).orElseThrow(() -> 
                 new RecommendationException("Key [" + KEY_MODEL + "] not found in context"));
         
-        NameFinderME finder = new NameFinderME(model);
-
         Type sentenceType = getType(aCas, Sentence.class);
         Type tokenType = getType(aCas, Token.class);
         Type predictedType = getPredictedType(aCas);
@@ -130,19 +129,31 @@ public class OpenNlpNerRecommender
         Feature isPredictionFeature = getIsPredictionFeature(aCas);
         Feature scoreFeature = getScoreFeature(aCas);
 
-        int predictionCount = 0;
+        // The CAS is not thread-safe, so we first collect the tokens of all sentences here, tag
+        // them in parallel and then add the predictions to the CAS again on this thread.
+        List<List<AnnotationFS>> sentenceTokens = new ArrayList<>();
+        List<String[]> sentenceTexts = new ArrayList<>();
         for (AnnotationFS sentence : select(aCas, sentenceType)) {
-            if (predictionCount >= traits.getPredictionLimit()) {
+            if (sentenceTokens.size() >= traits.getPredictionLimit()) {
                 break;
             }
-            predictionCount++;
-            
+
             List<AnnotationFS> tokenAnnotations = selectCovered(tokenType, sentence);
-            String[] tokens = tokenAnnotations.stream()
+            sentenceTokens.add(tokenAnnotations);
+            sentenceTexts.add(tokenAnnotations.stream()
                 .map(AnnotationFS::getCoveredText)
-                .toArray(String[]::new);
+                .toArray(String[]::new));
+        }
+
+        // The model is shared by all workers, but each worker needs its own finder
+        List<Span[]> sentencePredictions = ParallelSentenceTagger.tag(sentenceTexts,
+                traits.getPredictionThreads(), () -> new NameFinderME(model),
+                NameFinderME::find);
+
+        for (int s = 0; s < sentenceTokens.size(); s++) {
+            List<AnnotationFS> tokenAnnotations = sentenceTokens.get(s);
 
-            for (Span prediction : finder.find(tokens)) {
+            for (Span prediction : sentencePredictions.get(s)) {
                 String label = prediction.getType();
                 if (NameSample.DEFAULT_TYPE.equals(label)) {
                     continue;
@@ -23,6 +23,7 @@ import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.TOKENS;
 import static java.util.Arrays.asList;
 
 import org.apache.uima.cas.CAS;
+import org.apache.wicket.model.IModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -30,6 +31,7 @@ import org.springframework.stereotype.Component;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.AbstractTraitsEditor;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactoryImplBase;
 
@@ -53,8 +55,7 @@ public class OpenNlpNerRecommenderFactory
     @Override
     public RecommendationEngine build(Recommender aRecommender) 
     {
-        OpenNlpNerRecommenderTraits traits = new OpenNlpNerRecommenderTraits();
-        return new OpenNlpNerRecommender(aRecommender, traits);
+        return new OpenNlpNerRecommender(aRecommender, readTraits(aRecommender));
     }
 
     @Override
@@ -75,6 +76,12 @@ public class OpenNlpNerRecommenderFactory
                 && (CAS.TYPE_NAME_STRING.equals(aFeature.getType()) || aFeature.isVirtualFeature());
     }
 
+    @Override
+    public AbstractTraitsEditor createTraitsEditor(String aId, IModel<Recommender> aModel)
+    {
+        return new OpenNlpNerRecommenderTraitsEditor(aId, aModel);
+    }
+
     @Override
     public OpenNlpNerRecommenderTraits createTraits()
     {
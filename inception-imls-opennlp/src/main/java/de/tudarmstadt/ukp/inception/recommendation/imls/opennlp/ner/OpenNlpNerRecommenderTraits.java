@@ -31,6 +31,7 @@ public class OpenNlpNerRecommenderTraits
 
     private int trainingSetSizeLimit = Integer.MAX_VALUE;
     private int predictionLimit = Integer.MAX_VALUE;
+    private int predictionThreads = 1;
     
     private int numThreads = 1;
 
@@ -64,6 +65,20 @@ public class OpenNlpNerRecommenderTraits
         predictionLimit = aPredictionLimit;
     }
 
+    /**
+     * @return the number of worker threads used to tag the sentences of a document in parallel
+     *         during prediction.
+     */
+    public int getPredictionThreads()
+    {
+        return Math.max(1, predictionThreads);
+    }
+
+    public void setPredictionThreads(int aPredictionThreads)
+    {
+        predictionThreads = aPredictionThreads;
+    }
+
     @JsonIgnore
     public TrainingParameters getParameters()
     {
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.opennlp.ner;
+
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.NumberTextField;
+import org.apache.wicket.model.CompoundPropertyModel;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.spring.injection.annot.SpringBean;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.DefaultTrainableRecommenderTraitsEditor;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.imls.opennlp.ParallelSentenceTagger;
+
+public class OpenNlpNerRecommenderTraitsEditor
+    extends DefaultTrainableRecommenderTraitsEditor
+{
+    private static final long serialVersionUID = -2870937716367148402L;
+
+    private static final String MID_FORM = "form";
+
+    private @SpringBean RecommendationEngineFactory<OpenNlpNerRecommenderTraits> toolFactory;
+    
+    private final OpenNlpNerRecommenderTraits traits;
+
+    public OpenNlpNerRecommenderTraitsEditor(String aId, IModel<Recommender> aRecommender)
+    {
+        super(aId, aRecommender);
+        
+        traits = toolFactory.readTraits(aRecommender.getObject());
+
+        Form<OpenNlpNerRecommenderTraits> form = new Form<OpenNlpNerRecommenderTraits>(
+                MID_FORM, new CompoundPropertyModel<>(traits))
+        {
+            private static final long serialVersionUID = 5817440918301526732L;
+
+            @Override
+            protected void onSubmit()
+            {
+                super.onSubmit();
+                toolFactory.writeTraits(aRecommender.getObject(), traits);
+            }
+        };
+
+        NumberTextField<Integer> predictionThreads = new NumberTextField<>("predictionThreads",
+                Integer.class);
+        predictionThreads.setMinimum(1);
+        predictionThreads.setMaximum(ParallelSentenceTagger.MAX_THREADS);
+        form.add(predictionThreads);
+
+        add(form);
+    }
+}
@@ -52,6 +52,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.recommender.Recommendatio
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext.Key;
+import de.tudarmstadt.ukp.inception.recommendation.imls.opennlp.ParallelSentenceTagger;
 import opennlp.tools.ml.BeamSearch;
 import opennlp.tools.postag.POSModel;
 import opennlp.tools.postag.POSSample;
@@ -119,8 +120,6 @@ public class OpenNlpPosRecommender
         POSModel model = aContext.get(KEY_MODEL).orElseThrow(() -> 
                 new RecommendationException("Key [" + KEY_MODEL + "] not found in context"));
         
-        POSTaggerME tagger = new POSTaggerME(model);
-
         Type sentenceType = getType(aCas, Sentence.class);
         Type predictedType = getPredictedType(aCas);
         Type tokenType = getType(aCas, Token.class);
@@ -129,19 +128,30 @@ public class OpenNlpPosRecommender
         Feature predictedFeature = getPredictedFeature(aCas);
         Feature isPredictionFeature = getIsPredictionFeature(aCas);
 
-        int predictionCount = 0;
+        // The CAS is not thread-safe, so we first collect the tokens of all sentences here, tag
+        // them in parallel and then add the predictions to the CAS again on this thread.
+        List<List<AnnotationFS>> sentenceTokens = new ArrayList<>();
+        List<String[]> sentenceTexts = new ArrayList<>();
         for (AnnotationFS sentence : select(aCas, sentenceType)) {
-            if (predictionCount >= traits.getPredictionLimit()) {
+            if (sentenceTokens.size() >= traits.getPredictionLimit()) {
                 break;
             }
-            predictionCount++;
-            
+
             List<AnnotationFS> tokenAnnotations = selectCovered(tokenType, sentence);
-            String[] tokens = tokenAnnotations.stream()
+            sentenceTokens.add(tokenAnnotations);
+            sentenceTexts.add(tokenAnnotations.stream()
                 .map(AnnotationFS::getCoveredText)
-                .toArray(String[]::new);
+                .toArray(String[]::new));
+        }
+
+        // The model is shared by all workers, but each worker needs its own tagger
+        List<Sequence[]> sentencePredictions = ParallelSentenceTagger.tag(sentenceTexts,
+                traits.getPredictionThreads(), () -> new POSTaggerME(model),
+                POSTaggerME::topKSequences);
 
-            Sequence[] bestSequences = tagger.topKSequences(tokens);
+        for (int n = 0; n < sentenceTokens.size(); n++) {
+            List<AnnotationFS> tokenAnnotations = sentenceTokens.get(n);
+            Sequence[] bestSequences = sentencePredictions.get(n);
 
 //            LOG.debug("Total number of sequences predicted: {}", bestSequences.length);
 
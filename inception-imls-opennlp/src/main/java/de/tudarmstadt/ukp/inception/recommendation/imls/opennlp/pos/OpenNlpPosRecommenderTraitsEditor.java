@@ -26,6 +26,7 @@ import org.apache.wicket.spring.injection.annot.SpringBean;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.DefaultTrainableRecommenderTraitsEditor;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.imls.opennlp.ParallelSentenceTagger;
 
 public class OpenNlpPosRecommenderTraitsEditor
     extends DefaultTrainableRecommenderTraitsEditor
@@ -62,6 +63,12 @@ public class OpenNlpPosRecommenderTraitsEditor
         iterations.setMinimum(1.0);
         iterations.setMaximum(100.0);
         form.add(iterations);
+        
+        NumberTextField<Integer> predictionThreads = new NumberTextField<>("predictionThreads",
+                Integer.class);
+        predictionThreads.setMinimum(1);
+        predictionThreads.setMaximum(ParallelSentenceTagger.MAX_THREADS);
+        form.add(predictionThreads);
 
         add(form);
     }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.opennlp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+
+public class ParallelSentenceTaggerTest
+{
+    @Test
+    public void thatResultsAreReturnedInSentenceOrder() throws Exception
+    {
+        List<String[]> sentences = sentences(100);
+
+        List<String> results = ParallelSentenceTagger.tag(sentences, 4, Object::new,
+            (tagger, sentence) -> String.join(" ", sentence));
+
+        assertThat(results).hasSize(100);
+        for (int i = 0; i < results.size(); i++) {
+            assertThat(results.get(i)).isEqualTo("sentence " + i);
+        }
+    }
+
+    @Test
+    public void thatEachWorkerUsesItsOwnTagger() throws Exception
+    {
+        Set<Object> taggers = ConcurrentHashMap.newKeySet();
+        Set<Object> taggerThreads = ConcurrentHashMap.newKeySet();
+
+        ParallelSentenceTagger.tag(sentences(100), 4, Object::new, (tagger, sentence) -> {
+            taggers.add(tagger);
+            taggerThreads.add(tagger + "@" + Thread.currentThread().getName());
+            return sentence.length;
+        });
+
+        int workers = Math.min(4, ParallelSentenceTagger.MAX_THREADS);
+        assertThat(taggers).hasSize(workers);
+        assertThat(taggerThreads)
+            .as("A tagger is never used by more than one thread")
+            .hasSize(workers);
+    }
+
+    @Test
+    public void thatNumberOfWorkersIsBounded() throws Exception
+    {
+        Set<Object> taggers = ConcurrentHashMap.newKeySet();
+
+        ParallelSentenceTagger.tag(sentences(1000), ParallelSentenceTagger.MAX_THREADS * 4,
+            Object::new, (tagger, sentence) -> taggers.add(tagger));
+
+        assertThat(taggers).hasSize(ParallelSentenceTagger.MAX_THREADS);
+    }
+
+    @Test
+    public void thatSingleThreadTagsOnCallingThread() throws Exception
+    {
+        Thread caller = Thread.currentThread();
+
+        List<Boolean> results = ParallelSentenceTagger.tag(sentences(10), 1, Object::new,
+            (tagger, sentence) -> Thread.currentThread() == caller);
+
+        assertThat(results).containsOnly(true);
+    }
+
+    @Test
+    public void thatWorkerFailureIsReported()
+    {
+        assertThatThrownBy(() -> ParallelSentenceTagger.tag(sentences(10), 2, Object::new,
+            (tagger, sentence) -> {
+                throw new IllegalStateException("boom");
+            }))
+            .isInstanceOf(RecommendationException.class)
+            .hasCauseInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<String[]> sentences(int aCount)
+    {
+        List<String[]> sentences = new ArrayList<>();
+        for (int i = 0; i < aCount; i++) {
+            sentences.add(new String[] { "sentence", String.valueOf(i) });
+        }
+        return sentences;
+    }
+}
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.opennlp.pos;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
 import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
 import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -106,6 +107,33 @@ public class OpenNlpPosRecommenderTest
             .isNotEmpty();
     }
 
+    @Test
+    public void thatParallelPredictionMatchesSequentialPrediction() throws Exception
+    {
+        CAS sequentialCas = loadDevelopmentData().get(0);
+        CAS parallelCas = loadDevelopmentData().get(0);
+        try (CasStorageSession session = CasStorageSession.open()) {
+            session.add("sequentialCas", EXCLUSIVE_WRITE_ACCESS, sequentialCas);
+            session.add("parallelCas", EXCLUSIVE_WRITE_ACCESS, parallelCas);
+            RecommenderTestHelper.addScoreFeature(sequentialCas, POS.class, "PosValue");
+            RecommenderTestHelper.addScoreFeature(parallelCas, POS.class, "PosValue");
+        }
+
+        new OpenNlpPosRecommender(recommender, traits).train(context, asList(sequentialCas));
+
+        traits.setPredictionThreads(1);
+        new OpenNlpPosRecommender(recommender, traits).predict(context, sequentialCas);
+
+        traits.setPredictionThreads(4);
+        new OpenNlpPosRecommender(recommender, traits).predict(context, parallelCas);
+
+        assertThat(describe(RecommenderTestHelper.getPredictions(parallelCas, POS.class)))
+            .as("Parallel prediction yields the same predictions in the same order")
+            .isNotEmpty()
+            .containsExactlyElementsOf(
+                    describe(RecommenderTestHelper.getPredictions(sequentialCas, POS.class)));
+    }
+
     @Test
     public void thatEvaluationWorks() throws Exception
     {
@@ -150,6 +178,13 @@ public class OpenNlpPosRecommenderTest
         }
     }
 
+    private static List<String> describe(List<POS> aPredictions)
+    {
+        return aPredictions.stream()
+            .map(p -> p.getBegin() + "-" + p.getEnd() + ":" + p.getPosValue())
+            .collect(toList());
+    }
+
     private List<CAS> loadAllData() throws IOException, UIMAException
     {
         Dataset ds = loader.load("gum-en-conll-3.0.0");
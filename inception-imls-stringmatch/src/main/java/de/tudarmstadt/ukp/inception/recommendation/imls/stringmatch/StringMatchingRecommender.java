@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch;
 
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.CHARACTERS;
 import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
 import static java.util.Comparator.comparingInt;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotEmpty;
@@ -27,7 +28,11 @@ import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
@@ -49,10 +54,13 @@ import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.EvaluationResult;
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.LabelPair;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.IncrementalTrainingSupport;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.OnlineLearningSupport;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext.Key;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.TrainingDataDelta;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.gazeteer.GazeteerService;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazeteer;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
@@ -61,8 +69,16 @@ import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie.Whitesp
 
 public class StringMatchingRecommender
     extends RecommendationEngine
+    implements IncrementalTrainingSupport<List<GazeteerEntry>>, OnlineLearningSupport
 {
     public static final Key<Trie<DictEntry>> KEY_MODEL = new Key<>("model");
+    
+    /**
+     * The gazeteers used by the model. Their compiled form is obtained from the
+     * {@link GazeteerService} which shares it between all users of the recommender - only the
+     * gazeteer entities are kept in the context.
+     */
+    public static final Key<List<Gazeteer>> KEY_GAZETEERS = new Key<>("gazeteers");
 
     private static final String UNKNOWN_LABEL = "unknown";
     private static final String NO_LABEL = "O";
@@ -111,33 +127,78 @@ public class StringMatchingRecommender
         return new Trie<>(WhitespaceNormalizingSanitizer.factory());
     }
     
+    private Trie<DictEntry> compileGazeteer(List<GazeteerEntry> aData)
+    {
+        Trie<DictEntry> dict = createTrie();
+        for (GazeteerEntry entry : aData) {
+            learn(dict, entry.text, entry.label);
+        }
+        return dict;
+    }
+    
     @Override
     public void train(RecommenderContext aContext, List<CAS> aCasses) throws RecommendationException
     {
-        // Pre-load the gazeteers into the model
+        List<List<GazeteerEntry>> trainingData = new ArrayList<>();
+        for (CAS cas : aCasses) {
+            List<GazeteerEntry> data = extractTrainingData(cas);
+            if (data != null) {
+                trainingData.add(data);
+            }
+        }
+        
+        trainOnExtractedData(aContext, trainingData);
+    }
+    
+    @Override
+    public List<GazeteerEntry> extractTrainingData(CAS aCas)
+    {
+        Type predictedType;
+        try {
+            predictedType = getPredictedType(aCas);
+        }
+        catch (IllegalArgumentException e) {
+            // If the CAS does not contain the target type at all, then it cannot contain any
+            // annotations of that type.
+            return null;
+        }
+        
+        Feature predictedFeature = predictedType.getFeatureByBaseName(featureName);
+        if (predictedFeature == null) {
+            return null;
+        }
+        
+        List<GazeteerEntry> data = new ArrayList<>();
+        for (AnnotationFS ann : select(aCas, predictedType)) {
+            data.add(new GazeteerEntry(ann.getCoveredText(),
+                    ann.getFeatureValueAsString(predictedFeature)));
+        }
+        
+        return data.isEmpty() ? null : data;
+    }
+    
+    @Override
+    public void trainOnExtractedData(RecommenderContext aContext,
+            List<List<GazeteerEntry>> aTrainingData)
+    {
+        // The gazeteers are not copied into the model. Instead, their shared compiled form is
+        // consulted next to the model during prediction. Loading them here makes sure that they
+        // are compiled before the first prediction.
         if (gazeteerService != null) {
+            List<Gazeteer> gazeteers = new ArrayList<>();
             for (Gazeteer gaz : gazeteerService.listGazeteers(recommender)) {
-                try {
-                    pretrain(gazeteerService.readGazeteerFile(gaz), aContext);
-                }
-                catch (IOException e) {
-                    log.info("Unable to load gazeteer [{}] for recommender [{}]({}) in project [{}]({})",
-                            gaz.getName(), gaz.getRecommender().getName(),
-                            gaz.getRecommender().getId(),
-                            gaz.getRecommender().getProject().getName(),
-                            gaz.getRecommender().getProject().getId(), e);
+                if (loadGazeteer(gaz) != null) {
+                    gazeteers.add(gaz);
                 }
             }
+            aContext.put(KEY_GAZETEERS, gazeteers);
         }
         
         Trie<DictEntry> dict = aContext.get(KEY_MODEL).orElseGet(this::createTrie);
         
-        for (CAS cas : aCasses) {
-            Type predictedType = getPredictedType(cas);
-            Feature predictedFeature = getPredictedFeature(cas);
-
-            for (AnnotationFS ann : select(cas, predictedType)) {
-                learn(dict, ann.getCoveredText(), ann.getFeatureValueAsString(predictedFeature));
+        for (List<GazeteerEntry> data : aTrainingData) {
+            for (GazeteerEntry entry : data) {
+                learn(dict, entry.text, entry.label);
             }
         }
         
@@ -146,6 +207,32 @@ public class StringMatchingRecommender
         log.debug("Learned dictionary model with {} entries", dict.size());
     }
 
+    @Override
+    public boolean update(RecommenderContext aContext, TrainingDataDelta aDelta)
+    {
+        Optional<Trie<DictEntry>> model = aContext.get(KEY_MODEL);
+        if (!model.isPresent()) {
+            return false;
+        }
+        
+        // The model may be used for prediction concurrently
+        Trie<DictEntry> dict = model.get();
+        synchronized (dict) {
+            for (TrainingDataDelta.Sample sample : aDelta.getRemoved()) {
+                unlearn(dict, sample.getText(), sample.getLabel());
+            }
+            
+            for (TrainingDataDelta.Sample sample : aDelta.getAdded()) {
+                learn(dict, sample.getText(), sample.getLabel());
+            }
+        }
+        
+        log.debug("Updated dictionary model with {} added and {} removed entries",
+                aDelta.getAdded().size(), aDelta.getRemoved().size());
+        
+        return true;
+    }
+
     @Override
     public void predict(RecommenderContext aContext, CAS aCas) throws RecommendationException
     {
@@ -157,7 +244,19 @@ public class StringMatchingRecommender
         Feature isPredictionFeature = getIsPredictionFeature(aCas);
         Feature scoreFeature = getScoreFeature(aCas);
 
-        List<Sample> data = predict(0, aCas, dict);
+        List<Trie<DictEntry>> dicts = new ArrayList<>();
+        for (Gazeteer gaz : aContext.get(KEY_GAZETEERS).orElse(emptyList())) {
+            Trie<DictEntry> gazDict = loadGazeteer(gaz);
+            if (gazDict != null) {
+                dicts.add(gazDict);
+            }
+        }
+
+        List<Sample> data;
+        synchronized (dict) {
+            dicts.add(dict);
+            data = predict(0, aCas, dicts);
+        }
         
         for (Sample sample : data) {
             for (Span span : sample.getSpans()) {
@@ -171,7 +270,22 @@ public class StringMatchingRecommender
         }
     }
 
-    private List<Sample> predict(int aDocNo, CAS aCas, Trie<DictEntry> aDict)
+    private Trie<DictEntry> loadGazeteer(Gazeteer aGaz)
+    {
+        try {
+            return gazeteerService.getCompiledGazeteer(aGaz, this::compileGazeteer);
+        }
+        catch (IOException e) {
+            log.info("Unable to load gazeteer [{}] for recommender [{}]({}) in project [{}]({})",
+                    aGaz.getName(), aGaz.getRecommender().getName(),
+                    aGaz.getRecommender().getId(),
+                    aGaz.getRecommender().getProject().getName(),
+                    aGaz.getRecommender().getProject().getId(), e);
+            return null;
+        }
+    }
+
+    private List<Sample> predict(int aDocNo, CAS aCas, List<Trie<DictEntry>> aDicts)
     {
         boolean requireEndAtTokenBoundary = !CHARACTERS
                 .equals(getRecommender().getLayer().getAnchoringMode());
@@ -183,32 +297,59 @@ public class StringMatchingRecommender
         
         List<Sample> data = new ArrayList<>();
         String text = aCas.getDocumentText();   
+        
+        // Match the whole document against each dictionary in a single pass
+        List<Trie<DictEntry>.Match[]> matches = new ArrayList<>();
+        for (Trie<DictEntry> dict : aDicts) {
+            matches.add(dict.longestMatches(text));
+        }
+        
+        BitSet tokenEnds = new BitSet(text.length() + 1);
+        if (requireEndAtTokenBoundary) {
+            for (Annotation token : aCas.<Annotation>select(tokenType)) {
+                tokenEnds.set(token.getEnd());
+            }
+        }
             
         for (Annotation sentence : aCas.<Annotation>select(sentenceType)) {
             List<Span> spans = new ArrayList<>();
             List<Annotation> tokens = aCas.<Annotation>select(tokenType).coveredBy(sentence)
                     .asList();
             for (Annotation token : tokens) {
-                Trie<DictEntry>.Node node = aDict.getNode(text, token.getBegin());
-                if (node != null) {
-                    int begin = token.getBegin();
-                    int end = begin + node.level;
-
+                int begin = token.getBegin();
+                int end = -1;
+                List<DictEntry> entries = new ArrayList<>();
+                
+                // Pick the longest match over all dictionaries. If several dictionaries contain
+                // it, their label counts are combined.
+                for (Trie<DictEntry>.Match[] dictMatches : matches) {
+                    Trie<DictEntry>.Match match = begin < dictMatches.length
+                            ? dictMatches[begin]
+                            : null;
+                    if (match == null || match.end < end) {
+                        continue;
+                    }
+                    if (match.end > end) {
+                        end = match.end;
+                        entries.clear();
+                    }
+                    entries.add(match.node.value);
+                }
+                
+                if (end != -1) {
                     // If the end is not in the same sentence as the start, skip
                     if (requireSingleSentence && !(end <= sentence.getEnd())) {
                         continue;
                     }
 
                     // Need to check that the match actually ends at a token boundary!
-                    if (
-                            requireEndAtTokenBoundary && 
-                            !aCas.<Annotation>select(tokenType).startAt(token)
-                                    .filter(t -> t.getEnd() == end).findAny().isPresent()
-                    ) {
+                    if (requireEndAtTokenBoundary && !tokenEnds.get(end)) {
                         continue;
                     }
                     
-                    for (LabelStats lc : node.value.getBest(maxRecommendations)) {
+                    DictEntry entry = entries.size() == 1 ? entries.get(0)
+                            : DictEntry.merge(entries);
+                    for (LabelStats lc : entry.getBest(maxRecommendations)) {
                         String label = lc.getLabel();
                         // check instance equality to avoid collision with user labels
                         if (label == UNKNOWN_LABEL) {
@@ -278,16 +419,26 @@ public class StringMatchingRecommender
 
         // Predict
         List<LabelPair> labelPairs = new ArrayList<>();
+        String matchedText = null;
+        Trie<DictEntry>.Match[] matches = null;
         for (Sample sample : testSet) {
+            // The samples of a document share the document text, so we only need to match the
+            // text again when we get to the next document
+            if (!sample.getText().equals(matchedText)) {
+                matchedText = sample.getText();
+                matches = dict.longestMatches(matchedText);
+            }
 
             for (TokenSpan token : sample.getTokens()) {
-                Trie<DictEntry>.Node node = dict.getNode(sample.getText(), token.getBegin());
+                Trie<DictEntry>.Match match = token.getBegin() < matches.length
+                        ? matches[token.getBegin()]
+                        : null;
                 int begin = token.getBegin();
                 int end = token.getEnd();
 
                 String predictedLabel = NO_LABEL;
-                if (node != null && sample.hasTokenEndingAt(token.getBegin() + node.level)) {
-                    List<LabelStats> labelStats = node.value.getBest(1);
+                if (match != null && sample.hasTokenEndingAt(match.end)) {
+                    List<LabelStats> labelStats = match.node.value.getBest(1);
                     if (!labelStats.isEmpty()) {
                         predictedLabel = labelStats.get(0).getLabel();
                     }
@@ -319,6 +470,22 @@ public class StringMatchingRecommender
 
     }
     
+    private void unlearn(Trie<DictEntry> aDict, String aText, String aLabel)
+    {
+        String label = isBlank(aLabel) ? UNKNOWN_LABEL : aLabel;
+
+        DictEntry entry = aDict.get(aText);
+        if (entry != null) {
+            entry.remove(label);
+            
+            // An entry without labels would otherwise still win the longest match and hide
+            // any shorter entries
+            if (entry.isEmpty()) {
+                aDict.remove(aText);
+            }
+        }
+    }
+    
     private List<Sample> extractData(List<CAS> aCasses, String aLayerName, String aFeatureName)
     {
         long start = System.currentTimeMillis();
@@ -515,7 +682,10 @@ public class StringMatchingRecommender
     }
     
     private static class DictEntry
+        implements Serializable
     {
+        private static final long serialVersionUID = -1372404627738339407L;
+
         private String key;
         private String[] labels;
         private int[] counts;
@@ -525,12 +695,33 @@ public class StringMatchingRecommender
             key = aKey;
         }
         
+        public static DictEntry merge(List<DictEntry> aEntries)
+        {
+            DictEntry merged = new DictEntry(aEntries.get(0).key);
+            merged.labels = new String[0];
+            merged.counts = new int[0];
+            for (DictEntry entry : aEntries) {
+                if (entry.labels == null) {
+                    continue;
+                }
+                for (int i = 0; i < entry.labels.length; i++) {
+                    merged.put(entry.labels[i], entry.counts[i]);
+                }
+            }
+            return merged;
+        }
+        
         public void put(String aLabel)
+        {
+            put(aLabel, 1);
+        }
+        
+        private void put(String aLabel, int aCount)
         {
             // No data yet - create it
             if (labels == null) {
                 labels = new String[] { aLabel };
-                counts = new int[] { 1 };
+                counts = new int[] { aCount };
                 return;
             }
             
@@ -539,7 +730,7 @@ public class StringMatchingRecommender
             
             // Label already exists
             if (i != -1) {
-                counts[i]++;
+                counts[i] += aCount;
                 return;
             }
             
@@ -553,7 +744,42 @@ public class StringMatchingRecommender
             counts = newCounts;
             
             labels[labels.length - 1] = aLabel;
-            counts[counts.length - 1] = 1;
+            counts[counts.length - 1] = aCount;
+        }
+        
+        public void remove(String aLabel)
+        {
+            if (labels == null) {
+                return;
+            }
+            
+            int i = asList(labels).indexOf(aLabel);
+            
+            // Label does not exist
+            if (i == -1) {
+                return;
+            }
+            
+            counts[i]--;
+            if (counts[i] > 0) {
+                return;
+            }
+            
+            // Label not observed anymore - drop it
+            String[] newLabels = new String[labels.length - 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(labels, i + 1, newLabels, i, labels.length - i - 1);
+            labels = newLabels;
+            
+            int[] newCounts = new int[counts.length - 1];
+            System.arraycopy(counts, 0, newCounts, 0, i);
+            System.arraycopy(counts, i + 1, newCounts, i, counts.length - i - 1);
+            counts = newCounts;
+        }
+        
+        public boolean isEmpty()
+        {
+            return labels == null || labels.length == 0;
         }
         
         public List<LabelStats> getBest(int aN)
@@ -571,6 +797,40 @@ public class StringMatchingRecommender
                     .collect(Collectors.toList());
         }
         
+        private void writeObject(ObjectOutputStream aOut) throws IOException
+        {
+            // The unknown label is recognized by instance equality which does not survive
+            // serialization, so it is written as null (which is otherwise never used as label)
+            String[] serializedLabels = labels != null ? labels.clone() : new String[0];
+            for (int i = 0; i < serializedLabels.length; i++) {
+                if (serializedLabels[i] == UNKNOWN_LABEL) {
+                    serializedLabels[i] = null;
+                }
+            }
+            
+            aOut.writeObject(key);
+            aOut.writeObject(serializedLabels);
+            aOut.writeObject(counts);
+        }
+
+        private void readObject(ObjectInputStream aIn) throws IOException, ClassNotFoundException
+        {
+            key = (String) aIn.readObject();
+            labels = (String[]) aIn.readObject();
+            counts = (int[]) aIn.readObject();
+            
+            if (counts == null) {
+                labels = null;
+                return;
+            }
+            
+            for (int i = 0; i < labels.length; i++) {
+                if (labels[i] == null) {
+                    labels[i] = UNKNOWN_LABEL;
+                }
+            }
+        }
+        
         @Override
         public String toString()
         {
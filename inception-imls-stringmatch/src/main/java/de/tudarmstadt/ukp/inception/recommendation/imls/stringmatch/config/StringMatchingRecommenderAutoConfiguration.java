@@ -33,6 +33,7 @@ import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.gazeteer.Gaz
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.gazeteer.GazeteerServiceImpl;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.ner.StringMatchingNerClassificationToolFactory;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.pos.StringMatchingPosClassificationToolFactory;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderModelStore;
 
 @Configuration
 @ConditionalOnBean(RecommendationService.class)
@@ -50,9 +51,11 @@ public class StringMatchingRecommenderAutoConfiguration
     
     @Bean
     @Autowired
-    public GazeteerService gazeteerService(RepositoryProperties aRepositoryProperties)
+    public GazeteerService gazeteerService(RepositoryProperties aRepositoryProperties,
+            RecommenderModelStore aRecommenderModelStore)
     {
-        return new GazeteerServiceImpl(aRepositoryProperties, entityManager);
+        return new GazeteerServiceImpl(aRepositoryProperties, entityManager,
+                aRecommenderModelStore);
     }
     
     @Bean
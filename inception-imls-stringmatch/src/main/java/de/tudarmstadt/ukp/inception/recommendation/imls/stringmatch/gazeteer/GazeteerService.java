@@ -20,11 +20,14 @@ package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.gazeteer;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
 import java.util.List;
+import java.util.function.Function;
 
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazeteer;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
+import de.tudarmstadt.ukp.inception.recommendation.service.ModelInputStream;
 
 public interface GazeteerService
 {
@@ -59,5 +62,20 @@ public interface GazeteerService
      */
     List<GazeteerEntry> readGazeteerFile(Gazeteer aGaz) throws IOException;
 
+    /**
+     * Loads the compiled form of the gazeteer. The compiled form is built from the gazeteer
+     * entries using the given compiler and stored next to the gazeteer file, so it only needs to
+     * be built again when a new gazeteer file is imported. Compiled gazeteers are also cached in
+     * memory and shared between all callers - they must not be modified.
+     * <p>
+     * All callers are expected to use a compiler producing the same kind of object. Compiled
+     * gazeteers are loaded through a {@link ModelInputStream}, so the compiled form may only
+     * consist of classes which are permitted in stored models. Otherwise, the gazeteer is
+     * compiled again every time it is loaded.
+     */
+    <T extends Serializable> T getCompiledGazeteer(Gazeteer aGaz,
+            Function<List<GazeteerEntry>, T> aCompiler)
+        throws IOException;
+
     boolean existsGazeteer(Recommender aRecommender, String aName);
 }
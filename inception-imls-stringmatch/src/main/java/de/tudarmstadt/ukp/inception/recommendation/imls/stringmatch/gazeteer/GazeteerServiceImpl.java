@@ -18,16 +18,29 @@
 package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.gazeteer;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 import static org.apache.commons.lang3.StringUtils.trimToNull;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 import javax.persistence.EntityManager;
 
@@ -46,6 +59,8 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.config.StringMatchingRecommenderAutoConfiguration;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazeteer;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
+import de.tudarmstadt.ukp.inception.recommendation.service.ModelInputStream;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderModelStore;
 
 /**
  * <p>
@@ -56,18 +71,36 @@ import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.Gazete
 public class GazeteerServiceImpl
     implements GazeteerService
 {
+    private static final String COMPILED_FILE_SUFFIX = ".bin";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    
+    // Increase when the layout of the compiled gazeteer files changes
+    private static final int COMPILED_FORMAT_VERSION = 1;
+    
     private final Logger log = LoggerFactory.getLogger(getClass());
     
+    private final Map<Long, CompiledGazeteer> compiledGazeteers = new ConcurrentHashMap<>();
+    private final Map<Long, Object> compileLocks = new ConcurrentHashMap<>();
+    
     private final EntityManager entityManager;
     
     private final RepositoryProperties repositoryProperties;
     
-    @Autowired
+    private final RecommenderModelStore modelStore;
+    
     public GazeteerServiceImpl(RepositoryProperties aRepositoryProperties,
             EntityManager aEntityManager)
+    {
+        this(aRepositoryProperties, aEntityManager, null);
+    }
+    
+    @Autowired
+    public GazeteerServiceImpl(RepositoryProperties aRepositoryProperties,
+            EntityManager aEntityManager, RecommenderModelStore aModelStore)
     {
         repositoryProperties = aRepositoryProperties;
         entityManager = aEntityManager;
+        modelStore = aModelStore;
     }
     
     @Override
@@ -128,6 +161,9 @@ public class GazeteerServiceImpl
         try (OutputStream os = new FileOutputStream(gazFile)) {
             IOUtils.copyLarge(aStream, os);
         }
+        
+        invalidateCompiledGazeteer(aGazeteer);
+        invalidateStoredModels(aGazeteer);
     }
 
     @Override
@@ -153,6 +189,10 @@ public class GazeteerServiceImpl
             gaz.delete();
         }
         
+        invalidateCompiledGazeteer(aGazeteer);
+        invalidateStoredModels(aGazeteer);
+        compileLocks.remove(aGazeteer.getId());
+        
         try (MDC.MDCCloseable closable = MDC.putCloseable(Logging.KEY_PROJECT_ID,
                 String.valueOf(aGazeteer.getRecommender().getProject().getId()))) {
             log.info("Removed gazeteer [{}] from recommender [{}]({}) in project [{}]({})",
@@ -163,6 +203,33 @@ public class GazeteerServiceImpl
         }
     }
     
+    private File getCompiledGazeteerFile(Gazeteer aGazeteer) throws IOException
+    {
+        File gazFile = getGazeteerFile(aGazeteer);
+        return new File(gazFile.getParentFile(), aGazeteer.getId() + COMPILED_FILE_SUFFIX);
+    }
+    
+    private void invalidateCompiledGazeteer(Gazeteer aGazeteer) throws IOException
+    {
+        compiledGazeteers.remove(aGazeteer.getId());
+        
+        File compiledFile = getCompiledGazeteerFile(aGazeteer);
+        if (compiledFile.exists() && !compiledFile.delete()) {
+            log.warn("Unable to delete compiled gazeteer [{}]", compiledFile);
+        }
+    }
+    
+    /**
+     * Gazeteers are part of the trained model, so stored models are no longer valid when a
+     * gazeteer changes.
+     */
+    private void invalidateStoredModels(Gazeteer aGazeteer)
+    {
+        if (modelStore != null) {
+            modelStore.delete(aGazeteer.getRecommender());
+        }
+    }
+    
     @Override
     public List<GazeteerEntry> readGazeteerFile(Gazeteer aGaz)
         throws IOException
@@ -178,6 +245,96 @@ public class GazeteerServiceImpl
         return data;
     }
     
+    @Override
+    public <T extends Serializable> T getCompiledGazeteer(Gazeteer aGaz,
+            Function<List<GazeteerEntry>, T> aCompiler)
+        throws IOException
+    {
+        File gazFile = getGazeteerFile(aGaz);
+        if (!gazFile.exists()) {
+            throw new IOException("Gazeteer file [" + gazFile + "] does not exist");
+        }
+        
+        // The stamp is cheap to obtain and allows us to notice if the gazeteer file was replaced
+        // without going through this service
+        String stamp = gazFile.length() + "|" + gazFile.lastModified();
+        
+        CompiledGazeteer compiled = compiledGazeteers.get(aGaz.getId());
+        if (compiled == null || !compiled.stamp.equals(stamp)) {
+            // Compiling a large gazeteer takes a while - avoid doing it concurrently for the same
+            // gazeteer while still allowing different gazeteers to be compiled in parallel
+            synchronized (compileLocks.computeIfAbsent(aGaz.getId(), _id -> new Object())) {
+                compiled = compiledGazeteers.get(aGaz.getId());
+                if (compiled == null || !compiled.stamp.equals(stamp)) {
+                    compiled = new CompiledGazeteer(stamp,
+                            loadOrCompileGazeteer(aGaz, stamp, aCompiler));
+                    compiledGazeteers.put(aGaz.getId(), compiled);
+                }
+            }
+        }
+        
+        @SuppressWarnings("unchecked")
+        T model = (T) compiled.model;
+        return model;
+    }
+    
+    private <T extends Serializable> T loadOrCompileGazeteer(Gazeteer aGaz, String aStamp,
+            Function<List<GazeteerEntry>, T> aCompiler)
+        throws IOException
+    {
+        File compiledFile = getCompiledGazeteerFile(aGaz);
+        
+        if (compiledFile.exists()) {
+            long start = System.currentTimeMillis();
+            // Compiled gazeteers are read with the same class restrictions as stored models
+            try (ObjectInputStream is = new ModelInputStream(
+                    new BufferedInputStream(Files.newInputStream(compiledFile.toPath())))) {
+                if (is.readInt() == COMPILED_FORMAT_VERSION && aStamp.equals(is.readUTF())) {
+                    @SuppressWarnings("unchecked")
+                    T model = (T) is.readObject();
+                    
+                    log.debug("Loaded compiled gazeteer [{}]({}) ({} ms)", aGaz.getName(),
+                            aGaz.getId(), System.currentTimeMillis() - start);
+                    
+                    return model;
+                }
+            }
+            catch (IOException | ClassNotFoundException | ClassCastException e) {
+                // This happens e.g. if the model classes have changed in an incompatible way
+                // after an upgrade. The gazeteer is simply compiled again.
+                log.warn("Unable to load compiled gazeteer [{}]({}) - compiling it again",
+                        aGaz.getName(), aGaz.getId(), e);
+            }
+        }
+        
+        long start = System.currentTimeMillis();
+        T model = aCompiler.apply(readGazeteerFile(aGaz));
+        
+        File tempFile = new File(compiledFile.getParentFile(),
+                compiledFile.getName() + TEMP_FILE_SUFFIX);
+        try {
+            try (ObjectOutputStream os = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                os.writeInt(COMPILED_FORMAT_VERSION);
+                os.writeUTF(aStamp);
+                os.writeObject(model);
+            }
+            
+            move(tempFile.toPath(), compiledFile.toPath());
+        }
+        catch (IOException e) {
+            // The compiled gazeteer is still cached in memory, so we can carry on
+            log.warn("Unable to store compiled gazeteer [{}]({})", aGaz.getName(), aGaz.getId(),
+                    e);
+            tempFile.delete();
+        }
+        
+        log.debug("Compiled gazeteer [{}]({}) ({} ms)", aGaz.getName(), aGaz.getId(),
+                System.currentTimeMillis() - start);
+        
+        return model;
+    }
+    
     public void parseGazeteer(Gazeteer aGaz, InputStream aStream, List<GazeteerEntry> aTarget)
         throws IOException
     {
@@ -226,4 +383,26 @@ public class GazeteerServiceImpl
 
         return count > 0;
     }
+    
+    private static void move(Path aSource, Path aTarget) throws IOException
+    {
+        try {
+            Files.move(aSource, aTarget, ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(aSource, aTarget, REPLACE_EXISTING);
+        }
+    }
+    
+    private static class CompiledGazeteer
+    {
+        private final String stamp;
+        private final Object model;
+        
+        public CompiledGazeteer(String aStamp, Object aModel)
+        {
+            stamp = aStamp;
+            model = aModel;
+        }
+    }
 }
@@ -17,7 +17,14 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie;
 
+import java.io.Serializable;
+
+/**
+ * Factory for {@link KeySanitizer key sanitizers}. The factory is serializable so that a
+ * {@link Trie} using it can be serialized.
+ */
 public interface KeySanitizerFactory
+    extends Serializable
 {
     public KeySanitizer create();
 }
@@ -17,41 +17,146 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Array;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
 import java.util.Stack;
-import java.util.TreeMap;
 
 /**
- * A HashMap-based Trie. Zero-length or null keys are not allowed. Null values are allowed.
+ * A compact Trie. Zero-length or null keys are not allowed. Null values are allowed.
+ * <p>
+ * The children of a node are stored in a sorted {@code char} array alongside an array of child
+ * nodes, so lookups use a binary search and neither box characters nor allocate a map per node.
+ * <p>
+ * In addition to looking up keys at a given position, the trie can find the keys occurring in a
+ * text in a single pass using the Aho-Corasick algorithm (see {@link #longestMatches}). The
+ * failure links required for this are built lazily on the first such search after the structure
+ * of the trie has changed.
+ * <p>
+ * This class is not thread-safe. If the trie is modified while it is being searched, the caller
+ * must take care of the synchronization by locking the trie itself. Serialization acquires the
+ * same lock.
  *
  * @param <V>
  *            the value type.
  */
 public class Trie<V>
+    implements Serializable
 // implements Map<CharSequence, V>
 {
+    private static final long serialVersionUID = 1599268224584437092L;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Object[] NO_CHILDREN = new Object[0];
+
     private int size = 0;
     private KeySanitizerFactory sanitizerFactory;
 
+    // Whether the Aho-Corasick failure links are up-to-date. Not serialized, so the links are
+    // rebuilt after deserialization. A trained trie is shared between prediction threads, so the
+    // links are built under a lock and published via this volatile flag.
+    private transient volatile boolean linked = false;
+
     public class Node
+        implements Serializable
     {
-        final Map<Character, Node> children;
+        private static final long serialVersionUID = -8411838458071316262L;
+
+        // Sorted characters of the children and the corresponding child nodes
+        private char[] keys = NO_KEYS;
+        private Object[] children = NO_CHILDREN;
         public V value;
         public final int level;
         boolean set;
 
+        // Aho-Corasick failure link (longest proper suffix which is a path in the trie) and
+        // dictionary link (longest proper suffix which is a key in the trie)
+        transient Node failure;
+        transient Node output;
+
         Node(final int l)
         {
-            children = new TreeMap<Character, Node>();
             level = l;
             set = false;
         }
+
+        @SuppressWarnings("unchecked")
+        Node child(final char aChar)
+        {
+            int i = Arrays.binarySearch(keys, aChar);
+            return i >= 0 ? (Node) children[i] : null;
+        }
+
+        Node addChild(final char aChar)
+        {
+            int i = Arrays.binarySearch(keys, aChar);
+            if (i >= 0) {
+                return childAt(i);
+            }
+
+            int insert = -(i + 1);
+
+            char[] newKeys = new char[keys.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, insert);
+            System.arraycopy(keys, insert, newKeys, insert + 1, keys.length - insert);
+            newKeys[insert] = aChar;
+
+            Object[] newChildren = new Object[children.length + 1];
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(children, insert, newChildren, insert + 1,
+                    children.length - insert);
+            Node node = new Node(level + 1);
+            newChildren[insert] = node;
+
+            keys = newKeys;
+            children = newChildren;
+
+            return node;
+        }
+
+        int childCount()
+        {
+            return keys.length;
+        }
+
+        char keyAt(final int aIndex)
+        {
+            return keys[aIndex];
+        }
+
+        @SuppressWarnings("unchecked")
+        Node childAt(final int aIndex)
+        {
+            return (Node) children[aIndex];
+        }
+    }
+
+    /**
+     * The longest key found at a particular position of a text.
+     */
+    public class Match
+    {
+        public final int begin;
+        public final int end;
+        public final Node node;
+
+        Match(final int aBegin, final int aEnd, final Node aNode)
+        {
+            begin = aBegin;
+            end = aEnd;
+            node = aNode;
+        }
     }
 
     private Node root;
@@ -80,6 +185,7 @@ public class Trie<V>
     {
         root = new Node(0);
         size = 0;
+        linked = false;
     }
 
     /**
@@ -102,27 +208,20 @@ public class Trie<V>
             throw new IllegalArgumentException("Zero-length keys are illegal");
         }
 
-        // if (key.length() == 0) {
-        // V oldval = _root.value;
-        // _root.value = value;
-        // return oldval;
-        // }
-
         Node last = root;
-        int level = 1;
         for (int i = 0; i < key.length(); i++) {
             final char k = key.charAt(i);
-            Node cur = last.children.get(k);
+            Node cur = last.child(k);
             if (cur == null) {
-                cur = new Node(level);
-                last.children.put(k, cur);
+                cur = last.addChild(k);
+                linked = false;
             }
             last = cur;
-            level++;
         }
 
         if (!last.set) {
             size++;
+            linked = false;
         }
 
         final V oldval = last.value;
@@ -131,6 +230,40 @@ public class Trie<V>
         return oldval;
     }
 
+    /**
+     * Removes the value for the given key. The nodes of the key remain in the trie, but the key is
+     * no longer found by lookups or searches.
+     *
+     * @param aKey
+     *            the key.
+     * @return the old value.
+     * @see java.util.Map#remove(java.lang.Object)
+     */
+    public V remove(final CharSequence aKey)
+    {
+        CharSequence key = aKey;
+        
+        if (sanitizerFactory != null) {
+            key = sanitizerFactory.create().sanitize(key);
+        }
+        
+        Node last = root;
+        for (int i = 0; i < key.length() && last != null; i++) {
+            last = last.child(key.charAt(i));
+        }
+        
+        if (last == null || last == root || !last.set) {
+            return null;
+        }
+        
+        final V oldval = last.value;
+        last.value = null;
+        last.set = false;
+        size--;
+        linked = false;
+        return oldval;
+    }
+
     /**
      * Try to match the character sequence given in key against the trie starting at the given
      * offset in the key string.
@@ -168,7 +301,7 @@ public class Trie<V>
                 }
             }
 
-            final Node cur = last.children.get(k);
+            final Node cur = last.child(k);
             if (cur == null) {
                 break;
             }
@@ -237,7 +370,7 @@ public class Trie<V>
                 }
             }
             
-            final Node cur = last.children.get(k);
+            final Node cur = last.child(k);
             if (cur == null) {
                 break;
             }
@@ -272,6 +405,115 @@ public class Trie<V>
         return ((match != null) && match.set) ? match : null;
     }
 
+    /**
+     * Finds the keys occurring in the given text in a single pass over the text. For every
+     * position in the text at which at least one key starts, the longest such key is reported.
+     * This yields the same keys as calling {@link #getNode(CharSequence, int)} for every position
+     * of the text, but the effort is linear in the length of the text plus the number of keys
+     * found instead of the length of the text times the length of the longest key.
+     * <p>
+     * If the trie uses a {@link KeySanitizer}, the text is sanitized on the fly. The begin and end
+     * offsets of the matches always refer to the original text.
+     *
+     * @param aText
+     *            the text.
+     * @return an array with the same length as the text which contains at every position the
+     *         longest key starting at that position or {@code null} if no key starts there.
+     */
+    public Match[] longestMatches(final CharSequence aText)
+    {
+        link();
+
+        // Match is an inner class of a generic class, so we cannot create the array directly
+        @SuppressWarnings("unchecked")
+        Match[] matches = (Match[]) Array.newInstance(Match.class, aText.length());
+
+        KeySanitizer sanitizer = null;
+        if (sanitizerFactory != null) {
+            sanitizer = sanitizerFactory.create();
+        }
+
+        // The original offsets of the characters passed to the automaton. Since the sanitizer may
+        // skip characters, this allows us to map the matches back to the original text.
+        int[] offsets = new int[aText.length()];
+        int pos = 0;
+
+        Node state = root;
+        for (int i = 0; i < aText.length(); i++) {
+            char k = aText.charAt(i);
+
+            if (sanitizer != null) {
+                k = sanitizer.map(k);
+                if (k == KeySanitizer.SKIP_CHAR) {
+                    continue;
+                }
+            }
+
+            offsets[pos] = i;
+            pos++;
+
+            Node next = state.child(k);
+            while (next == null && state != root) {
+                state = state.failure;
+                next = state.child(k);
+            }
+            state = next != null ? next : root;
+
+            for (Node n = state.set ? state : state.output; n != null; n = n.output) {
+                int begin = offsets[pos - n.level];
+                Match m = matches[begin];
+                // Only keep the longest key starting at this position
+                if (m == null || m.end < i + 1) {
+                    matches[begin] = new Match(begin, i + 1, n);
+                }
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Builds the Aho-Corasick failure and dictionary links using a breadth-first traversal of
+     * the trie - the links of a node always point to a node with a lower level.
+     */
+    private synchronized void link()
+    {
+        if (linked) {
+            return;
+        }
+
+        Queue<Node> queue = new ArrayDeque<>();
+        root.failure = null;
+        root.output = null;
+        for (int i = 0; i < root.childCount(); i++) {
+            Node child = root.childAt(i);
+            child.failure = root;
+            child.output = null;
+            queue.add(child);
+        }
+
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            for (int i = 0; i < node.childCount(); i++) {
+                char k = node.keyAt(i);
+                Node child = node.childAt(i);
+
+                Node failure = node.failure;
+                Node target = failure.child(k);
+                while (target == null && failure != root) {
+                    failure = failure.failure;
+                    target = failure.child(k);
+                }
+
+                child.failure = target != null ? target : root;
+                child.output = child.failure.set ? child.failure : child.failure.output;
+                queue.add(child);
+            }
+        }
+
+        linked = true;
+    }
+
     public boolean containsKey(final Object key)
     {
         if (!(key instanceof CharSequence)) {
@@ -353,6 +595,15 @@ public class Trie<V>
         return size;
     }
 
+    /**
+     * Serializes the trie while holding its lock, so code which modifies the trie while
+     * synchronizing on it cannot change it while it is being written.
+     */
+    private synchronized void writeObject(ObjectOutputStream aOut) throws IOException
+    {
+        aOut.defaultWriteObject();
+    }
+
     public Collection<V> values()
     {
         final List<V> vals = new ArrayList<V>(size);
@@ -370,8 +621,8 @@ public class Trie<V>
             vals.add(cur.value);
         }
 
-        for (final Node n : cur.children.values()) {
-            values(n, vals);
+        for (int i = 0; i < cur.childCount(); i++) {
+            values(cur.childAt(i), vals);
         }
     }
 
@@ -380,9 +631,9 @@ public class Trie<V>
         final Set<String> vals = new HashSet<String>(size);
         final StringBuilder b = new StringBuilder();
 
-        for (final Character c : root.children.keySet()) {
+        for (int i = 0; i < root.childCount(); i++) {
             b.setLength(0);
-            keys(c, root.children.get(c), b, vals);
+            keys(root.keyAt(i), root.childAt(i), b, vals);
         }
         return vals;
     }
@@ -404,7 +655,7 @@ public class Trie<V>
      * @param vals
      *            the found key values.
      */
-    private void keys(final Character c, final Node n, final StringBuilder b,
+    private void keys(final char c, final Node n, final StringBuilder b,
             final Set<String> vals)
     {
         b.append(c);
@@ -413,9 +664,9 @@ public class Trie<V>
             vals.add(b.toString());
         }
 
-        for (final Character cc : n.children.keySet()) {
+        for (int i = 0; i < n.childCount(); i++) {
             b.setLength(n.level);
-            keys(cc, n.children.get(cc), b, vals);
+            keys(n.keyAt(i), n.childAt(i), b, vals);
         }
     }
 
@@ -429,20 +680,20 @@ public class Trie<V>
         {
             private final Character c;
             private final Node n;
-            private final Iterator<Character> i;
+            private int i;
             private boolean nodeDone;
 
             public Frame(final Character aChar, final Node aNode)
             {
                 c = aChar;
                 n = aNode;
-                i = aNode.children.keySet().iterator();
+                i = 0;
                 nodeDone = c == null || !n.set;
             }
 
             boolean hasNext()
             {
-                return i.hasNext() || !nodeDone;
+                return i < n.childCount() || !nodeDone;
             }
 
             void step()
@@ -456,8 +707,8 @@ public class Trie<V>
                 }
                 else {
                     // Render the children
-                    final Character c = i.next();
-                    final Frame f = new Frame(c, n.children.get(c));
+                    final Frame f = new Frame(n.keyAt(i), n.childAt(i));
+                    i++;
                     stack.add(f);
                     f.step();
                 }
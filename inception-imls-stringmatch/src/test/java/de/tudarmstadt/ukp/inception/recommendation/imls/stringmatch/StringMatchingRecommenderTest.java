@@ -25,6 +25,7 @@ import static java.util.Collections.emptyList;
 import static org.apache.uima.fit.factory.CollectionReaderFactory.createReader;
 import static org.apache.uima.fit.util.JCasUtil.select;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.api.Assumptions.assumeThat;
 import static org.dkpro.core.api.datasets.DatasetValidationPolicy.CONTINUE;
 
@@ -64,6 +65,7 @@ import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.IncrementalSpl
 import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.PercentageBasedSplitter;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.TrainingDataDelta;
 import de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.model.GazeteerEntry;
 import de.tudarmstadt.ukp.inception.support.test.recommendation.RecommenderTestHelper;
 
@@ -206,6 +208,107 @@ public class StringMatchingRecommenderTest
                 .contains("Smith .\nPeter");
     }
 
+    @Test
+    public void thatTrainingOnExtractedDataWorks() throws Exception
+    {
+        StringMatchingRecommender sut = new StringMatchingRecommender(recommender, traits);
+        
+        JCas jcas = JCasFactory.createJCas();
+        TokenBuilder<Token, Sentence> builder = new TokenBuilder<>(Token.class, Sentence.class);
+        builder.buildTokens(jcas, "John Smith works at ACME .\nACME hired John Smith .");
+        NamedEntity ne1 = new NamedEntity(jcas, 0, 10);
+        ne1.setValue("PER");
+        ne1.addToIndexes();
+        NamedEntity ne2 = new NamedEntity(jcas, 20, 24);
+        ne2.setValue("ORG");
+        ne2.addToIndexes();
+        CAS cas = jcas.getCas();
+        casStorageSession.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+        
+        JCas emptyJCas = JCasFactory.createJCas();
+        builder.buildTokens(emptyJCas, "Nothing to see here .");
+        
+        List<GazeteerEntry> data = sut.extractTrainingData(cas);
+        
+        assertThat(data).containsExactly(new GazeteerEntry("John Smith", "PER"),
+                new GazeteerEntry("ACME", "ORG"));
+        assertThat(sut.extractTrainingData(emptyJCas.getCas()))
+                .as("Document without annotations contains no training data")
+                .isNull();
+        
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        
+        sut.trainOnExtractedData(context, asList(data));
+        
+        sut.predict(context, cas);
+
+        assertThat(getPredictions(cas, NamedEntity.class))
+                .extracting(NamedEntity::getCoveredText, NamedEntity::getValue)
+                .contains(tuple("John Smith", "PER"), tuple("ACME", "ORG"));
+    }
+
+    @Test
+    public void thatOnlineUpdateWorks() throws Exception
+    {
+        StringMatchingRecommender sut = new StringMatchingRecommender(recommender, traits);
+        
+        sut.trainOnExtractedData(context,
+                asList(asList(new GazeteerEntry("ACME", "ORG"))));
+        
+        assertThat(sut.update(context, new TrainingDataDelta()
+                .added(0, 10, "John Smith", "PER")
+                .removed(20, 24, "ACME", "ORG")))
+                .isTrue();
+        
+        JCas jcas = JCasFactory.createJCas();
+        TokenBuilder<Token, Sentence> builder = new TokenBuilder<>(Token.class, Sentence.class);
+        builder.buildTokens(jcas, "John Smith works at ACME .");
+        CAS cas = jcas.getCas();
+        casStorageSession.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        
+        sut.predict(context, cas);
+        
+        assertThat(getPredictions(cas, NamedEntity.class))
+                .extracting(NamedEntity::getCoveredText, NamedEntity::getValue)
+                .containsExactly(tuple("John Smith", "PER"));
+    }
+    
+    @Test
+    public void thatShorterEntryIsFoundAfterLongerEntryHasBeenUnlearned() throws Exception
+    {
+        StringMatchingRecommender sut = new StringMatchingRecommender(recommender, traits);
+        
+        sut.trainOnExtractedData(context, asList(asList(new GazeteerEntry("ACME", "ORG"),
+                new GazeteerEntry("ACME Corp", "ORG"))));
+        
+        assertThat(sut.update(context, new TrainingDataDelta()
+                .removed(0, 9, "ACME Corp", "ORG")))
+                .isTrue();
+        
+        JCas jcas = JCasFactory.createJCas();
+        TokenBuilder<Token, Sentence> builder = new TokenBuilder<>(Token.class, Sentence.class);
+        builder.buildTokens(jcas, "ACME Corp is a company .");
+        CAS cas = jcas.getCas();
+        casStorageSession.add("cas", EXCLUSIVE_WRITE_ACCESS, cas);
+        RecommenderTestHelper.addScoreFeature(cas, NamedEntity.class, "value");
+        
+        sut.predict(context, cas);
+        
+        assertThat(getPredictions(cas, NamedEntity.class))
+                .extracting(NamedEntity::getCoveredText, NamedEntity::getValue)
+                .containsExactly(tuple("ACME", "ORG"));
+    }
+    
+    @Test
+    public void thatOnlineUpdateWithoutModelIsRejected() throws Exception
+    {
+        StringMatchingRecommender sut = new StringMatchingRecommender(recommender, traits);
+        
+        assertThat(sut.update(context, new TrainingDataDelta().added(0, 4, "ACME", "ORG")))
+                .isFalse();
+    }
+
     private CAS getTestCasNoLabelLabels() throws Exception
     {
         try {
@@ -32,8 +32,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 import javax.persistence.EntityManager;
 
@@ -211,6 +214,81 @@ public class GazeteerServiceImplTest
                 .isFalse();
     }
     
+    @Test
+    public void thatCompiledGazeteerIsReusedUntilGazeteerChanges() throws Exception
+    {
+        Gazeteer gaz = new Gazeteer("gaz", rec1);
+        sut.createOrUpdateGazeteer(gaz);
+        
+        try (InputStream is = toInputStream("John\tPER", UTF_8)) {
+            sut.importGazeteerFile(gaz, is);
+        }
+        
+        AtomicInteger compilations = new AtomicInteger();
+        Function<List<GazeteerEntry>, ArrayList<String>> compiler = entries -> {
+            compilations.incrementAndGet();
+            ArrayList<String> result = new ArrayList<>();
+            entries.forEach(e -> result.add(e.text + "/" + e.label));
+            return result;
+        };
+        
+        ArrayList<String> compiled = sut.getCompiledGazeteer(gaz, compiler);
+        assertThat(compiled).containsExactly("John/PER");
+        assertThat(sut.getCompiledGazeteer(gaz, compiler))
+                .describedAs("Compiled gazeteer is cached in memory")
+                .isSameAs(compiled);
+        
+        RepositoryProperties repoProps = new RepositoryProperties();
+        repoProps.setPath(temporaryFolder.getRoot());
+        GazeteerServiceImpl otherService = new GazeteerServiceImpl(repoProps,
+                testEntityManager.getEntityManager());
+        assertThat(otherService.getCompiledGazeteer(gaz, compiler))
+                .describedAs("Compiled gazeteer is loaded from disk")
+                .containsExactly("John/PER");
+        assertThat(compilations).hasValue(1);
+        
+        try (InputStream is = toInputStream("London\tLOC", UTF_8)) {
+            sut.importGazeteerFile(gaz, is);
+        }
+        
+        assertThat(sut.getCompiledGazeteer(gaz, compiler))
+                .describedAs("Gazeteer is compiled again after a new file has been imported")
+                .containsExactly("London/LOC");
+        assertThat(compilations).hasValue(2);
+    }
+    
+    @Test
+    public void thatCompiledGazeteerWithForbiddenClassIsCompiledAgain() throws Exception
+    {
+        Gazeteer gaz = new Gazeteer("gaz", rec1);
+        sut.createOrUpdateGazeteer(gaz);
+        
+        try (InputStream is = toInputStream("John\tPER", UTF_8)) {
+            sut.importGazeteerFile(gaz, is);
+        }
+        
+        // java.net is not among the packages permitted in compiled gazeteers
+        AtomicInteger compilations = new AtomicInteger();
+        Function<List<GazeteerEntry>, ArrayList<URI>> compiler = entries -> {
+            compilations.incrementAndGet();
+            ArrayList<URI> result = new ArrayList<>();
+            entries.forEach(e -> result.add(URI.create("urn:" + e.text + ":" + e.label)));
+            return result;
+        };
+        
+        sut.getCompiledGazeteer(gaz, compiler);
+        
+        RepositoryProperties repoProps = new RepositoryProperties();
+        repoProps.setPath(temporaryFolder.getRoot());
+        GazeteerServiceImpl otherService = new GazeteerServiceImpl(repoProps,
+                testEntityManager.getEntityManager());
+        assertThat(otherService.getCompiledGazeteer(gaz, compiler))
+                .containsExactly(URI.create("urn:John:PER"));
+        assertThat(compilations)
+                .describedAs("Compiled gazeteer is not deserialized but compiled again")
+                .hasValue(2);
+    }
+    
     @Test
     public void thatGazeteerCommentLineIsIgnored() throws Exception
     {
@@ -227,6 +305,23 @@ public class GazeteerServiceImplTest
                 new GazeteerEntry("John", "PER"));
     }
 
+    @Test
+    public void thatGazeteerLineWithTrailingTabIsAccepted() throws Exception
+    {
+        Gazeteer gaz = new Gazeteer("gaz", rec1);
+        
+        String gazeteer = String.join("\n",
+                "John\tPER\t",
+                "London\tLOC\t\t");
+        
+        List<GazeteerEntry> data = new ArrayList<>();
+        sut.parseGazeteer(gaz, toInputStream(gazeteer, UTF_8), data);
+        
+        assertThat(data).containsExactly(
+                new GazeteerEntry("John", "PER"),
+                new GazeteerEntry("London", "LOC"));
+    }
+
     @Test
     public void thatInvalidGazeteerGeneratesException() throws Exception
     {
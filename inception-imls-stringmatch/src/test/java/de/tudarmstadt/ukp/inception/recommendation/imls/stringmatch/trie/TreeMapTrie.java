@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The parts of the {@link Trie} as it was before its nodes were made compact - every node keeps
+ * its children in a {@link TreeMap} of boxed characters. Only used as the baseline in the
+ * {@link TrieBenchmark}.
+ *
+ * @param <V>
+ *            the value type.
+ */
+class TreeMapTrie<V>
+{
+    private final KeySanitizerFactory sanitizerFactory;
+    private final Node root = new Node(0);
+
+    class Node
+    {
+        final Map<Character, Node> children = new TreeMap<>();
+        V value;
+        final int level;
+        boolean set;
+
+        Node(final int l)
+        {
+            level = l;
+        }
+    }
+
+    TreeMapTrie(KeySanitizerFactory aSanitizer)
+    {
+        sanitizerFactory = aSanitizer;
+    }
+
+    V put(final CharSequence aKey, final V value)
+    {
+        CharSequence key = aKey;
+
+        if (sanitizerFactory != null) {
+            key = sanitizerFactory.create().sanitize(key);
+        }
+
+        Node last = root;
+        int level = 1;
+        for (int i = 0; i < key.length(); i++) {
+            final char k = key.charAt(i);
+            Node cur = last.children.get(k);
+            if (cur == null) {
+                cur = new Node(level);
+                last.children.put(k, cur);
+            }
+            last = cur;
+            level++;
+        }
+
+        final V oldval = last.value;
+        last.value = value;
+        last.set = true;
+        return oldval;
+    }
+
+    /**
+     * Finds the longest key starting at the given offset in the same way as
+     * {@link Trie#getNode(CharSequence, int)}.
+     */
+    Node getNode(final CharSequence key, final int offset)
+    {
+        if (offset > key.length() - 1) {
+            return null;
+        }
+
+        KeySanitizer sanitizer = null;
+        if (sanitizerFactory != null) {
+            sanitizer = sanitizerFactory.create();
+        }
+        Node last = root;
+        Node match = null;
+        for (int i = offset; i < key.length(); i++) {
+            char k = key.charAt(i);
+
+            if (sanitizer != null) {
+                k = sanitizer.map(k);
+                if (k == KeySanitizer.SKIP_CHAR) {
+                    continue;
+                }
+            }
+
+            final Node cur = last.children.get(k);
+            if (cur == null) {
+                break;
+            }
+            else if (cur.set) {
+                match = cur;
+            }
+            last = cur;
+        }
+
+        return match;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.imls.stringmatch.trie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Compares matching a document against a gazetteer by looking up the longest key at every token
+ * (as the string matching recommender used to do) with the single-pass Aho-Corasick matching.
+ * The per-token lookup is measured both on the compact trie and on the {@link TreeMapTrie} which
+ * the string matching recommender used before as a baseline. The gazetteer entries and the
+ * document are generated from a common random vocabulary, so many tokens start a partial match.
+ * <p>
+ * This is not a unit test. Run it via the {@link #main} method. Before running the benchmarks,
+ * the main method also prints the memory footprint of both tries for every gazetteer size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TrieBenchmark
+{
+    private static final int VOCABULARY_SIZE = 5_000;
+    private static final int DOCUMENT_TOKENS = 50_000;
+
+    @Param({ "10000", "100000", "1000000" })
+    public int gazetteerSize;
+
+    private Trie<String> trie;
+    private TreeMapTrie<String> treeMapTrie;
+    private String text;
+    private int[] tokenBegins;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        Random rnd = new Random(42);
+
+        List<String> vocabulary = new ArrayList<>();
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + rnd.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + rnd.nextInt(26)));
+            }
+            vocabulary.add(word.toString());
+        }
+
+        trie = new Trie<>(WhitespaceNormalizingSanitizer.factory());
+        treeMapTrie = new TreeMapTrie<>(WhitespaceNormalizingSanitizer.factory());
+        for (int i = 0; i < gazetteerSize; i++) {
+            StringBuilder entry = new StringBuilder();
+            int length = 1 + rnd.nextInt(4);
+            for (int j = 0; j < length; j++) {
+                if (j > 0) {
+                    entry.append(' ');
+                }
+                entry.append(vocabulary.get(rnd.nextInt(VOCABULARY_SIZE)));
+            }
+            trie.put(entry, "label");
+            treeMapTrie.put(entry, "label");
+        }
+
+        StringBuilder document = new StringBuilder();
+        tokenBegins = new int[DOCUMENT_TOKENS];
+        for (int i = 0; i < DOCUMENT_TOKENS; i++) {
+            if (i > 0) {
+                document.append(' ');
+            }
+            tokenBegins[i] = document.length();
+            document.append(vocabulary.get(rnd.nextInt(VOCABULARY_SIZE)));
+        }
+        text = document.toString();
+
+        // Build the failure links outside of the measurement
+        trie.longestMatches("");
+    }
+
+    @Benchmark
+    public void treeMapLookupAtEveryToken(Blackhole aBlackhole)
+    {
+        for (int begin : tokenBegins) {
+            aBlackhole.consume(treeMapTrie.getNode(text, begin));
+        }
+    }
+
+    @Benchmark
+    public void lookupAtEveryToken(Blackhole aBlackhole)
+    {
+        for (int begin : tokenBegins) {
+            aBlackhole.consume(trie.getNode(text, begin));
+        }
+    }
+
+    @Benchmark
+    public void singlePassMatching(Blackhole aBlackhole)
+    {
+        Trie<String>.Match[] matches = trie.longestMatches(text);
+        for (int begin : tokenBegins) {
+            aBlackhole.consume(matches[begin]);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, NoSuchFieldException
+    {
+        printFootprint();
+
+        new Runner(new OptionsBuilder()
+                .include(TrieBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    /**
+     * Prints the retained size of the object graphs of both tries (including the failure links of
+     * the compact trie) for every gazetteer size.
+     */
+    private static void printFootprint() throws NoSuchFieldException
+    {
+        Param sizes = TrieBenchmark.class.getField("gazetteerSize").getAnnotation(Param.class);
+        for (String size : sizes.value()) {
+            TrieBenchmark benchmark = new TrieBenchmark();
+            benchmark.gazetteerSize = Integer.parseInt(size);
+            benchmark.setup();
+
+            System.out.printf("gazetteerSize=%s: TreeMapTrie %,d bytes, Trie %,d bytes%n", size,
+                    GraphLayout.parseInstance(benchmark.treeMapTrie).totalSize(),
+                    GraphLayout.parseInstance(benchmark.trie).totalSize());
+        }
+    }
+}
@@ -69,4 +69,90 @@ public class TrieTest
         assertThat(sut.getNode("this is a test .")).isNotNull();
         assertThat(sut.getNode("  this is\ta test  .")).isNotNull();
     }
+    
+    @Test
+    public void thatLongestMatchesAgreesWithLookupAtEachPosition()
+    {
+        sut = new Trie<String>(WhitespaceNormalizingSanitizer.factory());
+        sut.put("New York", "LOC");
+        sut.put("New York City", "LOC");
+        sut.put("York", "LOC");
+        sut.put("City Hall", "ORG");
+        
+        String text = "I love New  York City Hall.";
+        
+        Trie<String>.Match[] matches = sut.longestMatches(text);
+        
+        assertThat(matches).hasSize(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i))) {
+                continue;
+            }
+            
+            Trie<String>.Node expected = sut.getNode(text, i);
+            if (expected == null) {
+                assertThat(matches[i]).as("match at %d", i).isNull();
+            }
+            else {
+                assertThat(matches[i]).as("match at %d", i).isNotNull();
+                assertThat(matches[i].node).as("match at %d", i).isSameAs(expected);
+            }
+        }
+        
+        assertThat(matches[7].end).isEqualTo(21);
+        assertThat(matches[12].end).isEqualTo(16);
+        assertThat(matches[17].end).isEqualTo(26);
+    }
+    
+    @Test
+    public void thatOverlappingKeysAreFound()
+    {
+        sut.put("he", "1");
+        sut.put("she", "2");
+        sut.put("hers", "3");
+        
+        Trie<String>.Match[] matches = sut.longestMatches("ushers");
+        
+        assertThat(matches[1].begin).isEqualTo(1);
+        assertThat(matches[1].end).isEqualTo(4);
+        assertThat(matches[1].node.value).isEqualTo("2");
+        assertThat(matches[2].begin).isEqualTo(2);
+        assertThat(matches[2].end).isEqualTo(6);
+        assertThat(matches[2].node.value).isEqualTo("3");
+        assertThat(matches[0]).isNull();
+        assertThat(matches[3]).isNull();
+    }
+    
+    @Test
+    public void thatAddingKeysAfterMatchingIsPickedUp()
+    {
+        sut.put("York", "LOC");
+        
+        assertThat(sut.longestMatches("New York")[0]).isNull();
+        
+        sut.put("New York", "LOC");
+        
+        Trie<String>.Match[] matches = sut.longestMatches("New York");
+        assertThat(matches[0]).isNotNull();
+        assertThat(matches[0].end).isEqualTo(8);
+        assertThat(matches[4].end).isEqualTo(8);
+    }
+    
+    @Test
+    public void thatRemovedKeysAreNotFound()
+    {
+        sut.put("New", "A");
+        sut.put("New York", "LOC");
+        
+        assertThat(sut.longestMatches("New York")[0].end).isEqualTo(8);
+        
+        assertThat(sut.remove("New York")).isEqualTo("LOC");
+        assertThat(sut.remove("New York")).isNull();
+        assertThat(sut.remove("Ne")).isNull();
+        
+        assertThat(sut.size()).isEqualTo(1);
+        assertThat(sut.get("New York")).isNull();
+        assertThat(sut.keys()).containsExactly("New");
+        assertThat(sut.longestMatches("New York")[0].end).isEqualTo(3);
+    }
 }
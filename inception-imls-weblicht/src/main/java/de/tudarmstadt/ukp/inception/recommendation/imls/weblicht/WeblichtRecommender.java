@@ -76,18 +76,28 @@ public class WeblichtRecommender
     private final WeblichtRecommenderTraits traits;
     private final OkHttpClient client;
 
+    /**
+     * Creates a recommender with its own HTTP client. Within the application, the
+     * {@link WeblichtRecommenderFactory} passes the shared client instead.
+     */
     public WeblichtRecommender(Recommender aRecommender, WeblichtRecommenderTraits aTraits,
             WeblichtChainService aChainService)
+    {
+        this(aRecommender, aTraits, aChainService, new OkHttpClient.Builder()
+                .connectTimeout(CONNECT_TIMEOUT, TimeUnit.SECONDS)
+                .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
+                .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
+                .build());
+    }
+
+    public WeblichtRecommender(Recommender aRecommender, WeblichtRecommenderTraits aTraits,
+            WeblichtChainService aChainService, OkHttpClient aClient)
     {
         super(aRecommender);
 
         traits = aTraits;
         chainService = aChainService;
-        client = new OkHttpClient.Builder()
-                .connectTimeout(CONNECT_TIMEOUT,TimeUnit.SECONDS)
-                .writeTimeout(WRITE_TIMEOUT, TimeUnit.SECONDS)
-                .readTimeout(READ_TIMEOUT, TimeUnit.SECONDS)
-                .build();
+        client = aClient;
     }
     
     @Override
@@ -164,22 +174,26 @@ public class WeblichtRecommender
                     .post(body)
                     .build();
 
-            Response response = sendRequest(request);
-
-            // If the response indicates that the request was not successful,
-            // then it does not make sense to go on and try to decode the XMI
-            if (!response.isSuccessful()) {
-                int code = response.code();
-                String responseBody = getResponseBody(response);
-                String msg = format("Request was not successful: [%d] - [%s]", code, responseBody);
-                throw new RecommendationException(msg);
+            // The response needs to be closed so the connection can be reused
+            WLData wldata;
+            try (Response response = sendRequest(request)) {
+                // If the response indicates that the request was not successful,
+                // then it does not make sense to go on and try to decode the XMI
+                if (!response.isSuccessful()) {
+                    int code = response.code();
+                    String responseBody = getResponseBody(response);
+                    String msg = format("Request was not successful: [%d] - [%s]", code,
+                            responseBody);
+                    throw new RecommendationException(msg);
+                }
+                
+                wldata = deserializePredictionResponse(response);
             }
             
             aCas.reset();
             aCas.setDocumentText(documentText);
             aCas.setDocumentLanguage(documentLanguage);
             
-            WLData wldata = deserializePredictionResponse(response);
             new Tcf2DKPro().convert(wldata.getTextCorpus(), aCas.getJCas());
             
             // Drop the tokens we got from the remote service since their boundaries might not
@@ -28,6 +28,7 @@ import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactoryImplBase;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.http.HttpClientFactory;
 import de.tudarmstadt.ukp.inception.recommendation.imls.weblicht.chains.WeblichtChainService;
 import de.tudarmstadt.ukp.inception.recommendation.imls.weblicht.config.WeblichtRecommenderAutoConfiguration;
 import de.tudarmstadt.ukp.inception.recommendation.imls.weblicht.traits.WeblichtRecommenderTraits;
@@ -50,11 +51,14 @@ public class WeblichtRecommenderFactoryImpl
     public static final String DEFAULT_WEBLICHT_URL = "https://weblicht.sfs.uni-tuebingen.de/WaaS/api/1.0/chain/process";
     
     private final WeblichtChainService chainService;
+    private final HttpClientFactory httpClientFactory;
     
     @Autowired
-    public WeblichtRecommenderFactoryImpl(WeblichtChainService aChainService)
+    public WeblichtRecommenderFactoryImpl(WeblichtChainService aChainService,
+            HttpClientFactory aHttpClientFactory)
     {
         chainService = aChainService;
+        httpClientFactory = aHttpClientFactory;
     }
 
     @Override
@@ -67,7 +71,8 @@ public class WeblichtRecommenderFactoryImpl
     public RecommendationEngine build(Recommender aRecommender)
     {
         WeblichtRecommenderTraits traits = readTraits(aRecommender);
-        return new WeblichtRecommender(aRecommender, traits, chainService);
+        return new WeblichtRecommender(aRecommender, traits, chainService,
+                httpClientFactory.getClient());
     }
 
     @Override
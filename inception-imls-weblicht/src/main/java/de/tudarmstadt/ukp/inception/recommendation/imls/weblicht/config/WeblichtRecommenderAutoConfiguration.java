@@ -26,6 +26,7 @@ import org.springframework.context.annotation.Configuration;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
+import de.tudarmstadt.ukp.inception.recommendation.imls.external.http.HttpClientFactory;
 import de.tudarmstadt.ukp.inception.recommendation.imls.weblicht.WeblichtRecommenderFactory;
 import de.tudarmstadt.ukp.inception.recommendation.imls.weblicht.WeblichtRecommenderFactoryImpl;
 import de.tudarmstadt.ukp.inception.recommendation.imls.weblicht.chains.WeblichtChainService;
@@ -43,9 +44,10 @@ public class WeblichtRecommenderAutoConfiguration
     private @PersistenceContext EntityManager entityManager;
     
     @Bean
-    public WeblichtRecommenderFactory weblichtRecommenderFactory(WeblichtChainService aChainService)
+    public WeblichtRecommenderFactory weblichtRecommenderFactory(WeblichtChainService aChainService,
+            HttpClientFactory aHttpClientFactory)
     {
-        return new WeblichtRecommenderFactoryImpl(aChainService);
+        return new WeblichtRecommenderFactoryImpl(aChainService, aHttpClientFactory);
     }
     
     @Bean
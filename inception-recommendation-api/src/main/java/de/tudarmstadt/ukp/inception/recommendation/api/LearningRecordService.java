@@ -40,6 +40,17 @@ public interface LearningRecordService
      */
     List<LearningRecord> listRecords(String user, AnnotationLayer layer, int aLimit);
 
+    /**
+     * Fetches the learning records of the given user and layer which were recorded at exactly the
+     * given offsets in the given document, the most recent record first. Learning records with the
+     * action {@link LearningRecordType#SHOWN} are <b>not</b> returned by this method.
+     * <p>
+     * This method is meant to be called frequently, e.g. while rendering suggestions. It is served
+     * from an in-memory index which is kept up to date as records are created or deleted.
+     */
+    List<LearningRecord> listRecords(String aUser, AnnotationLayer aLayer, String aDocumentName,
+            int aBegin, int aEnd);
+
     void deleteRecords(SourceDocument document, String user);
 
     LearningRecord getRecordById(long recordId);
@@ -20,6 +20,7 @@ package de.tudarmstadt.ukp.inception.recommendation.api;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 import org.apache.uima.cas.CAS;
 
@@ -146,6 +147,38 @@ public interface RecommendationService
     Predictions computePredictions(User aUser, Project aProject, List<SourceDocument> aDocuments,
             List<SourceDocument> aInherit);
     
+    /**
+     * Compute predictions. The computation stops early if the given cancellation check signals
+     * that the result is no longer needed - the returned predictions are incomplete then.
+     * 
+     * @param aUser
+     *            the user to compute the predictions for.
+     * @param aProject
+     *            the project to compute the predictions for.
+     * @param aDocuments
+     *            the documents to compute the predictions for.
+     * @param aInherit
+     *            any documents for which to inherit the predictions from a previous run
+     * @param aCancelled
+     *            checked between documents whether the computation should stop.
+     * @return the new predictions.
+     */
+    Predictions computePredictions(User aUser, Project aProject, List<SourceDocument> aDocuments,
+            List<SourceDocument> aInherit, BooleanSupplier aCancelled);
+    
+    /**
+     * Applies the training data changes collected from accepted suggestions and deleted spans
+     * since the last call to the models of the active recommenders which support online learning.
+     * 
+     * @param aUser
+     *            the user whose models are updated.
+     * @param aProject
+     *            the project whose models are updated.
+     * @return the documents the applied changes were made in. The list is empty if no model has
+     *         been updated.
+     */
+    List<SourceDocument> applyPendingOnlineUpdates(User aUser, Project aProject);
+    
     void calculateVisibility(CAS aCas, String aUser, AnnotationLayer aLayer,
             Collection<SuggestionGroup> aRecommendations, int aWindowBegin, int aWindowEnd);
 
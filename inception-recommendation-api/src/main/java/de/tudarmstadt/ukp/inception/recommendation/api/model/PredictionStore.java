@@ -0,0 +1,315 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * Document-partitioned storage for {@link AnnotationSuggestion}s. Suggestions are kept per
+ * document and per layer in a structure sorted by begin offset, so window queries only touch the
+ * suggestions that start inside the window. Secondary indexes per document allow looking up
+ * suggestions by recommender and by the recommender-local suggestion ID (i.e. the VID).
+ * <p>
+ * A suggestion is identified by its document, recommender and ID - the same properties used by
+ * {@link AnnotationSuggestion#equals(Object)}. Adding a suggestion with the same identity replaces
+ * the previous one.
+ * <p>
+ * This class is not thread-safe. {@link Predictions} takes care of the synchronization.
+ */
+class PredictionStore
+    implements Serializable
+{
+    private static final long serialVersionUID = 2813461473390146235L;
+
+    private final Map<String, DocumentPredictions> documents = new HashMap<>();
+    private int size = 0;
+
+    public void put(AnnotationSuggestion aSuggestion)
+    {
+        DocumentPredictions doc = documents.computeIfAbsent(aSuggestion.getDocumentName(),
+            _key -> new DocumentPredictions());
+
+        AnnotationSuggestion replaced = doc.put(aSuggestion);
+        if (replaced == null) {
+            size++;
+        }
+    }
+
+    public void putAll(Collection<AnnotationSuggestion> aSuggestions)
+    {
+        for (AnnotationSuggestion suggestion : aSuggestions) {
+            put(suggestion);
+        }
+    }
+
+    public boolean isEmpty()
+    {
+        return size == 0;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    public void clear()
+    {
+        documents.clear();
+        size = 0;
+    }
+
+    /**
+     * Returns the suggestions on the given layer in the given document which start at or after
+     * {@code aWindowBegin} and end at or before {@code aWindowEnd}. A window boundary of
+     * {@code -1} is ignored. The result is sorted by begin offset.
+     */
+    public List<AnnotationSuggestion> getWindow(String aDocumentName, long aLayerId,
+            int aWindowBegin, int aWindowEnd)
+    {
+        DocumentPredictions doc = documents.get(aDocumentName);
+        if (doc == null) {
+            return new ArrayList<>();
+        }
+
+        NavigableMap<Integer, List<AnnotationSuggestion>> layer = doc.byLayer.get(aLayerId);
+        if (layer == null) {
+            return new ArrayList<>();
+        }
+
+        // Since a suggestion never ends before it begins, any suggestion within the window must
+        // also begin before the end of the window
+        NavigableMap<Integer, List<AnnotationSuggestion>> candidates;
+        if (aWindowBegin == -1 && aWindowEnd == -1) {
+            candidates = layer;
+        }
+        else if (aWindowBegin == -1) {
+            candidates = layer.headMap(aWindowEnd, true);
+        }
+        else if (aWindowEnd == -1) {
+            candidates = layer.tailMap(aWindowBegin, true);
+        }
+        else if (aWindowBegin > aWindowEnd) {
+            return new ArrayList<>();
+        }
+        else {
+            candidates = layer.subMap(aWindowBegin, true, aWindowEnd, true);
+        }
+
+        List<AnnotationSuggestion> result = new ArrayList<>();
+        for (List<AnnotationSuggestion> suggestions : candidates.values()) {
+            for (AnnotationSuggestion suggestion : suggestions) {
+                if (aWindowEnd == -1 || suggestion.getEnd() <= aWindowEnd) {
+                    result.add(suggestion);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the suggestions on the given layer in the given document which start at the given
+     * offset.
+     */
+    public List<AnnotationSuggestion> getAt(String aDocumentName, long aLayerId, int aBegin)
+    {
+        DocumentPredictions doc = documents.get(aDocumentName);
+        if (doc == null) {
+            return Collections.emptyList();
+        }
+
+        NavigableMap<Integer, List<AnnotationSuggestion>> layer = doc.byLayer.get(aLayerId);
+        if (layer == null) {
+            return Collections.emptyList();
+        }
+
+        List<AnnotationSuggestion> suggestions = layer.get(aBegin);
+        return suggestions != null ? suggestions : Collections.emptyList();
+    }
+
+    /**
+     * Returns the suggestions on any layer in the given document which start at the given offset.
+     */
+    public List<AnnotationSuggestion> getAt(String aDocumentName, int aBegin)
+    {
+        DocumentPredictions doc = documents.get(aDocumentName);
+        if (doc == null) {
+            return Collections.emptyList();
+        }
+
+        List<AnnotationSuggestion> result = new ArrayList<>();
+        for (NavigableMap<Integer, List<AnnotationSuggestion>> layer : doc.byLayer.values()) {
+            List<AnnotationSuggestion> suggestions = layer.get(aBegin);
+            if (suggestions != null) {
+                result.addAll(suggestions);
+            }
+        }
+        return result;
+    }
+
+    public AnnotationSuggestion get(String aDocumentName, long aRecommenderId, int aId)
+    {
+        DocumentPredictions doc = documents.get(aDocumentName);
+        if (doc == null) {
+            return null;
+        }
+
+        Map<Integer, AnnotationSuggestion> recommender = doc.byRecommender.get(aRecommenderId);
+        if (recommender == null) {
+            return null;
+        }
+
+        return recommender.get(aId);
+    }
+
+    public List<AnnotationSuggestion> getByRecommender(String aDocumentName, long aRecommenderId)
+    {
+        DocumentPredictions doc = documents.get(aDocumentName);
+        if (doc == null) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, AnnotationSuggestion> recommender = doc.byRecommender.get(aRecommenderId);
+        if (recommender == null) {
+            return new ArrayList<>();
+        }
+
+        return new ArrayList<>(recommender.values());
+    }
+
+    public List<AnnotationSuggestion> getByDocument(String aDocumentName)
+    {
+        DocumentPredictions doc = documents.get(aDocumentName);
+        if (doc == null) {
+            return new ArrayList<>();
+        }
+
+        List<AnnotationSuggestion> result = new ArrayList<>(doc.size);
+        doc.forEach(result::add);
+        return result;
+    }
+
+    public void forEach(Consumer<AnnotationSuggestion> aAction)
+    {
+        for (DocumentPredictions doc : documents.values()) {
+            doc.forEach(aAction);
+        }
+    }
+
+    public void removeByRecommender(long aRecommenderId)
+    {
+        Iterator<DocumentPredictions> i = documents.values().iterator();
+        while (i.hasNext()) {
+            DocumentPredictions doc = i.next();
+            size -= doc.removeByRecommender(aRecommenderId);
+            if (doc.size == 0) {
+                i.remove();
+            }
+        }
+    }
+
+    private static class DocumentPredictions
+        implements Serializable
+    {
+        private static final long serialVersionUID = -2939305467541815340L;
+
+        private final Map<Long, NavigableMap<Integer, List<AnnotationSuggestion>>> byLayer =
+                new HashMap<>();
+        private final Map<Long, Map<Integer, AnnotationSuggestion>> byRecommender =
+                new HashMap<>();
+        private int size = 0;
+
+        public AnnotationSuggestion put(AnnotationSuggestion aSuggestion)
+        {
+            AnnotationSuggestion replaced = byRecommender
+                    .computeIfAbsent(aSuggestion.getRecommenderId(), _key -> new LinkedHashMap<>())
+                    .put(aSuggestion.getId(), aSuggestion);
+
+            if (replaced != null) {
+                removeFromLayer(replaced);
+            }
+            else {
+                size++;
+            }
+
+            byLayer.computeIfAbsent(aSuggestion.getLayerId(), _key -> new TreeMap<>())
+                    .computeIfAbsent(aSuggestion.getBegin(), _key -> new ArrayList<>(1))
+                    .add(aSuggestion);
+
+            return replaced;
+        }
+
+        public int removeByRecommender(long aRecommenderId)
+        {
+            Map<Integer, AnnotationSuggestion> removed = byRecommender.remove(aRecommenderId);
+            if (removed == null) {
+                return 0;
+            }
+
+            for (AnnotationSuggestion suggestion : removed.values()) {
+                removeFromLayer(suggestion);
+            }
+
+            size -= removed.size();
+            return removed.size();
+        }
+
+        public void forEach(Consumer<AnnotationSuggestion> aAction)
+        {
+            for (Map<Integer, AnnotationSuggestion> recommender : byRecommender.values()) {
+                recommender.values().forEach(aAction);
+            }
+        }
+
+        private void removeFromLayer(AnnotationSuggestion aSuggestion)
+        {
+            NavigableMap<Integer, List<AnnotationSuggestion>> layer = byLayer
+                    .get(aSuggestion.getLayerId());
+            if (layer == null) {
+                return;
+            }
+
+            List<AnnotationSuggestion> atOffset = layer.get(aSuggestion.getBegin());
+            if (atOffset == null) {
+                return;
+            }
+
+            // Suggestions are compared by identity here since equals() only considers the
+            // document, recommender and ID
+            atOffset.removeIf(s -> s == aSuggestion);
+
+            if (atOffset.isEmpty()) {
+                layer.remove(aSuggestion.getBegin());
+            }
+
+            if (layer.isEmpty()) {
+                byLayer.remove(aSuggestion.getLayerId());
+            }
+        }
+    }
+}
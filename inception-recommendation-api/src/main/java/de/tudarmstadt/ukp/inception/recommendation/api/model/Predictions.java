@@ -23,14 +23,11 @@ import static java.util.stream.Collectors.toList;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.Validate;
 import org.apache.wicket.util.collections.ConcurrentHashSet;
@@ -49,14 +46,14 @@ import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
  * This class is widely used in the recommendation module.
  * 
  * If the prediction task has run it stores the predicted annotations for an annotation layer in the
- * predictions map.
+ * prediction store which indexes them by document, layer, offset and recommender.
  */
 public class Predictions
     implements Serializable
 {
     private static final long serialVersionUID = -1598768729246662885L;
     
-    private Map<ExtendedId, AnnotationSuggestion> predictions = new ConcurrentHashMap<>();
+    private final PredictionStore predictions = new PredictionStore();
     private Set<String> seenDocumentsForPrediction = new ConcurrentHashSet<>();
     
     private final Project project;
@@ -73,7 +70,7 @@ public class Predictions
         user = aUser;
 
         if (aPredictions != null) {
-            predictions = new ConcurrentHashMap<ExtendedId, AnnotationSuggestion>(aPredictions);
+            predictions.putAll(aPredictions.values());
         }
     }
     
@@ -126,14 +123,10 @@ public class Predictions
     private List<AnnotationSuggestion> getFlattenedPredictions(String aDocumentName,
         AnnotationLayer aLayer, int aWindowBegin, int aWindowEnd)
     {
-        return predictions.entrySet().stream()
-            .filter(f -> f.getKey().getDocumentName().equals(aDocumentName))
-            .filter(f -> f.getKey().getLayerId() == aLayer.getId())
-            .filter(f -> aWindowBegin == -1 || (f.getKey().getBegin() >= aWindowBegin))
-            .filter(f -> aWindowEnd == -1 || (f.getKey().getEnd() <= aWindowEnd))
-            .sorted(Comparator.comparingInt(e2 -> e2.getValue().getBegin()))
-            .map(Map.Entry::getValue)
-            .collect(toList());
+        synchronized (predictions) {
+            return predictions.getWindow(aDocumentName, aLayer.getId(), aWindowBegin,
+                    aWindowEnd);
+        }
     }
 
     /**
@@ -142,11 +135,10 @@ public class Predictions
      */
     public Optional<AnnotationSuggestion> getPredictionByVID(SourceDocument aDocument, VID aVID)
     {
-        return predictions.values().stream()
-                .filter(f -> f.getDocumentName().equals(aDocument.getName()))
-                .filter(f -> f.getId() == aVID.getSubId())
-                .filter(f -> f.getRecommenderId() == aVID.getId())
-                .findFirst();
+        synchronized (predictions) {
+            return Optional.ofNullable(
+                    predictions.get(aDocument.getName(), aVID.getId(), aVID.getSubId()));
+        }
     }
 
     /**
@@ -155,11 +147,12 @@ public class Predictions
     public Optional<AnnotationSuggestion> getPrediction(SourceDocument aDocument, int aBegin,
             int aEnd, String aLabel)
     {
-        return predictions.values().stream()
-                .filter(f -> f.getDocumentName().equals(aDocument.getName()))
-                .filter(f -> f.getBegin() == aBegin && f.getEnd() == aEnd)
-                .filter(f -> f.getLabel().equals(aLabel))
-                .max(comparingInt(AnnotationSuggestion::getId));
+        synchronized (predictions) {
+            return predictions.getAt(aDocument.getName(), aBegin).stream()
+                    .filter(f -> f.getEnd() == aEnd)
+                    .filter(f -> f.labelEquals(aLabel))
+                    .max(comparingInt(AnnotationSuggestion::getId));
+        }
     }
     
     /**
@@ -167,11 +160,29 @@ public class Predictions
      */
     public void putPredictions(List<AnnotationSuggestion> aPredictions)
     {
-        aPredictions.forEach(prediction -> 
-            predictions.put(new ExtendedId(user.getUsername(), project.getId(),
-                    prediction.getDocumentName(), prediction.getLayerId(), prediction.getOffset(),
-                    prediction.getRecommenderId(), prediction.getId(), -1), prediction)
-        );
+        synchronized (predictions) {
+            predictions.putAll(aPredictions);
+        }
+    }
+    
+    /**
+     * Merges the given predictions into this one. This includes the suggestions, the documents
+     * marked as completed and the log messages. This is used to combine partial predictions which
+     * have been computed independently, e.g. for different documents.
+     */
+    public void putPredictions(Predictions aOther)
+    {
+        List<AnnotationSuggestion> suggestions = new ArrayList<>();
+        synchronized (aOther.predictions) {
+            aOther.predictions.forEach(suggestions::add);
+        }
+        
+        synchronized (predictions) {
+            predictions.putAll(suggestions);
+        }
+        
+        seenDocumentsForPrediction.addAll(aOther.seenDocumentsForPrediction);
+        aOther.getLog().forEach(this::log);
     }
     
     public Project getProject()
@@ -181,24 +192,49 @@ public class Predictions
 
     public boolean hasPredictions()
     {
-        return !predictions.isEmpty();
+        synchronized (predictions) {
+            return !predictions.isEmpty();
+        }
     }
 
+    public int size()
+    {
+        synchronized (predictions) {
+            return predictions.size();
+        }
+    }
+
+    /**
+     * @deprecated This builds a snapshot of all predictions keyed by {@link ExtendedId} which is
+     *             expensive for large projects. Better use one of the more specific lookup
+     *             methods.
+     */
+    @Deprecated
     public Map<ExtendedId, AnnotationSuggestion> getPredictions()
     {
-        return predictions;
+        Map<ExtendedId, AnnotationSuggestion> result = new HashMap<>();
+        synchronized (predictions) {
+            predictions.forEach(prediction -> result.put(new ExtendedId(user.getUsername(),
+                    project.getId(), prediction.getDocumentName(), prediction.getLayerId(),
+                    prediction.getOffset(), prediction.getRecommenderId(), prediction.getId(),
+                    -1), prediction));
+        }
+        return result;
     }
     
     public void clearPredictions()
     {
-        predictions.clear();
+        synchronized (predictions) {
+            predictions.clear();
+        }
         seenDocumentsForPrediction.clear();
     }
 
     public void removePredictions(Long recommenderId)
     {
-        predictions.entrySet()
-            .removeIf((p) -> p.getKey().getRecommenderId() == recommenderId);
+        synchronized (predictions) {
+            predictions.removeByRecommender(recommenderId);
+        }
     }
 
     /**
@@ -216,34 +252,27 @@ public class Predictions
     public List<AnnotationSuggestion> getPredictionsByTokenAndFeature(String aDocumentName,
         AnnotationLayer aLayer, int aBegin, int aEnd, String aFeature)
     {
-        return predictions.entrySet().stream()
-            .filter(f -> f.getKey().getDocumentName().equals(aDocumentName))
-            .filter(f -> f.getKey().getLayerId() == aLayer.getId())
-            .filter(f -> f.getKey().getOffset().getBeginCharacter() == aBegin)
-            .filter(f -> f.getKey().getOffset().getEndCharacter() == aEnd)
-            .filter(f -> f.getValue().getFeature().equals(aFeature))
-            .map(Map.Entry::getValue)
-            .collect(Collectors.toList());
+        synchronized (predictions) {
+            return predictions.getAt(aDocumentName, aLayer.getId(), aBegin).stream()
+                    .filter(f -> f.getEnd() == aEnd)
+                    .filter(f -> f.getFeature().equals(aFeature))
+                    .collect(toList());
+        }
     }
 
     public List<AnnotationSuggestion> getPredictionsByRecommenderAndDocument(
             Recommender aRecommender, String aDocument)
     {
-        return predictions.entrySet().stream()
-                .filter(f -> 
-                        f.getKey().getRecommenderId() == (long) aRecommender.getId() &&
-                        f.getKey().getDocumentName().equals(aDocument))
-                .map(Map.Entry::getValue)
-                .collect(Collectors.toList());
+        synchronized (predictions) {
+            return predictions.getByRecommender(aDocument, aRecommender.getId());
+        }
     }
 
     public List<AnnotationSuggestion> getPredictionsByDocument(String aDocument)
     {
-        return predictions.entrySet().stream()
-                .filter(f -> 
-                        f.getKey().getDocumentName().equals(aDocument))
-                .map(Map.Entry::getValue)
-                .collect(Collectors.toList());
+        synchronized (predictions) {
+            return predictions.getByDocument(aDocument);
+        }
     }
 
     public void markDocumentAsPredictionCompleted(SourceDocument aDocument)
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.recommender;
+
+import java.util.List;
+
+import org.apache.uima.cas.CAS;
+
+/**
+ * Optional interface for {@link RecommendationEngine recommendation engines} which can train on
+ * data extracted separately from each document. The extracted data is cached per document and
+ * user and is only extracted again when the annotations of the document change. Thus, the CASes
+ * of unchanged documents do not need to be read again for every training run.
+ * 
+ * @param <T>
+ *            the type of the training data extracted from a single document.
+ */
+public interface IncrementalTrainingSupport<T>
+{
+    /**
+     * Extracts the training data from the given CAS. The result is cached, so it must not
+     * retain any references to the CAS and must not be modified later. This method must not
+     * mutate {@code aCas} in any way.
+     * 
+     * @param aCas
+     *            the CAS of a single document.
+     * @return the training data or {@code null} if the document does not contain any training
+     *         data for the recommender.
+     */
+    T extractTrainingData(CAS aCas) throws RecommendationException;
+
+    /**
+     * Train a model on training data previously obtained from {@link #extractTrainingData}. This
+     * must produce the same model as {@link RecommendationEngine#train} would produce on the
+     * CASes the data was extracted from.
+     * 
+     * @param aContext
+     *            the context of the recommender
+     * @param aTrainingData
+     *            the training data extracted from each document which contains training data.
+     */
+    void trainOnExtractedData(RecommenderContext aContext, List<T> aTrainingData)
+        throws RecommendationException;
+}
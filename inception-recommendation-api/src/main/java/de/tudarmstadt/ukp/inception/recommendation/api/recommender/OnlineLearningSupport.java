@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.recommender;
+
+/**
+ * Optional interface for {@link RecommendationEngine recommendation engines} which can update a
+ * trained model with individual annotations instead of having to be trained again on all
+ * documents. This is used to let accepted suggestions and deleted annotations take effect
+ * immediately. A regular training run still happens afterwards as usual.
+ */
+public interface OnlineLearningSupport
+{
+    /**
+     * Updates the model in the given context with the given changes to the training data.
+     * <p>
+     * The context has already been closed and may be in use for prediction at the same time, so
+     * the engine must update its model in place in a thread-safe manner. The context may also be
+     * serialized concurrently to persist the model, so the model must not change while it is
+     * being serialized.
+     * </p>
+     * 
+     * @param aContext
+     *            the context of the recommender holding a trained model.
+     * @param aDelta
+     *            the annotations added to or removed from the training data.
+     * @return whether the model was updated. If the engine cannot apply the update (e.g.
+     *         because the context does not contain a model yet), it returns {@code false}.
+     */
+    boolean update(RecommenderContext aContext, TrainingDataDelta aDelta)
+        throws RecommendationException;
+}
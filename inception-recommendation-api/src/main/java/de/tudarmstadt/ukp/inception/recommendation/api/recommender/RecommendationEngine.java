@@ -74,6 +74,23 @@ public abstract class RecommendationEngine
     public abstract void predict(RecommenderContext aContext, CAS aCas)
             throws RecommendationException;
 
+    /**
+     * Given texts in {@code aCasses}, predict target annotations. This works like
+     * {@link #predict(RecommenderContext, CAS)} but for multiple CASes at once. Engines with a
+     * significant per-call overhead (e.g. loading a model, vectorizing the input or calling a
+     * remote service) can override this method to process all CASes in one go. By default, the
+     * CASes are processed one after the other.
+     * @param aContext The context of the recommender
+     * @param aCasses The CASes into which the predictions should be written
+     */
+    public void predictBatch(RecommenderContext aContext, List<CAS> aCasses)
+            throws RecommendationException
+    {
+        for (CAS cas : aCasses) {
+            predict(aContext, cas);
+        }
+    }
+
     /**
      * Evaluates the performance of a recommender by splitting the data given in {@code aCasses} in
      * training and test sets by using {@code aDataSplitter}, training on the training set and
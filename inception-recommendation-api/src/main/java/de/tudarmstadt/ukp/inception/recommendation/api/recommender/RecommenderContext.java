@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.api.recommender;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -29,8 +30,16 @@ import javax.annotation.Nullable;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.clarin.webanno.support.logging.LogMessage;
 
+/**
+ * Holds the trained model and the training log of a recommender. Contexts are serializable so
+ * they can be persisted across sessions - this requires all values put into the context to be
+ * serializable as well. The user is not persisted.
+ */
 public class RecommenderContext
+    implements Serializable
 {
+    private static final long serialVersionUID = -2403592356416227545L;
+
     /**
      * Empty context which starts out being closed.
      */
@@ -43,7 +52,7 @@ public class RecommenderContext
     
     private final Map<String, Object> store;
     private List<LogMessage> messages;
-    private Optional<User> user;
+    private transient Optional<User> user;
     private boolean closed = false;
 
     public RecommenderContext()
@@ -130,7 +139,7 @@ public class RecommenderContext
     }
     
     public Optional<User> getUser() {
-        return user;
+        return user != null ? user : Optional.empty();
     }
     
     public void setUser(User aUser) {
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.recommender;
+
+import static java.util.Collections.unmodifiableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Annotations which were added to or removed from the training data of a recommender since its
+ * model was last trained or updated.
+ * 
+ * @see OnlineLearningSupport
+ */
+public class TrainingDataDelta
+{
+    private final List<Sample> added = new ArrayList<>();
+    private final List<Sample> removed = new ArrayList<>();
+
+    public TrainingDataDelta added(int aBegin, int aEnd, String aText, String aLabel)
+    {
+        added.add(new Sample(aBegin, aEnd, aText, aLabel));
+        return this;
+    }
+
+    public TrainingDataDelta removed(int aBegin, int aEnd, String aText, String aLabel)
+    {
+        removed.add(new Sample(aBegin, aEnd, aText, aLabel));
+        return this;
+    }
+
+    public List<Sample> getAdded()
+    {
+        return unmodifiableList(added);
+    }
+
+    public List<Sample> getRemoved()
+    {
+        return unmodifiableList(removed);
+    }
+
+    public boolean isEmpty()
+    {
+        return added.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("TrainingDataDelta [added=");
+        builder.append(added);
+        builder.append(", removed=");
+        builder.append(removed);
+        builder.append("]");
+        return builder.toString();
+    }
+
+    /**
+     * A single annotation with its label.
+     */
+    public static class Sample
+    {
+        private final int begin;
+        private final int end;
+        private final String text;
+        private final String label;
+
+        public Sample(int aBegin, int aEnd, String aText, String aLabel)
+        {
+            begin = aBegin;
+            end = aEnd;
+            text = aText;
+            label = aLabel;
+        }
+
+        public int getBegin()
+        {
+            return begin;
+        }
+
+        public int getEnd()
+        {
+            return end;
+        }
+
+        public String getText()
+        {
+            return text;
+        }
+
+        public String getLabel()
+        {
+            return label;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "[" + begin + "-" + end + "] " + text + " (" + label + ")";
+        }
+    }
+}
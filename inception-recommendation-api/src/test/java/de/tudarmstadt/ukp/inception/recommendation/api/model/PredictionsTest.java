@@ -0,0 +1,149 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.api.model;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+public class PredictionsTest
+{
+    private Project project;
+    private User user;
+    private AnnotationLayer layer;
+    private SourceDocument doc1;
+
+    private AnnotationSuggestion rec1Doc1Sug1;
+    private AnnotationSuggestion rec1Doc1Sug2;
+    private AnnotationSuggestion rec2Doc1Sug1;
+    private AnnotationSuggestion rec1Doc2Sug1;
+    private AnnotationSuggestion rec3Doc1Sug1;
+
+    private Predictions sut;
+
+    @Before
+    public void setup()
+    {
+        project = new Project();
+        project.setId(1l);
+        user = new User("user");
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        doc1 = new SourceDocument();
+        doc1.setName("doc1");
+        doc1.setProject(project);
+
+        rec1Doc1Sug1 = new AnnotationSuggestion(0, 1, "rec1", 1, "value", "doc1", 0, 5, "aaaaa",
+                "A", "A", 0.1, null);
+        rec1Doc1Sug2 = new AnnotationSuggestion(1, 1, "rec1", 1, "value", "doc1", 10, 15, "bbbbb",
+                "B", "B", 0.2, null);
+        rec2Doc1Sug1 = new AnnotationSuggestion(0, 2, "rec2", 1, "value", "doc1", 10, 20,
+                "bbbbb ccccc", "C", "C", 0.3, null);
+        rec1Doc2Sug1 = new AnnotationSuggestion(0, 1, "rec1", 1, "value", "doc2", 0, 5, "ddddd",
+                "D", "D", 0.4, null);
+        rec3Doc1Sug1 = new AnnotationSuggestion(0, 3, "rec3", 2, "value", "doc1", 0, 5, "aaaaa",
+                "E", "E", 0.5, null);
+
+        sut = new Predictions(user, project);
+        sut.putPredictions(
+                asList(rec1Doc1Sug1, rec1Doc1Sug2, rec2Doc1Sug1, rec1Doc2Sug1, rec3Doc1Sug1));
+    }
+
+    @Test
+    public void thatWindowQueriesReturnSuggestionsInWindow()
+    {
+        assertThat(window("doc1", layer, -1, -1))
+                .containsExactlyInAnyOrder(rec1Doc1Sug1, rec1Doc1Sug2, rec2Doc1Sug1);
+
+        assertThat(window("doc1", layer, 0, 15))
+                .as("Suggestions extending beyond the window are excluded")
+                .containsExactlyInAnyOrder(rec1Doc1Sug1, rec1Doc1Sug2);
+
+        assertThat(window("doc1", layer, 5, -1))
+                .containsExactlyInAnyOrder(rec1Doc1Sug2, rec2Doc1Sug1);
+
+        assertThat(window("doc3", layer, -1, -1)).isEmpty();
+    }
+
+    @Test
+    public void thatLookupByVidWorks()
+    {
+        assertThat(sut.getPredictionByVID(doc1, rec2Doc1Sug1.getVID())).contains(rec2Doc1Sug1);
+        assertThat(sut.getPredictionByVID(doc1, rec1Doc1Sug2.getVID())).contains(rec1Doc1Sug2);
+    }
+
+    @Test
+    public void thatLookupByTokenAndFeatureWorks()
+    {
+        assertThat(sut.getPredictionsByTokenAndFeature("doc1", layer, 10, 15, "value"))
+                .containsExactly(rec1Doc1Sug2);
+        assertThat(sut.getPredictionsByTokenAndFeature("doc1", layer, 10, 15, "other"))
+                .isEmpty();
+    }
+
+    @Test
+    public void thatLookupByOffsetAndLabelWorks()
+    {
+        assertThat(sut.getPrediction(doc1, 0, 5, "E")).contains(rec3Doc1Sug1);
+        assertThat(sut.getPrediction(doc1, 0, 5, "X")).isEmpty();
+    }
+
+    @Test
+    public void thatPuttingSameSuggestionAgainReplacesIt()
+    {
+        AnnotationSuggestion replacement = new AnnotationSuggestion(1, 1, "rec1", 1, "value",
+                "doc1", 12, 15, "bbb", "B", "B", 0.9, null);
+
+        sut.putPredictions(asList(replacement));
+
+        assertThat(sut.size()).isEqualTo(5);
+        assertThat(window("doc1", layer, 10, 15)).containsExactly(replacement)
+                .allMatch(s -> s.getBegin() == 12);
+    }
+
+    @Test
+    public void thatRemovingByRecommenderUpdatesAllIndexes()
+    {
+        sut.removePredictions(1l);
+
+        assertThat(sut.size()).isEqualTo(2);
+        assertThat(window("doc1", layer, -1, -1)).containsExactly(rec2Doc1Sug1);
+        assertThat(sut.getPredictionsByDocument("doc2")).isEmpty();
+        assertThat(sut.getPredictionByVID(doc1, rec1Doc1Sug1.getVID())).isEmpty();
+        assertThat(sut.getPredictionsByDocument("doc1"))
+                .containsExactlyInAnyOrder(rec2Doc1Sug1, rec3Doc1Sug1);
+    }
+
+    private List<AnnotationSuggestion> window(String aDocumentName, AnnotationLayer aLayer,
+            int aWindowBegin, int aWindowEnd)
+    {
+        return sut.getPredictions(aDocumentName, aLayer, aWindowBegin, aWindowEnd).stream()
+                .flatMap(SuggestionGroup::stream)
+                .collect(toList());
+    }
+}
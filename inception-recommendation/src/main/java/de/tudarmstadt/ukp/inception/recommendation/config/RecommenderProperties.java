@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.config;
+
+import java.time.Duration;
+
+public interface RecommenderProperties
+{
+    /**
+     * @return maximum number of documents for which predictions are computed concurrently. A
+     *         value of {@code 1} or less disables parallel prediction.
+     */
+    int getPredictionParallelism();
+
+    /**
+     * @return maximum number of documents which are passed to a recommender at once when
+     *         computing predictions. A value of {@code 1} or less predicts each document
+     *         separately.
+     */
+    int getPredictionBatchSize();
+
+    /**
+     * @return maximum number of recommenders which are evaluated concurrently. The limit applies
+     *         to all selection tasks together. A value of {@code 1} or less disables parallel
+     *         evaluation.
+     */
+    int getEvaluationParallelism();
+
+    /**
+     * @return maximum time a single recommender may spend on its evaluation before it is aborted
+     *         and not activated. A zero or negative duration disables the timeout.
+     */
+    Duration getEvaluationTimeout();
+
+    /**
+     * @return whether trained recommender models are persisted in the repository so they survive
+     *         restarts and session expiry.
+     */
+    boolean isPersistModels();
+
+    /**
+     * @return maximum number of documents for which the training data extracted by incremental
+     *         training engines is cached.
+     */
+    long getTrainingDataCacheSize();
+}
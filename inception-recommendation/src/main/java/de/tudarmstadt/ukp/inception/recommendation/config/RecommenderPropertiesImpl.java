@@ -0,0 +1,103 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.config;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationUnit;
+
+@ConfigurationProperties("recommender")
+public class RecommenderPropertiesImpl
+    implements RecommenderProperties
+{
+    private int predictionParallelism = 1;
+    private int predictionBatchSize = 1;
+    private int evaluationParallelism = 1;
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration evaluationTimeout = Duration.ZERO;
+    private boolean persistModels = true;
+    private long trainingDataCacheSize = 10_000;
+
+    @Override
+    public int getPredictionParallelism()
+    {
+        return predictionParallelism;
+    }
+
+    public void setPredictionParallelism(int aPredictionParallelism)
+    {
+        predictionParallelism = aPredictionParallelism;
+    }
+
+    @Override
+    public int getPredictionBatchSize()
+    {
+        return predictionBatchSize;
+    }
+
+    public void setPredictionBatchSize(int aPredictionBatchSize)
+    {
+        predictionBatchSize = aPredictionBatchSize;
+    }
+
+    @Override
+    public int getEvaluationParallelism()
+    {
+        return evaluationParallelism;
+    }
+
+    public void setEvaluationParallelism(int aEvaluationParallelism)
+    {
+        evaluationParallelism = aEvaluationParallelism;
+    }
+
+    @Override
+    public Duration getEvaluationTimeout()
+    {
+        return evaluationTimeout;
+    }
+
+    public void setEvaluationTimeout(Duration aEvaluationTimeout)
+    {
+        evaluationTimeout = aEvaluationTimeout;
+    }
+
+    @Override
+    public boolean isPersistModels()
+    {
+        return persistModels;
+    }
+
+    public void setPersistModels(boolean aPersistModels)
+    {
+        persistModels = aPersistModels;
+    }
+
+    @Override
+    public long getTrainingDataCacheSize()
+    {
+        return trainingDataCacheSize;
+    }
+
+    public void setTrainingDataCacheSize(long aTrainingDataCacheSize)
+    {
+        trainingDataCacheSize = aTrainingDataCacheSize;
+    }
+}
@@ -24,11 +24,13 @@ import javax.persistence.PersistenceContext;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.core.session.SessionRegistry;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
 import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
@@ -47,10 +49,15 @@ import de.tudarmstadt.ukp.inception.recommendation.log.RecommendationRejectedEve
 import de.tudarmstadt.ukp.inception.recommendation.log.RecommenderDeletedEventAdapter;
 import de.tudarmstadt.ukp.inception.recommendation.log.RecommenderEvaluationResultEventAdapter;
 import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommendationMetricsImpl;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics;
 import de.tudarmstadt.ukp.inception.recommendation.project.RecommenderProjectSettingsPanelFactory;
 import de.tudarmstadt.ukp.inception.recommendation.service.LearningRecordServiceImpl;
+import de.tudarmstadt.ukp.inception.recommendation.service.PredictionCasPool;
 import de.tudarmstadt.ukp.inception.recommendation.service.RecommendationServiceImpl;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderEvaluationExecutor;
 import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderFactoryRegistryImpl;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderModelStore;
+import de.tudarmstadt.ukp.inception.recommendation.service.TrainingDataCache;
 import de.tudarmstadt.ukp.inception.recommendation.sidebar.RecommendationSidebarFactory;
 import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
 
@@ -60,6 +67,7 @@ import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
 @Configuration
 @ConditionalOnProperty(prefix = "recommender", name = "enabled", havingValue = "true", 
         matchIfMissing = true)
+@EnableConfigurationProperties(RecommenderPropertiesImpl.class)
 public class RecommenderServiceAutoConfiguration
 {
     private @PersistenceContext EntityManager entityManager;
@@ -70,17 +78,67 @@ public class RecommenderServiceAutoConfiguration
             UserDao aUserRepository, RecommenderFactoryRegistry aRecommenderFactoryRegistry,
             SchedulingService aSchedulingService, AnnotationSchemaService aAnnoService,
             DocumentService aDocumentService, LearningRecordService aLearningRecordService,
-            ProjectService aProjectService, ApplicationEventPublisher aApplicationEventPublisher)
+            ProjectService aProjectService, ApplicationEventPublisher aApplicationEventPublisher,
+            RecommenderProperties aRecommenderProperties, PredictionCasPool aPredictionCasPool,
+            RecommenderModelStore aRecommenderModelStore,
+            RecommenderStatistics aRecommenderStatistics)
     {
         return new RecommendationServiceImpl(aSessionRegistry, aUserRepository,
                 aRecommenderFactoryRegistry, aSchedulingService, aAnnoService, aDocumentService,
-                aLearningRecordService, aProjectService, entityManager, aApplicationEventPublisher);
+                aLearningRecordService, aProjectService, entityManager, aApplicationEventPublisher,
+                aRecommenderProperties, aPredictionCasPool, aRecommenderModelStore,
+                aRecommenderStatistics);
     }
     
     @Bean
-    public LearningRecordService learningRecordService()
+    public RecommenderStatistics recommenderStatistics()
     {
-        return new LearningRecordServiceImpl(entityManager);
+        return new RecommenderStatistics();
+    }
+    
+    @Bean
+    @Autowired
+    public PredictionCasPool predictionCasPool(RecommenderProperties aRecommenderProperties)
+    {
+        // Every prediction worker holds one prediction CAS per document in its current batch
+        return new PredictionCasPool(
+                Math.max(1, aRecommenderProperties.getPredictionParallelism())
+                        * Math.max(1, aRecommenderProperties.getPredictionBatchSize()));
+    }
+    
+    @Bean
+    @Autowired
+    public RecommenderEvaluationExecutor recommenderEvaluationExecutor(
+            RecommenderProperties aRecommenderProperties)
+    {
+        return new RecommenderEvaluationExecutor(
+                Math.max(1, aRecommenderProperties.getEvaluationParallelism()));
+    }
+    
+    @Bean
+    @Autowired
+    public RecommenderModelStore recommenderModelStore(DocumentService aDocumentService,
+            RecommenderProperties aRecommenderProperties)
+    {
+        return new RecommenderModelStore(aDocumentService,
+                aRecommenderProperties.isPersistModels());
+    }
+    
+    @Bean
+    @Autowired
+    public TrainingDataCache trainingDataCache(SessionRegistry aSessionRegistry,
+            RecommenderProperties aRecommenderProperties)
+    {
+        return new TrainingDataCache(aSessionRegistry,
+                Math.max(1, aRecommenderProperties.getTrainingDataCacheSize()));
+    }
+    
+    @Bean
+    @Autowired
+    public LearningRecordService learningRecordService(
+            PlatformTransactionManager aTransactionManager)
+    {
+        return new LearningRecordServiceImpl(entityManager, aTransactionManager);
     }
     
     @ConditionalOnProperty(prefix = "recommender.evaluation-page", name = "enabled", 
@@ -160,8 +218,10 @@ public class RecommenderServiceAutoConfiguration
     @Bean
     @Autowired
     @ConditionalOnProperty(prefix = "monitoring.metrics", name = "enabled", havingValue = "true")
-    public RecommendationMetricsImpl recommendationMetricsImpl(RecommendationService aRecService) {
-        return new RecommendationMetricsImpl(aRecService);
+    public RecommendationMetricsImpl recommendationMetricsImpl(RecommendationService aRecService,
+            PredictionCasPool aPredictionCasPool, RecommenderStatistics aRecommenderStatistics) {
+        return new RecommendationMetricsImpl(aRecService, aPredictionCasPool,
+                aRecommenderStatistics);
         
     }
 }
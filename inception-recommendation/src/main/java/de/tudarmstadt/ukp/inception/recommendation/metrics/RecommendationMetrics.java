@@ -17,10 +17,48 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.metrics;
 
+import javax.management.openmbean.CompositeData;
+
 public interface RecommendationMetrics
 {
     /**
      * Retrieve the total number of currently enabled recommenders
      */
     public long getEnabledRecommendersTotal();
+    
+    /**
+     * Retrieve the number of prediction CASes which could be taken from the pool
+     */
+    public long getPredictionCasPoolHits();
+    
+    /**
+     * Retrieve the number of prediction CASes which had to be created because the pool was empty
+     */
+    public long getPredictionCasPoolMisses();
+    
+    /**
+     * Retrieve the number of prediction CASes currently idle in the pool
+     */
+    public int getPredictionCasPoolIdle();
+    
+    /**
+     * Retrieve the number of completed prediction runs
+     */
+    public long getPredictionRunsTotal();
+    
+    /**
+     * Retrieve the number of suggestions generated by the recommenders
+     */
+    public long getSuggestionsGeneratedTotal();
+    
+    /**
+     * Retrieve the number of suggestions inherited from a previous prediction run
+     */
+    public long getSuggestionsInheritedTotal();
+    
+    /**
+     * Retrieve the training, evaluation and prediction durations and the number of CASes
+     * processed per recommender tool
+     */
+    public CompositeData getRecommenderStatistics();
 }
@@ -17,11 +17,15 @@
  */
 package de.tudarmstadt.ukp.inception.recommendation.metrics;
 
+import javax.management.openmbean.CompositeData;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jmx.export.annotation.ManagedAttribute;
 import org.springframework.jmx.export.annotation.ManagedResource;
 
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
+import de.tudarmstadt.ukp.inception.recommendation.service.PredictionCasPool;
+import de.tudarmstadt.ukp.inception.scheduling.metrics.MetricsUtils;
 
 @ManagedResource
 /**
@@ -34,11 +38,16 @@ public class RecommendationMetricsImpl
     implements RecommendationMetrics
 {
     private final RecommendationService recService;
+    private final PredictionCasPool predictionCasPool;
+    private final RecommenderStatistics recommenderStatistics;
     
     @Autowired
-    public RecommendationMetricsImpl(RecommendationService aRecService)
+    public RecommendationMetricsImpl(RecommendationService aRecService,
+            PredictionCasPool aPredictionCasPool, RecommenderStatistics aRecommenderStatistics)
     {
         recService = aRecService;
+        predictionCasPool = aPredictionCasPool;
+        recommenderStatistics = aRecommenderStatistics;
     }
 
     @Override
@@ -48,4 +57,53 @@ public class RecommendationMetricsImpl
         return recService.countEnabledRecommenders();
     }
     
+    @Override
+    @ManagedAttribute
+    public long getPredictionCasPoolHits()
+    {
+        return predictionCasPool.getHits();
+    }
+    
+    @Override
+    @ManagedAttribute
+    public long getPredictionCasPoolMisses()
+    {
+        return predictionCasPool.getMisses();
+    }
+    
+    @Override
+    @ManagedAttribute
+    public int getPredictionCasPoolIdle()
+    {
+        return predictionCasPool.getIdleCount();
+    }
+    
+    @Override
+    @ManagedAttribute
+    public long getPredictionRunsTotal()
+    {
+        return recommenderStatistics.getPredictionRuns();
+    }
+    
+    @Override
+    @ManagedAttribute
+    public long getSuggestionsGeneratedTotal()
+    {
+        return recommenderStatistics.getSuggestionsGenerated();
+    }
+    
+    @Override
+    @ManagedAttribute
+    public long getSuggestionsInheritedTotal()
+    {
+        return recommenderStatistics.getSuggestionsInherited();
+    }
+    
+    @Override
+    @ManagedAttribute
+    public CompositeData getRecommenderStatistics()
+    {
+        return MetricsUtils.toCompositeData("RecommenderStatistics",
+                recommenderStatistics.export());
+    }
 }
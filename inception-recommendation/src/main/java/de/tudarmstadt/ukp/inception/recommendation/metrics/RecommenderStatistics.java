@@ -0,0 +1,128 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.scheduling.metrics.DurationHistogram;
+
+/**
+ * Statistics of the recommender pipeline. Durations and the number of CASes processed are
+ * recorded per recommender tool (i.e. engine type) and phase. Aggregating by tool instead of by
+ * individual recommender keeps the number of metrics bounded.
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link RecommenderServiceAutoConfiguration#recommenderStatistics}.
+ * </p>
+ */
+public class RecommenderStatistics
+{
+    public enum Phase
+    {
+        TRAIN, EVALUATE, PREDICT;
+    }
+
+    private final ConcurrentMap<String, Map<Phase, PhaseStatistics>> tools =
+            new ConcurrentHashMap<>();
+
+    private final LongAdder predictionRuns = new LongAdder();
+    private final LongAdder suggestionsGenerated = new LongAdder();
+    private final LongAdder suggestionsInherited = new LongAdder();
+
+    public void record(Recommender aRecommender, Phase aPhase, long aDurationMs, int aCasCount)
+    {
+        PhaseStatistics stats = tools
+                .computeIfAbsent(aRecommender.getTool(), _key -> newPhaseStatistics())
+                .get(aPhase);
+        stats.duration.record(aDurationMs);
+        stats.casses.add(aCasCount);
+    }
+
+    public void predictionRunCompleted()
+    {
+        predictionRuns.increment();
+    }
+
+    public void suggestionsGenerated(int aCount)
+    {
+        suggestionsGenerated.add(aCount);
+    }
+
+    public void suggestionsInherited(int aCount)
+    {
+        suggestionsInherited.add(aCount);
+    }
+
+    public long getPredictionRuns()
+    {
+        return predictionRuns.sum();
+    }
+
+    public long getSuggestionsGenerated()
+    {
+        return suggestionsGenerated.sum();
+    }
+
+    public long getSuggestionsInherited()
+    {
+        return suggestionsInherited.sum();
+    }
+
+    /**
+     * Exports the statistics as a flat map with keys of the form {@code <tool>_<phase>_<metric>}.
+     */
+    public Map<String, Long> export()
+    {
+        Map<String, Long> result = new TreeMap<>();
+        for (Map.Entry<String, Map<Phase, PhaseStatistics>> tool : tools.entrySet()) {
+            for (Map.Entry<Phase, PhaseStatistics> phase : tool.getValue().entrySet()) {
+                String prefix = tool.getKey() + "_" + phase.getKey().name().toLowerCase();
+                PhaseStatistics stats = phase.getValue();
+                if (stats.duration.getCount() == 0) {
+                    continue;
+                }
+                
+                stats.duration.export(prefix + "_time_ms", result);
+                result.put(prefix + "_cas_total", stats.casses.sum());
+            }
+        }
+        return result;
+    }
+
+    private static Map<Phase, PhaseStatistics> newPhaseStatistics()
+    {
+        Map<Phase, PhaseStatistics> phases = new EnumMap<>(Phase.class);
+        for (Phase phase : Phase.values()) {
+            phases.put(phase, new PhaseStatistics());
+        }
+        return phases;
+    }
+
+    private static class PhaseStatistics
+    {
+        private final DurationHistogram duration = new DurationHistogram();
+        private final LongAdder casses = new LongAdder();
+    }
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
+
+/**
+ * In-memory index of the learning records per user and layer. Within each user/layer, the
+ * records are grouped by source document and by their character offsets, so looking up the
+ * records for a particular suggestion does not require a database query or a scan over all
+ * records.
+ * <p>
+ * The records of a user/layer are loaded lazily on first access. Afterwards, the
+ * {@link LearningRecordServiceImpl} applies any changes to the index. Records of the type
+ * {@link LearningRecordType#SHOWN} are never indexed. The index is bounded by the number of
+ * records it holds and entries which have not been accessed for a while are dropped.
+ */
+class LearningRecordIndex
+{
+    private static final long DEFAULT_MAX_RECORDS = 1_000_000;
+    
+    private final Cache<Key, Entry> entries;
+    
+    // Incremented on every change such that a load which raced with a change is not cached
+    private final AtomicLong version = new AtomicLong();
+
+    public LearningRecordIndex()
+    {
+        this(DEFAULT_MAX_RECORDS);
+    }
+
+    public LearningRecordIndex(long aMaxRecords)
+    {
+        entries = Caffeine.newBuilder()
+                .maximumWeight(aMaxRecords)
+                .weigher((Key key, Entry entry) -> entry.initialSize)
+                .expireAfterAccess(30, MINUTES)
+                .build();
+    }
+
+    /**
+     * Returns the records at the given offsets, the most recent record first.
+     */
+    public List<LearningRecord> get(String aUser, AnnotationLayer aLayer, String aDocumentName,
+            int aBegin, int aEnd, Supplier<List<LearningRecord>> aLoader)
+    {
+        Key key = new Key(aUser, aLayer.getId());
+        
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null) {
+            long loadVersion = version.get();
+            entry = new Entry(aLayer.getProject().getId(), aLoader.get());
+            if (version.get() == loadVersion) {
+                Entry existing = entries.asMap().putIfAbsent(key, entry);
+                if (existing != null) {
+                    entry = existing;
+                }
+            }
+        }
+        
+        return entry.get(aDocumentName, aBegin, aEnd);
+    }
+
+    public void add(LearningRecord aRecord)
+    {
+        version.incrementAndGet();
+        Entry entry = entries.getIfPresent(new Key(aRecord.getUser(), aRecord.getLayer().getId()));
+        if (entry != null) {
+            entry.add(aRecord);
+        }
+    }
+
+    public void remove(String aUser, AnnotationLayer aLayer, Predicate<LearningRecord> aFilter)
+    {
+        version.incrementAndGet();
+        Entry entry = entries.getIfPresent(new Key(aUser, aLayer.getId()));
+        if (entry != null) {
+            entry.removeIf(aFilter);
+        }
+    }
+
+    public void remove(String aUser, Predicate<LearningRecord> aFilter)
+    {
+        version.incrementAndGet();
+        entries.asMap().forEach((key, entry) -> {
+            if (key.user.equals(aUser)) {
+                entry.removeIf(aFilter);
+            }
+        });
+    }
+
+    /**
+     * Removes all records of the given source document, e.g. because the document is deleted.
+     */
+    public void removeDocument(long aSourceDocumentId)
+    {
+        version.incrementAndGet();
+        entries.asMap().values().forEach(entry -> entry.removeDocument(aSourceDocumentId));
+    }
+
+    public void invalidate(String aUser, AnnotationLayer aLayer)
+    {
+        version.incrementAndGet();
+        entries.invalidate(new Key(aUser, aLayer.getId()));
+    }
+
+    /**
+     * Drops the records of all users and layers of the given project.
+     */
+    public void invalidateProject(long aProjectId)
+    {
+        version.incrementAndGet();
+        entries.asMap().values().removeIf(entry -> entry.projectId == aProjectId);
+    }
+
+    long size()
+    {
+        entries.cleanUp();
+        return entries.estimatedSize();
+    }
+
+    private static long offsetKey(int aBegin, int aEnd)
+    {
+        return ((long) aBegin << 32) | (aEnd & 0xFFFFFFFFL);
+    }
+
+    private static final class Key
+    {
+        private final String user;
+        private final long layerId;
+
+        public Key(String aUser, long aLayerId)
+        {
+            user = aUser;
+            layerId = aLayerId;
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+            if (!(aOther instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) aOther;
+            return layerId == other.layerId && user.equals(other.user);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(user, layerId);
+        }
+    }
+
+    private static final class Entry
+    {
+        private final long projectId;
+        private final int initialSize;
+        
+        // The records are keyed by the source document ID such that a document which is deleted
+        // and imported again under the same name does not inherit the records of the old one.
+        // Since document names are unique within a project, the name resolves to the ID of the
+        // most recent document of that name.
+        private final Map<Long, Map<Long, List<LearningRecord>>> documents = new HashMap<>();
+        private final Map<String, Long> documentIds = new HashMap<>();
+
+        public Entry(long aProjectId, List<LearningRecord> aRecords)
+        {
+            projectId = aProjectId;
+            initialSize = Math.max(1, aRecords.size());
+            
+            // The records are expected to be sorted with the most recent record first, so we
+            // add them in reverse order
+            for (int i = aRecords.size() - 1; i >= 0; i--) {
+                add(aRecords.get(i));
+            }
+        }
+
+        public synchronized List<LearningRecord> get(String aDocumentName, int aBegin, int aEnd)
+        {
+            Long documentId = documentIds.get(aDocumentName);
+            if (documentId == null) {
+                return Collections.emptyList();
+            }
+            
+            Map<Long, List<LearningRecord>> document = documents.get(documentId);
+            if (document == null) {
+                return Collections.emptyList();
+            }
+
+            List<LearningRecord> records = document.get(offsetKey(aBegin, aEnd));
+            if (records == null) {
+                return Collections.emptyList();
+            }
+
+            return new ArrayList<>(records);
+        }
+
+        public synchronized void add(LearningRecord aRecord)
+        {
+            if (aRecord.getUserAction() == LearningRecordType.SHOWN) {
+                return;
+            }
+
+            Long documentId = aRecord.getSourceDocument().getId();
+            Long previousId = documentIds.put(aRecord.getSourceDocument().getName(), documentId);
+            if (previousId != null && !previousId.equals(documentId)) {
+                documents.remove(previousId);
+            }
+            
+            List<LearningRecord> records = documents
+                    .computeIfAbsent(documentId, _key -> new HashMap<>())
+                    .computeIfAbsent(offsetKey(aRecord.getOffsetCharacterBegin(),
+                            aRecord.getOffsetCharacterEnd()), _key -> new ArrayList<>(1));
+
+            // A record may already be present if it was loaded from the database after it had
+            // been committed but before the index was notified
+            if (aRecord.getId() != null) {
+                records.removeIf(r -> aRecord.getId().equals(r.getId()));
+            }
+
+            records.add(0, aRecord);
+        }
+
+        public synchronized void removeIf(Predicate<LearningRecord> aFilter)
+        {
+            Iterator<Map<Long, List<LearningRecord>>> i = documents.values().iterator();
+            while (i.hasNext()) {
+                Map<Long, List<LearningRecord>> document = i.next();
+                document.values().removeIf(records -> {
+                    records.removeIf(aFilter);
+                    return records.isEmpty();
+                });
+                if (document.isEmpty()) {
+                    i.remove();
+                }
+            }
+            documentIds.values().retainAll(documents.keySet());
+        }
+        
+        public synchronized void removeDocument(long aSourceDocumentId)
+        {
+            documents.remove(aSourceDocumentId);
+            documentIds.values().remove(aSourceDocumentId);
+        }
+    }
+}
@@ -18,14 +18,22 @@
 package de.tudarmstadt.ukp.inception.recommendation.service;
 
 import java.util.List;
+import java.util.Objects;
 
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 
 import org.springframework.context.event.EventListener;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentResetEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeProjectRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
@@ -47,10 +55,16 @@ public class LearningRecordServiceImpl
     implements LearningRecordService
 {
     private final EntityManager entityManager;
+    private final TransactionTemplate readTransaction;
+    private final LearningRecordIndex index = new LearningRecordIndex();
 
-    public LearningRecordServiceImpl(EntityManager aEntityManager)
+    public LearningRecordServiceImpl(EntityManager aEntityManager,
+            PlatformTransactionManager aTransactionManager)
     {
         entityManager = aEntityManager;
+        
+        readTransaction = new TransactionTemplate(aTransactionManager);
+        readTransaction.setReadOnly(true);
     }
     
     @Transactional
@@ -61,6 +75,32 @@ public class LearningRecordServiceImpl
         deleteRecords(currentDocument, currentUser);
     }
     
+    /**
+     * The learning records of a document are removed by the database when the document is
+     * deleted, so we need to drop them from the index as well.
+     */
+    @EventListener
+    public void beforeDocumentRemove(BeforeDocumentRemovedEvent aEvent)
+    {
+        long documentId = aEvent.getDocument().getId();
+        afterCommit(() -> index.removeDocument(documentId));
+    }
+    
+    @EventListener
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        // Layers may have been removed along with their learning records
+        long projectId = aEvent.getProject().getId();
+        afterCommit(() -> index.invalidateProject(projectId));
+    }
+    
+    @EventListener
+    public void beforeProjectRemove(BeforeProjectRemovedEvent aEvent)
+    {
+        long projectId = aEvent.getProject().getId();
+        afterCommit(() -> index.invalidateProject(projectId));
+    }
+    
     @Transactional
     @Override
     public void logRecord(SourceDocument aDocument, String aUsername,
@@ -101,6 +141,13 @@ public class LearningRecordServiceImpl
                 .setParameter("annotationFeature", aFeature)
                 .setParameter("annotation", aAlternativeLabel)
                 .executeUpdate();
+        afterCommit(() -> index.remove(aUsername, aLayer, r ->
+                Objects.equals(r.getSourceDocument().getId(), aDocument.getId()) &&
+                r.getOffsetCharacterBegin() == aSuggestion.getBegin() &&
+                r.getOffsetCharacterEnd() == aSuggestion.getEnd() &&
+                r.getAnnotationFeature() != null && aFeature != null &&
+                Objects.equals(r.getAnnotationFeature().getId(), aFeature.getId()) &&
+                Objects.equals(r.getAnnotation(), aAlternativeLabel)));
         
         LearningRecord record = new LearningRecord();
         record.setUser(aUsername);
@@ -148,6 +195,19 @@ public class LearningRecordServiceImpl
         return listRecords(aUsername, aLayer, 0);
     }
 
+    /**
+     * Looks the records up in the index. This is called for every suggestion while rendering, so
+     * it is not transactional itself. Only loading the records of a user/layer into the index
+     * requires a transaction.
+     */
+    @Override
+    public List<LearningRecord> listRecords(String aUsername, AnnotationLayer aLayer,
+            String aDocumentName, int aBegin, int aEnd)
+    {
+        return index.get(aUsername, aLayer, aDocumentName, aBegin, aEnd,
+            () -> readTransaction.execute(status -> listRecords(aUsername, aLayer)));
+    }
+
     @Transactional
     @Override
     public LearningRecord getRecordById(long recordId) {
@@ -167,6 +227,8 @@ public class LearningRecordServiceImpl
             .setParameter("document", document)
             .setParameter("user",user)
             .executeUpdate();
+        afterCommit(() -> index.remove(user,
+            r -> Objects.equals(r.getSourceDocument().getId(), document.getId())));
     }
 
     @Override
@@ -174,6 +236,7 @@ public class LearningRecordServiceImpl
     public void create(LearningRecord learningRecord) {
         entityManager.persist(learningRecord);
         entityManager.flush();
+        afterCommit(() -> index.add(learningRecord));
     }
 
     @Override
@@ -181,6 +244,7 @@ public class LearningRecordServiceImpl
     public void update(LearningRecord learningRecord) {
         entityManager.merge(learningRecord);
         entityManager.flush();
+        afterCommit(() -> index.invalidate(learningRecord.getUser(), learningRecord.getLayer()));
     }
 
     @Override
@@ -188,6 +252,8 @@ public class LearningRecordServiceImpl
     public void delete(LearningRecord learningRecord) {
         entityManager.remove(entityManager.contains(learningRecord) ? learningRecord :
             entityManager.merge(learningRecord));
+        afterCommit(() -> index.remove(learningRecord.getUser(), learningRecord.getLayer(),
+            r -> Objects.equals(r.getId(), learningRecord.getId())));
     }
 
     @Override
@@ -230,5 +296,29 @@ public class LearningRecordServiceImpl
                 .setParameter("layer", aLayer)
                 .setParameter("action", LearningRecordType.SKIPPED)
                 .executeUpdate();
+        afterCommit(() -> index.remove(aUser.getUsername(), aLayer,
+            r -> r.getUserAction() == LearningRecordType.SKIPPED));
+    }
+    
+    /**
+     * Applies the given change to the learning record index once the current transaction has been
+     * committed, such that changes which are rolled back never make it into the index. 
+     */
+    private void afterCommit(Runnable aAction)
+    {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            aAction.run();
+            return;
+        }
+        
+        TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronizationAdapter()
+                {
+                    @Override
+                    public void afterCommit()
+                    {
+                        aAction.run();
+                    }
+                });
     }
 }
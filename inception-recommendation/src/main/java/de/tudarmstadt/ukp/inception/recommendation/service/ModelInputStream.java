@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+
+/**
+ * Reads serialized recommender models. Refuses to deserialize classes which do not belong to one
+ * of the {@link #MODEL_PACKAGES} as well as proxy classes.
+ */
+public class ModelInputStream
+    extends ObjectInputStream
+{
+    /**
+     * Packages of the classes which may be part of a stored model. These cover the Java
+     * collections, the models of the built-in recommenders and the libraries they use.
+     */
+    private static final String[] MODEL_PACKAGES = {
+            "java.lang.", "java.math.", "java.time.", "java.util.",
+            "de.tudarmstadt.ukp.",
+            "opennlp.tools.",
+            "org.deeplearning4j.", "org.nd4j." };
+
+    public ModelInputStream(InputStream aIn) throws IOException
+    {
+        super(aIn);
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass aDesc)
+        throws IOException, ClassNotFoundException
+    {
+        if (!isModelClass(aDesc.getName())) {
+            throw new InvalidClassException(aDesc.getName(),
+                    "Class is not permitted in a stored model");
+        }
+
+        return super.resolveClass(aDesc);
+    }
+
+    @Override
+    protected Class<?> resolveProxyClass(String[] aInterfaces)
+        throws IOException, ClassNotFoundException
+    {
+        throw new InvalidClassException("Proxy classes are not permitted in a stored model");
+    }
+
+    static boolean isModelClass(String aName)
+    {
+        // Array class names look like "[I" for primitive arrays or "[[Ljava.lang.String;"
+        String name = aName;
+        if (name.startsWith("[")) {
+            name = name.substring(name.lastIndexOf('[') + 1);
+            if (name.length() == 1) {
+                return true;
+            }
+            name = name.substring(1, name.length() - 1);
+        }
+
+        for (String pkg : MODEL_PACKAGES) {
+            if (name.startsWith(pkg)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
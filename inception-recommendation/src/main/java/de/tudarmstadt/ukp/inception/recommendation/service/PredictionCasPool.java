@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.cas.TypeSystem;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.metadata.FeatureDescription;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasCreationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
+
+/**
+ * Pool of prediction CASes per project. All CASes in the pool of a project share the same
+ * compiled type system which includes the additional prediction features. The pool of a project is
+ * keyed by a signature listing all types and features of the prediction type system, so if the
+ * layer/feature configuration of the project changes, a new pool is started and CASes with the old
+ * type system are discarded when they are returned.
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link RecommenderServiceAutoConfiguration#predictionCasPool}.
+ * </p>
+ */
+public class PredictionCasPool
+{
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final int maxIdlePerProject;
+    private final Map<Long, ProjectPool> pools = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public PredictionCasPool(int aMaxIdlePerProject)
+    {
+        maxIdlePerProject = aMaxIdlePerProject;
+    }
+
+    /**
+     * Obtains a CAS using the given prediction type system from the pool of the given project. If
+     * there is no idle CAS in the pool, a new one is created.
+     */
+    public CAS borrowCas(Project aProject, TypeSystemDescription aPredictionTypeSystem)
+        throws ResourceInitializationException
+    {
+        String key = signature(aPredictionTypeSystem);
+
+        ProjectPool pool = pools.compute(aProject.getId(),
+            (_id, _pool) -> _pool != null && _pool.key.equals(key) ? _pool : new ProjectPool(key));
+
+        CAS cas = pool.idle.pollFirst();
+        if (cas != null) {
+            hits.incrementAndGet();
+            return cas;
+        }
+
+        misses.incrementAndGet();
+        return pool.createCas(aPredictionTypeSystem);
+    }
+
+    /**
+     * Returns a CAS to the pool of the given project. The CAS is reset and retained for the next
+     * borrower unless the pool has been invalidated in the meantime or it is already full.
+     */
+    public void returnCas(Project aProject, CAS aCas)
+    {
+        ProjectPool pool = pools.get(aProject.getId());
+
+        if (
+                pool == null ||
+                pool.typeSystem != aCas.getTypeSystem() ||
+                pool.idle.size() >= maxIdlePerProject
+        ) {
+            return;
+        }
+
+        aCas.reset();
+        pool.idle.offerFirst(aCas);
+    }
+
+    public void invalidate(Project aProject)
+    {
+        if (pools.remove(aProject.getId()) != null) {
+            log.trace("Invalidated prediction CAS pool for project [{}]({})", aProject.getName(),
+                    aProject.getId());
+        }
+    }
+
+    @EventListener
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        invalidate(aEvent.getProject());
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public int getIdleCount()
+    {
+        return pools.values().stream().mapToInt(pool -> pool.idle.size()).sum();
+    }
+
+    /**
+     * Lists the types and features of the given type system description. Two descriptions with
+     * the same signature compile to the same type system. Unlike a hash, the signature cannot
+     * collide for different type systems.
+     */
+    static String signature(TypeSystemDescription aTsd)
+    {
+        StringBuilder signature = new StringBuilder();
+        for (TypeDescription type : aTsd.getTypes()) {
+            signature.append(type.getName()).append('<').append(type.getSupertypeName());
+            for (FeatureDescription feature : type.getFeatures()) {
+                signature.append(';').append(feature.getName())
+                        .append(':').append(feature.getRangeTypeName())
+                        .append('/').append(feature.getElementType());
+            }
+            signature.append('\n');
+        }
+        return signature.toString();
+    }
+
+    private static class ProjectPool
+    {
+        private final String key;
+        private final Deque<CAS> idle = new ConcurrentLinkedDeque<>();
+        private volatile TypeSystem typeSystem;
+
+        public ProjectPool(String aKey)
+        {
+            key = aKey;
+        }
+
+        public synchronized CAS createCas(TypeSystemDescription aPredictionTypeSystem)
+            throws ResourceInitializationException
+        {
+            // The type system is only compiled for the first CAS - all further CASes in this pool
+            // share the compiled type system
+            if (typeSystem == null) {
+                CAS cas = CasCreationUtils.createCas(aPredictionTypeSystem, null, null);
+                typeSystem = cas.getTypeSystem();
+                return cas;
+            }
+
+            return CasCreationUtils.createCas(typeSystem, null, null, null);
+        }
+    }
+}
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.recommendation.service;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.CasUpgradeMode.AUTO_CAS_UPGRADE;
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getAddr;
+import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHARED_READ_ONLY_ACCESS;
 import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSuggestion.FLAG_ALL;
@@ -28,24 +29,37 @@ import static de.tudarmstadt.ukp.inception.recommendation.api.model.AnnotationSu
 import static de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability.TRAINING_NOT_SUPPORTED;
 import static java.util.Comparator.comparingInt;
 import static java.util.stream.Collectors.toList;
+import static org.apache.uima.cas.SerialFormat.COMPRESSED_FILTERED_TSI;
 import static org.apache.uima.fit.util.CasUtil.getType;
-import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectAt;
 import static org.apache.uima.fit.util.CasUtil.selectCovered;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
 
 import javax.persistence.EntityManager;
 import javax.persistence.NoResultException;
@@ -57,16 +71,20 @@ import org.apache.commons.collections4.multimap.HashSetValuedHashMap;
 import org.apache.commons.lang3.Validate;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.uima.UIMAException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Feature;
 import org.apache.uima.cas.Type;
+import org.apache.uima.cas.impl.CASImpl;
 import org.apache.uima.cas.text.AnnotationFS;
 import org.apache.uima.fit.util.CasUtil;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.resource.metadata.FeatureDescription;
 import org.apache.uima.resource.metadata.TypeDescription;
 import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.apache.uima.util.CasIOUtils;
+import org.apache.uima.util.CasLoadMode;
 import org.apache.wicket.MetaDataKey;
 import org.apache.wicket.Page;
 import org.apache.wicket.core.request.handler.IPageRequestHandler;
@@ -75,6 +93,7 @@ import org.apache.wicket.request.cycle.PageRequestHandlerTracker;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
@@ -91,10 +110,10 @@ import de.tudarmstadt.ukp.clarin.webanno.api.ProjectService;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.adapter.SpanAdapter;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.AnnotationEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.DocumentOpenedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.event.SpanDeletedEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.exception.AnnotationException;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.model.AnnotatorState;
 import de.tudarmstadt.ukp.clarin.webanno.api.annotation.page.AnnotationPageBase;
-import de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil;
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
 import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentCreatedEvent;
@@ -123,13 +142,21 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Preferences;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.SuggestionGroup;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.OnlineLearningSupport;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.TrainingDataDelta;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
 import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.recommendation.event.RecommendationAcceptedEvent;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderDeletedEvent;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderUpdatedEvent;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics.Phase;
+import de.tudarmstadt.ukp.inception.recommendation.tasks.OnlineUpdateTask;
 import de.tudarmstadt.ukp.inception.recommendation.tasks.PredictionTask;
 import de.tudarmstadt.ukp.inception.recommendation.tasks.SelectionTask;
 import de.tudarmstadt.ukp.inception.recommendation.tasks.TrainingTask;
@@ -145,7 +172,7 @@ import de.tudarmstadt.ukp.inception.scheduling.Task;
  * </p>
  */
 public class RecommendationServiceImpl
-    implements RecommendationService
+    implements RecommendationService, DisposableBean
 {
     private final Logger log = LoggerFactory.getLogger(getClass());
 
@@ -164,6 +191,14 @@ public class RecommendationServiceImpl
     private final LearningRecordService learningRecordService;
     private final ProjectService projectService;
     private final ApplicationEventPublisher applicationEventPublisher;
+    private final RecommenderProperties properties;
+    private final PredictionCasPool predictionCasPool;
+    private final RecommenderModelStore modelStore;
+    private final RecommenderStatistics statistics;
+    
+    private final int predictionParallelism;
+    private final int predictionBatchSize;
+    private final ExecutorService predictionExecutor;
     
     private final ConcurrentMap<RecommendationStateKey, AtomicInteger> trainingTaskCounter;
     private final ConcurrentMap<RecommendationStateKey, RecommendationState> states;
@@ -189,7 +224,9 @@ public class RecommendationServiceImpl
             SchedulingService aSchedulingService, AnnotationSchemaService aAnnoService,
             DocumentService aDocumentService, LearningRecordService aLearningRecordService,
             ProjectService aProjectService, EntityManager aEntityManager,
-            ApplicationEventPublisher aApplicationEventPublisher)
+            ApplicationEventPublisher aApplicationEventPublisher,
+            RecommenderProperties aProperties, PredictionCasPool aPredictionCasPool,
+            RecommenderModelStore aModelStore, RecommenderStatistics aStatistics)
     {
         sessionRegistry = aSessionRegistry;
         userRepository = aUserRepository;
@@ -201,9 +238,30 @@ public class RecommendationServiceImpl
         projectService = aProjectService;
         entityManager = aEntityManager;
         applicationEventPublisher = aApplicationEventPublisher;
+        properties = aProperties != null ? aProperties : new RecommenderPropertiesImpl();
+        // Every prediction worker holds one prediction CAS per document in its current batch
+        predictionCasPool = aPredictionCasPool != null ? aPredictionCasPool
+                : new PredictionCasPool(Math.max(1, properties.getPredictionParallelism())
+                        * Math.max(1, properties.getPredictionBatchSize()));
+        modelStore = aModelStore != null ? aModelStore
+                : new RecommenderModelStore(aDocumentService, false);
+        statistics = aStatistics != null ? aStatistics : new RecommenderStatistics();
         
         trainingTaskCounter = new ConcurrentHashMap<>();
         states = new ConcurrentHashMap<>();
+        
+        predictionBatchSize = Math.max(1, properties.getPredictionBatchSize());
+        predictionParallelism = properties.getPredictionParallelism();
+        if (predictionParallelism > 1) {
+            predictionExecutor = Executors.newFixedThreadPool(predictionParallelism,
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("prediction-worker-%d")
+                            .daemon(true)
+                            .build());
+        }
+        else {
+            predictionExecutor = null;
+        }
     }
 
     public RecommendationServiceImpl(SessionRegistry aSessionRegistry, UserDao aUserRepository,
@@ -214,12 +272,21 @@ public class RecommendationServiceImpl
     {
         this(aSessionRegistry, aUserRepository, aRecommenderFactoryRegistry, aSchedulingService,
                 aAnnoService, aDocumentService, aLearningRecordService, (ProjectService) null,
-                aEntityManager, null);
+                aEntityManager, null, null, null, null, null);
     }
 
     public RecommendationServiceImpl(EntityManager aEntityManager)
     {
-        this(null, null, null, null, null, null, null, (ProjectService) null, aEntityManager, null);
+        this(null, null, null, null, null, null, null, (ProjectService) null, aEntityManager, null,
+                null, null, null, null);
+    }
+    
+    @Override
+    public void destroy()
+    {
+        if (predictionExecutor != null) {
+            predictionExecutor.shutdownNow();
+        }
     }
 
     @Override
@@ -561,6 +628,7 @@ public class RecommendationServiceImpl
     public void onRecommenderUpdated(RecommenderUpdatedEvent aEvent)
     {
         clearState(aEvent.getRecommender().getProject());
+        modelStore.delete(aEvent.getRecommender());
     }
 
     @EventListener
@@ -570,6 +638,7 @@ public class RecommendationServiceImpl
         // state. Since (so far) recommenders do not depend on each other, we wouldn't need to 
         // trigger a training rung.
         removePredictions(aEvent.getRecommender());
+        modelStore.delete(aEvent.getRecommender());
     }
 
     @EventListener
@@ -584,6 +653,143 @@ public class RecommendationServiceImpl
         clearState(aEvent.getDocument().getProject());
     }
 
+    /*
+     * Accepting a suggestion adds a new training sample. Recommenders supporting online learning
+     * can pick this up immediately instead of waiting for the next training run.
+     */
+    @EventListener
+    public void onRecommendationAccepted(RecommendationAcceptedEvent aEvent)
+    {
+        AnnotationFS fs = aEvent.getFS();
+        String label = Objects.toString(aEvent.getRecommendedValue(), null);
+        
+        updateModelsOnline(aEvent.getUser(), aEvent.getDocument(), "RecommendationAcceptedEvent",
+            recommender -> {
+                if (!recommender.getFeature().equals(aEvent.getFeature())) {
+                    return null;
+                }
+                
+                return new TrainingDataDelta().added(fs.getBegin(), fs.getEnd(),
+                        fs.getCoveredText(), label);
+            });
+    }
+    
+    /*
+     * Deleting a span removes a training sample. Mind that rejecting a suggestion does not
+     * change the training data, so there is nothing to do for rejections here.
+     */
+    @EventListener
+    public void onSpanDeleted(SpanDeletedEvent aEvent)
+    {
+        AnnotationFS fs = aEvent.getAnnotation();
+        
+        updateModelsOnline(aEvent.getUser(), aEvent.getDocument(), "SpanDeletedEvent",
+            recommender -> {
+                if (!recommender.getLayer().getName().equals(fs.getType().getName())) {
+                    return null;
+                }
+                
+                Feature feature = fs.getType()
+                        .getFeatureByBaseName(recommender.getFeature().getName());
+                if (feature == null) {
+                    return null;
+                }
+                
+                return new TrainingDataDelta().removed(fs.getBegin(), fs.getEnd(),
+                        fs.getCoveredText(), fs.getFeatureValueAsString(feature));
+            });
+    }
+    
+    /*
+     * The deltas are only collected here. Updating the models and refreshing the predictions
+     * happens in an OnlineUpdateTask, so the request of the user does not have to wait for it.
+     * Since a waiting task is replaced by a new task for the same user and project, accepting
+     * several suggestions in a row only triggers a single prediction run.
+     */
+    private void updateModelsOnline(String aUsername, SourceDocument aDocument, String aTrigger,
+            Function<Recommender, TrainingDataDelta> aDeltaProvider)
+    {
+        Project project = aDocument.getProject();
+        RecommendationState state = getState(aUsername, project);
+        
+        List<PendingOnlineUpdate> updates = new ArrayList<>();
+        synchronized (state) {
+            for (EvaluatedRecommender activeRecommender : state.getActiveRecommenders()
+                    .values()) {
+                Recommender recommender = activeRecommender.getRecommender();
+                TrainingDataDelta delta = aDeltaProvider.apply(recommender);
+                if (delta != null && !delta.isEmpty()) {
+                    updates.add(new PendingOnlineUpdate(recommender, aDocument, delta));
+                }
+            }
+        }
+        
+        if (updates.isEmpty()) {
+            return;
+        }
+        
+        User user = userRepository.get(aUsername);
+        if (user == null) {
+            return;
+        }
+        
+        synchronized (state) {
+            state.getPendingOnlineUpdates().addAll(updates);
+        }
+        
+        schedulingService.enqueue(new OnlineUpdateTask(user, project, aTrigger));
+    }
+    
+    @Override
+    public List<SourceDocument> applyPendingOnlineUpdates(User aUser, Project aProject)
+    {
+        String username = aUser.getUsername();
+        RecommendationState state = getState(username, aProject);
+        
+        List<PendingOnlineUpdate> updates;
+        synchronized (state) {
+            updates = new ArrayList<>(state.getPendingOnlineUpdates());
+            state.getPendingOnlineUpdates().clear();
+        }
+        
+        List<SourceDocument> updatedDocuments = new ArrayList<>();
+        for (PendingOnlineUpdate update : updates) {
+            Recommender recommender = update.recommender;
+            
+            RecommendationEngineFactory<?> factory = getRecommenderFactory(recommender);
+            if (factory == null) {
+                continue;
+            }
+            
+            RecommendationEngine engine = factory.build(recommender);
+            if (!(engine instanceof OnlineLearningSupport)) {
+                continue;
+            }
+            
+            // Only models that have already been trained can be updated. Otherwise, the next
+            // regular training run takes care of it.
+            Optional<RecommenderContext> context = getContext(aUser, recommender);
+            if (!context.isPresent() || !engine.isReadyForPrediction(context.get())) {
+                continue;
+            }
+            
+            try {
+                if (((OnlineLearningSupport) engine).update(context.get(), update.delta)) {
+                    log.debug("[{}][{}]: Updated model online: {}", username,
+                            recommender.getName(), update.delta);
+                    if (!updatedDocuments.contains(update.document)) {
+                        updatedDocuments.add(update.document);
+                    }
+                }
+            }
+            catch (Exception e) {
+                log.error("[{}][{}]: Online update failed", username, recommender.getName(), e);
+            }
+        }
+        
+        return updatedDocuments;
+    }
+
     @Override
     public void triggerTrainingAndClassification(String aUser, Project aProject, String aEventName,
             SourceDocument aCurrentDocument)
@@ -749,7 +955,24 @@ public class RecommendationServiceImpl
     {
         RecommendationState state = getState(aUser.getUsername(), aRecommender.getProject());
         synchronized (state) {
-            return state.getContext(aRecommender);
+            Optional<RecommenderContext> context = state.getContext(aRecommender);
+            if (context.isPresent() || !modelStore.exists(aRecommender, aUser)) {
+                return context;
+            }
+        }
+        
+        // If the model is not in memory (e.g. after a restart or after the session expired), try
+        // loading it from the model store. Loading happens outside the lock since it may take a
+        // moment for larger models.
+        Optional<RecommenderContext> stored = modelStore.load(aRecommender, aUser);
+        synchronized (state) {
+            Optional<RecommenderContext> context = state.getContext(aRecommender);
+            if (context.isPresent() || !stored.isPresent()) {
+                return context;
+            }
+            
+            state.putContext(aRecommender, stored.get());
+            return stored;
         }
     }
     
@@ -849,6 +1072,7 @@ public class RecommendationServiceImpl
         private Predictions activePredictions;
         private Predictions incomingPredictions;
         private boolean predictForAllDocuments;
+        private List<PendingOnlineUpdate> pendingOnlineUpdates = new ArrayList<>();
 
         public Preferences getPreferences()
         {
@@ -967,248 +1191,503 @@ public class RecommendationServiceImpl
         {
             predictForAllDocuments = aPredictForAllDocuments;
         }
+
+        public List<PendingOnlineUpdate> getPendingOnlineUpdates()
+        {
+            return pendingOnlineUpdates;
+        }
+    }
+    
+    /**
+     * A training data change which has not yet been applied to the model of a recommender.
+     */
+    private static class PendingOnlineUpdate
+    {
+        private final Recommender recommender;
+        private final SourceDocument document;
+        private final TrainingDataDelta delta;
+
+        public PendingOnlineUpdate(Recommender aRecommender, SourceDocument aDocument,
+                TrainingDataDelta aDelta)
+        {
+            recommender = aRecommender;
+            document = aDocument;
+            delta = aDelta;
+        }
     }
     
     @Override
     public Predictions computePredictions(User aUser, Project aProject,
             List<SourceDocument> aDocuments, List<SourceDocument> aInherit)
     {
-        CAS predictionCas = null;
-        try {
-            String username = aUser.getUsername();
-            
-            Predictions activePredictions = getPredictions(aUser, aProject);
-            Predictions predictions = new Predictions(aUser, aProject);
+        return computePredictions(aUser, aProject, aDocuments, aInherit, () -> false);
+    }
     
+    @Override
+    public Predictions computePredictions(User aUser, Project aProject,
+            List<SourceDocument> aDocuments, List<SourceDocument> aInherit,
+            BooleanSupplier aCancelled)
+    {
+        String username = aUser.getUsername();
+        
+        Predictions activePredictions = getPredictions(aUser, aProject);
+        Predictions predictions = new Predictions(aUser, aProject);
+
+        // Inherit at the document level. If inheritance at a recommender level is possible,
+        // this is done below.
+        if (activePredictions != null) {
+            for (SourceDocument document : aInherit) {
+                if (activePredictions.hasRunPredictionOnDocument(document)) {
+                    List<AnnotationSuggestion> suggestions = inheritSuggestions(aProject,
+                            activePredictions, document, username);
+                    predictions.putPredictions(suggestions);
+                    statistics.suggestionsInherited(suggestions.size());
+                    predictions.markDocumentAsPredictionCompleted(document);
+                }
+            }
+        }
+        
+        // Everything which requires the database is looked up here on the calling thread, so
+        // the prediction workers do not need to access the database
+        List<AnnotationLayer> layers = annoService.listAnnotationLayer(aProject);
+        List<PredictionRecommender> recommenders = resolvePredictionRecommenders(aUser,
+                aProject, layers, predictions);
+        
+        TypeSystemDescription predictionTypeSystem = null;
+        if (!aDocuments.isEmpty()) {
             try {
-                predictionCas = WebAnnoCasUtil.createCas();
-                CasStorageSession.get().add(PREDICTION_CAS, EXCLUSIVE_WRITE_ACCESS, predictionCas);
+                predictionTypeSystem = createPredictionTypeSystem(aProject);
             }
             catch (ResourceInitializationException e) {
-                predictions.log(
-                        LogMessage.error(this, "Cannot create prediction CAS, stopping predictions!"));
+                predictions.log(LogMessage.error(this,
+                        "Cannot create prediction CAS, stopping predictions!"));
                 log.error("Cannot create prediction CAS, stopping predictions!");
                 return predictions;
             }
-            
-            // Inherit at the document level. If inheritance at a recommender level is possible,
-            // this is done below.
-            if (activePredictions != null) {
-                for (SourceDocument document : aInherit) {
-                    if (activePredictions.hasRunPredictionOnDocument(document)) {
-                        List<AnnotationSuggestion> suggestions = inheritSuggestions(aProject,
-                                activePredictions, document, username);
-                        predictions.putPredictions(suggestions);
-                        predictions.markDocumentAsPredictionCompleted(document);
+        }
+
+        // Generate new predictions or inherit at the recommender level
+        int parallelism = Math.min(predictionParallelism, aDocuments.size());
+        if (predictionExecutor != null && parallelism > 1) {
+            predictDocumentsInParallel(aUser, aProject, aDocuments, recommenders,
+                    predictionTypeSystem, activePredictions, predictions, parallelism,
+                    aCancelled);
+        }
+        else {
+            predictDocuments(aUser, aProject, new ArrayDeque<>(aDocuments), recommenders,
+                    predictionTypeSystem, activePredictions, predictions, aCancelled);
+        }
+
+        if (aCancelled.getAsBoolean()) {
+            predictions.log(LogMessage.info(this, "Prediction cancelled"));
+            log.debug("Prediction cancelled");
+            return predictions;
+        }
+        
+        predictions.log(LogMessage.info(this, "Prediction complete"));
+        log.debug("Prediction complete");
+        statistics.predictionRunCompleted();
+
+        return predictions;
+    }
+    
+    /**
+     * Distributes the documents over the prediction workers. Each worker uses its own CAS storage
+     * session and prediction CAS and collects its results in a separate {@link Predictions}
+     * object. The partial results are merged once all workers are done. If the calling thread is
+     * interrupted, the workers do not get any further documents, but the method still waits for
+     * them to finish their current batch before it returns.
+     */
+    private void predictDocumentsInParallel(User aUser, Project aProject,
+            List<SourceDocument> aDocuments, List<PredictionRecommender> aRecommenders,
+            TypeSystemDescription aPredictionTypeSystem, Predictions aActivePredictions,
+            Predictions aPredictions, int aParallelism, BooleanSupplier aCancelled)
+    {
+        Queue<SourceDocument> queue = new ConcurrentLinkedQueue<>(aDocuments);
+        
+        log.debug("[{}]: Predicting [{}] documents using [{}] workers", aUser.getUsername(),
+                aDocuments.size(), aParallelism);
+        
+        List<Future<Predictions>> workers = new ArrayList<>();
+        for (int i = 0; i < aParallelism; i++) {
+            workers.add(predictionExecutor.submit(() -> {
+                Predictions partialPredictions = new Predictions(aUser, aProject);
+                try (CasStorageSession session = CasStorageSession.open()) {
+                    predictDocuments(aUser, aProject, queue, aRecommenders,
+                            aPredictionTypeSystem, aActivePredictions, partialPredictions,
+                            aCancelled);
+                }
+                return partialPredictions;
+            }));
+        }
+
+        boolean interrupted = false;
+        for (Future<Predictions> worker : workers) {
+            while (true) {
+                try {
+                    Predictions partialPredictions = worker.get();
+                    // The results are incomplete after an interrupt, so they are dropped
+                    if (!interrupted) {
+                        aPredictions.putPredictions(partialPredictions);
                     }
+                    break;
+                }
+                catch (InterruptedException e) {
+                    // Stop handing out documents to the workers, but keep waiting for them.
+                    // The caller must not clean up while the workers may still be running.
+                    interrupted = true;
+                    queue.clear();
+                }
+                catch (ExecutionException e) {
+                    aPredictions.log(LogMessage.error(this, "Prediction worker failed: %s",
+                            e.getCause().getMessage()));
+                    log.error("[{}]: Prediction worker failed", aUser.getUsername(),
+                            e.getCause());
+                    break;
                 }
             }
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
     
-            // Generate new predictions or inherit at the recommender level
-            nextDocument: for (SourceDocument document : aDocuments) {
-                Optional<CAS> originalCas = Optional.empty();
-                nextLayer: for (AnnotationLayer layer : annoService
-                        .listAnnotationLayer(document.getProject())) {
-                    if (!layer.isEnabled()) {
-                        continue nextLayer;
+    /**
+     * Generates predictions for the documents in the given queue until the queue is empty or the
+     * computation is cancelled. The documents are taken from the queue in batches of up to
+     * {@link RecommenderProperties#getPredictionBatchSize()} documents. The prediction CASes are
+     * obtained from the {@link PredictionCasPool} and registered with the CAS storage session of
+     * the calling thread.
+     */
+    private void predictDocuments(User aUser, Project aProject, Queue<SourceDocument> aDocuments,
+            List<PredictionRecommender> aRecommenders, TypeSystemDescription aPredictionTypeSystem,
+            Predictions aActivePredictions, Predictions aPredictions, BooleanSupplier aCancelled)
+    {
+        List<CAS> predictionCasses = new ArrayList<>();
+        try {
+            while (!aCancelled.getAsBoolean()) {
+                List<SourceDocument> batch = new ArrayList<>();
+                SourceDocument document;
+                while (
+                        batch.size() < predictionBatchSize && 
+                        (document = aDocuments.poll()) != null
+                ) {
+                    batch.add(document);
+                }
+                
+                if (batch.isEmpty()) {
+                    break;
+                }
+                
+                // Make sure we have one prediction CAS for every document in the batch
+                while (predictionCasses.size() < batch.size()) {
+                    CAS predictionCas;
+                    try {
+                        predictionCas = predictionCasPool.borrowCas(aProject,
+                                aPredictionTypeSystem);
                     }
-    
-                    List<EvaluatedRecommender> recommenders = getActiveRecommenders(aUser, layer);
-                    
-                    if (recommenders.isEmpty()) {
-                        predictions.log(LogMessage.info(this, "No active recommenders on layer [%s]",
-                                layer.getUiName()));
-                        log.trace("[{}]: No active recommenders on layer [{}]", username,
-                                layer.getUiName());
-                        continue;
+                    catch (ResourceInitializationException e) {
+                        aPredictions.log(LogMessage.error(this,
+                                "Cannot create prediction CAS, stopping predictions!"));
+                        log.error("Cannot create prediction CAS, stopping predictions!");
+                        return;
                     }
+                    
+                    CasStorageSession.get().add(PREDICTION_CAS + predictionCasses.size(),
+                            EXCLUSIVE_WRITE_ACCESS, predictionCas);
+                    predictionCasses.add(predictionCas);
+                }
+                
+                predictBatch(aUser, aProject, batch, aRecommenders, aActivePredictions,
+                        aPredictions, predictionCasses);
+            }
+        }
+        finally {
+            for (CAS predictionCas : predictionCasses) {
+                CasStorageSession.get().remove(predictionCas);
+                predictionCasPool.returnCas(aProject, predictionCas);
+            }
+        }
+    }
     
-                    nextRecommender: for (EvaluatedRecommender r : recommenders) {
-                        
-                        // Make sure we have the latest recommender config from the DB - the one
-                        // from the active recommenders list may be outdated
-                        Recommender recommender;
-    
-                        try {
-                            recommender = getRecommender(r.getRecommender().getId());
-                        }
-                        catch (NoResultException e) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender no longer available... skipping"));
-                            log.info("[{}][{}]: Recommender no longer available... skipping",
-                                    username, r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
-    
-                        if (!recommender.isEnabled()) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender disabled... skipping"));
-                            log.debug("[{}][{}]: Disabled - skipping", username,
-                                    r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
-    
-                        Optional<RecommenderContext> context = getContext(aUser, recommender);
-    
-                        if (!context.isPresent()) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender has no context... skipping"));
-                            log.info("No context available for recommender [{}]({}) for user [{}] "
-                                    + "on document [{}]({}) in project [{}]({}) - skipping recommender",
-                                    recommender.getName(), recommender.getId(), username,
-                                    document.getName(), document.getId(),
-                                    document.getProject().getName(), document.getProject().getId());
-                            continue nextRecommender;
-                        }
-                        
-                        RecommenderContext ctx = context.get();
-                        ctx.setUser(aUser);
-                        
-                        RecommendationEngineFactory<?> factory = getRecommenderFactory(recommender);
-                        
-                        // Check that configured layer and feature are accepted 
-                        // by this type of recommender
-                        if (!factory.accepts(recommender.getLayer(), recommender.getFeature())) {
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Recommender configured with invalid layer or feature... skipping"));
-                            log.info(
-                                    "[{}][{}]: Recommender configured with invalid layer or feature "
-                                            + "- skipping recommender",
-                                    username, r.getRecommender().getName());
-                            continue nextRecommender;
-                        }
-    
-                        // We lazily load the CAS only at this point because that allows us to skip
-                        // loading the CAS entirely if there is no enabled layer or recommender.
-                        // If the CAS cannot be loaded, then we skip to the next document.
-                        if (!originalCas.isPresent()) {
-                            try {
-                                originalCas = Optional
-                                        .of(documentService.readAnnotationCas(document, username,
-                                                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS));
-                            }
-                            catch (IOException e) {
-                                predictions.log(LogMessage.error(this,
-                                        "Cannot read annotation CAS... skipping"));
-                                log.error("Cannot read annotation CAS for user [{}] of document "
-                                        + "[{}]({}) in project [{}]({}) - skipping document",
-                                        username, document.getName(), document.getId(),
-                                        document.getProject().getName(),
-                                        document.getProject().getId(), e);
-                                continue nextDocument;
-                            }
-                        }
-    
-                        try {
-                            RecommendationEngine engine = factory.build(recommender);
-                            
-                            if (!engine.isReadyForPrediction(ctx)) {
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Recommender context is not ready... skipping"));
-                                log.info("Recommender context [{}]({}) for user [{}] in project "
-                                        + "[{}]({}) is not ready for prediction - skipping recommender",
-                                        recommender.getName(), recommender.getId(), username,
-                                        document.getProject().getName(),
-                                        document.getProject().getId());
- 
-                                // If possible, we inherit recommendations from a previous run while
-                                // the recommender is still busy
-                                if (activePredictions != null) {
-                                    List<AnnotationSuggestion> suggestions = inheritSuggestions(
-                                            recommender, activePredictions, document, username);
-                                    if (!suggestions.isEmpty()) {
-                                        predictions.putPredictions(suggestions);
-                                    }
-        
-                                    predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                            "Inherited [%d] predictions from previous run",
-                                            suggestions.size()));
-                                }
-    
-                                continue nextRecommender;
-                            }
-    
-                            predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                    "Generating predictions for layer [%s]...", layer.getUiName()));
-                            log.trace("[{}][{}]: Generating predictions for layer [{}]", username,
-                                    r.getRecommender().getName(), layer.getUiName());
-                            
-                            cloneAndMonkeyPatchCAS(aProject, originalCas.get(), predictionCas);
-    
-                            List<AnnotationSuggestion> suggestions;
-                            
-                            // If the recommender is not trainable and not sensitive to annotations,
-                            // we can actually re-use the predictions.
-                            if (
-                                    TRAINING_NOT_SUPPORTED.equals(engine.getTrainingCapability()) &&
-                                    activePredictions != null &&
-                                    activePredictions.hasRunPredictionOnDocument(document)
-                            ) {
-                                suggestions = inheritSuggestions(engine.getRecommender(),
-                                        activePredictions, document, username);
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Inherited [%d] predictions from previous run",
-                                        suggestions.size()));
-                            }
-                            else {
-                                suggestions = generateSuggestions(ctx, engine, activePredictions,
-                                        document, originalCas.get(), predictionCas, username);
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Generated [%d] predictions", suggestions.size()));
-                            }
-                            
-                            // Calculate the visibility of the suggestions. This happens via the
-                            // original CAS which contains only the manually created annotations
-                            // and *not* the suggestions.
-                            Collection<SuggestionGroup> groups = SuggestionGroup.group(suggestions);
-                            calculateVisibility(originalCas.get(), username, recommender.getLayer(),
-                                    groups, 0, originalCas.get().getDocumentText().length());
-                            
-                            predictions.putPredictions(suggestions);
-                        }
-                        // Catching Throwable is intentional here as we want to continue the
-                        // execution even if a particular recommender fails.
-                        catch (Throwable e) {
-                            predictions.log(LogMessage.error(r.getRecommender().getName(),
-                                    "Failed: %s", e.getMessage()));
-                            log.error(
-                                    "Error applying recommender [{}]({}) for user [{}] to document "
-                                            + "[{}]({}) in project [{}]({}) - skipping recommender",
-                                    recommender.getName(), recommender.getId(), username,
-                                    document.getName(), document.getId(),
-                                    document.getProject().getName(), document.getProject().getId(),
-                                    e);
-    
-                            // If there was a previous successful run of the recommender, inherit
-                            // its suggestions to avoid that all the suggestions of the recommender
-                            // simply disappear.
-                            if (activePredictions != null) {
-                                List<AnnotationSuggestion> suggestions = inheritSuggestions(
-                                        recommender, activePredictions, document, username);
-                                if (!suggestions.isEmpty()) {
-                                    predictions.putPredictions(suggestions);
-                                }
-                                predictions.log(LogMessage.info(r.getRecommender().getName(),
-                                        "Inherited [%d] predictions from previous run",
-                                        suggestions.size()));
-                            }
+    /**
+     * Looks up the active recommenders which can be used for prediction. Recommenders which are
+     * no longer available, disabled, not trained yet or misconfigured are skipped.
+     */
+    private List<PredictionRecommender> resolvePredictionRecommenders(User aUser,
+            Project aProject, List<AnnotationLayer> aLayers, Predictions predictions)
+    {
+        String username = aUser.getUsername();
+        
+        List<PredictionRecommender> result = new ArrayList<>();
+        nextLayer: for (AnnotationLayer layer : aLayers) {
+            if (!layer.isEnabled()) {
+                continue nextLayer;
+            }
+
+            List<EvaluatedRecommender> recommenders = getActiveRecommenders(aUser, layer);
+            
+            if (recommenders.isEmpty()) {
+                predictions.log(LogMessage.info(this, "No active recommenders on layer [%s]",
+                        layer.getUiName()));
+                log.trace("[{}]: No active recommenders on layer [{}]", username,
+                        layer.getUiName());
+                continue;
+            }
+            
+            List<AnnotationFeature> features = null;
+
+            nextRecommender: for (EvaluatedRecommender r : recommenders) {
+                
+                // Make sure we have the latest recommender config from the DB - the one
+                // from the active recommenders list may be outdated
+                Recommender recommender;
+
+                try {
+                    recommender = getRecommender(r.getRecommender().getId());
+                }
+                catch (NoResultException e) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender no longer available... skipping"));
+                    log.info("[{}][{}]: Recommender no longer available... skipping",
+                            username, r.getRecommender().getName());
+                    continue nextRecommender;
+                }
+
+                if (!recommender.isEnabled()) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender disabled... skipping"));
+                    log.debug("[{}][{}]: Disabled - skipping", username,
+                            r.getRecommender().getName());
+                    continue nextRecommender;
+                }
+
+                Optional<RecommenderContext> context = getContext(aUser, recommender);
+
+                if (!context.isPresent()) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender has no context... skipping"));
+                    log.info("No context available for recommender [{}]({}) for user [{}] "
+                            + "in project [{}]({}) - skipping recommender",
+                            recommender.getName(), recommender.getId(), username,
+                            aProject.getName(), aProject.getId());
+                    continue nextRecommender;
+                }
+                
+                RecommenderContext ctx = context.get();
+                ctx.setUser(aUser);
+                
+                RecommendationEngineFactory<?> factory = getRecommenderFactory(recommender);
+                
+                // Check that configured layer and feature are accepted 
+                // by this type of recommender
+                if (!factory.accepts(recommender.getLayer(), recommender.getFeature())) {
+                    predictions.log(LogMessage.info(r.getRecommender().getName(),
+                            "Recommender configured with invalid layer or feature... skipping"));
+                    log.info(
+                            "[{}][{}]: Recommender configured with invalid layer or feature "
+                                    + "- skipping recommender",
+                            username, r.getRecommender().getName());
+                    continue nextRecommender;
+                }
+                
+                // Needed to calculate the visibility of the suggestions
+                if (features == null) {
+                    features = annoService.listSupportedFeatures(recommender.getLayer());
+                }
+                
+                result.add(new PredictionRecommender(layer, recommender, ctx, factory,
+                        features));
+            }
+        }
+        
+        return result;
+    }
     
-                            continue nextRecommender;
-                        }
+    /**
+     * Generates predictions for a batch of documents. Each active recommender is invoked only once
+     * for all documents in the batch (see {@link RecommendationEngine#predictBatch}), so engines
+     * can amortize their per-call overhead across the documents.
+     */
+    private void predictBatch(User aUser, Project aProject, List<SourceDocument> aDocuments,
+            List<PredictionRecommender> aRecommenders, Predictions activePredictions,
+            Predictions predictions, List<CAS> aPredictionCasses)
+    {
+        String username = aUser.getUsername();
+        
+        List<PredictionItem> items = null;
+        nextRecommender: for (PredictionRecommender r : aRecommenders) {
+            AnnotationLayer layer = r.layer;
+            Recommender recommender = r.recommender;
+            RecommenderContext ctx = r.context;
+            RecommendationEngineFactory<?> factory = r.factory;
+            
+            // We lazily load the CASes only at this point because that allows us to skip
+            // loading the CASes entirely if there is no enabled layer or recommender.
+            // Documents for which the CAS cannot be loaded are skipped.
+            if (items == null) {
+                items = loadPredictionItems(username, aDocuments, aPredictionCasses,
+                        predictions);
+            }
+            
+            if (items.isEmpty()) {
+                return;
+            }
+
+            try {
+                RecommendationEngine engine = factory.build(recommender);
+                
+                if (!engine.isReadyForPrediction(ctx)) {
+                    predictions.log(LogMessage.info(recommender.getName(),
+                            "Recommender context is not ready... skipping"));
+                    log.info("Recommender context [{}]({}) for user [{}] in project "
+                            + "[{}]({}) is not ready for prediction - skipping recommender",
+                            recommender.getName(), recommender.getId(), username,
+                            aProject.getName(), aProject.getId());
+
+                    // If possible, we inherit recommendations from a previous run while
+                    // the recommender is still busy
+                    inheritSuggestions(recommender, activePredictions, items, predictions,
+                            username);
+
+                    continue nextRecommender;
+                }
+
+                predictions.log(LogMessage.info(recommender.getName(),
+                        "Generating predictions for layer [%s]...", layer.getUiName()));
+                log.trace("[{}][{}]: Generating predictions for layer [{}]", username,
+                        recommender.getName(), layer.getUiName());
+                
+                // The suggestions are only added to the predictions once the recommender has
+                // successfully processed the whole batch
+                Map<PredictionItem, List<AnnotationSuggestion>> results =
+                        new LinkedHashMap<>();
+                List<PredictionItem> itemsToPredict = new ArrayList<>();
+                for (PredictionItem item : items) {
+                    // If the recommender is not trainable and not sensitive to annotations,
+                    // we can actually re-use the predictions.
+                    if (
+                            TRAINING_NOT_SUPPORTED.equals(engine.getTrainingCapability()) &&
+                            activePredictions != null &&
+                            activePredictions.hasRunPredictionOnDocument(item.document)
+                    ) {
+                        List<AnnotationSuggestion> suggestions = inheritSuggestions(
+                                engine.getRecommender(), activePredictions, item.document,
+                                username);
+                        predictions.log(LogMessage.info(recommender.getName(),
+                                "Inherited [%d] predictions from previous run",
+                                suggestions.size()));
+                        statistics.suggestionsInherited(suggestions.size());
+                        results.put(item, suggestions);
                     }
+                    else {
+                        loadPredictionCas(item.originalCasData, item.predictionCas);
+                        itemsToPredict.add(item);
+                    }
+                }
+                
+                if (!itemsToPredict.isEmpty()) {
+                    long start = System.currentTimeMillis();
+                    generateSuggestions(ctx, engine, itemsToPredict, username, predictions,
+                            results);
+                    statistics.record(recommender, Phase.PREDICT,
+                            System.currentTimeMillis() - start, itemsToPredict.size());
                 }
                 
-                // When all recommenders have completed on the document, we mark it as "complete"
-                predictions.markDocumentAsPredictionCompleted(document);
+                for (Entry<PredictionItem, List<AnnotationSuggestion>> result : results
+                        .entrySet()) {
+                    // Calculate the visibility of the suggestions. This happens via the
+                    // original CAS which contains only the manually created annotations
+                    // and *not* the suggestions.
+                    CAS originalCas = result.getKey().originalCas;
+                    Collection<SuggestionGroup> groups = SuggestionGroup
+                            .group(result.getValue());
+                    calculateVisibility(originalCas, username, recommender.getLayer(),
+                            r.features, groups, 0, originalCas.getDocumentText().length());
+                    
+                    predictions.putPredictions(result.getValue());
+                }
             }
+            // Catching Throwable is intentional here as we want to continue the
+            // execution even if a particular recommender fails.
+            catch (Throwable e) {
+                predictions.log(LogMessage.error(recommender.getName(),
+                        "Failed: %s", e.getMessage()));
+                log.error(
+                        "Error applying recommender [{}]({}) for user [{}] to [{}] "
+                                + "documents in project [{}]({}) - skipping recommender",
+                        recommender.getName(), recommender.getId(), username,
+                        items.size(), aProject.getName(), aProject.getId(), e);
+
+                // If there was a previous successful run of the recommender, inherit
+                // its suggestions to avoid that all the suggestions of the recommender
+                // simply disappear.
+                inheritSuggestions(recommender, activePredictions, items, predictions,
+                        username);
+
+                continue nextRecommender;
+            }
+        }
+        
+        // When all recommenders have completed on the documents, we mark them as "complete".
+        // Documents for which the CAS could not be loaded are not marked.
+        if (items == null) {
+            aDocuments.forEach(predictions::markDocumentAsPredictionCompleted);
+        }
+        else {
+            items.forEach(item -> predictions.markDocumentAsPredictionCompleted(item.document));
+        }
+    }
     
-            predictions.log(LogMessage.info(this, "Prediction complete"));
-            log.debug("Prediction complete");
+    /**
+     * Loads the annotation CASes of the given documents and pairs each of them with one of the
+     * given prediction CASes. Documents for which the CAS cannot be loaded are skipped.
+     */
+    private List<PredictionItem> loadPredictionItems(String aUsername,
+            List<SourceDocument> aDocuments, List<CAS> aPredictionCasses,
+            Predictions aPredictions)
+    {
+        List<PredictionItem> items = new ArrayList<>();
+        for (int i = 0; i < aDocuments.size(); i++) {
+            SourceDocument document = aDocuments.get(i);
+            try {
+                CAS originalCas = documentService.readAnnotationCas(document, aUsername,
+                        AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+                items.add(new PredictionItem(document, originalCas, serializeCas(originalCas),
+                        aPredictionCasses.get(i)));
+            }
+            catch (IOException e) {
+                aPredictions.log(LogMessage.error(this, "Cannot read annotation CAS... skipping"));
+                log.error("Cannot read annotation CAS for user [{}] of document "
+                        + "[{}]({}) in project [{}]({}) - skipping document",
+                        aUsername, document.getName(), document.getId(),
+                        document.getProject().getName(), document.getProject().getId(), e);
+            }
+        }
+        return items;
+    }
     
-            return predictions;
+    /**
+     * Inherits the suggestions of the given recommender from the last prediction run for all
+     * given documents.
+     */
+    private void inheritSuggestions(Recommender aRecommender, Predictions aActivePredictions,
+            List<PredictionItem> aItems, Predictions aPredictions, String aUsername)
+    {
+        if (aActivePredictions == null) {
+            return;
         }
-        finally {
-            CasStorageSession.get().remove(predictionCas);
+        
+        for (PredictionItem item : aItems) {
+            List<AnnotationSuggestion> suggestions = inheritSuggestions(aRecommender,
+                    aActivePredictions, item.document, aUsername);
+            if (!suggestions.isEmpty()) {
+                aPredictions.putPredictions(suggestions);
+            }
+            statistics.suggestionsInherited(suggestions.size());
+            aPredictions.log(LogMessage.info(aRecommender.getName(),
+                    "Inherited [%d] predictions from previous run", suggestions.size()));
         }
     }
     
@@ -1255,21 +1734,28 @@ public class RecommendationServiceImpl
         return suggestions;
     }
     /**
-     * Invokes the engine to produce new suggestions.
+     * Invokes the engine to produce new suggestions for all given items at once.
      */
-    private List<AnnotationSuggestion> generateSuggestions(RecommenderContext ctx,
-            RecommendationEngine engine, Predictions activePredictions, SourceDocument document,
-            CAS originalCas, CAS predictionCas, String aUsername)
+    private void generateSuggestions(RecommenderContext ctx, RecommendationEngine engine,
+            List<PredictionItem> aItems, String aUsername, Predictions aPredictions,
+            Map<PredictionItem, List<AnnotationSuggestion>> aResults)
         throws RecommendationException
     {
-         // Perform the actual prediction
-        engine.predict(ctx, predictionCas);
-
-        // Extract the suggestions from the data which the recommender has written into the CAS
-        List<AnnotationSuggestion> suggestions = extractSuggestions(aUsername, predictionCas,
-                document, engine.getRecommender());
-                
-        return suggestions;
+        // Perform the actual prediction
+        List<CAS> predictionCasses = aItems.stream()
+                .map(item -> item.predictionCas)
+                .collect(toList());
+        engine.predictBatch(ctx, predictionCasses);
+
+        // Extract the suggestions from the data which the recommender has written into the CASes
+        for (PredictionItem item : aItems) {
+            List<AnnotationSuggestion> suggestions = extractSuggestions(aUsername,
+                    item.predictionCas, item.document, engine.getRecommender());
+            statistics.suggestionsGenerated(suggestions.size());
+            aPredictions.log(LogMessage.info(engine.getRecommender().getName(),
+                    "Generated [%d] predictions", suggestions.size()));
+            aResults.put(item, suggestions);
+        }
     }
 
     private List<AnnotationSuggestion> extractSuggestions(String aUsername, CAS aCas,
@@ -1400,6 +1886,18 @@ public class RecommendationServiceImpl
     @Override
     public void calculateVisibility(CAS aCas, String aUser, AnnotationLayer aLayer,
             Collection<SuggestionGroup> aRecommendations, int aWindowBegin, int aWindowEnd)
+    {
+        calculateVisibility(aCas, aUser, aLayer, annoService.listSupportedFeatures(aLayer),
+                aRecommendations, aWindowBegin, aWindowEnd);
+    }
+    
+    /**
+     * Determines the visibility of the suggestions using the given supported features of the
+     * layer, so no database access is needed.
+     */
+    private void calculateVisibility(CAS aCas, String aUser, AnnotationLayer aLayer,
+            List<AnnotationFeature> aFeatures, Collection<SuggestionGroup> aRecommendations,
+            int aWindowBegin, int aWindowEnd)
     {
         // NOTE: In order to avoid having to upgrade the "original CAS" in computePredictions,this
         // method is implemented in such a way that it gracefully handles cases where the CAS and
@@ -1417,9 +1915,18 @@ public class RecommendationServiceImpl
             return;
         }
         
-        List<AnnotationFS> annotationsInWindow = select(aCas, type).stream()
-                .filter(fs -> aWindowBegin <= fs.getBegin() && fs.getEnd() <= aWindowEnd)
-                .collect(toList());
+        List<AnnotationFS> annotationsInWindow = selectCovered(aCas, type, aWindowBegin,
+                aWindowEnd);
+        
+        // Reduce the annotations to the ones which have a non-null feature value. We need to
+        // use a multi-valued map here because there may be multiple annotations at a
+        // given position.
+        MultiValuedMap<Offset, AnnotationFS> annotations = new ArrayListValuedHashMap<>();
+        annotationsInWindow
+                .forEach(fs -> annotations.put(new Offset(fs.getBegin(), fs.getEnd()), fs));
+        // We need to constructed a sorted list of the keys for the OverlapIterator below
+        List<Offset> sortedAnnotationKeys = new ArrayList<>(annotations.keySet());
+        sortedAnnotationKeys.sort(comparingInt(Offset::getBegin).thenComparingInt(Offset::getEnd));
 
         // Collect all suggestions of the given layer within the view window
         List<SuggestionGroup> suggestionsInWindow = aRecommendations.stream()
@@ -1431,11 +1938,7 @@ public class RecommendationServiceImpl
                     return aWindowBegin <= offset.getBegin() && offset.getEnd() <= aWindowEnd;
                 }).collect(toList());
 
-        // Get all the skipped/rejected entries for the current layer
-        List<LearningRecord> recordedAnnotations = learningRecordService.listRecords(aUser,
-                aLayer);
-
-        for (AnnotationFeature feature : annoService.listSupportedFeatures(aLayer)) {
+        for (AnnotationFeature feature : aFeatures) {
             Feature feat = type.getFeatureByBaseName(feature.getName());
 
             if (feat == null) {
@@ -1445,17 +1948,6 @@ public class RecommendationServiceImpl
                 return;
             }
             
-            // Reduce the annotations to the ones which have a non-null feature value. We need to
-            // use a multi-valued map here because there may be multiple annotations at a
-            // given position.
-            MultiValuedMap<Offset, AnnotationFS> annotations = new ArrayListValuedHashMap<>();
-            annotationsInWindow.stream()
-                    .forEach(fs -> annotations.put(new Offset(fs.getBegin(), fs.getEnd()), fs));
-            // We need to constructed a sorted list of the keys for the OverlapIterator below
-            List<Offset> sortedAnnotationKeys = new ArrayList<>(annotations.keySet());
-            sortedAnnotationKeys
-                    .sort(comparingInt(Offset::getBegin).thenComparingInt(Offset::getEnd));
-
             // Reduce the suggestions to the ones for the given feature. We can use the tree here
             // since we only have a single SuggestionGroup for every position
             Map<Offset, SuggestionGroup> suggestions = new TreeMap<>(
@@ -1464,8 +1956,16 @@ public class RecommendationServiceImpl
                     .filter(group -> group.getFeature().equals(feature.getName()))
                     .forEach(group -> suggestions.put(group.getOffset(), group));
 
-            // If there are no suggestions or no annotations, there is nothing to do here
-            if (suggestions.isEmpty() || annotations.isEmpty()) {
+            // If there are no suggestions, there is nothing to do here
+            if (suggestions.isEmpty()) {
+                continue;
+            }
+            
+            // If there are no annotations, there is nothing that could overlap
+            if (annotations.isEmpty()) {
+                suggestions.values().stream().flatMap(SuggestionGroup::stream)
+                        .forEach(suggestion -> hideSuggestionsRejectedOrSkipped(aUser, aLayer,
+                                suggestion));
                 continue;
             }
 
@@ -1549,19 +2049,22 @@ public class RecommendationServiceImpl
             // Anything that was not hidden so far might still have been rejected
             suggestions.values().stream().flatMap(SuggestionGroup::stream)
                     .filter(AnnotationSuggestion::isVisible)
-                    .forEach(suggestion -> hideSuggestionsRejectedOrSkipped(suggestion,
-                            recordedAnnotations));
+                    .forEach(suggestion -> hideSuggestionsRejectedOrSkipped(aUser, aLayer,
+                            suggestion));
         }
     }
 
-    private void hideSuggestionsRejectedOrSkipped(AnnotationSuggestion aSuggestion,
-            List<LearningRecord> aRecordedRecommendations)
+    private void hideSuggestionsRejectedOrSkipped(String aUser, AnnotationLayer aLayer,
+            AnnotationSuggestion aSuggestion)
     {
+        // Only the records at the same place are relevant. These are looked up in the learning
+        // record index, so we do not need to go to the database here.
+        List<LearningRecord> records = learningRecordService.listRecords(aUser, aLayer,
+                aSuggestion.getDocumentName(), aSuggestion.getBegin(), aSuggestion.getEnd());
+        
         // If it was rejected or skipped, hide it
-        for (LearningRecord record : aRecordedRecommendations) {
-            boolean isAtTheSamePlace = record.getOffsetCharacterBegin() == aSuggestion
-                    .getBegin() && record.getOffsetCharacterEnd() == aSuggestion.getEnd();
-            if (isAtTheSamePlace && aSuggestion.labelEquals(record.getAnnotation())) {
+        for (LearningRecord record : records) {
+            if (aSuggestion.labelEquals(record.getAnnotation())) {
                 switch (record.getUserAction()) {
                 case REJECTED:
                     aSuggestion.hide(FLAG_REJECTED);
@@ -1582,33 +2085,116 @@ public class RecommendationServiceImpl
         throws UIMAException, IOException
     {
         try (StopWatch watch = new StopWatch(log, "adding score features")) {
-            TypeSystemDescription tsd = annoService.getFullProjectTypeSystem(aProject);
+            TypeSystemDescription tsd = createPredictionTypeSystem(aProject);
 
-            for (AnnotationLayer layer : annoService.listAnnotationLayer(aProject)) {
-                TypeDescription td = tsd.getType(layer.getName());
+            annoService.upgradeCas(aSourceCas, aTargetCas, tsd);
+        }
 
-                if (td == null) {
-                    log.trace("Could not monkey patch type [{}]", layer.getName());
-                    continue;
-                }
+        return aTargetCas;
+    }
+    
+    /**
+     * Creates the full project type system extended with the score, score explanation and
+     * is-prediction features which recommenders use to mark their predictions.
+     */
+    private TypeSystemDescription createPredictionTypeSystem(Project aProject)
+        throws ResourceInitializationException
+    {
+        TypeSystemDescription tsd = annoService.getFullProjectTypeSystem(aProject);
 
-                for (FeatureDescription feature : td.getFeatures()) {
-                    String scoreFeatureName = feature.getName() + FEATURE_NAME_SCORE_SUFFIX;
-                    td.addFeature(scoreFeatureName, "Score feature", CAS.TYPE_NAME_DOUBLE);
-                    
-                    String scoreExplanationFeatureName = feature.getName() + 
-                            FEATURE_NAME_SCORE_EXPLANATION_SUFFIX;
-                    td.addFeature(scoreExplanationFeatureName, "Score explanation feature", 
-                            CAS.TYPE_NAME_STRING);
-                }
+        for (AnnotationLayer layer : annoService.listAnnotationLayer(aProject)) {
+            TypeDescription td = tsd.getType(layer.getName());
 
-                td.addFeature(FEATURE_NAME_IS_PREDICTION, "Is Prediction", CAS.TYPE_NAME_BOOLEAN);
+            if (td == null) {
+                log.trace("Could not monkey patch type [{}]", layer.getName());
+                continue;
             }
 
-            annoService.upgradeCas(aSourceCas, aTargetCas, tsd);
+            for (FeatureDescription feature : td.getFeatures()) {
+                String scoreFeatureName = feature.getName() + FEATURE_NAME_SCORE_SUFFIX;
+                td.addFeature(scoreFeatureName, "Score feature", CAS.TYPE_NAME_DOUBLE);
+                
+                String scoreExplanationFeatureName = feature.getName() + 
+                        FEATURE_NAME_SCORE_EXPLANATION_SUFFIX;
+                td.addFeature(scoreExplanationFeatureName, "Score explanation feature", 
+                        CAS.TYPE_NAME_STRING);
+            }
+
+            td.addFeature(FEATURE_NAME_IS_PREDICTION, "Is Prediction", CAS.TYPE_NAME_BOOLEAN);
+        }
+        
+        return tsd;
+    }
+    
+    private static byte[] serializeCas(CAS aCas) throws IOException
+    {
+        CAS realCas = getRealCas(aCas);
+        // UIMA-6162 Workaround: synchronize CAS during de/serialization
+        synchronized (((CASImpl) realCas).getBaseCAS()) {
+            try (ByteArrayOutputStream bos = new ByteArrayOutputStream()) {
+                CasIOUtils.save(realCas, bos, COMPRESSED_FILTERED_TSI);
+                return bos.toByteArray();
+            }
+        }
+    }
+    
+    /**
+     * Loads the serialized original CAS into the pooled prediction CAS. The type system of the
+     * prediction CAS is a superset of the one of the original CAS, so the data can be loaded
+     * leniently without having to re-create the prediction CAS and compile its type system again.
+     * Loading resets the prediction CAS, removing any predictions from previous recommenders.
+     */
+    private void loadPredictionCas(byte[] aOriginalCasData, CAS aPredictionCas)
+        throws IOException
+    {
+        try (StopWatch watch = new StopWatch(log, "loading prediction CAS")) {
+            CasIOUtils.load(new ByteArrayInputStream(aOriginalCasData), null, aPredictionCas,
+                    CasLoadMode.LENIENT);
         }
+    }
+    
+    /**
+     * A document which is part of a prediction batch together with its annotation CAS and the
+     * prediction CAS used for it.
+     */
+    private static class PredictionItem
+    {
+        private final SourceDocument document;
+        private final CAS originalCas;
+        private final byte[] originalCasData;
+        private final CAS predictionCas;
 
-        return aTargetCas;
+        public PredictionItem(SourceDocument aDocument, CAS aOriginalCas, byte[] aOriginalCasData,
+                CAS aPredictionCas)
+        {
+            document = aDocument;
+            originalCas = aOriginalCas;
+            originalCasData = aOriginalCasData;
+            predictionCas = aPredictionCas;
+        }
+    }
+    
+    /**
+     * An active recommender together with everything needed to predict with it.
+     */
+    private static class PredictionRecommender
+    {
+        private final AnnotationLayer layer;
+        private final Recommender recommender;
+        private final RecommenderContext context;
+        private final RecommendationEngineFactory<?> factory;
+        private final List<AnnotationFeature> features;
+
+        public PredictionRecommender(AnnotationLayer aLayer, Recommender aRecommender,
+                RecommenderContext aContext, RecommendationEngineFactory<?> aFactory,
+                List<AnnotationFeature> aFeatures)
+        {
+            layer = aLayer;
+            recommender = aRecommender;
+            context = aContext;
+            factory = aFactory;
+            features = aFeatures;
+        }
     }
     
     private class TriggerTrainingTaskListener
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
+
+/**
+ * Runs recommender evaluations on a pool of workers which is shared by all selection tasks, so
+ * the configured evaluation parallelism is a global limit and not a limit per task. Each
+ * evaluation can be limited in time. The time limit only starts once the evaluation is actually
+ * running and not while it is still waiting for a free worker.
+ * <p>
+ * Recommenders generally do not react to interrupts, so an evaluation which has been cancelled
+ * or has timed out may continue to run for a while. Callers which pass data to an evaluation that
+ * they release afterwards (e.g. CASes) must use {@link ScheduledEvaluation#awaitCompletion()} to
+ * wait until the evaluation is really over.
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link RecommenderServiceAutoConfiguration#recommenderEvaluationExecutor}.
+ * </p>
+ */
+public class RecommenderEvaluationExecutor
+    implements DisposableBean
+{
+    private final ExecutorService executor;
+    private final ScheduledExecutorService watchdog;
+
+    public RecommenderEvaluationExecutor(int aParallelism)
+    {
+        executor = Executors.newFixedThreadPool(aParallelism, new BasicThreadFactory.Builder()
+                .namingPattern("evaluation-worker-%d")
+                .daemon(true)
+                .build());
+        watchdog = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory.Builder()
+                .namingPattern("evaluation-watchdog-%d")
+                .daemon(true)
+                .build());
+    }
+
+    /**
+     * Schedules the given evaluation.
+     *
+     * @param aEvaluation
+     *            the evaluation.
+     * @param aTimeoutMillis
+     *            the time in milliseconds after which a running evaluation is cancelled. A value
+     *            of {@code 0} or less disables the time limit.
+     * @return a handle on the evaluation.
+     */
+    public <T> ScheduledEvaluation<T> submit(Callable<T> aEvaluation, long aTimeoutMillis)
+    {
+        ScheduledEvaluation<T> evaluation = new ScheduledEvaluation<>(aEvaluation);
+        executor.execute(() -> evaluation.run(aTimeoutMillis));
+        return evaluation;
+    }
+
+    @Override
+    public void destroy()
+    {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    public class ScheduledEvaluation<T>
+    {
+        private final FutureTask<T> future;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private ScheduledEvaluation(Callable<T> aCallable)
+        {
+            future = new FutureTask<>(aCallable);
+        }
+
+        private void run(long aTimeoutMillis)
+        {
+            // If the evaluation has been cancelled before a worker picked it up, there is nothing
+            // to do - awaitCompletion() has already taken care of it
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+
+            try {
+                ScheduledFuture<?> timer = aTimeoutMillis > 0
+                        ? watchdog.schedule(() -> future.cancel(true), aTimeoutMillis,
+                                MILLISECONDS)
+                        : null;
+                try {
+                    future.run();
+                }
+                finally {
+                    if (timer != null) {
+                        timer.cancel(false);
+                    }
+                }
+            }
+            finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Waits up to the given time for the result of the evaluation.
+         *
+         * @throws CancellationException
+         *             if the evaluation was cancelled or has timed out.
+         */
+        public T get(long aTimeoutMillis)
+            throws InterruptedException, ExecutionException, TimeoutException
+        {
+            return future.get(aTimeoutMillis, MILLISECONDS);
+        }
+
+        /**
+         * Requests the evaluation to be cancelled. If the evaluation is already running, it is
+         * interrupted but may nevertheless continue to run for a while.
+         */
+        public void cancel()
+        {
+            future.cancel(true);
+        }
+
+        /**
+         * Waits until the evaluation is no longer running. If the evaluation has not started yet,
+         * it is cancelled and will not start anymore.
+         */
+        public void awaitCompletion() throws InterruptedException
+        {
+            if (claimed.compareAndSet(false, true)) {
+                future.cancel(false);
+                finished.countDown();
+                return;
+            }
+
+            finished.await();
+        }
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.comparing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.tuple.Triple;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.event.EventListener;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterDocumentResetEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.recommendation.util.RepositoryUtil;
+
+/**
+ * Persists trained {@link RecommenderContext recommender contexts} in the repository so that
+ * they survive restarts and session expiry. Each stored context is accompanied by a fingerprint
+ * of the recommender configuration and of the training data of the user (the state and
+ * modification time of each annotation document). A stored context is considered current as
+ * long as the fingerprint does not change. The modification times of the annotation documents are
+ * cached until the annotation CAS is written again, so calculating the fingerprint does not need
+ * to access the storage for every document.
+ * <p>
+ * Models are read through a {@link ModelInputStream} which only deserializes classes from a
+ * fixed list of packages. A stored model containing other classes is discarded and the model is
+ * trained again.
+ * </p>
+ * <p>
+ * Models are stored in {@code project/<id>/recommendation/model/<recommender>/<user>.ser}.
+ * </p>
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link RecommenderServiceAutoConfiguration#recommenderModelStore}.
+ * </p>
+ */
+public class RecommenderModelStore
+{
+    private static final String MODEL_FILE_SUFFIX = ".ser";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final long MAX_CACHED_TIMESTAMPS = 100_000;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final DocumentService documentService;
+    private final boolean enabled;
+
+    // Annotation CAS timestamps by user, project ID and document ID
+    private final Cache<Triple<String, Long, Long>, Long> timestamps;
+
+    public RecommenderModelStore(DocumentService aDocumentService, boolean aEnabled)
+    {
+        documentService = aDocumentService;
+        enabled = aEnabled;
+        timestamps = Caffeine.newBuilder().maximumSize(MAX_CACHED_TIMESTAMPS).build();
+    }
+
+    public boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Calculates the fingerprint of the given recommender configuration and the training data
+     * of the given user.
+     */
+    public String fingerprint(Recommender aRecommender, User aUser) throws IOException
+    {
+        StringBuilder sb = new StringBuilder();
+        sb.append(aRecommender.getId()).append('|');
+        sb.append(aRecommender.getTool()).append('|');
+        sb.append(aRecommender.getTraits()).append('|');
+        sb.append(aRecommender.getLayer().getId()).append('|');
+        sb.append(aRecommender.getFeature().getId()).append('|');
+        sb.append(aRecommender.getThreshold()).append('|');
+        sb.append(aRecommender.getMaxRecommendations()).append('|');
+        if (aRecommender.getStatesIgnoredForTraining() != null) {
+            aRecommender.getStatesIgnoredForTraining().stream()
+                    .map(Enum::name)
+                    .sorted()
+                    .forEach(state -> sb.append(state).append(','));
+        }
+        sb.append('\n');
+
+        Map<SourceDocument, AnnotationDocument> documents = documentService
+                .listAllDocuments(aRecommender.getProject(), aUser);
+        List<SourceDocument> sortedDocuments = new ArrayList<>(documents.keySet());
+        sortedDocuments.sort(comparing(SourceDocument::getId));
+        for (SourceDocument doc : sortedDocuments) {
+            AnnotationDocument annDoc = documents.get(doc);
+            sb.append(doc.getId()).append('|');
+            sb.append(annDoc != null ? annDoc.getState() : null).append('|');
+            sb.append(getAnnotationCasTimestamp(doc, aUser.getUsername()));
+            sb.append('\n');
+        }
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest(sb.toString().getBytes(UTF_8))) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Checks whether a model is stored for the given recommender and user and whether it was
+     * trained on data matching the given fingerprint.
+     */
+    public boolean isCurrent(Recommender aRecommender, User aUser, String aFingerprint)
+    {
+        if (!enabled) {
+            return false;
+        }
+
+        File file = getModelFile(aRecommender, aUser);
+        if (!file.exists()) {
+            return false;
+        }
+
+        try (ObjectInputStream is = new ModelInputStream(
+                new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            return aFingerprint.equals(is.readUTF());
+        }
+        catch (IOException e) {
+            log.warn("Unable to read fingerprint of stored model for recommender [{}]({}) and "
+                    + "user [{}] - discarding it", aRecommender.getName(), aRecommender.getId(),
+                    aUser.getUsername(), e);
+            delete(aRecommender, aUser);
+            return false;
+        }
+    }
+
+    public boolean exists(Recommender aRecommender, User aUser)
+    {
+        return enabled && getModelFile(aRecommender, aUser).exists();
+    }
+
+    /**
+     * Loads the stored model for the given recommender and user if there is one.
+     */
+    public Optional<RecommenderContext> load(Recommender aRecommender, User aUser)
+    {
+        if (!exists(aRecommender, aUser)) {
+            return Optional.empty();
+        }
+
+        File file = getModelFile(aRecommender, aUser);
+
+        long start = System.currentTimeMillis();
+        try (ObjectInputStream is = new ModelInputStream(
+                new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            // Skip the fingerprint
+            is.readUTF();
+            RecommenderContext context = (RecommenderContext) is.readObject();
+            context.setUser(aUser);
+
+            log.debug("Loaded stored model for recommender [{}]({}) and user [{}] ({} ms)",
+                    aRecommender.getName(), aRecommender.getId(), aUser.getUsername(),
+                    System.currentTimeMillis() - start);
+
+            return Optional.of(context);
+        }
+        catch (IOException | ClassNotFoundException | ClassCastException e) {
+            // This happens e.g. if the model classes have changed in an incompatible way after
+            // an upgrade. The model is simply trained again.
+            log.warn("Unable to load stored model for recommender [{}]({}) and user [{}] - "
+                    + "discarding it", aRecommender.getName(), aRecommender.getId(),
+                    aUser.getUsername(), e);
+            delete(aRecommender, aUser);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the given model for the given recommender and user. If the model cannot be
+     * serialized, any previously stored model is removed since it would be outdated.
+     */
+    public void store(Recommender aRecommender, User aUser, String aFingerprint,
+            RecommenderContext aContext)
+    {
+        if (!enabled) {
+            return;
+        }
+
+        File file = getModelFile(aRecommender, aUser);
+        File tempFile = new File(file.getParentFile(), file.getName() + TEMP_FILE_SUFFIX);
+
+        long start = System.currentTimeMillis();
+        try {
+            Files.createDirectories(file.getParentFile().toPath());
+
+            try (ObjectOutputStream os = new ObjectOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile.toPath())))) {
+                os.writeUTF(aFingerprint);
+                os.writeObject(aContext);
+            }
+
+            move(tempFile.toPath(), file.toPath());
+
+            log.debug("Stored model for recommender [{}]({}) and user [{}] ({} ms)",
+                    aRecommender.getName(), aRecommender.getId(), aUser.getUsername(),
+                    System.currentTimeMillis() - start);
+        }
+        catch (IOException e) {
+            // NotSerializableException is also an IOException - some engines may put data into
+            // the context which cannot be serialized. These are simply retrained as before.
+            log.debug("Unable to store model for recommender [{}]({}) and user [{}]",
+                    aRecommender.getName(), aRecommender.getId(), aUser.getUsername(), e);
+            tempFile.delete();
+            delete(aRecommender, aUser);
+        }
+    }
+
+    public void delete(Recommender aRecommender, User aUser)
+    {
+        File file = getModelFile(aRecommender, aUser);
+        if (file.exists() && !file.delete()) {
+            log.warn("Unable to delete stored model [{}]", file);
+        }
+    }
+
+    /**
+     * Removes the stored models of all users for the given recommender.
+     */
+    public void delete(Recommender aRecommender)
+    {
+        Path dir = getRecommenderDir(aRecommender).toPath();
+        if (!Files.exists(dir)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder())
+                    .map(Path::toFile)
+                    .forEach(File::delete);
+        }
+        catch (IOException e) {
+            log.warn("Unable to delete stored models for recommender [{}]({})",
+                    aRecommender.getName(), aRecommender.getId(), e);
+        }
+    }
+
+    @EventListener
+    public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
+    {
+        invalidateTimestamp(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void onAfterDocumentReset(AfterDocumentResetEvent aEvent)
+    {
+        invalidateTimestamp(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void onBeforeDocumentRemoved(BeforeDocumentRemovedEvent aEvent)
+    {
+        long documentId = aEvent.getDocument().getId();
+        timestamps.asMap().keySet().removeIf(key -> key.getRight() == documentId);
+    }
+
+    private void invalidateTimestamp(AnnotationDocument aDocument)
+    {
+        timestamps.invalidate(timestampKey(aDocument.getUser(), aDocument.getDocument()));
+    }
+
+    private long getAnnotationCasTimestamp(SourceDocument aDocument, String aUsername)
+        throws IOException
+    {
+        // The timestamp is looked up atomically with respect to the invalidation. If the CAS is
+        // written while the timestamp is looked up, the invalidation waits for the lookup and
+        // then removes the potentially outdated timestamp.
+        try {
+            return timestamps.get(timestampKey(aUsername, aDocument), _key -> {
+                try {
+                    return documentService.getAnnotationCasTimestamp(aDocument, aUsername)
+                            .orElse(-1l);
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static Triple<String, Long, Long> timestampKey(String aUsername,
+            SourceDocument aDocument)
+    {
+        return Triple.of(aUsername, aDocument.getProject().getId(), aDocument.getId());
+    }
+
+    private File getRecommenderDir(Recommender aRecommender)
+    {
+        return new File(RepositoryUtil.getModelDir(documentService, aRecommender.getProject()),
+                String.valueOf(aRecommender.getId()));
+    }
+
+    private File getModelFile(Recommender aRecommender, User aUser)
+    {
+        try {
+            // Usernames may contain characters which are not valid in file names
+            return new File(getRecommenderDir(aRecommender),
+                    URLEncoder.encode(aUser.getUsername(), UTF_8.name()) + MODEL_FILE_SUFFIX);
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void move(Path aSource, Path aTarget) throws IOException
+    {
+        try {
+            Files.move(aSource, aTarget, ATOMIC_MOVE, REPLACE_EXISTING);
+        }
+        catch (AtomicMoveNotSupportedException e) {
+            Files.move(aSource, aTarget, REPLACE_EXISTING);
+        }
+    }
+}
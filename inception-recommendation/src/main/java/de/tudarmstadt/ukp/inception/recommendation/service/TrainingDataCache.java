@@ -0,0 +1,243 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.core.session.SessionDestroyedEvent;
+import org.springframework.security.core.session.SessionInformation;
+import org.springframework.security.core.session.SessionRegistry;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.BeforeDocumentRemovedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.LayerConfigurationChangedEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.IncrementalTrainingSupport;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderDeletedEvent;
+import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderUpdatedEvent;
+
+/**
+ * Caches the training data which {@link IncrementalTrainingSupport incremental training engines}
+ * extract from the documents of a user. An entry is valid as long as the annotation CAS of the
+ * document has not been written since the data was extracted. This is tracked through
+ * {@link AfterCasWrittenEvent}s and additionally by comparing the CAS timestamp since CASes may
+ * also be written without an event being sent.
+ * <p>
+ * The cache of a user is dropped when the session of the user ends. The number of cached
+ * documents is bounded, the least recently used documents being dropped first.
+ * </p>
+ * <p>
+ * This class is exposed as a Spring Component via
+ * {@link RecommenderServiceAutoConfiguration#trainingDataCache}.
+ * </p>
+ */
+public class TrainingDataCache
+{
+    private final SessionRegistry sessionRegistry;
+
+    private final Cache<DocumentKey, DocumentEntry> documents;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param aMaxDocuments
+     *            the maximum number of documents for which training data is cached. The least
+     *            recently used documents are dropped when the limit is exceeded.
+     */
+    public TrainingDataCache(SessionRegistry aSessionRegistry, long aMaxDocuments)
+    {
+        sessionRegistry = aSessionRegistry;
+        documents = Caffeine.newBuilder().maximumSize(aMaxDocuments).build();
+    }
+
+    /**
+     * Returns the cached training data of the given recommender for the given document and
+     * user. The outer optional is empty if there is no current entry in the cache. The inner
+     * optional is empty if the document has been found to contain no training data.
+     * 
+     * @param aTimestamp
+     *            the current timestamp of the annotation CAS of the user or {@code -1} if there
+     *            is no annotation CAS yet.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<Optional<T>> get(String aUsername, SourceDocument aDocument,
+            long aTimestamp, Recommender aRecommender)
+    {
+        DocumentEntry entry = documents.getIfPresent(new DocumentKey(aUsername, aDocument));
+
+        if (entry == null || entry.timestamp != aTimestamp
+                || !entry.data.containsKey(aRecommender.getId())) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+
+        hits.incrementAndGet();
+        return Optional.of((Optional<T>) entry.data.get(aRecommender.getId()));
+    }
+
+    public <T> void put(String aUsername, SourceDocument aDocument, long aTimestamp,
+            Recommender aRecommender, T aData)
+    {
+        DocumentEntry entry = documents.asMap().compute(new DocumentKey(aUsername, aDocument),
+            (_key, _entry) -> _entry != null && _entry.timestamp == aTimestamp ? _entry
+                    : new DocumentEntry(aTimestamp));
+
+        entry.data.put(aRecommender.getId(), Optional.ofNullable(aData));
+    }
+
+    public void invalidate(String aUsername, SourceDocument aDocument)
+    {
+        documents.invalidate(new DocumentKey(aUsername, aDocument));
+    }
+
+    public void invalidate(SourceDocument aDocument)
+    {
+        documents.asMap().keySet().removeIf(key -> key.documentId == aDocument.getId());
+    }
+
+    public void invalidate(Project aProject)
+    {
+        documents.asMap().keySet().removeIf(key -> key.projectId == aProject.getId());
+    }
+
+    public void invalidate(Recommender aRecommender)
+    {
+        documents.asMap().values().forEach(entry -> entry.data.remove(aRecommender.getId()));
+    }
+
+    public void clear(String aUsername)
+    {
+        documents.asMap().keySet().removeIf(key -> aUsername.equals(key.user));
+    }
+
+    public long getHits()
+    {
+        return hits.get();
+    }
+
+    public long getMisses()
+    {
+        return misses.get();
+    }
+
+    public long getSize()
+    {
+        documents.cleanUp();
+        return documents.estimatedSize();
+    }
+
+    @EventListener
+    public void onAfterCasWritten(AfterCasWrittenEvent aEvent)
+    {
+        invalidate(aEvent.getDocument().getUser(), aEvent.getDocument().getDocument());
+    }
+
+    @EventListener
+    public void onDocumentRemoval(BeforeDocumentRemovedEvent aEvent)
+    {
+        invalidate(aEvent.getDocument());
+    }
+
+    @EventListener
+    public void onLayerConfigurationChanged(LayerConfigurationChangedEvent aEvent)
+    {
+        invalidate(aEvent.getProject());
+    }
+
+    @EventListener
+    public void onRecommenderUpdated(RecommenderUpdatedEvent aEvent)
+    {
+        invalidate(aEvent.getRecommender());
+    }
+
+    @EventListener
+    public void onRecommenderDelete(RecommenderDeletedEvent aEvent)
+    {
+        invalidate(aEvent.getRecommender());
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onSessionDestroyed(SessionDestroyedEvent aEvent)
+    {
+        SessionInformation info = sessionRegistry.getSessionInformation(aEvent.getId());
+        // Could be an anonymous session without information.
+        if (info != null) {
+            clear((String) info.getPrincipal());
+        }
+    }
+
+    private static class DocumentKey
+    {
+        private final String user;
+        private final long projectId;
+        private final long documentId;
+
+        public DocumentKey(String aUser, SourceDocument aDocument)
+        {
+            user = aUser;
+            projectId = aDocument.getProject().getId();
+            documentId = aDocument.getId();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            DocumentKey that = (DocumentKey) o;
+            return projectId == that.projectId && documentId == that.documentId
+                    && user.equals(that.user);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(user, projectId, documentId);
+        }
+    }
+
+    private static class DocumentEntry
+    {
+        private final long timestamp;
+        private final Map<Long, Optional<?>> data = new ConcurrentHashMap<>();
+
+        public DocumentEntry(long aTimestamp)
+        {
+            timestamp = aTimestamp;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.tasks;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
+import de.tudarmstadt.ukp.inception.scheduling.Task;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
+
+/**
+ * Applies the pending online updates of a user to the models of the active recommenders and
+ * then predicts again on the documents the updates were made in. The predictions of all other
+ * documents are inherited, so an update does not cause a prediction run on the whole project.
+ */
+public class OnlineUpdateTask
+    extends Task
+{
+    private Logger log = LoggerFactory.getLogger(getClass());
+
+    private @Autowired RecommendationService recommendationService;
+    private @Autowired DocumentService documentService;
+
+    public OnlineUpdateTask(User aUser, Project aProject, String aTrigger)
+    {
+        super(aUser, aProject, aTrigger);
+    }
+
+    @Override
+    public TaskPriority getPriority()
+    {
+        // The user is waiting for the effect of the update on the suggestions
+        return TaskPriority.HIGH;
+    }
+
+    @Override
+    public void run()
+    {
+        User user = getUser();
+        String username = user.getUsername();
+        Project project = getProject();
+        
+        long startTime = System.currentTimeMillis();
+        
+        // The updates are applied even if the task has been superseded in the meantime since
+        // the task superseding it only applies the updates which have arrived after that
+        List<SourceDocument> docs = recommendationService.applyPendingOnlineUpdates(user,
+                project);
+        if (docs.isEmpty() || isCancelled()) {
+            return;
+        }
+        
+        try (CasStorageSession session = CasStorageSession.open()) {
+            List<SourceDocument> inherit = documentService.listSourceDocuments(project).stream()
+                    .filter(d -> !docs.contains(d))
+                    .collect(Collectors.toList());
+            
+            Predictions predictions = recommendationService.computePredictions(user, project,
+                    docs, inherit, this::isCancelled);
+            
+            // The task superseding this one produces new predictions anyway
+            if (isCancelled()) {
+                log.debug("[{}][{}]: Online update prediction cancelled ({} ms)", getId(),
+                        username, (System.currentTimeMillis() - startTime));
+                return;
+            }
+            
+            log.debug("[{}][{}]: Online update prediction complete ({} ms)", getId(), username,
+                    (System.currentTimeMillis() - startTime));
+            
+            recommendationService.putIncomingPredictions(user, project, predictions);
+        }
+    }
+}
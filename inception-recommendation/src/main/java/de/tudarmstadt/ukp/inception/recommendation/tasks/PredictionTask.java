@@ -33,6 +33,7 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Predictions;
 import de.tudarmstadt.ukp.inception.scheduling.Task;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
 
 /**
  * This consumer predicts new annotations for a given annotation layer, if a classification tool for
@@ -55,6 +56,13 @@ public class PredictionTask
         currentDocument = aCurrentDocument;
     }
 
+    @Override
+    public TaskPriority getPriority()
+    {
+        // Predictions are what the user is waiting for, so they go first
+        return TaskPriority.HIGH;
+    }
+
     @Override
     public void run()
     {
@@ -82,7 +90,15 @@ public class PredictionTask
             long startTime = System.currentTimeMillis();
     
             Predictions predictions = recommendationService.computePredictions(user, project, docs,
-                    inherit);
+                    inherit, this::isCancelled);
+            
+            // The predictions are incomplete if the task was cancelled. The task superseding this
+            // one produces new predictions anyway.
+            if (isCancelled()) {
+                log.debug("[{}][{}]: Prediction cancelled ({} ms)", getId(), username,
+                        (System.currentTimeMillis() - startTime));
+                return;
+            }
             
             log.debug("[{}][{}]: Prediction complete ({} ms)", getId(), username,
                     (System.currentTimeMillis() - startTime));
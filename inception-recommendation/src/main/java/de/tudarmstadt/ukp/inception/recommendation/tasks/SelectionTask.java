@@ -18,14 +18,20 @@
 package de.tudarmstadt.ukp.inception.recommendation.tasks;
 
 import static de.tudarmstadt.ukp.clarin.webanno.api.CasUpgradeMode.AUTO_CAS_UPGRADE;
+import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.SHARED_READ_ONLY_ACCESS;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
 
 import javax.persistence.NoResultException;
 
-import org.apache.commons.lang3.concurrent.LazyInitializer;
 import org.apache.uima.cas.CAS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -47,18 +53,35 @@ import de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommende
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderProperties;
 import de.tudarmstadt.ukp.inception.recommendation.event.RecommenderEvaluationResultEvent;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics.Phase;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderEvaluationExecutor;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderEvaluationExecutor.ScheduledEvaluation;
 import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
 import de.tudarmstadt.ukp.inception.scheduling.Task;
+import de.tudarmstadt.ukp.inception.scheduling.TaskPriority;
 
 /**
  * This task evaluates all available classification tools for all annotation layers of the current
  * project. If a classifier exceeds its specific activation f-score limit during the evaluation it
  * is selected for active prediction.
+ * <p>
+ * Recommenders which require an evaluation can be evaluated concurrently (see
+ * {@link RecommenderProperties#getEvaluationParallelism()}) on a pool of workers shared by all
+ * selection tasks. All evaluations share the same read-only
+ * snapshot of the annotation CASes. Each evaluation can be limited in time (see
+ * {@link RecommenderProperties#getEvaluationTimeout()}) - a recommender whose evaluation does not
+ * complete in time is not activated. The task does not complete before all its evaluations are
+ * over, even if they have been aborted.
  */
 public class SelectionTask
     extends Task
 {
+    private static final long CANCELLATION_CHECK_INTERVAL = 250;
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private @Autowired AnnotationSchemaService annoService;
@@ -66,6 +89,9 @@ public class SelectionTask
     private @Autowired RecommendationService recommendationService;
     private @Autowired ApplicationEventPublisher appEventPublisher;
     private @Autowired SchedulingService schedulingService;
+    private @Autowired RecommenderStatistics statistics;
+    private @Autowired RecommenderProperties properties;
+    private @Autowired RecommenderEvaluationExecutor evaluationExecutor;
 
     private final SourceDocument currentDocument;
 
@@ -76,6 +102,14 @@ public class SelectionTask
         currentDocument = aCurrentDocument;
     }
 
+    @Override
+    public TaskPriority getPriority()
+    {
+        // The selection is only re-done every few training runs and the current selection
+        // remains usable in the meantime
+        return TaskPriority.LOW;
+    }
+
     @Override
     public void run()
     {
@@ -84,20 +118,16 @@ public class SelectionTask
             User user = getUser();
             String userName = user.getUsername();
             
-            // Read the CASes only when they are accessed the first time. This allows us to skip
-            // reading the CASes in case that no layer / recommender is available or if no
-            // recommender requires evaluation.
-            LazyInitializer<List<CAS>> casses = new LazyInitializer<List<CAS>>()
-            {
-                @Override
-                protected List<CAS> initialize()
-                {
-                    return readCasses(project, userName);
-                }
-            };
+            Map<AnnotationLayer, List<EvaluatedRecommender>> activeRecommenders =
+                    new LinkedHashMap<>();
+            List<Evaluation> evaluations = new ArrayList<>();
 
             boolean seenRecommender = false;
             for (AnnotationLayer layer : annoService.listAnnotationLayer(getProject())) {
+                if (isCancelled()) {
+                    break;
+                }
+                
                 if (!layer.isEnabled()) {
                     continue;
                 }
@@ -111,9 +141,14 @@ public class SelectionTask
                 
                 seenRecommender = true;
         
-                List<EvaluatedRecommender> activeRecommenders = new ArrayList<>();
+                List<EvaluatedRecommender> layerRecommenders = new ArrayList<>();
+                activeRecommenders.put(layer, layerRecommenders);
                 
                 for (Recommender r : recommenders) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    
                     // Make sure we have the latest recommender config from the DB - the one from
                     // the active recommenders list may be outdated
                     Recommender recommender;
@@ -155,51 +190,19 @@ public class SelectionTask
                         if (recommender.isAlwaysSelected()) {
                             log.debug("[{}][{}]: Activating [{}] without evaluating - always selected",
                                     userName, recommenderName, recommenderName);
-                            activeRecommenders.add(new EvaluatedRecommender(recommender,
+                            layerRecommenders.add(new EvaluatedRecommender(recommender,
                                     EvaluationResult.skipped()));
                             continue;
                         } else if (!factory.isEvaluable()) {
                             log.debug("[{}][{}]: Activating [{}] without evaluating - not evaluable",
                                     userName, recommenderName, recommenderName);
-                            activeRecommenders.add(new EvaluatedRecommender(recommender,
+                            layerRecommenders.add(new EvaluatedRecommender(recommender,
                                     EvaluationResult.skipped()));
                             continue;
                         }
-        
-                        log.info("[{}][{}]: Evaluating...", userName, recommenderName);
-
-                        DataSplitter splitter = new PercentageBasedSplitter(0.8, 10);
-                        EvaluationResult result = recommendationEngine.evaluate(casses.get(),
-                                splitter);
- 
-                        if (result.isEvaluationSkipped()) {
-                            log.info("[{}][{}]: Evaluation could not be performed: {}",
-                                    user.getUsername(), recommenderName,
-                                    result.getErrorMsg().orElse("unknown reason"));
-                            continue;
-                        }
                         
-                        double score = result.computeF1Score();
-
-                        Double threshold = recommender.getThreshold();
-                        boolean activated;
-                        if (score >= threshold) {
-                            activated = true;
-                            activeRecommenders.add(new EvaluatedRecommender(recommender, result));
-                            log.info("[{}][{}]: Activated ({} is above threshold {})",
-                                    user.getUsername(), recommenderName, score,
-                                    threshold);
-                        }
-                        else {
-                            activated = false;
-                            log.info("[{}][{}]: Not activated ({} is not above threshold {})",
-                                    user.getUsername(), recommenderName, score,
-                                    threshold);
-                        }
-
-                        appEventPublisher.publishEvent(new RecommenderEvaluationResultEvent(this,
-                                recommender, user.getUsername(), result,
-                                System.currentTimeMillis() - start, activated));
+                        evaluations.add(new Evaluation(recommender, recommendationEngine,
+                                layerRecommenders, start));
                     }
                    
                     // Catching Throwable is intentional here as we want to continue the execution
@@ -208,8 +211,28 @@ public class SelectionTask
                         log.error("[{}][{}]: Failed", user.getUsername(), recommenderName, e);
                     }
                 }
-        
-                recommendationService.setActiveRecommenders(user, layer, activeRecommenders);
+            }
+            
+            // Only read the CASes if any recommender actually requires evaluation. The CASes are
+            // shared by all evaluations and must not be modified by the recommenders.
+            if (!isCancelled() && !evaluations.isEmpty()) {
+                List<CAS> casses = readCasses(project, userName);
+                
+                // The CASes may be incomplete if the task was cancelled while reading them
+                if (!isCancelled()) {
+                    evaluateAll(evaluations, casses);
+                }
+            }
+            
+            // Do not replace the active recommenders based on an incomplete evaluation
+            if (isCancelled()) {
+                log.debug("[{}]: Selection cancelled", userName);
+                return;
+            }
+            
+            for (Entry<AnnotationLayer, List<EvaluatedRecommender>> e : activeRecommenders
+                    .entrySet()) {
+                recommendationService.setActiveRecommenders(user, e.getKey(), e.getValue());
             }
             
             if (!seenRecommender) {
@@ -227,12 +250,183 @@ public class SelectionTask
         }
     }
 
+    /**
+     * Evaluates the given recommenders on the given CASes. Depending on the configuration, the
+     * evaluations run one after the other on the task thread or concurrently on the evaluation
+     * workers shared by all selection tasks. In either case, the results are processed and the
+     * corresponding {@link RecommenderEvaluationResultEvent}s are published on the task thread in
+     * the order of the recommenders.
+     */
+    private void evaluateAll(List<Evaluation> aEvaluations, List<CAS> aCasses)
+    {
+        int parallelism = properties.getEvaluationParallelism();
+        long timeout = properties.getEvaluationTimeout().toMillis();
+        
+        if (parallelism <= 1 && timeout <= 0) {
+            for (Evaluation evaluation : aEvaluations) {
+                if (isCancelled()) {
+                    break;
+                }
+                
+                try {
+                    handleResult(evaluation, evaluate(evaluation, aCasses));
+                }
+                // Catching Throwable is intentional here as we want to continue the execution
+                // even if a particular recommender fails.
+                catch (Throwable e) {
+                    log.error("[{}][{}]: Failed", getUser().getUsername(),
+                            evaluation.recommender.getName(), e);
+                }
+            }
+            return;
+        }
+        
+        log.debug("[{}]: Evaluating [{}] recommenders on shared evaluation workers",
+                getUser().getUsername(), aEvaluations.size());
+        
+        List<ScheduledEvaluation<EvaluationResult>> futures = new ArrayList<>();
+        try {
+            for (Evaluation evaluation : aEvaluations) {
+                futures.add(evaluationExecutor.submit(() -> evaluate(evaluation, aCasses),
+                        timeout));
+            }
+            
+            for (int i = 0; i < aEvaluations.size(); i++) {
+                Evaluation evaluation = aEvaluations.get(i);
+                try {
+                    handleResult(evaluation, await(futures.get(i)));
+                }
+                catch (CancellationException e) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    
+                    log.warn("[{}][{}]: Evaluation aborted after [{}]ms - not activated",
+                            getUser().getUsername(), evaluation.recommender.getName(), timeout);
+                }
+                catch (ExecutionException e) {
+                    log.error("[{}][{}]: Failed", getUser().getUsername(),
+                            evaluation.recommender.getName(), e.getCause());
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            cancel();
+            Thread.currentThread().interrupt();
+        }
+        finally {
+            // Abort any evaluations which are still running, e.g. because the task was cancelled
+            futures.forEach(future -> future.cancel());
+            // Recommenders usually ignore interrupts, so an aborted evaluation may still be using
+            // the CASes. They must not be released before all evaluations are really over.
+            awaitCompletion(futures);
+        }
+    }
+    
+    private void awaitCompletion(List<ScheduledEvaluation<EvaluationResult>> aFutures)
+    {
+        boolean interrupted = false;
+        for (ScheduledEvaluation<EvaluationResult> future : aFutures) {
+            while (true) {
+                try {
+                    future.awaitCompletion();
+                    break;
+                }
+                catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Waits for the given evaluation to complete. While waiting, the task periodically checks
+     * whether it has been cancelled and in this case aborts the evaluation.
+     */
+    private EvaluationResult await(ScheduledEvaluation<EvaluationResult> aFuture)
+        throws InterruptedException, ExecutionException
+    {
+        while (true) {
+            if (isCancelled()) {
+                aFuture.cancel();
+            }
+            
+            try {
+                return aFuture.get(CANCELLATION_CHECK_INTERVAL);
+            }
+            catch (TimeoutException e) {
+                // Evaluation still running - check for cancellation and continue waiting
+            }
+        }
+    }
+    
+    /**
+     * Evaluates a single recommender. This method may be called concurrently for different
+     * recommenders, so each evaluation uses its own data splitter.
+     */
+    private EvaluationResult evaluate(Evaluation aEvaluation, List<CAS> aCasses)
+        throws RecommendationException
+    {
+        log.info("[{}][{}]: Evaluating...", getUser().getUsername(),
+                aEvaluation.recommender.getName());
+
+        DataSplitter splitter = new PercentageBasedSplitter(0.8, 10);
+        
+        long evaluationStartTime = System.currentTimeMillis();
+        EvaluationResult result = aEvaluation.engine.evaluate(aCasses, splitter);
+        statistics.record(aEvaluation.recommender, Phase.EVALUATE,
+                System.currentTimeMillis() - evaluationStartTime, aCasses.size());
+        return result;
+    }
+    
+    private void handleResult(Evaluation aEvaluation, EvaluationResult aResult)
+    {
+        String userName = getUser().getUsername();
+        Recommender recommender = aEvaluation.recommender;
+        String recommenderName = recommender.getName();
+        
+        if (aResult.isEvaluationSkipped()) {
+            log.info("[{}][{}]: Evaluation could not be performed: {}", userName,
+                    recommenderName, aResult.getErrorMsg().orElse("unknown reason"));
+            return;
+        }
+        
+        double score = aResult.computeF1Score();
+
+        Double threshold = recommender.getThreshold();
+        boolean activated;
+        if (score >= threshold) {
+            activated = true;
+            aEvaluation.activeRecommenders.add(new EvaluatedRecommender(recommender, aResult));
+            log.info("[{}][{}]: Activated ({} is above threshold {})", userName,
+                    recommenderName, score, threshold);
+        }
+        else {
+            activated = false;
+            log.info("[{}][{}]: Not activated ({} is not above threshold {})", userName,
+                    recommenderName, score, threshold);
+        }
+
+        appEventPublisher.publishEvent(new RecommenderEvaluationResultEvent(this, recommender,
+                userName, aResult, System.currentTimeMillis() - aEvaluation.startTime,
+                activated));
+    }
+
     private List<CAS> readCasses(Project aProject, String aUserName)
     {
         List<CAS> casses = new ArrayList<>();
         for (SourceDocument document : documentService.listSourceDocuments(aProject)) {
+            if (isCancelled()) {
+                break;
+            }
+            
             try {
-                CAS cas = documentService.readAnnotationCas(document, aUserName, AUTO_CAS_UPGRADE);
+                CAS cas = documentService.readAnnotationCas(document, aUserName,
+                        AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
                 casses.add(cas);
             } catch (IOException e) {
                 log.error("Cannot read annotation CAS.", e);
@@ -240,4 +434,24 @@ public class SelectionTask
         }
         return casses;
     }
+
+    /**
+     * A recommender which needs to be evaluated before it can be activated.
+     */
+    private static class Evaluation
+    {
+        private final Recommender recommender;
+        private final RecommendationEngine engine;
+        private final List<EvaluatedRecommender> activeRecommenders;
+        private final long startTime;
+
+        public Evaluation(Recommender aRecommender, RecommendationEngine aEngine,
+                List<EvaluatedRecommender> aActiveRecommenders, long aStartTime)
+        {
+            recommender = aRecommender;
+            engine = aEngine;
+            activeRecommenders = aActiveRecommenders;
+            startTime = aStartTime;
+        }
+    }
 }
@@ -26,10 +26,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 import javax.persistence.NoResultException;
 
+import org.apache.commons.lang3.concurrent.ConcurrentException;
 import org.apache.commons.lang3.concurrent.LazyInitializer;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.Type;
@@ -50,10 +52,16 @@ import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommender;
 import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.IncrementalTrainingSupport;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineCapability;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationException;
 import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics.Phase;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderModelStore;
+import de.tudarmstadt.ukp.inception.recommendation.service.TrainingDataCache;
 import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
 import de.tudarmstadt.ukp.inception.scheduling.Task;
 
@@ -69,6 +77,9 @@ public class TrainingTask
     private @Autowired DocumentService documentService;
     private @Autowired RecommendationService recommendationService;
     private @Autowired SchedulingService schedulingService;
+    private @Autowired RecommenderModelStore modelStore;
+    private @Autowired TrainingDataCache trainingDataCache;
+    private @Autowired RecommenderStatistics statistics;
 
     private final SourceDocument currentDocument;
 
@@ -89,16 +100,28 @@ public class TrainingTask
             log.debug("[{}][{}]: Starting training for project [{}] triggered by [{}]...",
                     getId(), user.getUsername(),project, getTrigger());
     
+            // List the documents only when they are accessed the first time
+            LazyInitializer<Map<SourceDocument, AnnotationDocument>> documents =
+                    new LazyInitializer<Map<SourceDocument, AnnotationDocument>>()
+            {
+                @Override
+                protected Map<SourceDocument, AnnotationDocument> initialize()
+                {
+                    return documentService.listAllDocuments(project, user);
+                }
+            };
+            
             // Read the CASes only when they are accessed the first time. This allows us to skip
             // reading the CASes in case that no layer / recommender is available or if no
-            // recommender requires evaluation.
+            // recommender requires evaluation. Engines supporting incremental training do not use
+            // these at all but only read the CASes which changed since the last training run.
             LazyInitializer<List<TrainingDocument>> casses =
                     new LazyInitializer<List<TrainingDocument>>()
             {
                 @Override
-                protected List<TrainingDocument> initialize()
+                protected List<TrainingDocument> initialize() throws ConcurrentException
                 {
-                    return readCasses(project, user);
+                    return readCasses(documents.get(), user);
                 }
             };
             
@@ -106,6 +129,10 @@ public class TrainingTask
             boolean seenNonTrainingRecommender = false;
             
             for (AnnotationLayer layer : annoService.listAnnotationLayer(project)) {
+                if (isCancelled()) {
+                    break;
+                }
+                
                 if (!layer.isEnabled()) {
                     continue;
                 }
@@ -120,6 +147,10 @@ public class TrainingTask
                 }
                 
                 for (EvaluatedRecommender r : recommenders) {
+                    if (isCancelled()) {
+                        break;
+                    }
+                    
                     // Make sure we have the latest recommender config from the DB - the one from
                     // the active recommenders list may be outdated
                     Recommender recommender;
@@ -173,17 +204,62 @@ public class TrainingTask
                             continue;
                         }
                         
-                        List<CAS> cassesForTraining = casses.get()
-                                .stream()
-                                .filter(e -> !recommender.getStatesIgnoredForTraining()
-                                        .contains(e.state))
-                                .filter(e -> containsTargetTypeAndFeature(recommender, e.cas))
-                                .map(e -> e.cas)
-                                .collect(Collectors.toList());
+                        // If the stored model has been trained on exactly the data we have now,
+                        // there is no need to train again (e.g. after a restart)
+                        String fingerprint = null;
+                        if (modelStore.isEnabled()) {
+                            fingerprint = modelStore.fingerprint(recommender, user);
+                            if (modelStore.isCurrent(recommender, user, fingerprint)) {
+                                Optional<RecommenderContext> stored = recommendationService
+                                        .getContext(user, recommender);
+                                if (
+                                        stored.isPresent() && 
+                                        recommendationEngine.isReadyForPrediction(stored.get())
+                                ) {
+                                    log.debug("[{}][{}][{}]: Training data unchanged - using "
+                                            + "stored model", getId(), user.getUsername(),
+                                            recommender.getName());
+                                    seenSuccessfulTraining = true;
+                                    continue;
+                                }
+                            }
+                        }
+                        
+                        // Engines supporting incremental training get the cached training data
+                        // of the documents - only documents which changed since the last
+                        // training run need to be read then. Other engines get the CASes.
+                        IncrementalTraining<?> incrementalTraining = null;
+                        List<CAS> cassesForTraining = null;
+                        int trainingDocumentCount;
+                        int totalDocumentCount;
+                        if (recommendationEngine instanceof IncrementalTrainingSupport) {
+                            incrementalTraining = new IncrementalTraining<>(
+                                    (IncrementalTrainingSupport<?>) recommendationEngine,
+                                    recommender, documents.get());
+                            trainingDocumentCount = incrementalTraining.trainingData.size();
+                            totalDocumentCount = documents.get().size();
+                        }
+                        else {
+                            cassesForTraining = casses.get()
+                                    .stream()
+                                    .filter(e -> !recommender.getStatesIgnoredForTraining()
+                                            .contains(e.state))
+                                    .filter(e -> containsTargetTypeAndFeature(recommender, e.cas))
+                                    .map(e -> e.cas)
+                                    .collect(Collectors.toList());
+                            trainingDocumentCount = cassesForTraining.size();
+                            totalDocumentCount = casses.get().size();
+                        }
+                        
+                        // The training data may be incomplete if the task was cancelled while
+                        // collecting it
+                        if (isCancelled()) {
+                            break;
+                        }
     
                         // If no data for training is available, but the engine requires training, 
                         // do not mark as ready
-                        if (cassesForTraining.isEmpty() && capability == TRAINING_REQUIRED) {
+                        if (trainingDocumentCount == 0 && capability == TRAINING_REQUIRED) {
                             log.debug("[{}][{}][{}]: There are no annotations available to train on",
                                     getId(), user.getUsername(), recommender.getName());
                             continue;
@@ -191,15 +267,24 @@ public class TrainingTask
                         
                         log.debug("[{}][{}][{}]: Training model on [{}] out of [{}] documents ...",
                                 getId(), user.getUsername(), recommender.getName(),
-                                cassesForTraining.size(), casses.get().size());
+                                trainingDocumentCount, totalDocumentCount);
                         
-                        recommendationEngine.train(ctx, cassesForTraining);
+                        long trainingStartTime = System.currentTimeMillis();
+                        if (incrementalTraining != null) {
+                            incrementalTraining.train(ctx);
+                        }
+                        else {
+                            recommendationEngine.train(ctx, cassesForTraining);
+                        }
+                        statistics.record(recommender, Phase.TRAIN,
+                                System.currentTimeMillis() - trainingStartTime,
+                                trainingDocumentCount);
                         
                         if (recommendationEngine.isReadyForPrediction(ctx)) {
                             log.debug(
                                     "[{}][{}][{}]: Training successful on [{}] out of [{}] documents ({} ms)",
                                     getId(), user.getUsername(), recommender.getName(),
-                                    cassesForTraining.size(), casses.get().size(),
+                                    trainingDocumentCount, totalDocumentCount,
                                     (System.currentTimeMillis() - startTime));
                             seenSuccessfulTraining = true;
                         }
@@ -207,12 +292,16 @@ public class TrainingTask
                             log.debug(
                                     "[{}][{}][{}]: Training unsuccessful on [{}] out of [{}] documents ({} ms)",
                                     getId(), user.getUsername(), recommender.getName(),
-                                    cassesForTraining.size(), casses.get().size(),
+                                    trainingDocumentCount, totalDocumentCount,
                                     (System.currentTimeMillis() - startTime));
                         }
                         
                         ctx.close();
                         recommendationService.putContext(user, recommender, ctx);
+                        
+                        if (fingerprint != null) {
+                            modelStore.store(recommender, user, fingerprint, ctx);
+                        }
                     }
                     // Catching Throwable is intentional here as we want to continue the execution
                     // even if a particular recommender fails.
@@ -224,6 +313,13 @@ public class TrainingTask
                 }
             }
     
+            // A cancelled training is superseded by a newer task which takes care of scheduling
+            // the prediction
+            if (isCancelled()) {
+                log.debug("[{}][{}]: Training cancelled", getId(), user.getUsername());
+                return;
+            }
+            
             if (!seenSuccessfulTraining && !seenNonTrainingRecommender) {
                 log.debug("[{}][{}]: No recommenders trained successfully and no non-training "
                         + "recommenders, skipping prediction.", getId(), user.getUsername());
@@ -235,12 +331,15 @@ public class TrainingTask
         }
     }
 
-    private List<TrainingDocument> readCasses(Project aProject, User aUser)
+    private List<TrainingDocument> readCasses(
+            Map<SourceDocument, AnnotationDocument> aAllDocuments, User aUser)
     {
         List<TrainingDocument> casses = new ArrayList<>();
-        Map<SourceDocument, AnnotationDocument> allDocuments =
-                documentService.listAllDocuments(aProject, aUser);
-        for (Map.Entry<SourceDocument, AnnotationDocument> entry : allDocuments.entrySet()) {
+        for (Map.Entry<SourceDocument, AnnotationDocument> entry : aAllDocuments.entrySet()) {
+            if (isCancelled()) {
+                break;
+            }
+            
             try {
                 SourceDocument sourceDocument = entry.getKey();
                 AnnotationDocument annotationDocument = entry.getValue();
@@ -280,6 +379,72 @@ public class TrainingTask
         return CasUtil.iterator(aCas, type).hasNext();
     }
 
+    /**
+     * Collects the training data for an engine supporting incremental training. The training data
+     * of a document is taken from the {@link TrainingDataCache} unless the document changed since
+     * it was extracted, in which case the CAS is read and the data is extracted again.
+     */
+    private class IncrementalTraining<T>
+    {
+        private final IncrementalTrainingSupport<T> engine;
+        private final List<T> trainingData = new ArrayList<>();
+
+        private IncrementalTraining(IncrementalTrainingSupport<T> aEngine,
+                Recommender aRecommender, Map<SourceDocument, AnnotationDocument> aDocuments)
+            throws IOException, RecommendationException
+        {
+            engine = aEngine;
+            
+            String username = getUser().getUsername();
+            for (Map.Entry<SourceDocument, AnnotationDocument> entry : aDocuments.entrySet()) {
+                if (isCancelled()) {
+                    break;
+                }
+                
+                SourceDocument sourceDocument = entry.getKey();
+                AnnotationDocumentState state = entry.getValue() != null
+                        ? entry.getValue().getState()
+                        : AnnotationDocumentState.NEW;
+                
+                if (aRecommender.getStatesIgnoredForTraining().contains(state)) {
+                    continue;
+                }
+                
+                long timestamp = documentService
+                        .getAnnotationCasTimestamp(sourceDocument, username).orElse(-1l);
+                
+                Optional<Optional<T>> cached = trainingDataCache.get(username, sourceDocument,
+                        timestamp, aRecommender);
+                
+                Optional<T> data;
+                if (cached.isPresent()) {
+                    data = cached.get();
+                }
+                else {
+                    CAS cas;
+                    try {
+                        cas = documentService.readAnnotationCas(sourceDocument, username,
+                                AUTO_CAS_UPGRADE, SHARED_READ_ONLY_ACCESS);
+                    }
+                    catch (IOException e) {
+                        log.error("Cannot read annotation CAS.", e);
+                        continue;
+                    }
+                    data = Optional.ofNullable(engine.extractTrainingData(cas));
+                    trainingDataCache.put(username, sourceDocument, timestamp, aRecommender,
+                            data.orElse(null));
+                }
+                
+                data.ifPresent(trainingData::add);
+            }
+        }
+        
+        private void train(RecommenderContext aContext) throws RecommendationException
+        {
+            engine.trainOnExtractedData(aContext, trainingData);
+        }
+    }
+
     private static class TrainingDocument
     {
         private final CAS cas;
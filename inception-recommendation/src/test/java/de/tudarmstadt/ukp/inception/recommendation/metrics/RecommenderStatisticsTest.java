@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics.Phase;
+
+public class RecommenderStatisticsTest
+{
+    @Test
+    public void thatPhasesAreRecordedPerTool()
+    {
+        RecommenderStatistics sut = new RecommenderStatistics();
+        
+        Recommender r1 = buildRecommender("r1", "tool");
+        Recommender r2 = buildRecommender("r2", "tool");
+        Recommender r3 = buildRecommender("r3", "other");
+        
+        sut.record(r1, Phase.TRAIN, 40, 10);
+        sut.record(r2, Phase.TRAIN, 2_000, 5);
+        sut.record(r1, Phase.PREDICT, 5, 1);
+        sut.record(r3, Phase.EVALUATE, 70, 3);
+        
+        Map<String, Long> values = sut.export();
+        
+        assertThat(values)
+                .as("Recommenders using the same tool are aggregated")
+                .containsEntry("tool_train_time_ms_count", 2l)
+                .containsEntry("tool_train_time_ms_le_50", 1l)
+                .containsEntry("tool_train_time_ms_max", 2_000l)
+                .containsEntry("tool_train_cas_total", 15l)
+                .containsEntry("tool_predict_time_ms_count", 1l)
+                .containsEntry("tool_predict_cas_total", 1l)
+                .containsEntry("other_evaluate_time_ms_count", 1l)
+                .containsEntry("other_evaluate_cas_total", 3l);
+        
+        assertThat(values)
+                .as("Phases which have not been run are not exported")
+                .doesNotContainKeys("tool_evaluate_time_ms_count", "tool_evaluate_cas_total",
+                        "other_train_time_ms_count", "other_predict_cas_total");
+    }
+
+    @Test
+    public void thatPredictionsAreCounted()
+    {
+        RecommenderStatistics sut = new RecommenderStatistics();
+        
+        sut.predictionRunCompleted();
+        sut.predictionRunCompleted();
+        sut.suggestionsGenerated(10);
+        sut.suggestionsGenerated(5);
+        sut.suggestionsInherited(3);
+        
+        assertThat(sut.getPredictionRuns()).isEqualTo(2);
+        assertThat(sut.getSuggestionsGenerated()).isEqualTo(15);
+        assertThat(sut.getSuggestionsInherited()).isEqualTo(3);
+    }
+
+    private Recommender buildRecommender(String aName, String aTool)
+    {
+        Recommender recommender = new Recommender();
+        recommender.setName(aName);
+        recommender.setTool(aTool);
+        return recommender;
+    }
+}
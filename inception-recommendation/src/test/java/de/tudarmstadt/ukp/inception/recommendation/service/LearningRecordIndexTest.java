@@ -0,0 +1,189 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.REJECTED;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SHOWN;
+import static de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType.SKIPPED;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecord;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.LearningRecordType;
+
+public class LearningRecordIndexTest
+{
+    private static final String USER = "user";
+
+    private AnnotationLayer layer;
+    private SourceDocument doc1;
+    private SourceDocument doc2;
+    private List<LearningRecord> database;
+    private AtomicInteger loadCount;
+    private Supplier<List<LearningRecord>> loader;
+
+    private LearningRecordIndex sut;
+
+    @Before
+    public void setup()
+    {
+        Project project = new Project();
+        project.setId(1l);
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        layer.setProject(project);
+        doc1 = new SourceDocument();
+        doc1.setId(1l);
+        doc1.setName("doc1");
+        doc2 = new SourceDocument();
+        doc2.setId(2l);
+        doc2.setName("doc2");
+
+        database = new ArrayList<>();
+        loadCount = new AtomicInteger();
+        loader = () -> {
+            loadCount.incrementAndGet();
+            return new ArrayList<>(database);
+        };
+
+        sut = new LearningRecordIndex();
+    }
+
+    @Test
+    public void thatRecordsAreLoadedOnceAndLookedUpByDocumentAndOffsets()
+    {
+        LearningRecord newer = record(1l, doc1, 0, 5, "A", SKIPPED);
+        LearningRecord older = record(2l, doc1, 0, 5, "B", REJECTED);
+        LearningRecord other = record(3l, doc2, 0, 5, "A", REJECTED);
+        database.addAll(asList(newer, older, other));
+
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).containsExactly(newer, older);
+        assertThat(sut.get(USER, layer, "doc2", 0, 5, loader)).containsExactly(other);
+        assertThat(sut.get(USER, layer, "doc1", 0, 4, loader)).isEmpty();
+        assertThat(sut.get(USER, layer, "doc3", 0, 5, loader)).isEmpty();
+        assertThat(loadCount).hasValue(1);
+    }
+
+    @Test
+    public void thatChangesAreAppliedWithoutReloading()
+    {
+        LearningRecord existing = record(1l, doc1, 0, 5, "A", REJECTED);
+        database.add(existing);
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).containsExactly(existing);
+
+        LearningRecord added = record(2l, doc1, 0, 5, "B", SKIPPED);
+        sut.add(added);
+        sut.add(record(3l, doc1, 0, 5, "C", SHOWN));
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).containsExactly(added, existing);
+
+        sut.remove(USER, layer, r -> r.getUserAction() == SKIPPED);
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).containsExactly(existing);
+
+        sut.remove(USER, r -> r.getSourceDocument() == doc1);
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).isEmpty();
+        assertThat(loadCount).hasValue(1);
+    }
+
+    @Test
+    public void thatInvalidationCausesReload()
+    {
+        sut.get(USER, layer, "doc1", 0, 5, loader);
+
+        LearningRecord record = record(1l, doc1, 0, 5, "A", REJECTED);
+        database.add(record);
+        sut.invalidate(USER, layer);
+
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).containsExactly(record);
+        assertThat(loadCount).hasValue(2);
+    }
+
+    @Test
+    public void thatReimportedDocumentDoesNotInheritRecords()
+    {
+        database.add(record(1l, doc1, 0, 5, "A", REJECTED));
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).hasSize(1);
+
+        sut.removeDocument(doc1.getId());
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).isEmpty();
+
+        // A new document with the same name replaces the records of the old one
+        SourceDocument reimported = new SourceDocument();
+        reimported.setId(3l);
+        reimported.setName("doc1");
+        sut.add(record(1l, doc1, 0, 5, "A", REJECTED));
+        LearningRecord added = record(2l, reimported, 0, 5, "B", SKIPPED);
+        sut.add(added);
+        assertThat(sut.get(USER, layer, "doc1", 0, 5, loader)).containsExactly(added);
+        assertThat(loadCount).hasValue(1);
+    }
+
+    @Test
+    public void thatProjectInvalidationCausesReload()
+    {
+        sut.get(USER, layer, "doc1", 0, 5, loader);
+
+        sut.invalidateProject(2l);
+        sut.get(USER, layer, "doc1", 0, 5, loader);
+        assertThat(loadCount).hasValue(1);
+
+        sut.invalidateProject(layer.getProject().getId());
+        sut.get(USER, layer, "doc1", 0, 5, loader);
+        assertThat(loadCount).hasValue(2);
+    }
+
+    @Test
+    public void thatIndexIsBounded()
+    {
+        sut = new LearningRecordIndex(10);
+        for (int i = 0; i < 5; i++) {
+            database.add(record(i, doc1, i, i + 1, "A", REJECTED));
+        }
+
+        for (int i = 0; i < 10; i++) {
+            sut.get("user" + i, layer, "doc1", 0, 1, loader);
+        }
+
+        assertThat(sut.size()).isLessThanOrEqualTo(2);
+    }
+
+    private LearningRecord record(long aId, SourceDocument aDocument, int aBegin, int aEnd,
+            String aLabel, LearningRecordType aAction)
+    {
+        LearningRecord record = new LearningRecord();
+        record.setId(aId);
+        record.setUser(USER);
+        record.setLayer(layer);
+        record.setSourceDocument(aDocument);
+        record.setOffsetCharacterBegin(aBegin);
+        record.setOffsetCharacterEnd(aEnd);
+        record.setAnnotation(aLabel);
+        record.setUserAction(aAction);
+        return record;
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static org.apache.uima.fit.factory.TypeSystemDescriptionFactory.createTypeSystemDescription;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.apache.uima.cas.CAS;
+import org.apache.uima.resource.metadata.TypeDescription;
+import org.apache.uima.resource.metadata.TypeSystemDescription;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+
+public class PredictionCasPoolTest
+{
+    private Project project;
+    private TypeSystemDescription tsd;
+
+    private PredictionCasPool sut;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        project = new Project();
+        project.setId(1l);
+        project.setName("Test Project");
+
+        tsd = createTypeSystemDescription();
+        TypeDescription td = tsd.addType("custom.Span", "", CAS.TYPE_NAME_ANNOTATION);
+        td.addFeature("value", "", CAS.TYPE_NAME_STRING);
+
+        sut = new PredictionCasPool(2);
+    }
+
+    @Test
+    public void thatReturnedCasIsResetAndReused() throws Exception
+    {
+        CAS cas = sut.borrowCas(project, tsd);
+        cas.setDocumentText("This is a test.");
+        sut.returnCas(project, cas);
+
+        CAS reused = sut.borrowCas(project, tsd);
+
+        assertThat(reused).isSameAs(cas);
+        assertThat(reused.getDocumentText()).isNull();
+        assertThat(sut.getMisses()).isEqualTo(1);
+        assertThat(sut.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    public void thatCasesInPoolShareTypeSystem() throws Exception
+    {
+        CAS cas1 = sut.borrowCas(project, tsd);
+        CAS cas2 = sut.borrowCas(project, tsd);
+
+        assertThat(cas1).isNotSameAs(cas2);
+        assertThat(cas1.getTypeSystem()).isSameAs(cas2.getTypeSystem());
+        assertThat(sut.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    public void thatChangedTypeSystemStartsNewPool() throws Exception
+    {
+        CAS cas = sut.borrowCas(project, tsd);
+
+        tsd.getType("custom.Span").addFeature("other", "", CAS.TYPE_NAME_STRING);
+        CAS upgraded = sut.borrowCas(project, tsd);
+        sut.returnCas(project, cas);
+
+        assertThat(upgraded.getTypeSystem().getType("custom.Span").getFeatureByBaseName("other"))
+                .isNotNull();
+        assertThat(sut.getIdleCount())
+                .as("CAS with outdated type system is not returned to the pool")
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void thatTypeSystemsWithCollidingNamesUseDifferentPools() throws Exception
+    {
+        // "Aa" and "BB" have the same String hash code
+        tsd.getType("custom.Span").addFeature("Aa", "", CAS.TYPE_NAME_STRING);
+        CAS cas = sut.borrowCas(project, tsd);
+        sut.returnCas(project, cas);
+
+        TypeSystemDescription other = createTypeSystemDescription();
+        TypeDescription td = other.addType("custom.Span", "", CAS.TYPE_NAME_ANNOTATION);
+        td.addFeature("value", "", CAS.TYPE_NAME_STRING);
+        td.addFeature("BB", "", CAS.TYPE_NAME_STRING);
+        CAS otherCas = sut.borrowCas(project, other);
+
+        assertThat(otherCas).isNotSameAs(cas);
+        assertThat(otherCas.getTypeSystem().getType("custom.Span").getFeatureByBaseName("BB"))
+                .isNotNull();
+    }
+
+    @Test
+    public void thatInvalidationDropsIdleCases() throws Exception
+    {
+        CAS cas = sut.borrowCas(project, tsd);
+        sut.returnCas(project, cas);
+        assertThat(sut.getIdleCount()).isEqualTo(1);
+
+        sut.invalidate(project);
+
+        assertThat(sut.getIdleCount()).isEqualTo(0);
+        assertThat(sut.borrowCas(project, tsd)).isNotSameAs(cas);
+    }
+}
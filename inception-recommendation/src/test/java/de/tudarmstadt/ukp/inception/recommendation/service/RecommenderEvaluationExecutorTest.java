@@ -0,0 +1,163 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderEvaluationExecutor.ScheduledEvaluation;
+
+public class RecommenderEvaluationExecutorTest
+{
+    private RecommenderEvaluationExecutor sut;
+
+    @Before
+    public void setUp()
+    {
+        sut = new RecommenderEvaluationExecutor(2);
+    }
+
+    @After
+    public void tearDown()
+    {
+        sut.destroy();
+    }
+
+    @Test
+    public void thatEvaluationResultIsReturned() throws Exception
+    {
+        ScheduledEvaluation<String> evaluation = sut.submit(() -> "result", 0);
+
+        assertThat(evaluation.get(5_000)).isEqualTo("result");
+    }
+
+    @Test
+    public void thatTimedOutEvaluationIsAwaitedUntilItIsOver() throws Exception
+    {
+        AtomicBoolean finished = new AtomicBoolean();
+
+        ScheduledEvaluation<String> evaluation = sut.submit(() -> {
+            sleepIgnoringInterrupts(500);
+            finished.set(true);
+            return "result";
+        }, 50);
+
+        // The evaluation is reported as aborted as soon as it times out...
+        assertThatThrownBy(() -> evaluation.get(5_000))
+                .isInstanceOf(CancellationException.class);
+        assertThat(finished.get()).isFalse();
+
+        // ... but since it ignores the interrupt, it is still running until it is over
+        evaluation.awaitCompletion();
+        assertThat(finished.get()).isTrue();
+    }
+
+    @Test
+    public void thatPendingEvaluationIsNotStartedAfterAwaitingCompletion() throws Exception
+    {
+        CountDownLatch blocker = new CountDownLatch(1);
+        AtomicBoolean started = new AtomicBoolean();
+
+        // Occupy all workers
+        List<ScheduledEvaluation<Boolean>> blocking = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            blocking.add(sut.submit(() -> blocker.await(5, SECONDS), 0));
+        }
+
+        ScheduledEvaluation<Boolean> pending = sut.submit(() -> started.getAndSet(true), 0);
+        pending.cancel();
+        pending.awaitCompletion();
+
+        blocker.countDown();
+        for (ScheduledEvaluation<Boolean> evaluation : blocking) {
+            evaluation.awaitCompletion();
+        }
+
+        // Make sure the worker had a chance to pick up the pending evaluation
+        sut.submit(() -> true, 0).get(5_000);
+
+        assertThat(started.get()).isFalse();
+        assertThatThrownBy(() -> pending.get(0)).isInstanceOf(CancellationException.class);
+    }
+
+    @Test
+    public void thatParallelismIsLimitedAcrossCallers() throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+
+        // Submit from several threads as if multiple selection tasks were running
+        List<ScheduledEvaluation<Integer>> evaluations = new ArrayList<>();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread caller = new Thread(() -> {
+                for (int n = 0; n < 3; n++) {
+                    ScheduledEvaluation<Integer> evaluation = sut.submit(() -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        sleepIgnoringInterrupts(20);
+                        return running.decrementAndGet();
+                    }, 0);
+                    synchronized (evaluations) {
+                        evaluations.add(evaluation);
+                    }
+                }
+            });
+            callers.add(caller);
+            caller.start();
+        }
+
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        for (ScheduledEvaluation<Integer> evaluation : evaluations) {
+            evaluation.get(5_000);
+        }
+
+        assertThat(evaluations).hasSize(12);
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2);
+    }
+
+    /**
+     * Simulates a recommender which does not react to interrupts.
+     */
+    private static void sleepIgnoringInterrupts(long aMillis)
+    {
+        long end = System.currentTimeMillis() + aMillis;
+        while (System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(Math.max(1, end - System.currentTimeMillis()));
+            }
+            catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mock;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.event.AfterCasWrittenEvent;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationFeature;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommenderContext.Key;
+
+public class RecommenderModelStoreTest
+{
+    private static final Key<String> KEY = new Key<>("model");
+
+    public @Rule TemporaryFolder repository = new TemporaryFolder();
+
+    private @Mock DocumentService documentService;
+
+    private Map<SourceDocument, AnnotationDocument> documents;
+    private SourceDocument document;
+    private User user;
+    private Recommender recommender;
+
+    private RecommenderModelStore sut;
+
+    @Before
+    public void setup() throws Exception
+    {
+        initMocks(this);
+
+        Project project = new Project();
+        project.setId(1l);
+        project.setName("Test Project");
+
+        AnnotationLayer layer = new AnnotationLayer();
+        layer.setId(1l);
+        layer.setProject(project);
+
+        AnnotationFeature feature = new AnnotationFeature();
+        feature.setId(1l);
+
+        recommender = new Recommender("recommender", layer);
+        recommender.setId(1l);
+        recommender.setFeature(feature);
+        recommender.setTool("tool");
+
+        user = new User("user/with:odd*chars");
+
+        document = new SourceDocument();
+        document.setId(1l);
+        document.setName("doc1");
+        document.setProject(project);
+        documents = new LinkedHashMap<>();
+        documents.put(document, null);
+
+        when(documentService.getDir()).thenReturn(repository.getRoot());
+        when(documentService.listAllDocuments(project, user)).thenReturn(documents);
+        when(documentService.getAnnotationCasTimestamp(any(), anyString()))
+                .thenReturn(Optional.of(1000l));
+
+        sut = new RecommenderModelStore(documentService, true);
+    }
+
+    @Test
+    public void thatStoredModelCanBeLoaded() throws Exception
+    {
+        String fingerprint = sut.fingerprint(recommender, user);
+        sut.store(recommender, user, fingerprint, context("trained"));
+
+        Optional<RecommenderContext> loaded = sut.load(recommender, user);
+
+        assertThat(loaded).isPresent();
+        assertThat(loaded.get().get(KEY)).contains("trained");
+        assertThat(loaded.get().isClosed()).isTrue();
+        assertThat(loaded.get().getUser()).contains(user);
+        assertThat(sut.isCurrent(recommender, user, fingerprint)).isTrue();
+    }
+
+    @Test
+    public void thatFingerprintChangesWhenTrainingDataChanges() throws Exception
+    {
+        String fingerprint = sut.fingerprint(recommender, user);
+        sut.store(recommender, user, fingerprint, context("trained"));
+
+        when(documentService.getAnnotationCasTimestamp(any(), anyString()))
+                .thenReturn(Optional.of(2000l));
+        sut.onAfterCasWritten(casWrittenEvent());
+
+        String newFingerprint = sut.fingerprint(recommender, user);
+        assertThat(newFingerprint).isNotEqualTo(fingerprint);
+        assertThat(sut.isCurrent(recommender, user, newFingerprint)).isFalse();
+    }
+
+    @Test
+    public void thatDocumentTimestampsAreCachedUntilCasIsWritten() throws Exception
+    {
+        String fingerprint = sut.fingerprint(recommender, user);
+
+        assertThat(sut.fingerprint(recommender, user)).isEqualTo(fingerprint);
+        verify(documentService, times(1)).getAnnotationCasTimestamp(any(), anyString());
+
+        sut.onAfterCasWritten(casWrittenEvent());
+        sut.fingerprint(recommender, user);
+
+        verify(documentService, times(2)).getAnnotationCasTimestamp(any(), anyString());
+    }
+
+    @Test
+    public void thatFingerprintChangesWhenRecommenderChanges() throws Exception
+    {
+        String fingerprint = sut.fingerprint(recommender, user);
+
+        recommender.setTraits("{\"changed\": true}");
+
+        assertThat(sut.fingerprint(recommender, user)).isNotEqualTo(fingerprint);
+    }
+
+    @Test
+    public void thatUnserializableModelIsNotStored() throws Exception
+    {
+        String fingerprint = sut.fingerprint(recommender, user);
+        sut.store(recommender, user, fingerprint, context("trained"));
+
+        RecommenderContext unserializable = new RecommenderContext();
+        unserializable.put(new Key<Object>("model"), new Object());
+        unserializable.close();
+        sut.store(recommender, user, fingerprint, unserializable);
+
+        assertThat(sut.exists(recommender, user)).isFalse();
+        assertThat(sut.load(recommender, user)).isEmpty();
+    }
+
+    @Test
+    public void thatModelWithForbiddenClassIsNotLoaded() throws Exception
+    {
+        RecommenderContext ctx = new RecommenderContext();
+        ctx.put(new Key<File>("model"), new File("model.bin"));
+        ctx.close();
+        sut.store(recommender, user, sut.fingerprint(recommender, user), ctx);
+        assertThat(sut.exists(recommender, user)).isTrue();
+
+        assertThat(sut.load(recommender, user)).isEmpty();
+        assertThat(sut.exists(recommender, user)).isFalse();
+    }
+
+    @Test
+    public void thatDeletingRecommenderRemovesModels() throws Exception
+    {
+        sut.store(recommender, user, sut.fingerprint(recommender, user), context("trained"));
+
+        sut.delete(recommender);
+
+        assertThat(sut.exists(recommender, user)).isFalse();
+    }
+
+    private AfterCasWrittenEvent casWrittenEvent()
+    {
+        AnnotationDocument annDoc = new AnnotationDocument();
+        annDoc.setUser(user.getUsername());
+        annDoc.setDocument(document);
+
+        AfterCasWrittenEvent event = mock(AfterCasWrittenEvent.class);
+        when(event.getDocument()).thenReturn(annDoc);
+        return event;
+    }
+
+    private RecommenderContext context(String aModel)
+    {
+        RecommenderContext ctx = new RecommenderContext();
+        ctx.put(KEY, aModel);
+        ctx.close();
+        return ctx;
+    }
+}
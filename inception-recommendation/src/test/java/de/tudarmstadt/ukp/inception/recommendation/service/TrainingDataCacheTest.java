@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Optional;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+
+public class TrainingDataCacheTest
+{
+    private SourceDocument document;
+    private Recommender recommender;
+
+    private TrainingDataCache sut;
+
+    @Before
+    public void setup()
+    {
+        Project project = new Project();
+        project.setId(1l);
+
+        document = new SourceDocument();
+        document.setId(1l);
+        document.setName("doc1");
+        document.setProject(project);
+
+        AnnotationLayer layer = new AnnotationLayer();
+        layer.setProject(project);
+        recommender = new Recommender("recommender", layer);
+        recommender.setId(1l);
+
+        sut = new TrainingDataCache(null, 100);
+    }
+
+    @Test
+    public void thatCachedDataIsReturnedWhileTimestampIsUnchanged()
+    {
+        sut.put("user", document, 1000l, recommender, "data");
+
+        assertThat(sut.<String>get("user", document, 1000l, recommender))
+                .contains(Optional.of("data"));
+        assertThat(sut.<String>get("other", document, 1000l, recommender)).isEmpty();
+        assertThat(sut.<String>get("user", document, 2000l, recommender)).isEmpty();
+        assertThat(sut.getHits()).isEqualTo(1);
+        assertThat(sut.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    public void thatDocumentWithoutTrainingDataIsCached()
+    {
+        sut.put("user", document, 1000l, recommender, null);
+
+        assertThat(sut.<String>get("user", document, 1000l, recommender))
+                .contains(Optional.empty());
+    }
+
+    @Test
+    public void thatInvalidatingRecommenderDropsItsData()
+    {
+        Recommender otherRecommender = new Recommender("other", recommender.getLayer());
+        otherRecommender.setId(2l);
+        sut.put("user", document, 1000l, recommender, "data");
+        sut.put("user", document, 1000l, otherRecommender, "other data");
+
+        sut.invalidate(recommender);
+
+        assertThat(sut.<String>get("user", document, 1000l, otherRecommender))
+                .contains(Optional.of("other data"));
+        assertThat(sut.<String>get("user", document, 1000l, recommender)).isEmpty();
+    }
+
+    @Test
+    public void thatNumberOfCachedDocumentsIsBounded()
+    {
+        for (long i = 0; i < 200; i++) {
+            SourceDocument doc = new SourceDocument();
+            doc.setId(i);
+            doc.setProject(document.getProject());
+            sut.put("user", doc, 1000l, recommender, "data");
+        }
+
+        assertThat(sut.getSize()).isLessThanOrEqualTo(100);
+    }
+}
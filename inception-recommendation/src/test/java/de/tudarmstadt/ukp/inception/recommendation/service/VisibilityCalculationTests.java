@@ -18,6 +18,9 @@
 package de.tudarmstadt.ukp.inception.recommendation.service;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -99,7 +102,8 @@ public class VisibilityCalculationTests
     @Test
     public void testCalculateVisibilityNoRecordsAllHidden() throws Exception
     {
-        when(recordService.listRecords(user, layer)).thenReturn(new ArrayList<>());
+        when(recordService.listRecords(eq(user), eq(layer), any(), anyInt(), anyInt()))
+                .thenReturn(new ArrayList<>());
 
         CAS cas = getTestCas();
         Collection<SuggestionGroup> suggestions = getSuggestionGroup(
@@ -124,7 +128,8 @@ public class VisibilityCalculationTests
     @Test
     public void testCalculateVisibilityNoRecordsNotHidden() throws Exception
     {
-        when(recordService.listRecords(user, layer)).thenReturn(new ArrayList<>());
+        when(recordService.listRecords(eq(user), eq(layer), any(), anyInt(), anyInt()))
+                .thenReturn(new ArrayList<>());
 
         CAS cas = getTestCas();
         Collection<SuggestionGroup> suggestions = getSuggestionGroup(new int[][] { { 1, 5, 10 } });
@@ -147,7 +152,9 @@ public class VisibilityCalculationTests
         rejectedRecord.setOffsetCharacterBegin(5);
         rejectedRecord.setOffsetCharacterEnd(10);
         records.add(rejectedRecord);
-        when(recordService.listRecords(user, layer)).thenReturn(records);
+        when(recordService.listRecords(eq(user), eq(layer), any(), anyInt(), anyInt()))
+                .thenReturn(new ArrayList<>());
+        when(recordService.listRecords(user, layer, DOC_NAME, 5, 10)).thenReturn(records);
 
         CAS cas = getTestCas();
         Collection<SuggestionGroup> suggestions = getSuggestionGroup(new int[][] { { 1, 5, 10 } });
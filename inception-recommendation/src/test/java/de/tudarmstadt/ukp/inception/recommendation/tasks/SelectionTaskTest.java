@@ -0,0 +1,209 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.recommendation.tasks;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.springframework.context.ApplicationEventPublisher;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationLayer;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.recommendation.api.RecommendationService;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.DataSplitter;
+import de.tudarmstadt.ukp.inception.recommendation.api.evaluation.EvaluationResult;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.EvaluatedRecommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.model.Recommender;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngine;
+import de.tudarmstadt.ukp.inception.recommendation.api.recommender.RecommendationEngineFactory;
+import de.tudarmstadt.ukp.inception.recommendation.config.RecommenderPropertiesImpl;
+import de.tudarmstadt.ukp.inception.recommendation.metrics.RecommenderStatistics;
+import de.tudarmstadt.ukp.inception.recommendation.service.RecommenderEvaluationExecutor;
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+
+public class SelectionTaskTest
+{
+    private @Mock AnnotationSchemaService annoService;
+    private @Mock DocumentService documentService;
+    private @Mock RecommendationService recommendationService;
+    private @Mock ApplicationEventPublisher appEventPublisher;
+    private @Mock SchedulingService schedulingService;
+    private @Mock RecommendationEngineFactory<?> factory;
+
+    private RecommenderPropertiesImpl properties;
+    private RecommenderEvaluationExecutor evaluationExecutor;
+
+    private User user;
+    private Project project;
+    private AnnotationLayer layer;
+
+    @Before
+    public void setUp()
+    {
+        initMocks(this);
+
+        user = new User("testUser");
+
+        project = new Project();
+        project.setId(1l);
+        project.setName("Test Project");
+
+        layer = new AnnotationLayer();
+        layer.setId(1l);
+        layer.setName("Layer");
+        layer.setUiName("Layer");
+        layer.setEnabled(true);
+        layer.setProject(project);
+
+        properties = new RecommenderPropertiesImpl();
+        properties.setEvaluationParallelism(2);
+        properties.setEvaluationTimeout(Duration.ofMillis(100));
+
+        evaluationExecutor = new RecommenderEvaluationExecutor(
+                properties.getEvaluationParallelism());
+
+        when(annoService.listAnnotationLayer(project)).thenReturn(asList(layer));
+        when(factory.accepts(any(), any())).thenReturn(true);
+        when(factory.isEvaluable()).thenReturn(true);
+    }
+
+    @After
+    public void tearDown()
+    {
+        evaluationExecutor.destroy();
+    }
+
+    @Test
+    public void thatRecommenderExceedingEvaluationTimeoutIsNotActivated() throws Exception
+    {
+        AtomicBoolean slowEvaluationFinished = new AtomicBoolean();
+
+        Recommender fast = buildRecommender(1l, "fast", evaluationResult(0.9));
+        Recommender belowThreshold = buildRecommender(2l, "belowThreshold",
+                evaluationResult(0.1));
+        Recommender slow = buildRecommender(3l, "slow", () -> {
+            // Does not react to the interrupt when the timeout is reached
+            sleepIgnoringInterrupts(1_000);
+            slowEvaluationFinished.set(true);
+            return evaluationResult(0.9);
+        });
+
+        when(recommendationService.listRecommenders(layer))
+                .thenReturn(asList(fast, belowThreshold, slow));
+
+        SelectionTask sut = createTask();
+        sut.run();
+
+        // The task must not complete while the aborted evaluation may still access the CASes
+        assertThat(slowEvaluationFinished.get()).isTrue();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<EvaluatedRecommender>> captor = ArgumentCaptor.forClass(List.class);
+        verify(recommendationService).setActiveRecommenders(eq(user), eq(layer),
+                captor.capture());
+        assertThat(captor.getValue())
+                .extracting(EvaluatedRecommender::getRecommender)
+                .containsExactly(fast);
+    }
+
+    private SelectionTask createTask()
+    {
+        SelectionTask task = new SelectionTask(user, project, "test", null);
+        setField(task, "annoService", annoService);
+        setField(task, "documentService", documentService);
+        setField(task, "recommendationService", recommendationService);
+        setField(task, "appEventPublisher", appEventPublisher);
+        setField(task, "schedulingService", schedulingService);
+        setField(task, "statistics", new RecommenderStatistics());
+        setField(task, "properties", properties);
+        setField(task, "evaluationExecutor", evaluationExecutor);
+        return task;
+    }
+
+    private Recommender buildRecommender(long aId, String aName, EvaluationResult aResult)
+        throws Exception
+    {
+        return buildRecommender(aId, aName, () -> aResult);
+    }
+
+    private Recommender buildRecommender(long aId, String aName, Evaluator aEvaluator)
+        throws Exception
+    {
+        Recommender recommender = new Recommender(aName, layer);
+        recommender.setId(aId);
+        recommender.setEnabled(true);
+        recommender.setThreshold(0.5);
+
+        RecommendationEngine engine = mock(RecommendationEngine.class);
+        when(engine.evaluate(any(), any(DataSplitter.class)))
+                .thenAnswer(invocation -> aEvaluator.evaluate());
+
+        when(recommendationService.getRecommender(aId)).thenReturn(recommender);
+        when(recommendationService.getRecommenderFactory(recommender)).thenReturn(factory);
+        when(factory.build(recommender)).thenReturn(engine);
+
+        return recommender;
+    }
+
+    private static EvaluationResult evaluationResult(double aScore)
+    {
+        EvaluationResult result = mock(EvaluationResult.class);
+        when(result.computeF1Score()).thenReturn(aScore);
+        return result;
+    }
+
+    /**
+     * Simulates a recommender which does not react to interrupts.
+     */
+    private static void sleepIgnoringInterrupts(long aMillis)
+    {
+        long end = System.currentTimeMillis() + aMillis;
+        while (System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(Math.max(1, end - System.currentTimeMillis()));
+            }
+            catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private interface Evaluator
+    {
+        EvaluationResult evaluate() throws Exception;
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+/**
+ * Determines what the {@link SchedulingService} does when a task is enqueued while the queue is
+ * full.
+ */
+public enum QueueFullPolicy
+{
+    /**
+     * The new task is rejected with a {@link java.util.concurrent.RejectedExecutionException}.
+     */
+    REJECT,
+    
+    /**
+     * The new task is dropped.
+     */
+    DISCARD_NEW,
+    
+    /**
+     * The waiting task which would be run last is dropped to make room for the new task. If that
+     * task does not have a lower priority than the new task, the new task is dropped instead.
+     */
+    DISCARD_LOWEST_PRIORITY;
+}
@@ -20,8 +20,13 @@ package de.tudarmstadt.ukp.inception.scheduling;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -30,8 +35,21 @@ import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
+import de.tudarmstadt.ukp.inception.scheduling.TaskQueue.OfferResult;
 import de.tudarmstadt.ukp.inception.scheduling.config.SchedulingProperties;
-
+import de.tudarmstadt.ukp.inception.scheduling.metrics.TaskStatistics;
+
+/**
+ * Runs {@link Task tasks} in the background using a fixed number of threads. Waiting tasks are
+ * run by {@link Task#getPriority() priority} and, within the same priority, round-robin across
+ * users and projects (cf. {@link TaskQueue}).
+ * <p>
+ * Starting a task supersedes any running task of the same type for the same user and project:
+ * the running task is {@link Task#cancel() cancelled} since its result would be outdated anyway.
+ * The running task is only cancelled once its replacement actually starts, so a replacement which
+ * is evicted from a full queue does not leave the user without any result.
+ * </p>
+ */
 @Component
 public class SchedulingService
         implements DisposableBean
@@ -39,7 +57,9 @@ public class SchedulingService
     private static final Logger log = LoggerFactory.getLogger(SchedulingService.class);
 
     private final ApplicationContext applicationContext;
-    private final ThreadPoolExecutor executor;
+    private final ExecutorService executor;
+    private final TaskQueue queue;
+    private final TaskStatistics statistics;
 
     private final List<Task> runningTasks;
 
@@ -47,27 +67,58 @@ public class SchedulingService
     public SchedulingService(ApplicationContext aApplicationContext, SchedulingProperties aConfig)
     {
         applicationContext = aApplicationContext;
-        executor = new InspectableThreadPoolExecutor(
-                aConfig.getNumberOfThreads(), aConfig.getQueueSize(),
-                this::beforeExecute, this::afterExecute);
+        queue = new TaskQueue(aConfig.getQueueSize(), aConfig.getQueueFullPolicy(),
+                this::taskEvicted, this::taskReplaced);
+        // The executor does not hold the tasks themselves. For every task added to the queue, it
+        // receives one request to run the next task from the queue. Thus, the order in which the
+        // tasks are run is entirely determined by the queue.
+        executor = Executors.newFixedThreadPool(aConfig.getNumberOfThreads(),
+                buildThreadFactory());
         runningTasks = Collections.synchronizedList(new ArrayList<>());
+        statistics = new TaskStatistics();
+    }
+
+    private void taskEvicted(Task aTask)
+    {
+        log.info("Task queue is full, evicted waiting task: {}", aTask);
+        statistics.taskDiscarded(aTask);
     }
 
-    private void beforeExecute(Thread aThread, Runnable aRunnable)
+    private void taskReplaced(Task aTask)
     {
-        runningTasks.add((Task) aRunnable);
+        log.debug("Task already in queue, replaced waiting task: {}", aTask);
+        statistics.taskDiscarded(aTask);
     }
 
-    private void afterExecute(Runnable aRunnable, Throwable aThrowable)
+    private void runNextTask()
     {
-        runningTasks.remove(aRunnable);
+        // May be null if the task has been removed from the queue in the meantime
+        Task task = queue.poll();
+        if (task == null) {
+            return;
+        }
+        
+        long start = System.currentTimeMillis();
+        statistics.taskStarted(task, start - task.enqueueTime);
+        
+        runningTasks.add(task);
+        cancelRunningTasks(other -> other != task && other.equals(task), "superseded");
+        
+        boolean failed = true;
+        try {
+            task.run();
+            failed = false;
+        }
+        finally {
+            // Remove by identity - a superseded task is equal to the task superseding it
+            runningTasks.removeIf(other -> other == task);
+            statistics.taskFinished(task, System.currentTimeMillis() - start, failed);
+        }
     }
 
     public List<Task> getScheduledTasks()
     {
-        List<Task> result = new ArrayList<>();
-        executor.getQueue().forEach(r -> result.add((Task) r));
-        return result;
+        return queue.list();
     }
 
     public List<Task> getRunningTasks()
@@ -77,6 +128,16 @@ public class SchedulingService
         return new ArrayList<>(runningTasks);
     }
 
+    public int getQueueSize()
+    {
+        return queue.size();
+    }
+
+    public TaskStatistics getStatistics()
+    {
+        return statistics;
+    }
+
     public List<Task> getScheduledAndRunningTasks()
     {
         List<Task> result = new ArrayList<>();
@@ -85,13 +146,8 @@ public class SchedulingService
         return result;
     }
 
-    public synchronized void enqueue(Task aTask)
+    public void enqueue(Task aTask)
     {
-        if (getScheduledTasks().contains(aTask)) {
-            log.debug("Task already in queue, requeueing at the end: {}", aTask);
-            executor.remove(aTask);
-        }
-
         log.debug("Enqueuing task [{}]", aTask);
 
         // This autowires the task fields manually.
@@ -99,20 +155,57 @@ public class SchedulingService
         factory.autowireBean(aTask);
         factory.initializeBean(aTask, "transientTask");
 
-        executor.execute(aTask);
+        aTask.enqueueTime = System.currentTimeMillis();
+        statistics.taskEnqueued(aTask);
+        
+        OfferResult result;
+        try {
+            result = queue.offer(aTask);
+        }
+        catch (RejectedExecutionException e) {
+            statistics.taskDiscarded(aTask);
+            throw e;
+        }
+        
+        switch (result) {
+        case ADDED:
+            executor.execute(this::runNextTask);
+            break;
+        case REPLACED:
+            // The replaced task has already been recorded as discarded
+            break;
+        case DISCARDED:
+            log.warn("Task queue is full, discarded task: {}", aTask);
+            statistics.taskDiscarded(aTask);
+            break;
+        }
     }
 
     /**
-     * Removes all task for the user with name {@code aUsername} from the scheduler's queue.
+     * Removes all task for the user with name {@code aUsername} from the scheduler's queue and
+     * cancels the running tasks of the user.
      * @param aUserName The name of the user whose tasks will be removed.
      */
-    public synchronized void stopAllTasksForUser(String aUserName)
+    public void stopAllTasksForUser(String aUserName)
+    {
+        Predicate<Task> isUserTask = task -> task.getUser().getUsername().equals(aUserName);
+        for (Task task : queue.removeIf(isUserTask)) {
+            log.debug("Removing waiting task (stopped): {}", task);
+            statistics.taskDiscarded(task);
+        }
+        cancelRunningTasks(isUserTask, "stopped");
+    }
+
+    private void cancelRunningTasks(Predicate<Task> aFilter, String aReason)
     {
-        // TODO: Stop the running tasks also
-        executor.getQueue().removeIf(e -> {
-            Task task = (Task) e;
-            return task.getUser().getUsername().equals(aUserName);
-        });
+        synchronized (runningTasks) {
+            for (Task task : runningTasks) {
+                if (!task.isCancelled() && aFilter.test(task)) {
+                    log.debug("Cancelling running task ({}): {}", aReason, task);
+                    task.cancel();
+                }
+            }
+        }
     }
 
     @Override
@@ -122,5 +215,11 @@ public class SchedulingService
         executor.shutdownNow();
     }
 
-
+    private static ThreadFactory buildThreadFactory()
+    {
+        return new BasicThreadFactory.Builder()
+                .daemon(true)
+                .priority(Thread.MIN_PRIORITY)
+                .build();
+    }
 }
@@ -34,6 +34,11 @@ public abstract class Task
     private final Project project;
     private final String trigger;
     private final int id;
+    
+    private volatile boolean cancelled;
+    
+    // Set by the SchedulingService to measure how long the task was waiting
+    volatile long enqueueTime;
 
     public Task(User aUser, Project aProject, String aTrigger)
     {
@@ -72,6 +77,30 @@ public abstract class Task
         return id;
     }
 
+    /**
+     * Requests the task to stop. Cancellation is cooperative: a running task is not interrupted
+     * but is expected to check {@link #isCancelled()} at suitable points (e.g. between documents)
+     * and to stop early without publishing any partial results.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * @return the priority of the task. Tasks with a higher priority are run first. By default,
+     *         tasks have a {@link TaskPriority#NORMAL normal} priority.
+     */
+    public TaskPriority getPriority()
+    {
+        return TaskPriority.NORMAL;
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder(getName());
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+import static java.util.Arrays.asList;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+
+/**
+ * Queue of tasks waiting to be run by the {@link SchedulingService}.
+ * <p>
+ * Tasks are grouped into lanes by priority, user and project. Tasks with a higher priority are
+ * always taken first. Within a priority, the lanes are served round-robin so that a single user
+ * or project cannot monopolize the scheduler by enqueueing many tasks.
+ * </p>
+ * <p>
+ * When a task is enqueued while an equal task (cf. {@link Task#equals(Object)}) is still waiting,
+ * the new task replaces the waiting one and takes over its position in the queue as well as its
+ * enqueue time. The lookup for equal tasks is done through a map, so it does not need to scan the
+ * queue.
+ * </p>
+ */
+class TaskQueue
+{
+    enum OfferResult
+    {
+        ADDED, REPLACED, DISCARDED;
+    }
+
+    private static final List<TaskPriority> PRIORITIES_DESCENDING;
+    
+    static {
+        List<TaskPriority> priorities = new ArrayList<>(asList(TaskPriority.values()));
+        Collections.reverse(priorities);
+        PRIORITIES_DESCENDING = Collections.unmodifiableList(priorities);
+    }
+
+    private final int capacity;
+    private final QueueFullPolicy queueFullPolicy;
+    private final Consumer<Task> evictionListener;
+    private final Consumer<Task> replacementListener;
+
+    private final Map<TaskPriority, Deque<Lane>> rings = new EnumMap<>(TaskPriority.class);
+    private final Map<LaneKey, Lane> lanes = new HashMap<>();
+    private final Map<Task, Lane> index = new HashMap<>();
+
+    public TaskQueue(int aCapacity, QueueFullPolicy aQueueFullPolicy)
+    {
+        this(aCapacity, aQueueFullPolicy, _task -> {});
+    }
+
+    public TaskQueue(int aCapacity, QueueFullPolicy aQueueFullPolicy,
+            Consumer<Task> aEvictionListener)
+    {
+        this(aCapacity, aQueueFullPolicy, aEvictionListener, _task -> {});
+    }
+
+    /**
+     * @param aEvictionListener
+     *            notified of every waiting task which is dropped from the queue under the
+     *            {@link QueueFullPolicy#DISCARD_LOWEST_PRIORITY} policy to make room for a new
+     *            task. The listener is called while the queue is locked, so it must not access
+     *            the queue.
+     * @param aReplacementListener
+     *            notified of every waiting task which is replaced by an equal new task. The
+     *            listener is called while the queue is locked, so it must not access the queue.
+     */
+    public TaskQueue(int aCapacity, QueueFullPolicy aQueueFullPolicy,
+            Consumer<Task> aEvictionListener, Consumer<Task> aReplacementListener)
+    {
+        capacity = aCapacity;
+        queueFullPolicy = aQueueFullPolicy;
+        evictionListener = aEvictionListener;
+        replacementListener = aReplacementListener;
+        
+        for (TaskPriority priority : TaskPriority.values()) {
+            rings.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Adds the given task to the queue.
+     * 
+     * @return {@link OfferResult#ADDED} if the task was added, {@link OfferResult#REPLACED} if it
+     *         replaced an equal waiting task and {@link OfferResult#DISCARDED} if it was dropped
+     *         because the queue is full. If a waiting task had to make room for the new task, it
+     *         is passed to the eviction listener. A replaced task is passed to the replacement
+     *         listener.
+     * @throws RejectedExecutionException
+     *             if the queue is full and the policy is {@link QueueFullPolicy#REJECT}.
+     */
+    public synchronized OfferResult offer(Task aTask)
+    {
+        Lane existing = index.get(aTask);
+        if (existing != null) {
+            Task replaced = existing.replace(aTask);
+            // The work requested by the replaced task has been waiting since it was enqueued
+            aTask.enqueueTime = replaced.enqueueTime;
+            replacementListener.accept(replaced);
+            return OfferResult.REPLACED;
+        }
+        
+        if (index.size() >= capacity) {
+            switch (queueFullPolicy) {
+            case REJECT:
+                throw new RejectedExecutionException(
+                        "Task queue is full (" + capacity + ") - rejecting " + aTask);
+            case DISCARD_LOWEST_PRIORITY: {
+                // Only tasks of a strictly lower priority make room - otherwise, a new task
+                // could silently drop an equally important task of another user
+                Lane victimLane = peekLastLane();
+                if (victimLane == null || victimLane.key.priority
+                        .compareTo(aTask.getPriority()) >= 0) {
+                    return OfferResult.DISCARDED;
+                }
+                Task victim = victimLane.tasks.get(victimLane.tasks.size() - 1);
+                remove(victimLane, victim);
+                evictionListener.accept(victim);
+                break;
+            }
+            case DISCARD_NEW: // fall-through
+            default:
+                return OfferResult.DISCARDED;
+            }
+        }
+        
+        LaneKey key = new LaneKey(aTask);
+        Lane lane = lanes.get(key);
+        if (lane == null) {
+            lane = new Lane(key);
+            lanes.put(key, lane);
+            rings.get(key.priority).addLast(lane);
+        }
+        lane.tasks.add(aTask);
+        index.put(aTask, lane);
+        
+        return OfferResult.ADDED;
+    }
+
+    /**
+     * @return the next task to run or {@code null} if the queue is empty.
+     */
+    public synchronized Task poll()
+    {
+        for (TaskPriority priority : PRIORITIES_DESCENDING) {
+            Deque<Lane> ring = rings.get(priority);
+            Lane lane = ring.pollFirst();
+            if (lane == null) {
+                continue;
+            }
+            
+            Task task = lane.tasks.remove(0);
+            index.remove(task);
+            
+            // Move the lane to the end so the other lanes get their turn first
+            if (lane.tasks.isEmpty()) {
+                lanes.remove(lane.key);
+            }
+            else {
+                ring.addLast(lane);
+            }
+            
+            return task;
+        }
+        
+        return null;
+    }
+
+    public synchronized List<Task> removeIf(Predicate<Task> aPredicate)
+    {
+        List<Task> removed = new ArrayList<>();
+        for (Lane lane : new ArrayList<>(lanes.values())) {
+            for (Task task : new ArrayList<>(lane.tasks)) {
+                if (aPredicate.test(task)) {
+                    remove(lane, task);
+                    removed.add(task);
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * @return the waiting tasks in the order in which they would be run if no further tasks were
+     *         added.
+     */
+    public synchronized List<Task> list()
+    {
+        List<Task> result = new ArrayList<>(index.size());
+        
+        // Simulate the round-robin over the lanes of each priority
+        for (TaskPriority priority : PRIORITIES_DESCENDING) {
+            List<Iterator<Task>> iterators = new ArrayList<>();
+            for (Lane lane : rings.get(priority)) {
+                iterators.add(lane.tasks.iterator());
+            }
+            
+            while (!iterators.isEmpty()) {
+                Iterator<Iterator<Task>> i = iterators.iterator();
+                while (i.hasNext()) {
+                    Iterator<Task> laneIterator = i.next();
+                    result.add(laneIterator.next());
+                    if (!laneIterator.hasNext()) {
+                        i.remove();
+                    }
+                }
+            }
+        }
+        
+        return result;
+    }
+
+    public synchronized int size()
+    {
+        return index.size();
+    }
+
+    private Lane peekLastLane()
+    {
+        for (TaskPriority priority : TaskPriority.values()) {
+            Lane lane = rings.get(priority).peekLast();
+            if (lane != null) {
+                return lane;
+            }
+        }
+        
+        return null;
+    }
+
+    private void remove(Lane aLane, Task aTask)
+    {
+        aLane.tasks.remove(aTask);
+        index.remove(aTask);
+        
+        if (aLane.tasks.isEmpty()) {
+            lanes.remove(aLane.key);
+            rings.get(aLane.key.priority).remove(aLane);
+        }
+    }
+
+    private static final class Lane
+    {
+        private final LaneKey key;
+        
+        // Since equal tasks are coalesced, a lane usually only holds very few tasks
+        private final List<Task> tasks = new ArrayList<>(2);
+
+        public Lane(LaneKey aKey)
+        {
+            key = aKey;
+        }
+
+        public Task replace(Task aTask)
+        {
+            return tasks.set(tasks.indexOf(aTask), aTask);
+        }
+    }
+
+    private static final class LaneKey
+    {
+        private final TaskPriority priority;
+        private final User user;
+        private final Project project;
+
+        public LaneKey(Task aTask)
+        {
+            priority = aTask.getPriority();
+            user = aTask.getUser();
+            project = aTask.getProject();
+        }
+
+        @Override
+        public boolean equals(Object aOther)
+        {
+            if (this == aOther) {
+                return true;
+            }
+            if (!(aOther instanceof LaneKey)) {
+                return false;
+            }
+            LaneKey other = (LaneKey) aOther;
+            return priority == other.priority && Objects.equals(user, other.user)
+                    && Objects.equals(project, other.project);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(priority, user, project);
+        }
+    }
+}
@@ -20,12 +20,15 @@ package de.tudarmstadt.ukp.inception.scheduling.config;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import de.tudarmstadt.ukp.inception.scheduling.QueueFullPolicy;
+
 @Component
 @ConfigurationProperties("inception.scheduling")
 public class SchedulingProperties
 {
     private int numberOfThreads = 4;
     private int queueSize = 100;
+    private QueueFullPolicy queueFullPolicy = QueueFullPolicy.DISCARD_LOWEST_PRIORITY;
 
     public int getNumberOfThreads()
     {
@@ -44,6 +47,16 @@ public class SchedulingProperties
 
     public void setQueueSize(int aQueueSize)
     {
-        queueSize = queueSize;
+        queueSize = aQueueSize;
+    }
+
+    public QueueFullPolicy getQueueFullPolicy()
+    {
+        return queueFullPolicy;
+    }
+
+    public void setQueueFullPolicy(QueueFullPolicy aQueueFullPolicy)
+    {
+        queueFullPolicy = aQueueFullPolicy;
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe histogram of durations in milliseconds using fixed buckets. Next to the bucket
+ * counts, the number of recorded durations, their sum and the maximum are tracked.
+ */
+public class DurationHistogram
+{
+    private static final long[] BUCKETS = { 10, 50, 100, 500, 1_000, 5_000, 10_000, 60_000,
+            300_000 };
+
+    private final LongAdder[] bucketCounts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public DurationHistogram()
+    {
+        bucketCounts = new LongAdder[BUCKETS.length];
+        for (int i = 0; i < bucketCounts.length; i++) {
+            bucketCounts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long aDurationMs)
+    {
+        long duration = Math.max(0, aDurationMs);
+        
+        for (int i = 0; i < BUCKETS.length; i++) {
+            if (duration <= BUCKETS[i]) {
+                bucketCounts[i].increment();
+                break;
+            }
+        }
+        
+        count.increment();
+        sum.add(duration);
+        max.accumulateAndGet(duration, Math::max);
+    }
+
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Adds the values of this histogram to the given map. Following the usual convention for
+     * histograms, the bucket counts are cumulative, i.e. {@code <prefix>_le_100} is the number of
+     * durations up to 100ms.
+     */
+    public void export(String aPrefix, Map<String, Long> aTarget)
+    {
+        long cumulative = 0;
+        for (int i = 0; i < BUCKETS.length; i++) {
+            cumulative += bucketCounts[i].sum();
+            aTarget.put(aPrefix + "_le_" + BUCKETS[i], cumulative);
+        }
+        aTarget.put(aPrefix + "_count", getCount());
+        aTarget.put(aPrefix + "_sum", getSum());
+        aTarget.put(aPrefix + "_max", getMax());
+    }
+
+    public Map<String, Long> export(String aPrefix)
+    {
+        Map<String, Long> result = new LinkedHashMap<>();
+        export(aPrefix, result);
+        return result;
+    }
+}
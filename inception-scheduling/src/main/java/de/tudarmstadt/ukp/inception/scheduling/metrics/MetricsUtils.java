@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import java.util.Map;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+
+public class MetricsUtils
+{
+    private MetricsUtils()
+    {
+        // No instances
+    }
+
+    /**
+     * Converts the given values into JMX composite data. Unlike a plain map, composite data can
+     * be read by generic JMX clients and exporters (e.g. the Prometheus JMX exporter) which
+     * expose each value as a separate metric.
+     * 
+     * @return the composite data or {@code null} if there are no values.
+     */
+    public static CompositeData toCompositeData(String aTypeName, Map<String, Long> aValues)
+    {
+        if (aValues.isEmpty()) {
+            return null;
+        }
+        
+        String[] names = aValues.keySet().toArray(new String[aValues.size()]);
+        OpenType<?>[] types = new OpenType<?>[names.length];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = SimpleType.LONG;
+        }
+        
+        try {
+            CompositeType type = new CompositeType(aTypeName, aTypeName, names, names, types);
+            return new CompositeDataSupport(type, names, aValues.values().toArray());
+        }
+        catch (OpenDataException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import javax.management.openmbean.CompositeData;
+
+public interface SchedulingMetrics
+{
+    /**
+     * Retrieve the number of tasks waiting to be run
+     */
+    public int getQueuedTasks();
+    
+    /**
+     * Retrieve the number of tasks currently running
+     */
+    public int getRunningTasks();
+    
+    /**
+     * Retrieve the statistics per task type: the number of waiting and running tasks, the number
+     * of enqueued, discarded, completed, cancelled and failed tasks as well as histograms of the
+     * wait and run times
+     */
+    public CompositeData getTaskStatistics();
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import javax.management.openmbean.CompositeData;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+
+@ManagedResource
+@Component
+@ConditionalOnProperty(prefix = "monitoring.metrics", name = "enabled", havingValue = "true")
+public class SchedulingMetricsImpl
+    implements SchedulingMetrics
+{
+    private final SchedulingService schedulingService;
+
+    @Autowired
+    public SchedulingMetricsImpl(SchedulingService aSchedulingService)
+    {
+        schedulingService = aSchedulingService;
+    }
+
+    @Override
+    @ManagedAttribute
+    public int getQueuedTasks()
+    {
+        return schedulingService.getQueueSize();
+    }
+
+    @Override
+    @ManagedAttribute
+    public int getRunningTasks()
+    {
+        return schedulingService.getRunningTasks().size();
+    }
+
+    @Override
+    @ManagedAttribute
+    public CompositeData getTaskStatistics()
+    {
+        return MetricsUtils.toCompositeData("TaskStatistics",
+                schedulingService.getStatistics().export(schedulingService.getScheduledTasks(),
+                        schedulingService.getRunningTasks()));
+    }
+}
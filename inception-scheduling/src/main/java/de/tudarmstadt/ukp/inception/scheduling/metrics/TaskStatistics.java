@@ -0,0 +1,122 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.tudarmstadt.ukp.inception.scheduling.SchedulingService;
+import de.tudarmstadt.ukp.inception.scheduling.Task;
+
+/**
+ * Statistics of the tasks run by the {@link SchedulingService} per task type (i.e.
+ * {@link Task#getName()}).
+ */
+public class TaskStatistics
+{
+    private final ConcurrentMap<String, TaskTypeStatistics> types = new ConcurrentHashMap<>();
+
+    public void taskEnqueued(Task aTask)
+    {
+        get(aTask).enqueued.increment();
+    }
+
+    /**
+     * Records a task which is never run, e.g. because it did not fit into the queue, it has been
+     * evicted from the queue or the tasks of its user have been stopped.
+     */
+    public void taskDiscarded(Task aTask)
+    {
+        get(aTask).discarded.increment();
+    }
+
+    public void taskStarted(Task aTask, long aWaitTimeMs)
+    {
+        get(aTask).waitTime.record(aWaitTimeMs);
+    }
+
+    public void taskFinished(Task aTask, long aRunTimeMs, boolean aFailed)
+    {
+        TaskTypeStatistics stats = get(aTask);
+        stats.runTime.record(aRunTimeMs);
+        if (aFailed) {
+            stats.failed.increment();
+        }
+        else if (aTask.isCancelled()) {
+            stats.cancelled.increment();
+        }
+        else {
+            stats.completed.increment();
+        }
+    }
+
+    /**
+     * Exports the statistics as a flat map with keys of the form {@code <TaskType>_<metric>}. The
+     * number of waiting and running tasks per type is determined from the given tasks.
+     */
+    public Map<String, Long> export(Collection<Task> aScheduledTasks,
+            Collection<Task> aRunningTasks)
+    {
+        Map<String, Long> result = new TreeMap<>();
+        
+        for (String type : types.keySet()) {
+            result.put(type + "_queued", 0l);
+            result.put(type + "_running", 0l);
+        }
+        for (Task task : aScheduledTasks) {
+            result.merge(task.getName() + "_queued", 1l, Long::sum);
+        }
+        for (Task task : aRunningTasks) {
+            result.merge(task.getName() + "_running", 1l, Long::sum);
+        }
+        
+        for (Map.Entry<String, TaskTypeStatistics> e : types.entrySet()) {
+            String type = e.getKey();
+            TaskTypeStatistics stats = e.getValue();
+            result.put(type + "_enqueued_total", stats.enqueued.sum());
+            result.put(type + "_discarded_total", stats.discarded.sum());
+            result.put(type + "_completed_total", stats.completed.sum());
+            result.put(type + "_cancelled_total", stats.cancelled.sum());
+            result.put(type + "_failed_total", stats.failed.sum());
+            stats.waitTime.export(type + "_wait_time_ms", result);
+            stats.runTime.export(type + "_run_time_ms", result);
+        }
+        
+        return result;
+    }
+
+    private TaskTypeStatistics get(Task aTask)
+    {
+        return types.computeIfAbsent(aTask.getName(), _key -> new TaskTypeStatistics());
+    }
+
+    private static class TaskTypeStatistics
+    {
+        private final LongAdder enqueued = new LongAdder();
+        private final LongAdder discarded = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder cancelled = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final DurationHistogram waitTime = new DurationHistogram();
+        private final DurationHistogram runTime = new DurationHistogram();
+    }
+}
@@ -115,6 +115,53 @@ public class SchedulingServiceTest {
                 .doesNotContain(tasksToRemove);
     }
 
+    @Test
+    public void thatNewTaskSupersedesRunningTask()
+    {
+        User user = buildUser("user1");
+        Project project = buildProject("project1");
+        Task running = new DummyTask(user, project);
+        Task other = new DummyTask(buildUser("user2"), project);
+        
+        sut.enqueue(running);
+        sut.enqueue(other);
+        await().atMost(15, SECONDS).until(() -> isRunning(running) && isRunning(other));
+        
+        Task newer = new DummyTask(user, project);
+        sut.enqueue(newer);
+        
+        // The running task is only cancelled once the new task starts
+        await().atMost(15, SECONDS).until(running::isCancelled);
+        assertThat(other.isCancelled()).as("Tasks of other users should not be affected")
+                .isFalse();
+        await().atMost(15, SECONDS).until(() -> isRunning(newer) && !isRunning(running));
+        assertThat(newer.isCancelled()).isFalse();
+        assertThat(isRunning(newer))
+                .as("Finishing the superseded task must not remove the task superseding it")
+                .isTrue();
+    }
+
+    @Test
+    public void thatRunningTasksForUserCanBeStopped()
+    {
+        Task running = buildDummyTask("testUser", "project1");
+        
+        sut.enqueue(running);
+        await().atMost(15, SECONDS).until(() -> isRunning(running));
+        
+        sut.stopAllTasksForUser("testUser");
+        
+        assertThat(running.isCancelled()).isTrue();
+        await().atMost(15, SECONDS).until(() -> sut.getRunningTasks().isEmpty());
+    }
+
+    private boolean isRunning(Task aTask)
+    {
+        // Tasks of the same type for the same user and project are equal, so we need to check
+        // for identity here
+        return sut.getRunningTasks().stream().anyMatch(t -> t == aTask);
+    }
+
     private User buildUser(String aUsername)
     {
         return new User(aUsername);
@@ -133,8 +180,8 @@ public class SchedulingServiceTest {
     }
 
     /**
-     * DummyTask is a task that does nothing and just sleeps until interrupted. if interrupted,
-     * it just finishes running and returns.
+     * DummyTask is a task that does nothing and just sleeps until interrupted or cancelled. If
+     * interrupted or cancelled, it just finishes running and returns.
      */
     private static class DummyTask extends Task
     {
@@ -145,9 +192,9 @@ public class SchedulingServiceTest {
 
         @Override
         public void run() {
-            while (!Thread.currentThread().isInterrupted()) {
+            while (!Thread.currentThread().isInterrupted() && !isCancelled()) {
                 try {
-                    Thread.sleep(1000);
+                    Thread.sleep(100);
                 } catch (InterruptedException e) {
                     break;
                 }
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling;
+
+import static de.tudarmstadt.ukp.inception.scheduling.TaskPriority.HIGH;
+import static de.tudarmstadt.ukp.inception.scheduling.TaskPriority.LOW;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.scheduling.TaskQueue.OfferResult;
+
+public class TaskQueueTest
+{
+    private User user1;
+    private User user2;
+    private Project project;
+
+    @Before
+    public void setup()
+    {
+        user1 = new User("user1");
+        user2 = new User("user2");
+        project = new Project();
+        project.setId(1l);
+        project.setName("project");
+    }
+
+    @Test
+    public void thatTasksWithHigherPriorityRunFirst()
+    {
+        TaskQueue sut = new TaskQueue(10, QueueFullPolicy.REJECT);
+
+        Task low = new LowTask(user1, project);
+        Task normal = new NormalTask(user1, project);
+        Task high = new HighTask(user1, project);
+        
+        sut.offer(low);
+        sut.offer(normal);
+        sut.offer(high);
+
+        assertThat(sut.list()).containsExactly(high, normal, low);
+        assertThat(drain(sut)).containsExactly(high, normal, low);
+    }
+
+    @Test
+    public void thatUsersAreServedRoundRobin()
+    {
+        TaskQueue sut = new TaskQueue(10, QueueFullPolicy.REJECT);
+
+        Task u1t1 = new NormalTask(user1, project);
+        Task u1t2 = new OtherNormalTask(user1, project);
+        Task u2t1 = new NormalTask(user2, project);
+        
+        sut.offer(u1t1);
+        sut.offer(u1t2);
+        sut.offer(u2t1);
+
+        assertThat(sut.list()).containsExactly(u1t1, u2t1, u1t2);
+        assertThat(drain(sut)).containsExactly(u1t1, u2t1, u1t2);
+    }
+
+    @Test
+    public void thatEqualTasksAreCoalesced()
+    {
+        List<Task> replaced = new ArrayList<>();
+        TaskQueue sut = new TaskQueue(10, QueueFullPolicy.REJECT, _task -> {}, replaced::add);
+
+        Task first = new NormalTask(user1, project);
+        Task other = new NormalTask(user2, project);
+        Task second = new NormalTask(user1, project);
+        first.enqueueTime = 1000;
+        second.enqueueTime = 2000;
+        
+        assertThat(sut.offer(first)).isEqualTo(OfferResult.ADDED);
+        assertThat(sut.offer(other)).isEqualTo(OfferResult.ADDED);
+        assertThat(sut.offer(second)).isEqualTo(OfferResult.REPLACED);
+
+        assertThat(replaced).containsExactly(first).allMatch(t -> t == first);
+        assertThat(second.enqueueTime)
+                .as("Newer task takes over the enqueue time of the replaced one")
+                .isEqualTo(1000);
+        assertThat(sut.size()).isEqualTo(2);
+        assertThat(drain(sut))
+                .as("Newer task replaces the older one but keeps its position")
+                .containsExactly(second, other)
+                .allMatch(t -> t != first);
+    }
+
+    @Test
+    public void thatTasksCanBeRemoved()
+    {
+        TaskQueue sut = new TaskQueue(10, QueueFullPolicy.REJECT);
+
+        Task u1 = new NormalTask(user1, project);
+        Task u2 = new NormalTask(user2, project);
+        sut.offer(u1);
+        sut.offer(u2);
+        
+        assertThat(sut.removeIf(t -> t.getUser().equals(user1))).containsExactly(u1);
+        
+        assertThat(sut.list()).containsExactly(u2);
+        assertThat(drain(sut)).containsExactly(u2);
+    }
+
+    @Test
+    public void thatFullQueueRejectsTasks()
+    {
+        TaskQueue sut = new TaskQueue(1, QueueFullPolicy.REJECT);
+
+        sut.offer(new NormalTask(user1, project));
+        
+        assertThatThrownBy(() -> sut.offer(new NormalTask(user2, project)))
+                .isInstanceOf(RejectedExecutionException.class);
+    }
+
+    @Test
+    public void thatFullQueueDiscardsNewTasks()
+    {
+        TaskQueue sut = new TaskQueue(1, QueueFullPolicy.DISCARD_NEW);
+
+        Task waiting = new LowTask(user1, project);
+        sut.offer(waiting);
+        
+        assertThat(sut.offer(new HighTask(user2, project))).isEqualTo(OfferResult.DISCARDED);
+        assertThat(sut.list()).containsExactly(waiting);
+    }
+
+    @Test
+    public void thatFullQueueDiscardsLowestPriorityTasks()
+    {
+        List<Task> evicted = new ArrayList<>();
+        TaskQueue sut = new TaskQueue(2, QueueFullPolicy.DISCARD_LOWEST_PRIORITY, evicted::add);
+
+        Task low = new LowTask(user1, project);
+        Task normal = new NormalTask(user1, project);
+        sut.offer(low);
+        sut.offer(normal);
+        
+        Task high = new HighTask(user2, project);
+        assertThat(sut.offer(high)).isEqualTo(OfferResult.ADDED);
+        assertThat(sut.list()).containsExactly(high, normal);
+        assertThat(evicted).containsExactly(low);
+        
+        assertThat(sut.offer(new LowTask(user2, project)))
+                .as("Waiting tasks with a higher priority are not discarded")
+                .isEqualTo(OfferResult.DISCARDED);
+        assertThat(sut.list()).containsExactly(high, normal);
+        assertThat(evicted).containsExactly(low);
+        
+        assertThat(sut.offer(new NormalTask(user2, project)))
+                .as("Waiting tasks with the same priority are not discarded")
+                .isEqualTo(OfferResult.DISCARDED);
+        assertThat(sut.list()).containsExactly(high, normal);
+        assertThat(evicted).containsExactly(low);
+    }
+
+    private List<Task> drain(TaskQueue aQueue)
+    {
+        List<Task> tasks = new ArrayList<>();
+        Task task;
+        while ((task = aQueue.poll()) != null) {
+            tasks.add(task);
+        }
+        return tasks;
+    }
+
+    private static class NormalTask
+        extends Task
+    {
+        NormalTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject, "JUnit");
+        }
+
+        @Override
+        public void run()
+        {
+            // Nothing to do
+        }
+    }
+
+    private static class OtherNormalTask
+        extends NormalTask
+    {
+        OtherNormalTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject);
+        }
+    }
+
+    private static class LowTask
+        extends NormalTask
+    {
+        LowTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject);
+        }
+
+        @Override
+        public TaskPriority getPriority()
+        {
+            return LOW;
+        }
+    }
+
+    private static class HighTask
+        extends NormalTask
+    {
+        HighTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject);
+        }
+
+        @Override
+        public TaskPriority getPriority()
+        {
+            return HIGH;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Test;
+
+public class DurationHistogramTest
+{
+    @Test
+    public void thatDurationsAreRecordedInCumulativeBuckets()
+    {
+        DurationHistogram sut = new DurationHistogram();
+        
+        sut.record(5);
+        sut.record(10);
+        sut.record(70);
+        sut.record(2_000);
+        sut.record(1_000_000);
+        
+        Map<String, Long> values = sut.export("run");
+        
+        assertThat(values)
+                .containsEntry("run_le_10", 2l)
+                .containsEntry("run_le_50", 2l)
+                .containsEntry("run_le_100", 3l)
+                .containsEntry("run_le_5000", 4l)
+                .containsEntry("run_le_300000", 4l)
+                .containsEntry("run_count", 5l)
+                .containsEntry("run_sum", 1_002_085l)
+                .containsEntry("run_max", 1_000_000l);
+    }
+
+    @Test
+    public void thatHistogramCanBeExportedAsCompositeData()
+    {
+        DurationHistogram sut = new DurationHistogram();
+        sut.record(42);
+        
+        CompositeData data = MetricsUtils.toCompositeData("Test", sut.export("run"));
+        
+        assertThat(data.get("run_count")).isEqualTo(1l);
+        assertThat(data.get("run_le_50")).isEqualTo(1l);
+        assertThat(data.get("run_max")).isEqualTo(42l);
+    }
+}
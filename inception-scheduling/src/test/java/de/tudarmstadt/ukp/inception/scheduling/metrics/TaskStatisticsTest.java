@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.scheduling.metrics;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.inception.scheduling.Task;
+
+public class TaskStatisticsTest
+{
+    private User user;
+    private Project project;
+
+    @Before
+    public void setup()
+    {
+        user = new User("user");
+        project = new Project();
+        project.setId(1l);
+        project.setName("project");
+    }
+
+    @Test
+    public void thatTaskOutcomesAreCountedPerType()
+    {
+        TaskStatistics sut = new TaskStatistics();
+        
+        Task completed = new DummyTask(user, project);
+        Task cancelled = new DummyTask(user, project);
+        Task failed = new DummyTask(user, project);
+        Task discarded = new DummyTask(user, project);
+        Task other = new OtherDummyTask(user, project);
+        
+        for (Task task : asList(completed, cancelled, failed, discarded, other)) {
+            sut.taskEnqueued(task);
+        }
+        
+        sut.taskDiscarded(discarded);
+        
+        sut.taskStarted(completed, 5);
+        sut.taskFinished(completed, 20, false);
+        
+        sut.taskStarted(cancelled, 5);
+        cancelled.cancel();
+        sut.taskFinished(cancelled, 20, false);
+        
+        sut.taskStarted(failed, 5);
+        sut.taskFinished(failed, 2_000, true);
+        
+        Map<String, Long> values = sut.export(emptyList(), emptyList());
+        
+        assertThat(values)
+                .containsEntry("DummyTask_enqueued_total", 4l)
+                .containsEntry("DummyTask_discarded_total", 1l)
+                .containsEntry("DummyTask_completed_total", 1l)
+                .containsEntry("DummyTask_cancelled_total", 1l)
+                .containsEntry("DummyTask_failed_total", 1l)
+                .containsEntry("DummyTask_wait_time_ms_count", 3l)
+                .containsEntry("DummyTask_run_time_ms_le_50", 2l)
+                .containsEntry("DummyTask_run_time_ms_max", 2_000l)
+                .containsEntry("OtherDummyTask_enqueued_total", 1l)
+                .containsEntry("OtherDummyTask_completed_total", 0l)
+                .containsEntry("OtherDummyTask_run_time_ms_count", 0l);
+    }
+
+    @Test
+    public void thatQueuedAndRunningTasksAreCountedPerType()
+    {
+        TaskStatistics sut = new TaskStatistics();
+        
+        Task queued1 = new DummyTask(user, project);
+        Task queued2 = new DummyTask(user, project);
+        Task running = new OtherDummyTask(user, project);
+        Task idle = new IdleDummyTask(user, project);
+        
+        // Types which have been seen before are reported even if no such task is waiting or
+        // running at the moment
+        sut.taskEnqueued(idle);
+        
+        Map<String, Long> values = sut.export(asList(queued1, queued2), asList(running));
+        
+        assertThat(values)
+                .containsEntry("DummyTask_queued", 2l)
+                .containsEntry("OtherDummyTask_running", 1l)
+                .containsEntry("IdleDummyTask_queued", 0l)
+                .containsEntry("IdleDummyTask_running", 0l);
+    }
+
+    private static class DummyTask
+        extends Task
+    {
+        DummyTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject, "JUnit");
+        }
+
+        @Override
+        public void run()
+        {
+            // Nothing to do
+        }
+    }
+
+    private static class OtherDummyTask
+        extends DummyTask
+    {
+        OtherDummyTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject);
+        }
+    }
+
+    private static class IdleDummyTask
+        extends DummyTask
+    {
+        IdleDummyTask(User aUser, Project aProject)
+        {
+            super(aUser, aProject);
+        }
+    }
+}
@@ -26,14 +26,26 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.uima.cas.CAS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.event.EventListener;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.event.TransactionalEventListener;
@@ -57,6 +69,10 @@ import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
 import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
 import de.tudarmstadt.ukp.inception.search.config.SearchServiceAutoConfiguration;
+import de.tudarmstadt.ukp.inception.search.config.SearchServiceProperties;
+import de.tudarmstadt.ukp.inception.search.config.SearchServicePropertiesImpl;
+import de.tudarmstadt.ukp.inception.search.event.ReindexProgressEvent;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexBuilder;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactory;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistry;
 import de.tudarmstadt.ukp.inception.search.model.Index;
@@ -80,6 +96,7 @@ public class SearchServiceImpl
     private @Autowired ProjectService projectService;
     private @Autowired PhysicalIndexRegistry physicalIndexRegistry;
     private @Autowired IndexScheduler indexScheduler;
+    private @Autowired ApplicationEventPublisher applicationEventPublisher;
 
     // In fact - the only factory we have at the moment...
     private final String DEFAULT_PHSYICAL_INDEX_FACTORY = "mtasDocumentIndexFactory";
@@ -87,9 +104,21 @@ public class SearchServiceImpl
     // The indexes for each project
     private LoadingCache<Long, Index> indexByProject;
 
+    // Projects for which a rebuild of an outdated index has already been scheduled - if that
+    // rebuild fails, the outdated index remains usable and we do not retry on every query
+    private final Set<Long> outdatedIndexRebuildScheduled = ConcurrentHashMap.newKeySet();
+
+    private final int reindexThreads;
+
     @Autowired
     public SearchServiceImpl()
     {
+        this(new SearchServicePropertiesImpl());
+    }
+
+    public SearchServiceImpl(SearchServiceProperties aProperties)
+    {
+        reindexThreads = Math.max(1, aProperties.getReindexThreads());
         indexByProject = Caffeine.newBuilder().expireAfterAccess(10, MINUTES).maximumSize(1_000)
                 .removalListener(this::unloadIndex).build(key -> loadIndex(key));
     }
@@ -196,6 +225,7 @@ public class SearchServiceImpl
 
             // Remove the index entry from the memory map
             indexByProject.invalidate(project.getId());
+            outdatedIndexRebuildScheduled.remove(project.getId());
         }
     }
 
@@ -217,10 +247,9 @@ public class SearchServiceImpl
         }
 
         synchronized (index) {
-            // If the index has not been created yet, there is nothing to do
-            if (!index.getPhysicalIndex().isCreated()) {
-                return;
-            }
+            // Even if the index has not been created yet, the deletion needs to be passed on.
+            // A rebuild creating the index for the first time may be running, and it has to
+            // drop the document as well.
 
             // Remove source document from the index
             index.getPhysicalIndex().deindexDocument(document);
@@ -439,6 +468,11 @@ public class SearchServiceImpl
 
     /**
      * Re-index the project. If there is no physical index, create a new one.
+     * <p>
+     * The new index is built next to the current one which continues serving queries until the
+     * new index is complete and replaces it. Documents are read one after the other within
+     * the transaction of the caller and then indexed in parallel.
+     * </p>
      */
     @Override
     @Transactional
@@ -453,46 +487,98 @@ public class SearchServiceImpl
             return;
         }
 
-        synchronized (index) {
-            index.setInvalid(true);
-            
-            // Clear the index
-            index.getPhysicalIndex().clear();
-            
-            // Index all the annotation documents
-            for (User user : projectService.listProjectUsersWithPermissions(aProject)) {
-                List<AnnotationDocument> annotationDocumentsForUser = documentService
-                        .listAnnotationDocuments(aProject, user);
-                for (AnnotationDocument doc : annotationDocumentsForUser) {
-                    // Because serialization is a process which modifies internal data structures of
-                    // the CAS, we need exclusive access the CAS for the time being.
-                    // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
-                    // for https://issues.apache.org/jira/browse/UIMA-6162
-                    byte[] casAsByteArray;
-                    try (CasStorageSession session = CasStorageSession.openNested()) {
-                        casAsByteArray = casToByteArray(documentService.readAnnotationCas(doc));
+        // Each document is read and indexed as an independent unit of work
+        List<ReindexUnit> units = new ArrayList<>();
+        
+        // Index all the annotation documents
+        for (User user : projectService.listProjectUsersWithPermissions(aProject)) {
+            for (AnnotationDocument doc : documentService.listAnnotationDocuments(aProject, user)) {
+                units.add(new ReindexUnit(
+                        String.format("annotation document [%s](%d) of user [%s]", doc.getName(),
+                                doc.getId(), doc.getUser()),
+                        () -> documentService.readAnnotationCas(doc),
+                        (builder, binaryCas) -> builder.indexDocument(doc, binaryCas)));
+            }
+        }
+
+        // Index all the source documents
+        for (SourceDocument doc : documentService.listSourceDocuments(aProject)) {
+            units.add(new ReindexUnit(
+                    String.format("source document [%s](%d)", doc.getName(), doc.getId()),
+                    () -> documentService.createOrReadInitialCas(doc),
+                    (builder, binaryCas) -> builder.indexDocument(doc, binaryCas)));
+        }
+        
+        ReindexProgress progress = new ReindexProgress(aProject, units.size());
+        
+        try (PhysicalIndexBuilder builder = index.getPhysicalIndex().rebuild()) {
+            ExecutorService executor = Executors.newFixedThreadPool(reindexThreads,
+                    new BasicThreadFactory.Builder()
+                            .namingPattern("reindex-" + aProject.getId() + "-%d")
+                            .daemon(true)
+                            .build());
+            // Limits the number of serialized CASes waiting to be indexed, so the documents of
+            // the project are not all held in memory at the same time
+            Semaphore pending = new Semaphore(2 * reindexThreads);
+            try {
+                List<CompletableFuture<Void>> futures = new ArrayList<>();
+                for (ReindexUnit unit : units) {
+                    // The CASes are read on this thread since reading them requires the
+                    // transaction - only indexing them happens in parallel
+                    byte[] binaryCas = unit.read(aProject);
+                    if (binaryCas == null) {
+                        progress.increment();
+                        continue;
                     }
-                    indexDocument(doc, casAsByteArray);
+                    
+                    pending.acquire();
+                    futures.add(CompletableFuture.runAsync(() -> {
+                        try {
+                            unit.index(aProject, builder, binaryCas);
+                        }
+                        finally {
+                            pending.release();
+                        }
+                        progress.increment();
+                    }, executor));
+                }
+                
+                for (CompletableFuture<Void> future : futures) {
+                    future.join();
                 }
             }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Re-indexing project [" + aProject.getName() + "]("
+                        + aProject.getId() + ") was interrupted", e);
+            }
+            catch (CompletionException e) {
+                // Closing the builder discards the partially built index - the current index
+                // remains in place
+                throw new IOException("Unable to re-index project [" + aProject.getName() + "]("
+                        + aProject.getId() + ")", e.getCause());
+            }
+            finally {
+                executor.shutdownNow();
+                // Units which are still running write to the builder, so they must have stopped
+                // before the builder is closed and the partial index is discarded
+                awaitTermination(aProject, executor);
+            }
 
-            // Index all the source documents
-            for (SourceDocument doc : documentService.listSourceDocuments(aProject)) {
-                // Because serialization is a process which modifies internal data structures of
-                // the CAS, we need exclusive access the CAS for the time being.
-                // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
-                // for https://issues.apache.org/jira/browse/UIMA-6162
-                byte[] casAsByteArray;
-                try (CasStorageSession session = CasStorageSession.openNested()) {
-                    casAsByteArray = casToByteArray(documentService.createOrReadInitialCas(doc));
-                }
-                indexDocument(doc, casAsByteArray);
-            }            
+            synchronized (index) {
+                builder.commit();
+                
+                // After re-indexing, reset the invalid flag
+                index.setInvalid(false);
+                entityManager.merge(index);
+            }
             
-            // After re-indexing, reset the invalid flag
-            index.setInvalid(false);
-            entityManager.merge(index);
+            // Only report completion once the new index is actually in place
+            progress.complete();
         }
+        
+        log.info("Re-indexing project [{}]({}) completed: {} documents", aProject.getName(),
+                aProject.getId(), units.size());
     }
 
     @Override
@@ -533,7 +619,8 @@ public class SearchServiceImpl
 
     /**
      * Checks if the index has been created and is valid. If necessary, a re-indexing operation is
-     * scheduled and an {@link ExecutionException} is thrown to short-circuit the caller.
+     * scheduled and an {@link ExecutionException} is thrown to short-circuit the caller. An
+     * outdated index is rebuilt in the background while the caller continues to use it.
      */
     private void ensureIndexIsCreatedAndValid(Project aProject, Index aIndex)
         throws ExecutionException
@@ -561,5 +648,137 @@ public class SearchServiceImpl
             // Throw execution exception so that the user knows the query was not run
             throw (new ExecutionException("Index still building. Try again later."));
         }
+        
+        // Is the index in an older format? It can still be used while it is rebuilt.
+        if (aIndex.getPhysicalIndex().isOutdated() && !indexScheduler.isIndexInProgress(aProject)
+                && outdatedIndexRebuildScheduled.add(aProject.getId())) {
+            log.info("Index for project [{}]({}) is outdated - scheduling rebuild",
+                    aProject.getName(), aProject.getId());
+            indexScheduler.enqueueReindexTask(aProject);
+        }
+    }
+    
+    private void awaitTermination(Project aProject, ExecutorService aExecutor)
+    {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (aExecutor.awaitTermination(1, MINUTES)) {
+                    break;
+                }
+                log.warn("Still waiting for re-indexing units of project [{}]({}) to stop",
+                        aProject.getName(), aProject.getId());
+            }
+            catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Reads and indexes a single document. Errors affecting only that document are logged and the
+     * document is skipped, so a single broken document does not fail the entire re-indexing.
+     */
+    private class ReindexUnit
+    {
+        private final String description;
+        private final CasReader reader;
+        private final CasIndexer indexer;
+
+        public ReindexUnit(String aDescription, CasReader aReader, CasIndexer aIndexer)
+        {
+            description = aDescription;
+            reader = aReader;
+            indexer = aIndexer;
+        }
+
+        /**
+         * @return the serialized CAS of the document or {@code null} if it cannot be read.
+         */
+        public byte[] read(Project aProject)
+        {
+            // Because serialization is a process which modifies internal data structures
+            // of the CAS, we need exclusive access the CAS for the time being.
+            // This can be relaxed after upgrading to UIMA 3.2.0 which includes a fix for
+            // for https://issues.apache.org/jira/browse/UIMA-6162
+            try (CasStorageSession session = CasStorageSession.openNested()) {
+                return casToByteArray(reader.read());
+            }
+            catch (Exception e) {
+                log.error("Error reading {} in project [{}]({}) for re-indexing - skipping",
+                        description, aProject.getName(), aProject.getId(), e);
+                return null;
+            }
+        }
+
+        public void index(Project aProject, PhysicalIndexBuilder aBuilder, byte[] aBinaryCas)
+        {
+            try {
+                indexer.index(aBuilder, aBinaryCas);
+            }
+            catch (Exception e) {
+                log.error("Error re-indexing {} in project [{}]({}) - skipping", description,
+                        aProject.getName(), aProject.getId(), e);
+            }
+        }
+    }
+    
+    @FunctionalInterface
+    private interface CasReader
+    {
+        CAS read() throws IOException;
+    }
+    
+    @FunctionalInterface
+    private interface CasIndexer
+    {
+        void index(PhysicalIndexBuilder aBuilder, byte[] aBinaryCas) throws IOException;
+    }
+    
+    /**
+     * Tracks the number of documents processed during re-indexing and sends progress events at
+     * most once per {@link #PROGRESS_EVENT_INTERVAL}.
+     */
+    private class ReindexProgress
+    {
+        private static final long PROGRESS_EVENT_INTERVAL = 1000;
+        
+        private final Project project;
+        private final int total;
+        private final AtomicInteger processed = new AtomicInteger();
+        private final AtomicLong lastEvent = new AtomicLong(System.currentTimeMillis());
+        
+        public ReindexProgress(Project aProject, int aTotal)
+        {
+            project = aProject;
+            total = aTotal;
+        }
+        
+        public void increment()
+        {
+            int count = processed.incrementAndGet();
+            long now = System.currentTimeMillis();
+            long last = lastEvent.get();
+            if (now - last >= PROGRESS_EVENT_INTERVAL && lastEvent.compareAndSet(last, now)) {
+                log.debug("Re-indexing project [{}]({}): {} of {} documents", project.getName(),
+                        project.getId(), count, total);
+                
+                // Accessing the cache keeps the index from being unloaded during long runs
+                indexByProject.getIfPresent(project.getId());
+                
+                applicationEventPublisher.publishEvent(
+                        new ReindexProgressEvent(SearchServiceImpl.this, project, count, total));
+            }
+        }
+        
+        public void complete()
+        {
+            applicationEventPublisher.publishEvent(
+                    new ReindexProgressEvent(SearchServiceImpl.this, project, total, total));
+        }
     }
 }
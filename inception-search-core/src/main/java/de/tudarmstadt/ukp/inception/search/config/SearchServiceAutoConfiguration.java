@@ -49,7 +49,7 @@ public class SearchServiceAutoConfiguration
     @Bean
     public SearchService searchService()
     {
-        return new SearchServiceImpl();
+        return new SearchServiceImpl(searchServiceProperties());
     }
     
     @Bean
@@ -81,7 +81,7 @@ public class SearchServiceAutoConfiguration
     @Bean 
     public IndexScheduler indexScheduler()
     {
-        return new IndexSchedulerImpl();
+        return new IndexSchedulerImpl(searchServiceProperties());
     }
     
     @Bean
@@ -20,4 +20,22 @@ package de.tudarmstadt.ukp.inception.search.config;
 public interface SearchServiceProperties
 {
     boolean isEnabled();
+
+    /**
+     * @return number of worker threads processing indexing tasks. Tasks belonging to the same
+     *         project are never run concurrently, so more threads only help if several projects
+     *         are being indexed at the same time.
+     */
+    int getIndexingThreads();
+
+    /**
+     * @return maximum number of pending indexing tasks. When the limit is reached, threads
+     *         scheduling new tasks block until the workers have caught up.
+     */
+    int getIndexingQueueCapacity();
+
+    /**
+     * @return number of threads reading and indexing documents when a project is re-indexed.
+     */
+    int getReindexThreads();
 }
@@ -30,6 +30,9 @@ public class SearchServicePropertiesImpl
     implements SearchServiceProperties
 {
     private boolean enabled = false;
+    private int indexingThreads = 2;
+    private int indexingQueueCapacity = 1000;
+    private int reindexThreads = 4;
 
     @Override
     public boolean isEnabled()
@@ -41,4 +44,37 @@ public class SearchServicePropertiesImpl
     {
         enabled = aEnabled;
     }
+
+    @Override
+    public int getIndexingThreads()
+    {
+        return indexingThreads;
+    }
+
+    public void setIndexingThreads(int aIndexingThreads)
+    {
+        indexingThreads = aIndexingThreads;
+    }
+
+    @Override
+    public int getIndexingQueueCapacity()
+    {
+        return indexingQueueCapacity;
+    }
+
+    public void setIndexingQueueCapacity(int aIndexingQueueCapacity)
+    {
+        indexingQueueCapacity = aIndexingQueueCapacity;
+    }
+
+    @Override
+    public int getReindexThreads()
+    {
+        return reindexThreads;
+    }
+
+    public void setReindexThreads(int aReindexThreads)
+    {
+        reindexThreads = aReindexThreads;
+    }
 }
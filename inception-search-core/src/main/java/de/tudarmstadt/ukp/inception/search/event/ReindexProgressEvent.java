@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+
+/**
+ * Reports the progress of a project being re-indexed. The events are throttled, so not every
+ * indexed document results in an event. An event is always sent when the re-indexing is complete.
+ */
+public class ReindexProgressEvent
+    extends ApplicationEvent
+{
+    private static final long serialVersionUID = -2906460211286262331L;
+    
+    private final Project project;
+    private final int processed;
+    private final int total;
+
+    public ReindexProgressEvent(Object aSource, Project aProject, int aProcessed, int aTotal)
+    {
+        super(aSource);
+        
+        project = aProject;
+        processed = aProcessed;
+        total = aTotal;
+    }
+
+    public Project getProject()
+    {
+        return project;
+    }
+
+    /**
+     * @return number of documents indexed so far.
+     */
+    public int getProcessed()
+    {
+        return processed;
+    }
+
+    /**
+     * @return number of documents to be indexed in total.
+     */
+    public int getTotal()
+    {
+        return total;
+    }
+    
+    public boolean isComplete()
+    {
+        return processed >= total;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("ReindexProgressEvent [project=");
+        builder.append(project);
+        builder.append(", processed=");
+        builder.append(processed);
+        builder.append(", total=");
+        builder.append(total);
+        builder.append("]");
+        return builder.toString();
+    }
+}
@@ -41,6 +41,15 @@ public interface PhysicalIndex
      */
     void delete() throws IOException;
 
+    /**
+     * @return whether the index data was created in an older format and should be rebuilt. An
+     *         outdated index can still be queried and updated until it has been replaced.
+     */
+    default boolean isOutdated()
+    {
+        return false;
+    }
+
     boolean isOpen();
 
     void close();
@@ -55,6 +64,11 @@ public interface PhysicalIndex
 
     void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas) throws IOException;
 
+    /**
+     * Removes the document from the index. This must also be called if the index has not been
+     * created yet, since a rebuild creating the index may be running and must drop the document
+     * as well.
+     */
     void deindexDocument(SourceDocument aDocument) throws IOException;
 
     void deindexDocument(AnnotationDocument aDocument) throws IOException;
@@ -63,6 +77,14 @@ public interface PhysicalIndex
 
     void clear() throws IOException;
     
+    /**
+     * Starts building a new version of the index. The current version remains available for
+     * queries and updates until the builder is committed.
+     * 
+     * @return the builder for the new index version.
+     */
+    PhysicalIndexBuilder rebuild() throws IOException;
+    
     /**
      * Retrieve the timestamp of this annotation document
      * @param aDocument
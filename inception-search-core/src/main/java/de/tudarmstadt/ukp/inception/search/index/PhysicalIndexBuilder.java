@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index;
+
+import java.io.IOException;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+
+/**
+ * Builds a new version of a {@link PhysicalIndex} while the current version continues serving
+ * queries. Documents can be added concurrently from multiple threads.
+ */
+public interface PhysicalIndexBuilder
+    extends AutoCloseable
+{
+    void indexDocument(SourceDocument aDocument, byte[] aBinaryCas) throws IOException;
+
+    void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas) throws IOException;
+
+    /**
+     * Replaces the current version of the index with the newly built one.
+     */
+    void commit() throws IOException;
+
+    /**
+     * Discards the newly built index unless it has been committed.
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -20,24 +20,34 @@ package de.tudarmstadt.ukp.inception.search.scheduling;
 import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.Optional;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang3.Validate;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.apache.uima.cas.CAS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
 
 import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
 import de.tudarmstadt.ukp.clarin.webanno.model.Project;
 import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.inception.search.config.SearchServiceProperties;
+import de.tudarmstadt.ukp.inception.search.config.SearchServicePropertiesImpl;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.IndexAnnotationDocumentTask;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.IndexSourceDocumentTask;
 import de.tudarmstadt.ukp.inception.search.scheduling.tasks.ReindexTask;
@@ -45,6 +55,11 @@ import de.tudarmstadt.ukp.inception.search.scheduling.tasks.Task;
 
 /**
  * Indexer scheduler. Does the project re-indexing in an asynchronous way.
+ * <p>
+ * Tasks are processed by a pool of worker threads. The tasks of a project are run one after the
+ * other in the order in which they were scheduled, so the index of a project is never updated
+ * concurrently. Tasks of different projects are run in parallel.
+ * </p>
  */
 @Component
 public class IndexSchedulerImpl
@@ -54,24 +69,55 @@ public class IndexSchedulerImpl
 
     private @Autowired ApplicationContext applicationContext;
 
-    private TaskConsumer consumer;
-    private Thread consumerThread;
-    private BlockingQueue<Task> queue = new ArrayBlockingQueue<Task>(100);
+    private final int workerCount;
+    private final int capacity;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taskAvailable = lock.newCondition();
+    private final Condition spaceAvailable = lock.newCondition();
+
+    // Scheduled tasks by their match key - used to find duplicates in constant time
+    private final Map<Object, Task> pendingTasks = new HashMap<>();
+    // Scheduled tasks by project in the order in which they need to be run
+    private final Map<Long, Deque<Task>> pendingTasksByProject = new HashMap<>();
+    // Projects which have pending tasks but no active task
+    private final Deque<Long> runnableProjects = new ArrayDeque<>();
+    // Tasks currently run by the workers by project
+    private final Map<Long, Task> activeTasks = new HashMap<>();
+
+    private final ThreadLocal<Boolean> isWorker = ThreadLocal.withInitial(() -> false);
+
+    private ExecutorService workers;
+
+    public IndexSchedulerImpl()
+    {
+        this(new SearchServicePropertiesImpl());
+    }
+
+    public IndexSchedulerImpl(SearchServiceProperties aProperties)
+    {
+        workerCount = Math.max(1, aProperties.getIndexingThreads());
+        capacity = Math.max(1, aProperties.getIndexingQueueCapacity());
+    }
 
     @Override
     public void afterPropertiesSet()
     {
-        consumer = new TaskConsumer(applicationContext, queue);
-        consumerThread = new Thread(consumer, "Index task consumer");
-        consumerThread.setPriority(Thread.MIN_PRIORITY);
-        consumerThread.start();
-        log.info("Started Search Indexing Thread");
+        workers = Executors.newFixedThreadPool(workerCount, new BasicThreadFactory.Builder()
+                .namingPattern("Index task consumer %d")
+                .priority(Thread.MIN_PRIORITY)
+                .daemon(true)
+                .build());
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::consumeTasks);
+        }
+        log.info("Started {} search indexing thread(s)", workerCount);
     }
 
     @Override
     public void destroy()
     {
-        consumerThread.interrupt();
+        workers.shutdownNow();
     }
 
     @Override
@@ -110,64 +156,88 @@ public class IndexSchedulerImpl
      *  - Indexing of a whole project
      *  - Indexing of a source document
      *  - Indexing of an annotation document for a given user
+     * If the queue is full, the calling thread blocks until the workers have caught up. Tasks
+     * scheduled from within a running task are always accepted to avoid the workers blocking
+     * each other.
      *  
      * @param aRunnable
      *          The indexing task
      */
-    public synchronized void enqueue(Task aRunnable)
+    public void enqueue(Task aRunnable)
     {
-        Optional<Task> alreadyScheduledTask = findAlreadyScheduled(aRunnable);
+        Object key = aRunnable.getMatchKey();
         
-        // Project indexing task
-        if (aRunnable instanceof ReindexTask) {
-            if (alreadyScheduledTask.isPresent()) {
-                log.debug("Matching project indexing task already scheduled: [{}] - skipping ...",
-                        aRunnable);
-            }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new project indexing task: {}", aRunnable);
-            }
-        }
-        // Source document indexing task
-        else if (aRunnable instanceof IndexSourceDocumentTask) {
-            if (alreadyScheduledTask.isPresent()) {
-                log.debug(
-                        "Matching source document indexing task already scheduled: [{}] - skipping ...",
-                        aRunnable);
+        lock.lock();
+        try {
+            boolean interrupted = false;
+            while (true) {
+                Task alreadyScheduledTask = pendingTasks.get(key);
+                
+                if (alreadyScheduledTask != null) {
+                    // Annotation document indexing task
+                    if (aRunnable instanceof IndexAnnotationDocumentTask) {
+                        // Update the document CAS in the task currently enqueued for the same
+                        // annotation document/user. This must be done so that the task will take
+                        // into account the latest changes to the annotation document.
+                        alreadyScheduledTask.setBinaryCas(aRunnable.getBinaryCas());
+                        log.debug("Matching annotation document indexing task already "
+                                + "scheduled: [{}] - updating CAS", aRunnable);
+                    }
+                    // Project or source document indexing task
+                    else {
+                        log.debug("Matching indexing task already scheduled: [{}] - skipping ...",
+                                aRunnable);
+                    }
+                    break;
+                }
+                
+                if (pendingTasks.size() < capacity || isWorker.get() || interrupted) {
+                    add(key, aRunnable);
+                    log.debug("Enqueued new indexing task: {}", aRunnable);
+                    break;
+                }
+                
+                try {
+                    log.debug("Indexing queue is full - waiting to enqueue: {}", aRunnable);
+                    spaceAvailable.await();
+                }
+                catch (InterruptedException e) {
+                    // Do not drop the task - accept it beyond the capacity instead
+                    interrupted = true;
+                }
             }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new source document indexing task: {}", aRunnable);
+            
+            if (interrupted) {
+                Thread.currentThread().interrupt();
             }
         }
-        // Annotation document indexing task
-        else if (aRunnable instanceof IndexAnnotationDocumentTask) {
-            // Try to update the document CAS in the task currently enqueued for the same 
-            // annotation document/user (if there is an enqueued task).
-            // This must be done so that the task will take into account the
-            // latest changes to the annotation document.
-            if (alreadyScheduledTask.isPresent()) {
-                alreadyScheduledTask.get().setBinaryCas(aRunnable.getBinaryCas());
-                log.debug(
-                        "Matching source document indexing task already scheduled: [{}] - updating CAS",
-                        aRunnable);
-            }
-            else {
-                queue.offer(aRunnable);
-                log.debug("Enqueued new annotation document indexing task: {}", aRunnable);
-            }
+        finally {
+            lock.unlock();
         }
     }
 
-    public synchronized void stopAllTasksForUser(String username)
+    public void stopAllTasksForUser(String username)
     {
-        Iterator<Task> taskIterator = queue.iterator();
-        while (taskIterator.hasNext()) {
-            Task task = taskIterator.next();
-            if (task.getUser().equals(username)) {
-                queue.remove(task);
+        lock.lock();
+        try {
+            Iterator<Task> taskIterator = pendingTasks.values().iterator();
+            while (taskIterator.hasNext()) {
+                Task task = taskIterator.next();
+                if (Objects.equals(task.getUser(), username)) {
+                    taskIterator.remove();
+                    Long projectId = task.getProject().getId();
+                    Deque<Task> projectTasks = pendingTasksByProject.get(projectId);
+                    projectTasks.remove(task);
+                    if (projectTasks.isEmpty()) {
+                        pendingTasksByProject.remove(projectId);
+                        runnableProjects.remove(projectId);
+                    }
+                }
             }
+            spaceAvailable.signalAll();
+        }
+        finally {
+            lock.unlock();
         }
     }
 
@@ -176,12 +246,113 @@ public class IndexSchedulerImpl
     {
         Validate.notNull(aProject, "Project cannot be null");
         
-        return queue.stream().anyMatch(task -> aProject.equals(task.getProject())) ||
-                consumer.getActiveTask().map(t -> aProject.equals(t.getProject())).orElse(false);
+        lock.lock();
+        try {
+            return pendingTasksByProject.containsKey(aProject.getId())
+                    || activeTasks.containsKey(aProject.getId());
+        }
+        finally {
+            lock.unlock();
+        }
     }
     
-    private Optional<Task> findAlreadyScheduled(Task aTask)
+    private void add(Object aKey, Task aTask)
     {
-        return queue.stream().filter(aTask::matches).findAny();
+        Long projectId = aTask.getProject().getId();
+        
+        pendingTasks.put(aKey, aTask);
+        Deque<Task> projectTasks = pendingTasksByProject.get(projectId);
+        if (projectTasks == null) {
+            projectTasks = new ArrayDeque<>();
+            pendingTasksByProject.put(projectId, projectTasks);
+            if (!activeTasks.containsKey(projectId)) {
+                runnableProjects.add(projectId);
+                taskAvailable.signal();
+            }
+        }
+        projectTasks.add(aTask);
+    }
+    
+    /**
+     * Waits for a project which has pending tasks and no active task and takes the next task of
+     * that project.
+     */
+    private Task take() throws InterruptedException
+    {
+        lock.lock();
+        try {
+            while (runnableProjects.isEmpty()) {
+                taskAvailable.await();
+            }
+            
+            Long projectId = runnableProjects.poll();
+            Deque<Task> projectTasks = pendingTasksByProject.get(projectId);
+            Task task = projectTasks.poll();
+            if (projectTasks.isEmpty()) {
+                pendingTasksByProject.remove(projectId);
+            }
+            pendingTasks.remove(task.getMatchKey());
+            activeTasks.put(projectId, task);
+            spaceAvailable.signalAll();
+            return task;
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Marks the given task as completed and makes its project available to the workers again if
+     * further tasks have been scheduled for it in the meantime.
+     */
+    private void complete(Task aTask)
+    {
+        lock.lock();
+        try {
+            Long projectId = aTask.getProject().getId();
+            activeTasks.remove(projectId);
+            if (pendingTasksByProject.containsKey(projectId)) {
+                runnableProjects.add(projectId);
+                taskAvailable.signal();
+            }
+        }
+        finally {
+            lock.unlock();
+        }
+    }
+    
+    private void consumeTasks()
+    {
+        isWorker.set(true);
+        
+        try {
+            while (!Thread.interrupted()) {
+                log.debug("Waiting for new indexing task...");
+
+                Task task = take();
+
+                try {
+                    AutowireCapableBeanFactory factory = applicationContext
+                            .getAutowireCapableBeanFactory();
+                    factory.autowireBean(task);
+                    factory.initializeBean(task, "transientTask");
+
+                    log.debug("Indexing task started: {}", task);
+                    task.run();
+                    log.debug("Indexing task completed: {}", task);
+                }
+                // Catching Throwable is intentional here as we want to continue the execution even
+                // if a particular task fails.
+                catch (Throwable e) {
+                    log.error("Indexing task failed: {}", task, e);
+                }
+                finally {
+                    complete(task);
+                }
+            }
+        }
+        catch (InterruptedException ie) {
+            log.info("Thread interrupted: ", ie);
+        }
     }
 }
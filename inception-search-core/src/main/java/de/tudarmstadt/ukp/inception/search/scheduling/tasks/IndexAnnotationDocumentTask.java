@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
@@ -45,13 +46,9 @@ public class IndexAnnotationDocumentTask
     }
     
     @Override
-    public boolean matches(Task aTask)
+    public Object getMatchKey()
     {
-        if (!(aTask instanceof IndexAnnotationDocumentTask)) {
-            return false;
-        }
-        
-        return getAnnotationDocument().getId() == aTask.getAnnotationDocument().getId();
+        return Pair.of(IndexAnnotationDocumentTask.class, getAnnotationDocument().getId());
     }
 
 }
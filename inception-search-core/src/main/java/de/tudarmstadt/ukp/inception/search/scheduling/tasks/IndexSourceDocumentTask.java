@@ -17,6 +17,7 @@
  */
 package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.dao.casstorage.CasStorageSession;
@@ -51,12 +52,8 @@ public class IndexSourceDocumentTask
     }
     
     @Override
-    public boolean matches(Task aTask)
+    public Object getMatchKey()
     {
-        if (!(aTask instanceof IndexSourceDocumentTask)) {
-            return false;
-        }
-        
-        return getSourceDocument().getId() == aTask.getSourceDocument().getId();
+        return Pair.of(IndexSourceDocumentTask.class, getSourceDocument().getId());
     }
 }
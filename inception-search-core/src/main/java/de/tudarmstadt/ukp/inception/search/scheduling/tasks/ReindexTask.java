@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.search.scheduling.tasks;
 
 import java.io.IOException;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -54,12 +55,8 @@ public class ReindexTask
     }
     
     @Override
-    public boolean matches(Task aTask)
+    public Object getMatchKey()
     {
-        if (!(aTask instanceof ReindexTask)) {
-            return false;
-        }
-        
-        return getProject().getId() == aTask.getProject().getId();
+        return Pair.of(ReindexTask.class, getProject().getId());
     }
 }
@@ -122,7 +122,17 @@ public abstract class Task
      * Used to avoid scheduling duplicate tasks. Returns true if the current task is a duplicate of
      * the given task.
      */
-    public abstract boolean matches(Task aTask);
+    public boolean matches(Task aTask)
+    {
+        return getMatchKey().equals(aTask.getMatchKey());
+    }
+
+    /**
+     * @return a key identifying the work done by this task. Tasks with equal keys are duplicates
+     *         of each other. The scheduler uses the key to look up already scheduled tasks in
+     *         constant time.
+     */
+    public abstract Object getMatchKey();
 
     @Override
     public int hashCode()
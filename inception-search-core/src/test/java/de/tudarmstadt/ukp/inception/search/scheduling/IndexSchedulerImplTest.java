@@ -0,0 +1,308 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.scheduling;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocument;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.inception.search.config.SearchServicePropertiesImpl;
+import de.tudarmstadt.ukp.inception.search.scheduling.tasks.IndexAnnotationDocumentTask;
+import de.tudarmstadt.ukp.inception.search.scheduling.tasks.Task;
+
+public class IndexSchedulerImplTest
+{
+    private @Mock ApplicationContext mockContext;
+
+    private IndexSchedulerImpl sut;
+
+    private CountDownLatch release;
+
+    @Before
+    public void setUp()
+    {
+        initMocks(this);
+        when(mockContext.getAutowireCapableBeanFactory())
+                .thenReturn(mock(AutowireCapableBeanFactory.class));
+
+        release = new CountDownLatch(1);
+    }
+
+    @After
+    public void tearDown()
+    {
+        release.countDown();
+        if (sut != null) {
+            sut.destroy();
+        }
+    }
+
+    @Test
+    public void thatTasksOfSameProjectAreRunSequentially() throws Exception
+    {
+        startScheduler(4, 100);
+        Project project = buildProject(1l);
+        DummyTask first = new DummyTask(project, "user1", "first", release);
+        DummyTask second = new DummyTask(project, "user1", "second", new CountDownLatch(0));
+
+        sut.enqueue(first);
+        sut.enqueue(second);
+
+        assertThat(first.started.await(15, SECONDS)).isTrue();
+        assertThat(second.started.await(200, MILLISECONDS))
+                .as("Second task must not start while the first task is running")
+                .isFalse();
+        assertThat(sut.isIndexInProgress(project)).isTrue();
+
+        release.countDown();
+
+        assertThat(second.finished.await(15, SECONDS)).isTrue();
+        assertThat(second.startedAfterFinishOf(first)).isTrue();
+        await().atMost(15, SECONDS).until(() -> !sut.isIndexInProgress(project));
+    }
+
+    @Test
+    public void thatTasksOfDifferentProjectsAreRunInParallel() throws Exception
+    {
+        startScheduler(2, 100);
+        DummyTask task1 = new DummyTask(buildProject(1l), "user1", "task", release);
+        DummyTask task2 = new DummyTask(buildProject(2l), "user1", "task", release);
+
+        sut.enqueue(task1);
+        sut.enqueue(task2);
+
+        // Both tasks wait for the same latch, so they can only both start if they run in
+        // parallel
+        assertThat(task1.started.await(15, SECONDS)).isTrue();
+        assertThat(task2.started.await(15, SECONDS)).isTrue();
+    }
+
+    @Test
+    public void thatDuplicateAnnotationDocumentTaskUpdatesCas() throws Exception
+    {
+        startScheduler(1, 100);
+        Project project = buildProject(1l);
+        AnnotationDocument document = buildAnnotationDocument(project, "user1", 1l);
+        byte[] oldCas = new byte[] { 1 };
+        byte[] newCas = new byte[] { 2 };
+
+        DummyTask blocker = new DummyTask(project, "user1", "blocker", release);
+        DummyAnnotationDocumentTask scheduled = new DummyAnnotationDocumentTask(document, oldCas);
+        DummyAnnotationDocumentTask duplicate = new DummyAnnotationDocumentTask(document, newCas);
+
+        sut.enqueue(blocker);
+        assertThat(blocker.started.await(15, SECONDS)).isTrue();
+        sut.enqueue(scheduled);
+        sut.enqueue(duplicate);
+
+        assertThat(scheduled.getBinaryCas())
+                .as("Already scheduled task should have picked up the latest CAS")
+                .isSameAs(newCas);
+
+        release.countDown();
+
+        assertThat(scheduled.finished.await(15, SECONDS)).isTrue();
+        await().atMost(15, SECONDS).until(() -> !sut.isIndexInProgress(project));
+        assertThat(duplicate.ran.get()).as("Duplicate task should not have been run").isFalse();
+    }
+
+    @Test
+    public void thatTasksForUserCanBeStopped() throws Exception
+    {
+        startScheduler(1, 100);
+        Project project1 = buildProject(1l);
+        Project project2 = buildProject(2l);
+        CountDownLatch open = new CountDownLatch(0);
+
+        DummyTask blocker = new DummyTask(project1, "otherUser", "blocker", release);
+        DummyTask removed1 = new DummyTask(project1, "testUser", "task", open);
+        DummyTask removed2 = new DummyTask(project2, "testUser", "task", open);
+        DummyTask kept = new DummyTask(project2, "otherUser", "task", open);
+
+        sut.enqueue(blocker);
+        assertThat(blocker.started.await(15, SECONDS)).isTrue();
+        sut.enqueue(removed1);
+        sut.enqueue(removed2);
+        sut.enqueue(kept);
+
+        sut.stopAllTasksForUser("testUser");
+        release.countDown();
+
+        assertThat(kept.finished.await(15, SECONDS)).isTrue();
+        await().atMost(15, SECONDS)
+                .until(() -> !sut.isIndexInProgress(project1)
+                        && !sut.isIndexInProgress(project2));
+        assertThat(removed1.started.getCount()).as("Task for 'testUser' should have been removed")
+                .isEqualTo(1);
+        assertThat(removed2.started.getCount()).as("Task for 'testUser' should have been removed")
+                .isEqualTo(1);
+    }
+
+    @Test
+    public void thatEnqueueBlocksWhenQueueIsFull() throws Exception
+    {
+        startScheduler(1, 1);
+        Project project = buildProject(1l);
+        CountDownLatch open = new CountDownLatch(0);
+
+        DummyTask blocker = new DummyTask(project, "user1", "blocker", release);
+        DummyTask queued = new DummyTask(project, "user1", "queued", open);
+        DummyTask overflow = new DummyTask(project, "user1", "overflow", open);
+
+        sut.enqueue(blocker);
+        assertThat(blocker.started.await(15, SECONDS)).isTrue();
+        // The running task no longer counts against the capacity, so this one fills the queue
+        sut.enqueue(queued);
+
+        AtomicBoolean enqueued = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            sut.enqueue(overflow);
+            enqueued.set(true);
+        });
+        producer.setDaemon(true);
+        producer.start();
+
+        producer.join(200);
+        assertThat(enqueued.get()).as("Enqueuing into a full queue should block").isFalse();
+
+        // Once the worker takes the queued task, there is space for the blocked one
+        release.countDown();
+
+        producer.join(SECONDS.toMillis(15));
+        assertThat(enqueued.get()).isTrue();
+        assertThat(overflow.finished.await(15, SECONDS)).isTrue();
+    }
+
+    private void startScheduler(int aThreads, int aCapacity)
+    {
+        SearchServicePropertiesImpl properties = new SearchServicePropertiesImpl();
+        properties.setIndexingThreads(aThreads);
+        properties.setIndexingQueueCapacity(aCapacity);
+
+        sut = new IndexSchedulerImpl(properties);
+        ReflectionTestUtils.setField(sut, "applicationContext", mockContext);
+        sut.afterPropertiesSet();
+    }
+
+    private Project buildProject(long aId)
+    {
+        Project project = new Project();
+        project.setId(aId);
+        project.setName("project" + aId);
+        return project;
+    }
+
+    private AnnotationDocument buildAnnotationDocument(Project aProject, String aUser, long aId)
+    {
+        AnnotationDocument document = new AnnotationDocument();
+        document.setId(aId);
+        document.setName("document" + aId);
+        document.setProject(aProject);
+        document.setUser(aUser);
+        return document;
+    }
+
+    /**
+     * DummyTask is a task that waits until the given latch is released.
+     */
+    private static class DummyTask
+        extends Task
+    {
+        private final String name;
+        private final CountDownLatch release;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile long startTime;
+        private volatile long finishTime;
+
+        DummyTask(Project aProject, String aUser, String aName, CountDownLatch aRelease)
+        {
+            super(aProject, aUser);
+            name = aName;
+            release = aRelease;
+        }
+
+        @Override
+        public void run()
+        {
+            startTime = System.nanoTime();
+            started.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finally {
+                finishTime = System.nanoTime();
+                finished.countDown();
+            }
+        }
+
+        boolean startedAfterFinishOf(DummyTask aOther)
+        {
+            return aOther.finished.getCount() == 0 && startTime >= aOther.finishTime;
+        }
+
+        @Override
+        public Object getMatchKey()
+        {
+            return Pair.of(getProject().getId(), getUser() + "/" + name);
+        }
+    }
+
+    /**
+     * Annotation document task which does not actually index anything.
+     */
+    private static class DummyAnnotationDocumentTask
+        extends IndexAnnotationDocumentTask
+    {
+        private final AtomicBoolean ran = new AtomicBoolean();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        DummyAnnotationDocumentTask(AnnotationDocument aAnnotationDocument, byte[] aBinaryCas)
+        {
+            super(aAnnotationDocument, aBinaryCas);
+        }
+
+        @Override
+        public void run()
+        {
+            ran.set(true);
+            finished.countDown();
+        }
+    }
+}
@@ -21,9 +21,11 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT_FOLDE
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.FINISHED;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnnotationDocumentState.IGNORE;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.PARAM_PROJECT_ID;
+import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.PARAM_REBUILD;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUimaParser.getIndexedName;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.decodeFSAddress;
-import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static mtas.analysis.util.MtasTokenizerFactory.ARGUMENT_PARSER;
 import static mtas.analysis.util.MtasTokenizerFactory.ARGUMENT_PARSER_ARGS;
 import static mtas.codec.MtasCodec.MTAS_CODEC_NAME;
@@ -33,6 +35,7 @@ import java.io.File;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.nio.file.Files;
 import java.text.BreakIterator;
 import java.util.ArrayList;
 import java.util.Comparator;
@@ -44,11 +47,14 @@ import java.util.ListIterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -61,16 +67,23 @@ import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.ConcurrentMergeScheduler;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.SegmentReader;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TieredMergePolicy;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.IndexSearcher;
@@ -81,8 +94,13 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.spans.SpanWeight;
 import org.apache.lucene.search.spans.Spans;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.store.NIOFSDirectory;
+import org.apache.lucene.store.NRTCachingDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -104,6 +122,8 @@ import de.tudarmstadt.ukp.inception.search.PrimitiveUimaIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexBuilder;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexProperties;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import mtas.analysis.token.MtasTokenString;
@@ -126,7 +146,38 @@ public class MtasDocumentIndex
      */
     private static Map<Long, MtasDocumentIndex> OPEN_INDEXES = new ConcurrentHashMap<>();
     
+    /**
+     * Static map allowing the {@link MtasUimaParser} to access the layer configuration used when
+     * rebuilding the index of a given project. This is kept separate from {@link #OPEN_INDEXES}
+     * because the current index continues to use its own layer configuration until the rebuilt
+     * index replaces it.
+     */
+    private static Map<Long, List<AnnotationFeature>> REBUILD_FEATURES = new ConcurrentHashMap<>();
+    
     private static final String INDEX = "indexMtas";
+    private static final String INDEX_REBUILD_SUFFIX = ".rebuild";
+    private static final String INDEX_OLD_SUFFIX = ".old";
+    
+    /**
+     * Version of the index format. Indexes created with an older version are
+     * {@link #isOutdated() rebuilt} in the background.
+     * <ul>
+     * <li>1 - identifiers of the indexed documents only in stored fields</li>
+     * <li>2 - identifiers, user and title of the indexed documents also in doc values</li>
+     * </ul>
+     */
+    static final int INDEX_VERSION = 2;
+    
+    /**
+     * Format version used when creating new indexes. Only changed by tests in order to create
+     * indexes in an older format.
+     */
+    private static volatile int newIndexVersion = INDEX_VERSION;
+    
+    /**
+     * Key under which the {@link #INDEX_VERSION} is recorded in the commit data of the index.
+     */
+    private static final String COMMIT_DATA_INDEX_VERSION = "inceptionIndexVersion";
 
     /**
      * Constant for the field which carries the unique identifier for the index document consisting:
@@ -173,19 +224,32 @@ public class MtasDocumentIndex
     private final AnnotationSchemaService schemaService;
     private final Project project;
     private final File repositoryDir;
-    private final ScheduledExecutorService schedulerService;
+    private final MtasDocumentIndexProperties properties;
+    private final ScheduledExecutorService commitScheduler;
     
     // The index writers for this index
-    private IndexWriter _indexWriter;
-    private ReferenceManager<IndexSearcher> _searcherManager;
+    private volatile IndexWriter _indexWriter;
+    private volatile ReferenceManager<IndexSearcher> _searcherManager;
+    private volatile Rebuild _rebuild;
+    
+    // Version of the index format on disk - 0 if not known yet
+    private volatile int _indexVersion;
+    
+    // Changes which have not been committed yet - guarded by commitLock
+    private final Object commitLock = new Object();
     private ScheduledFuture<?> _commitFuture;
+    private int _uncommittedChanges;
+    
+    // Serializes commits so that a caller waiting for the commit sees all changes committed
+    private final Lock commitInProgress = new ReentrantLock();
 
     private List<AnnotationFeature> features;
 
     public MtasDocumentIndex(Project aProject, DocumentService aDocumentService,
             AnnotationSchemaService aSchemaService, String aDir,
             FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
-            FeatureSupportRegistry aFeatureSupportRegistry)
+            FeatureSupportRegistry aFeatureSupportRegistry,
+            MtasDocumentIndexProperties aProperties, ScheduledExecutorService aCommitScheduler)
     {
         schemaService = aSchemaService;
         documentService = aDocumentService;
@@ -193,8 +257,8 @@ public class MtasDocumentIndex
         featureIndexingSupportRegistry = aFeatureIndexingSupportRegistry;
         featureSupportRegistry = aFeatureSupportRegistry;
         repositoryDir = new File(aDir);
-        
-        schedulerService = new ScheduledThreadPoolExecutor(0);
+        properties = aProperties;
+        commitScheduler = aCommitScheduler;
     }
 
     private synchronized IndexWriter getIndexWriter() throws IOException
@@ -205,40 +269,15 @@ public class MtasDocumentIndex
             OPEN_INDEXES.put(project.getId(), this);
             
             // Initialize and populate the hash maps for the layers and features
-            features = schemaService.listAnnotationFeature(project).stream()
-                    .filter(feat -> feat.getLayer().isEnabled())
-                    .filter(feat -> feat.isEnabled())
-                    .collect(Collectors.toList());
-            
-            // Add the project id to the configuration
-            JSONObject jsonParserConfiguration = new JSONObject();
-            jsonParserConfiguration.put(PARAM_PROJECT_ID, project.getId());
-            
-            // Tokenizer parameters
-            Map<String, String> tokenizerArguments = new HashMap<>();
-            tokenizerArguments.put(ARGUMENT_PARSER, MtasUimaParser.class.getName());
-            tokenizerArguments.put(ARGUMENT_PARSER_ARGS, jsonParserConfiguration.toString());
-            
-            // Build analyzer
-            Analyzer mtasAnalyzer = CustomAnalyzer.builder()
-                    .withTokenizer(MtasTokenizerFactory.class, tokenizerArguments)
-                    .build();
-            
-            Map<String, Analyzer> analyzerPerField = new HashMap<String, Analyzer>();
-            analyzerPerField.put(FIELD_CONTENT, mtasAnalyzer);
-            
-            PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(),
-                    analyzerPerField);
+            features = listFeaturesToIndex();
             
-            // Build IndexWriter
-            FileUtils.forceMkdir(getIndexDir());
-            IndexWriterConfig config = new IndexWriterConfig(analyzer);
-            config.setCodec(Codec.forName(MTAS_CODEC_NAME));
-            IndexWriter indexWriter = new IndexWriter(FSDirectory.open(getIndexDir().toPath()),
-                    config);
-            
-            // Initialize the index
-            indexWriter.commit();
+            IndexWriter indexWriter = openIndexWriter(getIndexDir(), false);
+            _indexVersion = readIndexVersion(indexWriter.getDirectory());
+            if (_indexVersion < INDEX_VERSION) {
+                log.info("Index for project [{}]({}) uses outdated format version {} - current "
+                        + "version is {}", project.getName(), project.getId(), _indexVersion,
+                        INDEX_VERSION);
+            }
             
             // After the index has been initialized, assign the _indexWriter - this is also used
             // by isOpen() to check if the index writer is available.
@@ -248,31 +287,118 @@ public class MtasDocumentIndex
         return _indexWriter;
     }
     
-    private void ensureAllIsCommitted()
+    private List<AnnotationFeature> listFeaturesToIndex()
     {
-        if (_commitFuture != null && !_commitFuture.isDone()) {
-            try {
-                _commitFuture.get();
-            }
-            catch (Exception e) {
-                log.error(
-                        "Error waiting for pending scheduled commit to complete in project [{}]({})",
-                        project.getName(), project.getId());
-            }
-            finally {
-                _commitFuture = null;
-            }
+        return schemaService.listAnnotationFeature(project).stream()
+                .filter(feat -> feat.getLayer().isEnabled())
+                .filter(feat -> feat.isEnabled())
+                .collect(Collectors.toList());
+    }
+    
+    private IndexWriter openIndexWriter(File aDir, boolean aRebuild) throws IOException
+    {
+        // Add the project id to the configuration
+        JSONObject jsonParserConfiguration = new JSONObject();
+        jsonParserConfiguration.put(PARAM_PROJECT_ID, project.getId());
+        jsonParserConfiguration.put(PARAM_REBUILD, aRebuild);
+        
+        // Tokenizer parameters
+        Map<String, String> tokenizerArguments = new HashMap<>();
+        tokenizerArguments.put(ARGUMENT_PARSER, MtasUimaParser.class.getName());
+        tokenizerArguments.put(ARGUMENT_PARSER_ARGS, jsonParserConfiguration.toString());
+        
+        // Build analyzer
+        Analyzer mtasAnalyzer = CustomAnalyzer.builder()
+                .withTokenizer(MtasTokenizerFactory.class, tokenizerArguments)
+                .build();
+        
+        Map<String, Analyzer> analyzerPerField = new HashMap<String, Analyzer>();
+        analyzerPerField.put(FIELD_CONTENT, mtasAnalyzer);
+        
+        PerFieldAnalyzerWrapper analyzer = new PerFieldAnalyzerWrapper(new StandardAnalyzer(),
+                analyzerPerField);
+        
+        // Build IndexWriter
+        FileUtils.forceMkdir(aDir);
+        IndexWriterConfig config = new IndexWriterConfig(analyzer);
+        config.setCodec(Codec.forName(MTAS_CODEC_NAME));
+        config.setRAMBufferSizeMB(properties.getRamBufferSize());
+        
+        TieredMergePolicy mergePolicy = new TieredMergePolicy();
+        mergePolicy.setMaxMergedSegmentMB(properties.getMaxMergedSegmentSize());
+        mergePolicy.setSegmentsPerTier(properties.getSegmentsPerTier());
+        config.setMergePolicy(mergePolicy);
+        
+        ConcurrentMergeScheduler mergeScheduler = new ConcurrentMergeScheduler();
+        int mergeThreads = properties.getMaxMergeThreads();
+        if (mergeThreads > 0) {
+            mergeScheduler.setMaxMergesAndThreads(mergeThreads + 5, mergeThreads);
         }
+        config.setMergeScheduler(mergeScheduler);
         
-        if (_indexWriter != null) {
-            try {
-                _indexWriter.commit();
-            }
-            catch (IOException e) {
-                log.error("Error committing changes to index for project [{}]({})",
-                        project.getName(), project.getId());
-            }
+        Directory directory = openDirectory(aDir);
+        boolean newIndex = !DirectoryReader.indexExists(directory);
+        IndexWriter indexWriter = new IndexWriter(directory, config);
+        
+        // Only a new index uses the current format. Existing indexes keep their version until
+        // they are rebuilt. The initial version did not record the version at all.
+        int version = newIndexVersion;
+        if (newIndex && version > 1) {
+            Map<String, String> commitData = new HashMap<>();
+            commitData.put(COMMIT_DATA_INDEX_VERSION, String.valueOf(version));
+            indexWriter.setLiveCommitData(commitData.entrySet());
+        }
+        
+        // Initialize the index
+        indexWriter.commit();
+        
+        return indexWriter;
+    }
+    
+    private Directory openDirectory(File aDir) throws IOException
+    {
+        Directory directory;
+        switch (properties.getDirectory()) {
+        case MMAP:
+            directory = new MMapDirectory(aDir.toPath());
+            break;
+        case NIO:
+            directory = new NIOFSDirectory(aDir.toPath());
+            break;
+        default:
+            directory = FSDirectory.open(aDir.toPath());
+            break;
+        }
+        
+        if (properties.isNrtCaching()) {
+            directory = new NRTCachingDirectory(directory, properties.getNrtCachingMaxMergeSize(),
+                    properties.getNrtCachingMaxCachedSize());
         }
+        
+        return directory;
+    }
+    
+    /**
+     * Sets the format version used when creating new indexes. This allows tests to create indexes
+     * in an older format.
+     */
+    static void setNewIndexVersion(int aVersion)
+    {
+        newIndexVersion = aVersion;
+    }
+    
+    static int readIndexVersion(Directory aDirectory) throws IOException
+    {
+        String version = SegmentInfos.readLatestCommit(aDirectory).getUserData()
+                .get(COMMIT_DATA_INDEX_VERSION);
+        
+        // Indexes created before the version was recorded use the initial version
+        return version != null ? Integer.parseInt(version) : 1;
+    }
+    
+    private void ensureAllIsCommitted()
+    {
+        commit();
     }
     
     @Override
@@ -280,10 +406,11 @@ public class MtasDocumentIndex
     {
         OPEN_INDEXES.remove(project.getId());
 
-        if (schedulerService != null) {
-            schedulerService.shutdown();
-        }
-
+        closeIndexWriter();
+    }
+    
+    private synchronized void closeIndexWriter()
+    {
         if (!isOpen()) {
             return;
         }
@@ -291,6 +418,10 @@ public class MtasDocumentIndex
         ensureAllIsCommitted();
         
         try {
+            // Searchers which are still in use by running queries remain valid until released
+            if (_searcherManager != null) {
+                _searcherManager.close();
+            }
             _indexWriter.close();
         }
         catch (IOException e) {
@@ -300,10 +431,11 @@ public class MtasDocumentIndex
         finally {
             _indexWriter = null;
             _searcherManager = null;
+            _indexVersion = 0;
         }
     }
     
-    private ReferenceManager<IndexSearcher> getSearcherManager() throws IOException
+    private synchronized ReferenceManager<IndexSearcher> getSearcherManager() throws IOException
     {
         if (_searcherManager == null) {
             _searcherManager = new SearcherManager(getIndexWriter(), true, true,
@@ -313,34 +445,85 @@ public class MtasDocumentIndex
         return _searcherManager;
     }
         
-    private synchronized void scheduleCommit()
+    /**
+     * Records a change to the index. The change is committed once the
+     * {@link MtasDocumentIndexProperties#getCommitThreshold() commit threshold} is reached or at
+     * the latest after the {@link MtasDocumentIndexProperties#getCommitDelay() commit delay}.
+     * Further changes do not postpone a commit which has already been scheduled.
+     */
+    private void scheduleCommit()
     {
-        if (schedulerService.isShutdown() || schedulerService.isTerminated()) {
+        if (commitScheduler.isShutdown()) {
+            synchronized (commitLock) {
+                _uncommittedChanges++;
+            }
+            commit();
             return;
         }
         
-        // Cancel any existing commit
-        if (_commitFuture != null) {
-            _commitFuture.cancel(false);
+        synchronized (commitLock) {
+            _uncommittedChanges++;
+            
+            int threshold = properties.getCommitThreshold();
+            if (threshold > 0 && _uncommittedChanges == threshold) {
+                if (_commitFuture != null) {
+                    _commitFuture.cancel(false);
+                }
+                _commitFuture = commitScheduler.submit(this::commit);
+            }
+            else if (_commitFuture == null) {
+                _commitFuture = commitScheduler.schedule(this::commit,
+                        properties.getCommitDelay().toMillis(), MILLISECONDS);
+            }
         }
-        
-        _commitFuture = schedulerService.schedule(() -> {
-            try {
-                if (_indexWriter != null && _indexWriter.isOpen()) {
-                    _indexWriter.commit();
-                    log.debug("Committed changes to index for project [{}]({})", project.getName(),
-                            project.getId());
-                    
-                    if (_searcherManager != null) {
-                        _searcherManager.maybeRefresh();
-                    }
+    }
+    
+    /**
+     * Commits any pending changes and refreshes the searcher. If another commit is in progress,
+     * waits for it to complete first. Must not require the monitor of the index because it is
+     * called from {@link #closeIndexWriter()} which holds it.
+     */
+    private void commit()
+    {
+        commitInProgress.lock();
+        try {
+            synchronized (commitLock) {
+                if (_commitFuture != null) {
+                    _commitFuture.cancel(false);
+                    _commitFuture = null;
+                }
+                
+                if (_uncommittedChanges == 0) {
+                    return;
                 }
+                
+                _uncommittedChanges = 0;
             }
-            catch (IOException e) {
-                log.error("Unable to commit to index of project [{}]({})", project.getName(),
-                        project.getId());
+            
+            IndexWriter indexWriter = _indexWriter;
+            if (indexWriter == null || !indexWriter.isOpen()) {
+                return;
+            }
+            
+            indexWriter.commit();
+            log.debug("Committed changes to index for project [{}]({})", project.getName(),
+                    project.getId());
+            
+            ReferenceManager<IndexSearcher> searcherManager = _searcherManager;
+            if (searcherManager != null) {
+                searcherManager.maybeRefreshBlocking();
             }
-        }, 3, SECONDS);
+        }
+        catch (AlreadyClosedException e) {
+            // The index was closed concurrently - closing it commits all changes anyway
+        }
+        catch (IOException e) {
+            log.error("Unable to commit to index of project [{}]({})", project.getName(),
+                    project.getId(), e);
+        }
+        finally {
+            commitInProgress.unlock();
+        }
     }
     
     /**
@@ -353,6 +536,24 @@ public class MtasDocumentIndex
     {
         return _indexWriter != null ? _indexWriter.isOpen() : false;
     }
+    
+    @Override
+    public synchronized boolean isOutdated()
+    {
+        if (_indexVersion == 0 && isCreated()) {
+            try (Directory directory = FSDirectory.open(getIndexDir().toPath())) {
+                if (DirectoryReader.indexExists(directory)) {
+                    _indexVersion = readIndexVersion(directory);
+                }
+            }
+            catch (IOException e) {
+                log.error("Unable to determine format version of index for project [{}]({})",
+                        project.getName(), project.getId(), e);
+            }
+        }
+        
+        return _indexVersion != 0 && _indexVersion < INDEX_VERSION;
+    }
 
     
     @Override
@@ -393,9 +594,12 @@ public class MtasDocumentIndex
             throw new ExecutionException("Unable to parse query [" + aRequest.getQuery() + "]", e);
         }        
 
+        // Use the same searcher manager for acquiring and releasing the searcher, even if the
+        // index is replaced by a rebuilt one while the query is running
+        ReferenceManager<IndexSearcher> searcherManager = getSearcherManager();
         IndexSearcher searcher = null;
         try {
-            searcher = getSearcherManager().acquire();
+            searcher = searcherManager.acquire();
             return aRunner.run(searcher, aRequest, mtasSpanQuery);
         }
         catch (Exception e) {
@@ -406,7 +610,7 @@ public class MtasDocumentIndex
             if (searcher != null) {
                 // Releasing and setting to null per recommendation in JavaDoc of release(searcher)
                 // method
-                getSearcherManager().release(searcher);
+                searcherManager.release(searcher);
                 searcher = null;
             }
         }
@@ -467,28 +671,20 @@ public class MtasDocumentIndex
             try {
                 Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
                 SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
+                HitDocumentReader hitDocument = new HitDocumentReader(segmentReader);
                 if (spans != null) {
                     while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
                         if (segmentReader.numDocs() == segmentReader.maxDoc()
                                 || segmentReader.getLiveDocs().get(spans.docID())) {
-                            Document document = segmentReader.document(spans.docID());
-
-                            // Retrieve user
-                            String user = document.get(FIELD_USER);
-
-                            // Retrieve source and annotation document ids
-                            String rawSourceDocumentId = document.get(FIELD_SOURCE_DOCUMENT_ID);
-                            String rawAnnotationDocumentId = document
-                                    .get(FIELD_ANNOTATION_DOCUMENT_ID);
-                            if (rawSourceDocumentId == null || rawAnnotationDocumentId == null) {
-                                log.trace("Indexed document lacks source/annotation document IDs"
-                                        + " - source: {}, annotation: {}", rawSourceDocumentId,
-                                    rawAnnotationDocumentId);
+                            // Retrieve user, source and annotation document ids
+                            if (!hitDocument.read(spans.docID())) {
+                                log.trace("Indexed document {} lacks source/annotation document "
+                                        + "IDs", spans.docID());
                                 continue;
-
                             }
-                            long sourceDocumentId = Long.valueOf(rawSourceDocumentId);
-                            long annotationDocumentId = Long.valueOf(rawAnnotationDocumentId);
+                            String user = hitDocument.user;
+                            long sourceDocumentId = hitDocument.sourceDocumentId;
+                            long annotationDocumentId = hitDocument.annotationDocumentId;
 
                             // If the query is limited to a given document, skip any results
                             // which are not in the given document
@@ -576,31 +772,23 @@ public class MtasDocumentIndex
             try {
                 Spans spans = spanweight.getSpans(leafReaderContext, SpanWeight.Postings.POSITIONS);
                 SegmentReader segmentReader = (SegmentReader) leafReaderContext.reader();
+                HitDocumentReader hitDocument = new HitDocumentReader(segmentReader);
                 Terms terms = segmentReader.terms(FIELD_CONTENT);
                 CodecInfo mtasCodecInfo = CodecInfo.getCodecInfoFromTerms(terms);
                 if (spans != null) {
                     while (spans.nextDoc() != Spans.NO_MORE_DOCS) {
                         if (segmentReader.numDocs() == segmentReader.maxDoc()
                                 || segmentReader.getLiveDocs().get(spans.docID())) {
-                            Document document = segmentReader.document(spans.docID());
-
-                            // Retrieve user
-                            String user = document.get(FIELD_USER);
-
-                            // Retrieve source and annotation document ids
-                            String rawSourceDocumentId = document.get(FIELD_SOURCE_DOCUMENT_ID);
-                            String rawAnnotationDocumentId = document
-                                    .get(FIELD_ANNOTATION_DOCUMENT_ID);
-                            if (rawSourceDocumentId == null || rawAnnotationDocumentId == null) {
-                                log.trace("Indexed document lacks source/annotation document IDs"
-                                        + " - source: {}, annotation: {}", rawSourceDocumentId,
-                                    rawAnnotationDocumentId);
+                            // Retrieve user, source and annotation document ids
+                            if (!hitDocument.read(spans.docID())) {
+                                log.trace("Indexed document {} lacks source/annotation document "
+                                        + "IDs", spans.docID());
                                 continue;
-
                             }
+                            String user = hitDocument.user;
                             
-                            long sourceDocumentId = Long.valueOf(rawSourceDocumentId);
-                            long annotationDocumentId = Long.valueOf(rawAnnotationDocumentId);
+                            long sourceDocumentId = hitDocument.sourceDocumentId;
+                            long annotationDocumentId = hitDocument.annotationDocumentId;
                             boolean matchInSourceDocument = annotationDocumentId == -1;
                             
                             SourceDocument sourceDocument = sourceDocumentIndex
@@ -654,7 +842,7 @@ public class MtasDocumentIndex
                             }
 
                             // Retrieve document title
-                            String documentTitle = document.get(FIELD_TITLE);
+                            String documentTitle = hitDocument.title;
 
                             // String idValue = segmentReader.document(spans.docID())
                             // .getField(FIELD_ID).stringValue();
@@ -845,8 +1033,9 @@ public class MtasDocumentIndex
         }
     }
 
-    private void indexDocument(String aDocumentTitle, long aSourceDocumentId,
-            long aAnnotationDocumentId, String aUser, byte[] aBinaryCas)
+    private void indexDocument(IndexWriter aIndexWriter, int aIndexVersion,
+            String aDocumentTitle, long aSourceDocumentId, long aAnnotationDocumentId,
+            String aUser, byte[] aBinaryCas)
         throws IOException
     {
         // Calculate timestamp that will be indexed
@@ -858,11 +1047,6 @@ public class MtasDocumentIndex
                 project.getName(), project.getId(), aSourceDocumentId, aAnnotationDocumentId,
                 aUser, timestamp);
         
-        IndexWriter indexWriter = getIndexWriter();
-        
-        // Prepare bytearray with document content to be indexed
-        String encodedCAS = new String(MtasUtils.bytesToChars(aBinaryCas));
-
         // Create new Lucene document
         Document doc = new Document();
         
@@ -876,25 +1060,46 @@ public class MtasDocumentIndex
         doc.add(new StringField(FIELD_TITLE, aDocumentTitle, Field.Store.YES));
         doc.add(new StringField(FIELD_USER, aUser, Field.Store.YES));
         doc.add(new StringField(FIELD_TIMESTAMP, timestamp, Field.Store.YES));
-        doc.add(new TextField(FIELD_CONTENT, encodedCAS, Field.Store.NO));
+        // Doc values allow resolving search hits without loading the stored fields. Documents
+        // added to an index in an older format keep using that format until it is rebuilt.
+        if (aIndexVersion >= 2) {
+            doc.add(new NumericDocValuesField(FIELD_SOURCE_DOCUMENT_ID, aSourceDocumentId));
+            doc.add(new NumericDocValuesField(FIELD_ANNOTATION_DOCUMENT_ID,
+                    aAnnotationDocumentId));
+            doc.add(new SortedDocValuesField(FIELD_TITLE, new BytesRef(aDocumentTitle)));
+            doc.add(new SortedDocValuesField(FIELD_USER, new BytesRef(aUser)));
+        }
+        // The content field is analyzed by the MtasUimaParser which takes the CAS from the
+        // handoff - the field value is always empty
+        doc.add(new TextField(FIELD_CONTENT, "", Field.Store.NO));
 
         // Add document to the Lucene index
-        indexWriter.addDocument(doc);
-
-        scheduleCommit();
+        MtasUimaParser.handOff(aBinaryCas);
+        try {
+            aIndexWriter.addDocument(doc);
+        }
+        finally {
+            MtasUimaParser.clearHandOff();
+        }
     };
 
     @Override
     public void indexDocument(SourceDocument aDocument, byte[] aBinaryCas) throws IOException
     {
-        indexDocument(aDocument.getName(), aDocument.getId(), -1, "", aBinaryCas);
+        IndexWriter indexWriter = getIndexWriter();
+        indexDocument(indexWriter, _indexVersion, aDocument.getName(), aDocument.getId(), -1, "",
+                aBinaryCas);
+        scheduleCommit();
     };
 
     @Override
     public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas) throws IOException
     {
-        indexDocument(aDocument.getName(), aDocument.getDocument().getId(), aDocument.getId(),
-                aDocument.getUser(), aBinaryCas);
+        IndexWriter indexWriter = getIndexWriter();
+        indexDocument(indexWriter, _indexVersion, aDocument.getName(),
+                aDocument.getDocument().getId(), aDocument.getId(), aDocument.getUser(),
+                aBinaryCas);
+        scheduleCommit();
     };
 
     /**
@@ -910,6 +1115,16 @@ public class MtasDocumentIndex
     private void deindexDocument(long aSourceDocumentId, long aAnnotationDocumentId, String aUser)
         throws IOException
     {
+        Term term = new Term(FIELD_ID,
+                String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId));
+        
+        // If the index is being rebuilt, the document may already have been added to the new
+        // index, so we need to remove it from there as well
+        Rebuild rebuild = _rebuild;
+        if (rebuild != null) {
+            rebuild.deleteDocument(term);
+        }
+        
         if (!isCreated()) {
             return;
         }
@@ -920,8 +1135,7 @@ public class MtasDocumentIndex
                 aUser);
 
         IndexWriter indexWriter = getIndexWriter();
-        indexWriter.deleteDocuments(new Term(FIELD_ID,
-                String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId)));
+        indexWriter.deleteDocuments(term);
         scheduleCommit();
     }
 
@@ -978,11 +1192,6 @@ public class MtasDocumentIndex
     @Override
     public synchronized void clear() throws IOException
     {
-        // Disable the scheduler temporarily to avoid new commits getting scheduled
-        if (schedulerService != null) {
-            schedulerService.shutdown();
-        }
-        
         // Remove all data from the index
         IndexWriter indexWriter = getIndexWriter();
         indexWriter.deleteAll();
@@ -1042,41 +1251,100 @@ public class MtasDocumentIndex
     }
 
     @Override
-    public boolean isCreated()
+    public synchronized boolean isCreated()
     {
         return getIndexDir().isDirectory();
     }
+    
+    @Override
+    public synchronized PhysicalIndexBuilder rebuild() throws IOException
+    {
+        if (_rebuild != null) {
+            throw new IllegalStateException("Index for project [" + project.getName() + "]("
+                    + project.getId() + ") is already being rebuilt");
+        }
+        
+        File rebuildDir = new File(getIndexDir().getPath() + INDEX_REBUILD_SUFFIX);
+        
+        // Remove any left-overs from a previous rebuild that did not complete
+        deleteDirectory(rebuildDir);
+        
+        log.debug("Rebuilding index for project [{}]({}) in [{}]", project.getName(),
+                project.getId(), rebuildDir);
+        
+        REBUILD_FEATURES.put(project.getId(), listFeaturesToIndex());
+        try {
+            IndexWriter indexWriter = openIndexWriter(rebuildDir, true);
+            _rebuild = new Rebuild(rebuildDir, indexWriter,
+                    readIndexVersion(indexWriter.getDirectory()));
+        }
+        catch (IOException e) {
+            REBUILD_FEATURES.remove(project.getId());
+            throw e;
+        }
+        
+        return _rebuild;
+    }
+    
+    /**
+     * Replaces the current index with the rebuilt one. The current index is closed, so the index
+     * writer is re-initialized with the current layer configuration of the project on the next
+     * access.
+     */
+    private synchronized void replaceWith(Rebuild aRebuild) throws IOException
+    {
+        aRebuild.indexWriter.commit();
+        aRebuild.indexWriter.close();
+        
+        closeIndexWriter();
+        
+        File indexDir = getIndexDir();
+        File oldDir = new File(indexDir.getPath() + INDEX_OLD_SUFFIX);
+        deleteDirectory(oldDir);
+        if (indexDir.exists()) {
+            Files.move(indexDir.toPath(), oldDir.toPath(), ATOMIC_MOVE);
+        }
+        Files.move(aRebuild.dir.toPath(), indexDir.toPath(), ATOMIC_MOVE);
+        deleteDirectory(oldDir);
+        
+        log.debug("Replaced index for project [{}]({}) with rebuilt index", project.getName(),
+                project.getId());
+    }
 
     @Override
     public Optional<String> getTimestamp(AnnotationDocument aDocument) throws IOException
     {
         Optional<String> result = Optional.empty();
 
-        // Prepare index searcher for accessing index
-        Directory directory = FSDirectory.open(getIndexDir().toPath());
-        IndexReader indexReader = DirectoryReader.open(directory);
-        IndexSearcher indexSearcher = new IndexSearcher(indexReader);
-
-        // Prepare query for the annotation document for this annotation document
-        Term term = new Term(FIELD_ID,
-                String.format("%d/%d", aDocument.getDocument().getId(), aDocument.getId()));
-        
-        TermQuery query = new TermQuery(term);
-
-        // Do query
-        TopDocs docs = indexSearcher.search(query, 1);
-
-        if (docs.scoreDocs.length > 0) {
-            // If there are results, retrieve first document, since all results should come
-            // from the same document
-            Document document = indexSearcher.doc(docs.scoreDocs[0].doc);
-
-            // Retrieve the timestamp field if it exists
-            if (document.getField(FIELD_TIMESTAMP) != null) {
-                result = Optional.ofNullable(StringUtils
-                        .trimToNull(document.getField(FIELD_TIMESTAMP).stringValue()));
+        // Use the near-real-time searcher instead of opening a new reader on the index directory
+        ReferenceManager<IndexSearcher> searcherManager = getSearcherManager();
+        searcherManager.maybeRefreshBlocking();
+        IndexSearcher indexSearcher = searcherManager.acquire();
+        try {
+            // Prepare query for the annotation document for this annotation document
+            Term term = new Term(FIELD_ID,
+                    String.format("%d/%d", aDocument.getDocument().getId(), aDocument.getId()));
+            
+            TermQuery query = new TermQuery(term);
+    
+            // Do query
+            TopDocs docs = indexSearcher.search(query, 1);
+    
+            if (docs.scoreDocs.length > 0) {
+                // If there are results, retrieve first document, since all results should come
+                // from the same document
+                Document document = indexSearcher.doc(docs.scoreDocs[0].doc);
+    
+                // Retrieve the timestamp field if it exists
+                if (document.getField(FIELD_TIMESTAMP) != null) {
+                    result = Optional.ofNullable(StringUtils
+                            .trimToNull(document.getField(FIELD_TIMESTAMP).stringValue()));
+                }
             }
         }
+        finally {
+            searcherManager.release(indexSearcher);
+        }
         
         return result;
     }
@@ -1095,6 +1363,11 @@ public class MtasDocumentIndex
     {
         return OPEN_INDEXES.get(aProjectId);
     }
+    
+    public static List<AnnotationFeature> getRebuildFeaturesToIndex(long aProjectId)
+    {
+        return REBUILD_FEATURES.get(aProjectId);
+    }
 
     @Override
     public String toString()
@@ -1103,6 +1376,161 @@ public class MtasDocumentIndex
                 .append("path", getIndexDir()).toString();
     }
     
+    /**
+     * Builds a new index in a separate directory. Lucene index writers are thread-safe, so
+     * documents may be added concurrently.
+     */
+    private class Rebuild
+        implements PhysicalIndexBuilder
+    {
+        private final File dir;
+        private final IndexWriter indexWriter;
+        private final int indexVersion;
+        private final Set<String> deletedIds = ConcurrentHashMap.newKeySet();
+        private boolean committed;
+        
+        public Rebuild(File aDir, IndexWriter aIndexWriter, int aIndexVersion)
+        {
+            dir = aDir;
+            indexWriter = aIndexWriter;
+            indexVersion = aIndexVersion;
+        }
+        
+        @Override
+        public void indexDocument(SourceDocument aDocument, byte[] aBinaryCas) throws IOException
+        {
+            MtasDocumentIndex.this.indexDocument(indexWriter, indexVersion, aDocument.getName(),
+                    aDocument.getId(), -1, "", aBinaryCas);
+            dropIfDeleted(aDocument.getId(), -1);
+        }
+        
+        @Override
+        public void indexDocument(AnnotationDocument aDocument, byte[] aBinaryCas)
+            throws IOException
+        {
+            MtasDocumentIndex.this.indexDocument(indexWriter, indexVersion, aDocument.getName(),
+                    aDocument.getDocument().getId(), aDocument.getId(), aDocument.getUser(),
+                    aBinaryCas);
+            dropIfDeleted(aDocument.getDocument().getId(), aDocument.getId());
+        }
+        
+        /**
+         * Removes a document which has been deleted while the index is being rebuilt. The
+         * identifier is recorded before the document is deleted, so a document which is added
+         * concurrently from a CAS that was read before the deletion is removed again afterwards.
+         */
+        private void deleteDocument(Term aTerm) throws IOException
+        {
+            deletedIds.add(aTerm.text());
+            indexWriter.deleteDocuments(aTerm);
+        }
+        
+        private void dropIfDeleted(long aSourceDocumentId, long aAnnotationDocumentId)
+            throws IOException
+        {
+            String id = String.format("%d/%d", aSourceDocumentId, aAnnotationDocumentId);
+            if (deletedIds.contains(id)) {
+                indexWriter.deleteDocuments(new Term(FIELD_ID, id));
+            }
+        }
+        
+        @Override
+        public void commit() throws IOException
+        {
+            replaceWith(this);
+            committed = true;
+        }
+        
+        @Override
+        public void close() throws IOException
+        {
+            synchronized (MtasDocumentIndex.this) {
+                _rebuild = null;
+                REBUILD_FEATURES.remove(project.getId());
+                
+                if (!committed) {
+                    log.debug("Discarding rebuilt index for project [{}]({})", project.getName(),
+                            project.getId());
+                    if (indexWriter.isOpen()) {
+                        indexWriter.rollback();
+                    }
+                    deleteDirectory(dir);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Reads the identifiers, user and title of the indexed documents in a segment while iterating
+     * over search hits. The documents must be read in increasing order. They are read from the doc
+     * values if available. Documents added to an index in an older format do not have doc values,
+     * so their stored fields are loaded instead.
+     */
+    private static class HitDocumentReader
+    {
+        private static final Set<String> STORED_FIELDS = Stream
+                .of(FIELD_SOURCE_DOCUMENT_ID, FIELD_ANNOTATION_DOCUMENT_ID, FIELD_TITLE, FIELD_USER)
+                .collect(Collectors.toSet());
+        
+        private final LeafReader reader;
+        private final NumericDocValues sourceDocumentIds;
+        private final NumericDocValues annotationDocumentIds;
+        private final SortedDocValues titles;
+        private final SortedDocValues users;
+        
+        private long sourceDocumentId;
+        private long annotationDocumentId;
+        private String title;
+        private String user;
+        
+        public HitDocumentReader(LeafReader aReader) throws IOException
+        {
+            reader = aReader;
+            sourceDocumentIds = aReader.getNumericDocValues(FIELD_SOURCE_DOCUMENT_ID);
+            annotationDocumentIds = aReader.getNumericDocValues(FIELD_ANNOTATION_DOCUMENT_ID);
+            titles = aReader.getSortedDocValues(FIELD_TITLE);
+            users = aReader.getSortedDocValues(FIELD_USER);
+        }
+        
+        /**
+         * @return whether the document has source and annotation document identifiers.
+         */
+        public boolean read(int aDocId) throws IOException
+        {
+            if (sourceDocumentIds != null && annotationDocumentIds != null
+                    && sourceDocumentIds.advanceExact(aDocId)
+                    && annotationDocumentIds.advanceExact(aDocId)) {
+                sourceDocumentId = sourceDocumentIds.longValue();
+                annotationDocumentId = annotationDocumentIds.longValue();
+                title = lookup(titles, aDocId);
+                user = lookup(users, aDocId);
+                return true;
+            }
+            
+            Document document = reader.document(aDocId, STORED_FIELDS);
+            String rawSourceDocumentId = document.get(FIELD_SOURCE_DOCUMENT_ID);
+            String rawAnnotationDocumentId = document.get(FIELD_ANNOTATION_DOCUMENT_ID);
+            if (rawSourceDocumentId == null || rawAnnotationDocumentId == null) {
+                return false;
+            }
+            
+            sourceDocumentId = Long.valueOf(rawSourceDocumentId);
+            annotationDocumentId = Long.valueOf(rawAnnotationDocumentId);
+            title = document.get(FIELD_TITLE);
+            user = document.get(FIELD_USER);
+            return true;
+        }
+        
+        private static String lookup(SortedDocValues aValues, int aDocId) throws IOException
+        {
+            if (aValues == null || !aValues.advanceExact(aDocId)) {
+                return null;
+            }
+            
+            return aValues.binaryValue().utf8ToString();
+        }
+    }
+    
     @FunctionalInterface
     private interface QueryRunner<T>
     {
@@ -17,6 +17,11 @@
  */
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
@@ -28,6 +33,8 @@ import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactoryImplBase;
 import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexAutoConfiguration;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexProperties;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexPropertiesImpl;
 
 /**
  * Support for MTAS-based internal search.
@@ -38,24 +45,52 @@ import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexAu
  */
 public class MtasDocumentIndexFactory
     extends PhysicalIndexFactoryImplBase
+    implements DisposableBean
 {
     private final AnnotationSchemaService schemaService;
     private final DocumentService documentService;
     private final RepositoryProperties repositoryProperties;
     private final FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
     private final FeatureSupportRegistry featureSupportRegistry;
+    private final MtasDocumentIndexProperties properties;
+    
+    // Commits changes to the indexes of all projects
+    private final ScheduledExecutorService commitScheduler;
     
-    @Autowired
     public MtasDocumentIndexFactory(AnnotationSchemaService aSchemaService,
             DocumentService aDocumentService, RepositoryProperties aRepositoryProperties,
             FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
             FeatureSupportRegistry aFeatureSupportRegistry)
+    {
+        this(aSchemaService, aDocumentService, aRepositoryProperties,
+                aFeatureIndexingSupportRegistry, aFeatureSupportRegistry,
+                new MtasDocumentIndexPropertiesImpl());
+    }
+    
+    @Autowired
+    public MtasDocumentIndexFactory(AnnotationSchemaService aSchemaService,
+            DocumentService aDocumentService, RepositoryProperties aRepositoryProperties,
+            FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
+            FeatureSupportRegistry aFeatureSupportRegistry, MtasDocumentIndexProperties aProperties)
     {
         schemaService = aSchemaService;
         documentService = aDocumentService;
         repositoryProperties = aRepositoryProperties;
         featureIndexingSupportRegistry = aFeatureIndexingSupportRegistry;
         featureSupportRegistry = aFeatureSupportRegistry;
+        properties = aProperties;
+        
+        commitScheduler = Executors.newSingleThreadScheduledExecutor(
+                new BasicThreadFactory.Builder()
+                        .namingPattern("mtas-index-commit-%d")
+                        .daemon(true)
+                        .build());
+    }
+    
+    @Override
+    public void destroy()
+    {
+        commitScheduler.shutdown();
     }
 
     @Override
@@ -69,6 +104,6 @@ public class MtasDocumentIndexFactory
     {
         return new MtasDocumentIndex(aProject, documentService, schemaService,
                 repositoryProperties.getPath().getAbsolutePath(), featureIndexingSupportRegistry,
-                featureSupportRegistry);
+                featureSupportRegistry, properties, commitScheduler);
     }
 }
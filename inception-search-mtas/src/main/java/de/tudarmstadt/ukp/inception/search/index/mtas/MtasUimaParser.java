@@ -22,10 +22,8 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUt
 import static de.tudarmstadt.ukp.clarin.webanno.api.annotation.util.WebAnnoCasUtil.getRealCas;
 import static de.tudarmstadt.ukp.clarin.webanno.api.casstorage.CasAccessMode.EXCLUSIVE_WRITE_ACCESS;
 import static de.tudarmstadt.ukp.inception.search.FeatureIndexingSupport.SPECIAL_SEP;
-import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.charsToBytes;
 import static de.tudarmstadt.ukp.inception.search.index.mtas.MtasUtils.encodeFSAddress;
 import static mtas.analysis.util.MtasTokenizerFactory.ARGUMENT_PARSER_ARGS;
-import static org.apache.commons.io.IOUtils.toCharArray;
 import static org.apache.uima.fit.util.CasUtil.getType;
 import static org.apache.uima.fit.util.CasUtil.select;
 import static org.apache.uima.fit.util.CasUtil.selectAll;
@@ -95,6 +93,7 @@ public class MtasUimaParser
     private static final int OVERSIZED_ANNOTATION_LIMIT = 30000;
 
     public static final String PARAM_PROJECT_ID = "projectId";
+    public static final String PARAM_REBUILD = "rebuild";
     
     public static final String MTAS_TOKEN_LABEL = "Token";
     public static final String MTAS_SENTENCE_LABEL = "s";
@@ -104,6 +103,13 @@ public class MtasUimaParser
     
     private static final String CAS_BEING_INDEXED = "casBeingIndexed";
     
+    /**
+     * Binary CAS handed over from {@link MtasDocumentIndex} to the parser. Lucene analyses a
+     * document on the thread which adds it to the index, so the CAS can be passed directly instead
+     * of encoding it into the text of the content field and decoding it again here.
+     */
+    private static final ThreadLocal<byte[]> BINARY_CAS_HANDOFF = new ThreadLocal<>();
+    
     // Annotation schema and project services with knowledge base service
     private @Autowired AnnotationSchemaService annotationSchemaService;
     private @Autowired FeatureIndexingSupportRegistry featureIndexingSupportRegistry;
@@ -126,11 +132,20 @@ public class MtasUimaParser
         
         JSONObject jsonParserConfiguration = new JSONObject(
                 config.attributes.get(ARGUMENT_PARSER_ARGS));
-        MtasDocumentIndex index = MtasDocumentIndex
-                .getIndex(jsonParserConfiguration.getLong(PARAM_PROJECT_ID));
+        long projectId = jsonParserConfiguration.getLong(PARAM_PROJECT_ID);
+        
+        // When the index is rebuilt, the new index may use a different layer configuration than
+        // the current index
+        List<AnnotationFeature> featuresToIndex;
+        if (jsonParserConfiguration.optBoolean(PARAM_REBUILD, false)) {
+            featuresToIndex = MtasDocumentIndex.getRebuildFeaturesToIndex(projectId);
+        }
+        else {
+            featuresToIndex = MtasDocumentIndex.getIndex(projectId).getFeaturesToIndex();
+        }
 
         // Initialize and populate the hash maps for the layers and features
-        for (AnnotationFeature feature : index.getFeaturesToIndex()) {
+        for (AnnotationFeature feature : featuresToIndex) {
             layers.put(feature.getLayer().getName(), feature.getLayer());
             layerFeatures
                     .computeIfAbsent(feature.getLayer().getName(), key -> new ArrayList<>())
@@ -157,6 +172,16 @@ public class MtasUimaParser
         }
     }
     
+    /**
+     * Creates the token collection for the CAS which has been {@link #handOff handed off} on the
+     * current thread.
+     * 
+     * @param aReader
+     *            the content of the field being analyzed. This is ignored - the field is always
+     *            empty and the CAS is taken from the handoff instead.
+     * @throws IllegalStateException
+     *             if no CAS has been handed off on the current thread.
+     */
     @Override
     public MtasTokenCollection createTokenCollection(Reader aReader)
         throws MtasParserException, MtasConfigException
@@ -165,9 +190,17 @@ public class MtasUimaParser
             long start = System.currentTimeMillis();
             LOG.debug("Starting creation of token collection");
     
+            // The field content is empty - the CAS to be indexed must have been handed off
+            byte[] binaryCas = BINARY_CAS_HANDOFF.get();
+            BINARY_CAS_HANDOFF.remove();
+            if (binaryCas == null) {
+                throw new IllegalStateException(
+                        "No CAS has been handed off to the parser on the current thread");
+            }
+    
             CAS cas;
             try {
-                cas = readCas(aReader);
+                cas = readCas(binaryCas);
                 session.add(CAS_BEING_INDEXED, EXCLUSIVE_WRITE_ACCESS, cas);
             }
             catch (Exception e) {
@@ -188,17 +221,33 @@ public class MtasUimaParser
         }
     }
     
-    private CAS readCas(Reader aReader) throws UIMAException, IOException, SAXException
+    /**
+     * Hands the given binary CAS over to the next parser invoked on the current thread. The
+     * content of the field being analyzed is ignored by that parser - without a hand-off, the
+     * parser fails. Callers must invoke {@link #clearHandOff()} when the document has been added
+     * to the index.
+     */
+    static void handOff(byte[] aBinaryCas)
+    {
+        BINARY_CAS_HANDOFF.set(aBinaryCas);
+    }
+    
+    static void clearHandOff()
+    {
+        BINARY_CAS_HANDOFF.remove();
+    }
+    
+    private CAS readCas(byte[] aBinaryCas) throws UIMAException, IOException, SAXException
     {
         CAS cas = createCas();
 
-        try (InputStream in = new ByteArrayInputStream(charsToBytes(toCharArray(aReader)))) {
+        try (InputStream in = new ByteArrayInputStream(aBinaryCas)) {
             CasIOUtils.load(in, getRealCas(cas));
         }
         
         return cas;
     }
-
+    
     public MtasTokenCollection createTokenCollection(CAS aJCas)
     {
         // Initialize state
@@ -216,13 +265,21 @@ public class MtasUimaParser
             tokenNum++;
         }
         
-        // Loop over the annotations
-        for (AnnotationFS annotation : selectAll(aJCas)) {
-            // MTAS cannot index zero-width annotations, so we skip them here.
-            if (annotation.getBegin() == annotation.getEnd()) {
-                continue;
+        try {
+            // Loop over the annotations
+            for (AnnotationFS annotation : selectAll(aJCas)) {
+                // MTAS cannot index zero-width annotations, so we skip them here.
+                if (annotation.getBegin() == annotation.getEnd()) {
+                    continue;
+                }
+                mtasId = indexAnnotation(tokenCollection, annotation, mtasId);
             }
-            mtasId = indexAnnotation(tokenCollection, annotation, mtasId);
+        }
+        finally {
+            // Only retain the tokens - the indexes refer to the CAS which should not be kept
+            // alive by the parser once the token collection has been created
+            tokenBeginIndex = null;
+            tokenEndIndex = null;
         }
         
         return tokenCollection;
@@ -19,6 +19,7 @@ package de.tudarmstadt.ukp.inception.search.index.mtas.config;
 
 import org.springframework.boot.autoconfigure.AutoConfigureAfter;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 
 import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
@@ -32,15 +33,17 @@ import de.tudarmstadt.ukp.inception.search.index.mtas.MtasDocumentIndexFactory;
 
 @AutoConfigureAfter(SearchServiceAutoConfiguration.class)
 @ConditionalOnBean(PhysicalIndexRegistry.class)
+@EnableConfigurationProperties(MtasDocumentIndexPropertiesImpl.class)
 public class MtasDocumentIndexAutoConfiguration
 {
     @Bean
     public MtasDocumentIndexFactory mtasDocumentIndexFactory(AnnotationSchemaService aSchemaService,
             DocumentService aDocumentService, RepositoryProperties aRepositoryProperties,
             FeatureIndexingSupportRegistry aFeatureIndexingSupportRegistry,
-            FeatureSupportRegistry aFeatureSupportRegistry)
+            FeatureSupportRegistry aFeatureSupportRegistry,
+            MtasDocumentIndexProperties aProperties)
     {
         return new MtasDocumentIndexFactory(aSchemaService, aDocumentService, aRepositoryProperties,
-                aFeatureIndexingSupportRegistry, aFeatureSupportRegistry);
+                aFeatureIndexingSupportRegistry, aFeatureSupportRegistry, aProperties);
     }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas.config;
+
+import java.time.Duration;
+
+public interface MtasDocumentIndexProperties
+{
+    enum DirectoryType
+    {
+        /**
+         * Let Lucene choose the best directory implementation for the platform.
+         */
+        FS,
+        
+        /**
+         * Access the index files via memory mapping.
+         */
+        MMAP,
+        
+        /**
+         * Access the index files via NIO file channels.
+         */
+        NIO
+    }
+    
+    /**
+     * @return amount of RAM in MB used for buffering added documents before they are flushed to
+     *         the index directory.
+     */
+    double getRamBufferSize();
+
+    /**
+     * @return maximum size in MB of segments produced by regular merges.
+     */
+    double getMaxMergedSegmentSize();
+
+    /**
+     * @return number of segments allowed per tier before they are merged.
+     */
+    double getSegmentsPerTier();
+
+    /**
+     * @return maximum number of threads running merges per index or {@code -1} to let Lucene
+     *         decide based on the hardware.
+     */
+    int getMaxMergeThreads();
+
+    DirectoryType getDirectory();
+
+    /**
+     * @return whether small newly flushed segments are cached in RAM until they are committed.
+     *         This speeds up near-real-time searches after frequent small updates.
+     */
+    boolean isNrtCaching();
+
+    /**
+     * @return maximum size in MB of a newly flushed or merged segment to be cached in RAM.
+     */
+    double getNrtCachingMaxMergeSize();
+
+    /**
+     * @return maximum amount of RAM in MB used for caching segments per index.
+     */
+    double getNrtCachingMaxCachedSize();
+
+    /**
+     * @return maximum time changes to an index remain uncommitted.
+     */
+    Duration getCommitDelay();
+
+    /**
+     * @return number of changes to an index which trigger a commit before the
+     *         {@link #getCommitDelay() commit delay} has passed.
+     */
+    int getCommitThreshold();
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas.config;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.convert.DurationUnit;
+
+@ConfigurationProperties("search.mtas")
+public class MtasDocumentIndexPropertiesImpl
+    implements MtasDocumentIndexProperties
+{
+    private double ramBufferSize = 16.0;
+    private double maxMergedSegmentSize = 5 * 1024.0;
+    private double segmentsPerTier = 10.0;
+    private int maxMergeThreads = -1;
+    private DirectoryType directory = DirectoryType.FS;
+    private boolean nrtCaching = false;
+    private double nrtCachingMaxMergeSize = 5.0;
+    private double nrtCachingMaxCachedSize = 60.0;
+    @DurationUnit(ChronoUnit.SECONDS)
+    private Duration commitDelay = Duration.ofSeconds(3);
+    private int commitThreshold = 1000;
+
+    @Override
+    public double getRamBufferSize()
+    {
+        return ramBufferSize;
+    }
+
+    public void setRamBufferSize(double aRamBufferSize)
+    {
+        ramBufferSize = aRamBufferSize;
+    }
+
+    @Override
+    public double getMaxMergedSegmentSize()
+    {
+        return maxMergedSegmentSize;
+    }
+
+    public void setMaxMergedSegmentSize(double aMaxMergedSegmentSize)
+    {
+        maxMergedSegmentSize = aMaxMergedSegmentSize;
+    }
+
+    @Override
+    public double getSegmentsPerTier()
+    {
+        return segmentsPerTier;
+    }
+
+    public void setSegmentsPerTier(double aSegmentsPerTier)
+    {
+        segmentsPerTier = aSegmentsPerTier;
+    }
+
+    @Override
+    public int getMaxMergeThreads()
+    {
+        return maxMergeThreads;
+    }
+
+    public void setMaxMergeThreads(int aMaxMergeThreads)
+    {
+        maxMergeThreads = aMaxMergeThreads;
+    }
+
+    @Override
+    public DirectoryType getDirectory()
+    {
+        return directory;
+    }
+
+    public void setDirectory(DirectoryType aDirectory)
+    {
+        directory = aDirectory;
+    }
+
+    @Override
+    public boolean isNrtCaching()
+    {
+        return nrtCaching;
+    }
+
+    public void setNrtCaching(boolean aNrtCaching)
+    {
+        nrtCaching = aNrtCaching;
+    }
+
+    @Override
+    public double getNrtCachingMaxMergeSize()
+    {
+        return nrtCachingMaxMergeSize;
+    }
+
+    public void setNrtCachingMaxMergeSize(double aNrtCachingMaxMergeSize)
+    {
+        nrtCachingMaxMergeSize = aNrtCachingMaxMergeSize;
+    }
+
+    @Override
+    public double getNrtCachingMaxCachedSize()
+    {
+        return nrtCachingMaxCachedSize;
+    }
+
+    public void setNrtCachingMaxCachedSize(double aNrtCachingMaxCachedSize)
+    {
+        nrtCachingMaxCachedSize = aNrtCachingMaxCachedSize;
+    }
+
+    @Override
+    public Duration getCommitDelay()
+    {
+        return commitDelay;
+    }
+
+    public void setCommitDelay(Duration aCommitDelay)
+    {
+        commitDelay = aCommitDelay;
+    }
+
+    @Override
+    public int getCommitThreshold()
+    {
+        return commitThreshold;
+    }
+
+    public void setCommitThreshold(int aCommitThreshold)
+    {
+        commitThreshold = aCommitThreshold;
+    }
+}
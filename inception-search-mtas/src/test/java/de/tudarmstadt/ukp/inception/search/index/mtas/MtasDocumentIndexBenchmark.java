@@ -0,0 +1,248 @@
+/*
+ * Copyright 2020
+ * Ubiquitous Knowledge Processing (UKP) Lab
+ * Technische Universität Darmstadt
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.tudarmstadt.ukp.inception.search.index.mtas;
+
+import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static org.apache.commons.io.FileUtils.deleteDirectory;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.support.GenericApplicationContext;
+
+import de.tudarmstadt.ukp.clarin.webanno.api.AnnotationSchemaService;
+import de.tudarmstadt.ukp.clarin.webanno.api.DocumentService;
+import de.tudarmstadt.ukp.clarin.webanno.api.RepositoryProperties;
+import de.tudarmstadt.ukp.clarin.webanno.api.annotation.feature.FeatureSupportRegistry;
+import de.tudarmstadt.ukp.clarin.webanno.model.Project;
+import de.tudarmstadt.ukp.clarin.webanno.model.SourceDocument;
+import de.tudarmstadt.ukp.clarin.webanno.security.model.User;
+import de.tudarmstadt.ukp.clarin.webanno.support.ApplicationContextProvider;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import de.tudarmstadt.ukp.inception.search.FeatureIndexingSupportRegistry;
+import de.tudarmstadt.ukp.inception.search.SearchQueryRequest;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndex;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexProperties.DirectoryType;
+import de.tudarmstadt.ukp.inception.search.index.mtas.config.MtasDocumentIndexPropertiesImpl;
+
+/**
+ * Measures the indexing and near-real-time search throughput of the MTAS index on a synthetic
+ * corpus of tokenized documents for different index writer configurations:
+ * <ul>
+ * <li>{@code indexCorpus} - adding all {@value #CORPUS_SIZE} documents of the corpus</li>
+ * <li>{@code indexAndQuery} - adding a single document and running a query which has to see
+ * it, i.e. the latency of committing and refreshing the searcher</li>
+ * </ul>
+ * <p>
+ * This is not a unit test. Run it via the {@link #main} method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MtasDocumentIndexBenchmark
+{
+    private static final int CORPUS_SIZE = 100;
+    private static final int DOCUMENT_TOKENS = 1_000;
+    private static final int SENTENCE_TOKENS = 20;
+    private static final int VOCABULARY_SIZE = 1_000;
+
+    @Param({ "FS", "MMAP", "NIO" })
+    public DirectoryType directory;
+
+    @Param({ "false", "true" })
+    public boolean nrtCaching;
+
+    @Param({ "16", "64" })
+    public double ramBufferSize;
+
+    private File repositoryDir;
+    private GenericApplicationContext context;
+    private MtasDocumentIndexFactory factory;
+    private PhysicalIndex sut;
+    private Project project;
+    private User user;
+    private List<SourceDocument> documents;
+    private List<byte[]> casses;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception
+    {
+        // The parser obtains its dependencies from the application context
+        AnnotationSchemaService schemaService = mock(AnnotationSchemaService.class);
+        when(schemaService.listAnnotationFeature(any(Project.class))).thenReturn(emptyList());
+        FeatureIndexingSupportRegistry featureIndexingSupportRegistry = mock(
+                FeatureIndexingSupportRegistry.class);
+        
+        context = new GenericApplicationContext();
+        context.registerBean(AnnotationSchemaService.class, () -> schemaService);
+        context.registerBean(FeatureIndexingSupportRegistry.class,
+                () -> featureIndexingSupportRegistry);
+        context.refresh();
+        new ApplicationContextProvider().setApplicationContext(context);
+        
+        DocumentService documentService = mock(DocumentService.class);
+        when(documentService.listAnnotatableDocuments(any(), any())).thenReturn(emptyMap());
+        
+        repositoryDir = Files.createTempDirectory("mtas-benchmark").toFile();
+        RepositoryProperties repositoryProperties = new RepositoryProperties();
+        repositoryProperties.setPath(repositoryDir);
+        
+        MtasDocumentIndexPropertiesImpl properties = new MtasDocumentIndexPropertiesImpl();
+        properties.setDirectory(directory);
+        properties.setNrtCaching(nrtCaching);
+        properties.setRamBufferSize(ramBufferSize);
+        
+        factory = new MtasDocumentIndexFactory(schemaService, documentService,
+                repositoryProperties, featureIndexingSupportRegistry,
+                mock(FeatureSupportRegistry.class), properties);
+        
+        project = new Project();
+        project.setId(1L);
+        project.setName("benchmark");
+        user = new User("admin");
+        
+        generateDocuments();
+    }
+    
+    @Setup(Level.Iteration)
+    public void openIndex()
+    {
+        sut = factory.getPhysicalIndex(project);
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteIndex() throws Exception
+    {
+        sut.delete();
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception
+    {
+        factory.destroy();
+        context.close();
+        deleteDirectory(repositoryDir);
+    }
+
+    @Benchmark
+    public void indexCorpus() throws Exception
+    {
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            sut.indexDocument(documents.get(i), casses.get(i));
+        }
+    }
+
+    @Benchmark
+    public long indexAndQuery() throws Exception
+    {
+        int i = next++ % CORPUS_SIZE;
+        sut.indexDocument(documents.get(i), casses.get(i));
+        return sut.numberOfQueryResults(new SearchQueryRequest(project, user, "[]",
+                documents.get(i)));
+    }
+
+    private void generateDocuments() throws Exception
+    {
+        Random rnd = new Random(42);
+        List<String> vocabulary = new ArrayList<>();
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 2 + rnd.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + rnd.nextInt(26)));
+            }
+            vocabulary.add(word.toString());
+        }
+
+        documents = new ArrayList<>();
+        casses = new ArrayList<>();
+        JCas jcas = JCasFactory.createJCas();
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            jcas.reset();
+            
+            StringBuilder text = new StringBuilder();
+            int[] tokenBegins = new int[DOCUMENT_TOKENS];
+            int[] tokenEnds = new int[DOCUMENT_TOKENS];
+            for (int t = 0; t < DOCUMENT_TOKENS; t++) {
+                if (t > 0) {
+                    text.append(' ');
+                }
+                tokenBegins[t] = text.length();
+                text.append(vocabulary.get(rnd.nextInt(VOCABULARY_SIZE)));
+                tokenEnds[t] = text.length();
+            }
+            jcas.setDocumentText(text.toString());
+            
+            for (int t = 0; t < DOCUMENT_TOKENS; t++) {
+                new Token(jcas, tokenBegins[t], tokenEnds[t]).addToIndexes();
+            }
+            for (int t = 0; t < DOCUMENT_TOKENS; t += SENTENCE_TOKENS) {
+                int last = Math.min(t + SENTENCE_TOKENS, DOCUMENT_TOKENS) - 1;
+                new Sentence(jcas, tokenBegins[t], tokenEnds[last]).addToIndexes();
+            }
+            
+            SourceDocument document = new SourceDocument();
+            document.setId((long) i);
+            document.setName("document" + i);
+            document.setProject(project);
+            
+            documents.add(document);
+            casses.add(casToByteArray(jcas.getCas()));
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        new Runner(new OptionsBuilder()
+                .include(MtasDocumentIndexBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -17,19 +17,26 @@
  */
 package de.tudarmstadt.ukp.inception.search.index.mtas;
 
+import static de.tudarmstadt.ukp.clarin.webanno.api.ProjectService.PROJECT_FOLDER;
+import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Arrays.asList;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.awaitility.Awaitility.await;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 
 import javax.persistence.EntityManager;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.uima.fit.factory.JCasBuilder;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.jcas.JCas;
@@ -109,6 +116,7 @@ import de.tudarmstadt.ukp.inception.search.PrimitiveUimaIndexingSupport;
 import de.tudarmstadt.ukp.inception.search.SearchResult;
 import de.tudarmstadt.ukp.inception.search.SearchService;
 import de.tudarmstadt.ukp.inception.search.SearchServiceImpl;
+import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexBuilder;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexFactory;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistry;
 import de.tudarmstadt.ukp.inception.search.index.PhysicalIndexRegistryImpl;
@@ -134,6 +142,7 @@ public class MtasDocumentIndexTest
     private @Autowired ProjectService projectService;
     private @Autowired DocumentService documentService;
     private @Autowired SearchService searchService;
+    private @Autowired RepositoryProperties repositoryProperties;
     
     @Rule
     public TestWatcher watcher = new TestWatcher()
@@ -482,6 +491,178 @@ public class MtasDocumentIndexTest
                 .containsExactly(expectedResult);
     }
 
+    @Test
+    public void thatIndexInOldFormatIsUsedUntilItHasBeenRebuilt() throws Exception
+    {
+        Project project = new Project();
+        project.setName("IndexInOldFormat");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        String fileContent = "The capital of Galicia is Santiago de Compostela.";
+
+        // Create the index in the initial format which does not contain any doc values
+        MtasDocumentIndex.setNewIndexVersion(1);
+        try {
+            uploadDocument(Pair.of(sourceDocument, fileContent));
+        }
+        finally {
+            MtasDocumentIndex.setNewIndexVersion(MtasDocumentIndex.INDEX_VERSION);
+        }
+        
+        assertThat(readIndexVersion(project)).isEqualTo(1);
+
+        User user = userRepository.get("admin");
+
+        // Hits in the old index are resolved from the stored fields. The query also schedules
+        // the index to be rebuilt in the current format.
+        assertThat(searchService.query(user, project, "Galicia"))
+                .extracting(SearchResult::getDocumentId, SearchResult::getDocumentTitle,
+                        SearchResult::getText)
+                .containsExactly(tuple(sourceDocument.getId(), "Raw text document", "Galicia"));
+
+        await("Waiting for the index to be rebuilt")
+                .atMost(60, SECONDS)
+                .pollInterval(1, SECONDS)
+                .ignoreExceptions()
+                .until(() -> readIndexVersion(project) == MtasDocumentIndex.INDEX_VERSION
+                        && !searchService.isIndexInProgress(project));
+        
+        // Hits in the rebuilt index are resolved from the doc values
+        assertThat(searchService.query(user, project, "Galicia"))
+                .extracting(SearchResult::getDocumentId, SearchResult::getDocumentTitle,
+                        SearchResult::getText)
+                .containsExactly(tuple(sourceDocument.getId(), "Raw text document", "Galicia"));
+    }
+    
+    @Test
+    public void thatIndexCanBeQueriedAndDocumentsRemovedWhileItIsRebuilt() throws Exception
+    {
+        Project project = new Project();
+        project.setName("QueryAndRemoveDuringRebuild");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument galicia = new SourceDocument();
+        galicia.setName("Galicia");
+        galicia.setProject(project);
+        galicia.setFormat("text");
+
+        SourceDocument portugal = new SourceDocument();
+        portugal.setName("Portugal");
+        portugal.setProject(project);
+        portugal.setFormat("text");
+
+        uploadDocument(Pair.of(galicia, "The capital of Galicia is Santiago de Compostela."),
+                Pair.of(portugal, "The capital of Portugal is Lisbon."));
+
+        User user = userRepository.get("admin");
+
+        assertThat(searchService.query(user, project, "capital"))
+                .extracting(SearchResult::getDocumentTitle)
+                .containsExactlyInAnyOrder("Galicia", "Portugal");
+
+        MtasDocumentIndex index = MtasDocumentIndex.getIndex(project.getId());
+        byte[] galiciaCas = readInitialCas(galicia);
+        byte[] portugalCas = readInitialCas(portugal);
+
+        try (PhysicalIndexBuilder builder = index.rebuild()) {
+            builder.indexDocument(galicia, galiciaCas);
+
+            // The current index continues serving queries while the new one is built
+            assertThat(searchService.query(user, project, "capital"))
+                    .extracting(SearchResult::getDocumentTitle)
+                    .containsExactlyInAnyOrder("Galicia", "Portugal");
+
+            try (CasStorageSession session = CasStorageSession.open()) {
+                documentService.removeSourceDocument(portugal);
+            }
+
+            assertThat(searchService.query(user, project, "capital"))
+                    .extracting(SearchResult::getDocumentTitle)
+                    .containsExactly("Galicia");
+
+            // A unit which read the CAS before the document was removed must not bring the
+            // document back into the new index
+            builder.indexDocument(portugal, portugalCas);
+
+            builder.commit();
+        }
+
+        assertThat(searchService.query(user, project, "capital"))
+                .extracting(SearchResult::getDocumentTitle)
+                .containsExactly("Galicia");
+    }
+
+    @Test
+    public void thatFailedRebuildIsDiscarded() throws Exception
+    {
+        Project project = new Project();
+        project.setName("FailedRebuild");
+        project.setMode(WebAnnoConst.PROJECT_TYPE_ANNOTATION);
+
+        createProject(project);
+
+        SourceDocument sourceDocument = new SourceDocument();
+        sourceDocument.setName("Raw text document");
+        sourceDocument.setProject(project);
+        sourceDocument.setFormat("text");
+
+        uploadDocument(Pair.of(sourceDocument,
+                "The capital of Galicia is Santiago de Compostela."));
+
+        User user = userRepository.get("admin");
+
+        assertThat(searchService.query(user, project, "Galicia")).hasSize(1);
+
+        MtasDocumentIndex index = MtasDocumentIndex.getIndex(project.getId());
+        File rebuildDir = new File(getIndexDir(project).getPath() + ".rebuild");
+
+        // Closing the builder without committing it discards the partially built index
+        try (PhysicalIndexBuilder builder = index.rebuild()) {
+            assertThat(rebuildDir).isDirectory();
+        }
+
+        assertThat(rebuildDir).doesNotExist();
+        assertThat(searchService.query(user, project, "Galicia")).hasSize(1);
+
+        // A new rebuild can be started after the failed one
+        try (PhysicalIndexBuilder builder = index.rebuild()) {
+            builder.indexDocument(sourceDocument, readInitialCas(sourceDocument));
+            builder.commit();
+        }
+
+        assertThat(rebuildDir).doesNotExist();
+        assertThat(searchService.query(user, project, "Galicia")).hasSize(1);
+    }
+
+    private byte[] readInitialCas(SourceDocument aDocument) throws IOException
+    {
+        try (CasStorageSession session = CasStorageSession.open()) {
+            return casToByteArray(documentService.createOrReadInitialCas(aDocument));
+        }
+    }
+
+    private File getIndexDir(Project aProject)
+    {
+        return new File(repositoryProperties.getPath(),
+                "/" + PROJECT_FOLDER + "/" + aProject.getId() + "/indexMtas");
+    }
+    
+    private int readIndexVersion(Project aProject) throws IOException
+    {
+        try (Directory directory = FSDirectory.open(getIndexDir(aProject).toPath())) {
+            return MtasDocumentIndex.readIndexVersion(directory);
+        }
+    }
+
     @Configuration
     public static class TestContext
     {
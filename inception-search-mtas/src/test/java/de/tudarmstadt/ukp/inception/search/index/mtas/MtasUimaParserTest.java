@@ -24,13 +24,16 @@ import static de.tudarmstadt.ukp.clarin.webanno.api.WebAnnoConst.SPAN_TYPE;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.SINGLE_TOKEN;
 import static de.tudarmstadt.ukp.clarin.webanno.model.AnchoringMode.TOKENS;
 import static de.tudarmstadt.ukp.clarin.webanno.model.OverlapMode.NO_OVERLAP;
+import static de.tudarmstadt.ukp.inception.search.SearchCasUtils.casToByteArray;
 import static java.util.Arrays.asList;
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -135,6 +138,43 @@ public class MtasUimaParserTest
                         "This is a test .", "This is sentence two .");
     }
     
+    @Test
+    public void thatHandedOffCasIsParsedInsteadOfFieldContent() throws Exception
+    {
+        TokenBuilder<Token, Sentence> builder = TokenBuilder.create(Token.class, Sentence.class);
+        builder.buildTokens(jcas, "This is a test .");
+
+        MtasUimaParser sut = new MtasUimaParser(asList(), annotationSchemaService,
+                featureIndexingSupportRegistry);
+        
+        MtasTokenCollection tc;
+        MtasUimaParser.handOff(casToByteArray(jcas.getCas()));
+        try {
+            tc = sut.createTokenCollection(new StringReader(""));
+        }
+        finally {
+            MtasUimaParser.clearHandOff();
+        }
+        
+        List<MtasToken> tokens = new ArrayList<>();
+        tc.iterator().forEachRemaining(tokens::add);
+        
+        assertThat(tokens)
+                .filteredOn(t -> "Token".equals(t.getPrefix()))
+                .extracting(MtasToken::getPostfix)
+                .containsExactly("This", "is", "a", "test", ".");
+    }
+    
+    @Test
+    public void thatParsingWithoutHandedOffCasFails() throws Exception
+    {
+        MtasUimaParser sut = new MtasUimaParser(asList(), annotationSchemaService,
+                featureIndexingSupportRegistry);
+        
+        assertThatThrownBy(() -> sut.createTokenCollection(new StringReader("")))
+                .isInstanceOf(IllegalStateException.class);
+    }
+    
     @Test
     public void testNamedEnity() throws Exception
     {